@@ -0,0 +1,83 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.ensembl.healthcheck.util.DBUtils;
+
+/**
+ * An in-memory H2 database standing in for a MySQL server in the
+ * benchmarks. It holds a gene-like table with an id, a stable id, a biotype
+ * and a start position, filled with a given number of rows.
+ */
+public class BenchmarkDatabase {
+
+	private final Connection connection;
+
+	/**
+	 * @param name
+	 *          Name of the database, databases of the same name share their
+	 *          data as long as one connection to them is open.
+	 * @param rows
+	 *          Number of rows in the gene table.
+	 */
+	public BenchmarkDatabase(String name, int rows) throws SQLException {
+
+		try {
+			Class.forName("org.h2.Driver");
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+		connection = DriverManager.getConnection("jdbc:h2:mem:" + name + ";MODE=MySQL", "sa", "");
+
+		Statement stmt = connection.createStatement();
+		stmt.execute("DROP TABLE IF EXISTS gene");
+		stmt.execute("CREATE TABLE gene (gene_id INT PRIMARY KEY, stable_id VARCHAR(128), biotype VARCHAR(40), seq_region_start INT)");
+		stmt.close();
+
+		String[] biotypes = { "protein_coding", "lincRNA", "miRNA", "pseudogene" };
+		PreparedStatement insert = connection.prepareStatement("INSERT INTO gene VALUES (?, ?, ?, ?)");
+		for (int i = 1; i <= rows; i++) {
+			insert.setInt(1, i);
+			insert.setString(2, String.format("ENSG%011d", i));
+			insert.setString(3, biotypes[i % biotypes.length]);
+			insert.setInt(4, i * 1000);
+			insert.addBatch();
+			if (i % 1000 == 0) {
+				insert.executeBatch();
+			}
+		}
+		insert.executeBatch();
+		insert.close();
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	public void close() {
+		DBUtils.closeQuietly(connection);
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.ensembl.healthcheck.util.DBUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Row counts with {@link DBUtils#getRowCount(Connection, String)}, for both
+ * the fast path (SELECT COUNT) and the row by row one, and comparing two
+ * identical result sets with {@link DBUtils#compareResultSets}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DBUtilsBenchmark {
+
+	private static final String SQL = "SELECT gene_id, stable_id, biotype, seq_region_start FROM gene ORDER BY gene_id";
+
+	@Param({ "1000", "100000" })
+	public int rows;
+
+	private BenchmarkDatabase first;
+
+	private BenchmarkDatabase second;
+
+	@Setup
+	public void setUp() throws SQLException {
+		first = new BenchmarkDatabase("dbutils_first", rows);
+		second = new BenchmarkDatabase("dbutils_second", rows);
+	}
+
+	@TearDown
+	public void tearDown() {
+		first.close();
+		second.close();
+	}
+
+	@Benchmark
+	public int getRowCountSelectCount() {
+		return DBUtils.getRowCount(first.getConnection(), "SELECT COUNT(*) FROM gene WHERE biotype = 'protein_coding'");
+	}
+
+	@Benchmark
+	public int getRowCountRowByRow() {
+		return DBUtils.getRowCount(first.getConnection(), "SELECT gene_id FROM gene WHERE biotype = 'protein_coding'");
+	}
+
+	@Benchmark
+	public int getRowCountGroupBy() {
+		return DBUtils.getRowCount(first.getConnection(), "SELECT biotype, COUNT(*) FROM gene GROUP BY biotype");
+	}
+
+	@Benchmark
+	public boolean compareResultSets() throws SQLException {
+
+		Statement stmt1 = first.getConnection().createStatement();
+		Statement stmt2 = second.getConnection().createStatement();
+		try {
+			ResultSet rs1 = stmt1.executeQuery(SQL);
+			ResultSet rs2 = stmt2.executeQuery(SQL);
+			return DBUtils.compareResultSets(rs1, rs2, null, "", false, false, "gene", false);
+		} finally {
+			stmt1.close();
+			stmt2.close();
+		}
+	}
+
+}
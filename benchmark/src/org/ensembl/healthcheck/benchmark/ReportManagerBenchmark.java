@@ -0,0 +1,116 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.FileReportStore;
+import org.ensembl.healthcheck.MemoryReportStore;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adding reports to the {@link ReportManager} when they are kept in memory or
+ * in a file, i.e. when the reports are not written to a database. The reports
+ * are spread over a number of databases and test cases.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportManagerBenchmark {
+
+	/** A test that does nothing, it is only there to make reports. */
+	public static class BenchmarkTestCase extends SingleDatabaseTestCase {
+
+		@Override
+		public boolean run(DatabaseRegistryEntry dbre) {
+			return true;
+		}
+	}
+
+	private static final int DATABASES = 50;
+
+	@Param({ "Memory", "File" })
+	public String store;
+
+	private final BenchmarkTestCase testCase = new BenchmarkTestCase();
+
+	private final String[] databaseNames = new String[DATABASES];
+
+	private int count;
+
+	@Setup
+	public void setUp() {
+
+		for (int i = 0; i < DATABASES; i++) {
+			databaseNames[i] = "species" + i + "_core_81_" + i;
+		}
+		ReportManager.setReporter(null);
+	}
+
+	/**
+	 * Starts every iteration with an empty store, so the reports of earlier
+	 * iterations do not pile up.
+	 */
+	@Setup(Level.Iteration)
+	public void resetStore() {
+
+		ReportManager.initialise();
+		ReportManager.setReportStore(store.equals("File") ? new FileReportStore() : new MemoryReportStore());
+		count = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void clearStore() {
+		ReportManager.initialise();
+	}
+
+	@Benchmark
+	public void addProblem() {
+
+		int i = count++;
+		ReportManager.problem(testCase, databaseNames[i % DATABASES], "Row " + i + " of gene has no transcripts");
+	}
+
+	@Benchmark
+	public void addInfo() {
+
+		int i = count++;
+		ReportManager.report(testCase, databaseNames[i % DATABASES], ReportLine.INFO, "Row " + i + " checked");
+	}
+
+}
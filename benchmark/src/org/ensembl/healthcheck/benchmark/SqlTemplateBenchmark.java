@@ -0,0 +1,129 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.DefaultObjectRowMapper;
+import org.ensembl.healthcheck.util.Pair;
+import org.ensembl.healthcheck.util.Quadruple;
+import org.ensembl.healthcheck.util.RowMapper;
+import org.ensembl.healthcheck.util.StringMapRowMapper;
+import org.ensembl.healthcheck.util.TupleRowMappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping result sets to collections with
+ * {@link ConnectionBasedSqlTemplateImpl} and the row mappers used by most
+ * tests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlTemplateBenchmark {
+
+	private static final String SQL = "SELECT stable_id, biotype, gene_id, seq_region_start FROM gene";
+
+	@Param({ "1000", "100000" })
+	public int rows;
+
+	private BenchmarkDatabase database;
+
+	private ConnectionBasedSqlTemplateImpl template;
+
+	private PreparedStatement statement;
+
+	@Setup
+	public void setUp() throws SQLException {
+		database = new BenchmarkDatabase("sqltemplate", rows);
+		template = new ConnectionBasedSqlTemplateImpl(database.getConnection());
+		statement = database.getConnection().prepareStatement(SQL);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		statement.close();
+		database.close();
+	}
+
+	private <T> List<T> map(RowMapper<T> mapper) throws SQLException {
+
+		List<T> output = new ArrayList<T>();
+		ResultSet rs = statement.executeQuery();
+		try {
+			template.mapResultSetToCollection(rs, mapper, ConnectionBasedSqlTemplateImpl.NO_ROW_LIMIT_CHECKS, SQL, new Object[0],
+					output);
+		} finally {
+			rs.close();
+		}
+		return output;
+	}
+
+	@Benchmark
+	public List<String> defaultObjectRowMapperString() throws SQLException {
+		return map(new DefaultObjectRowMapper<String>(String.class, 1));
+	}
+
+	@Benchmark
+	public List<Long> defaultObjectRowMapperLong() throws SQLException {
+		return map(new DefaultObjectRowMapper<Long>(Long.class, 3));
+	}
+
+	@Benchmark
+	public List<Pair<String, String>> pairRowMapper() throws SQLException {
+		return map(TupleRowMappers.pair(String.class, String.class));
+	}
+
+	@Benchmark
+	public List<Quadruple<String, String, Long, Integer>> quadrupleRowMapper() throws SQLException {
+		return map(TupleRowMappers.quadruple(String.class, String.class, Long.class, Integer.class));
+	}
+
+	@Benchmark
+	public Map<String, String> stringMapRowMapper() {
+		return template.queryForMap(SQL, new StringMapRowMapper());
+	}
+
+	@Benchmark
+	public List<String> queryForDefaultObjectList() {
+		return template.queryForDefaultObjectList(SQL, String.class);
+	}
+
+}
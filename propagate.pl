@@ -263,7 +263,7 @@ sub propagate {
   );
 
   my $insert_report_sth = $dbi->prepare(
-"INSERT INTO report (first_session_id, last_session_id, database_name, database_type, species, timestamp, testcase, result, text) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+"INSERT INTO report (first_session_id, last_session_id, database_name, database_type, species, timestamp, testcase, result, text, text_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, MD5(CONVERT(? USING utf8)))"
   );
 
   my $insert_annotation_sth = $dbi->prepare(
@@ -337,7 +337,8 @@ sub propagate {
         $insert_report_sth->execute(
           $first_session_id, $session_id,   $new_database,
           $database_type,    $species,      $timestamp,
-          $testcase,         $result,       $text
+          $testcase,         $result,       $text,
+          $text
         ) || die "Error inserting report";
         my $report_id = $insert_report_sth->{'mysql_insertid'};
         
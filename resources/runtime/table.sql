@@ -38,6 +38,7 @@ CREATE TABLE report (
   testcase				VARCHAR(255),
   result				ENUM("PROBLEM", "CORRECT", "WARNING", "INFO"),
   text					TEXT,
+  text_hash				CHAR(32),
   team_responsible                      VARCHAR(255),
   created                               DATETIME,
   
@@ -48,12 +49,29 @@ CREATE TABLE report (
   KEY database_name_idx(database_name),
   KEY species_idx(species),
   KEY result_idx(result),
-  KEY text_idx(text(255))
+  KEY text_idx(text(255)),
+  UNIQUE KEY report_hash_idx(database_name, testcase, result, text_hash)
 
 );
 
 
 
+CREATE TABLE testcase_metrics (
+
+  session_id				INT(10) UNSIGNED NOT NULL,
+  testcase				VARCHAR(255) NOT NULL,
+  database_name				VARCHAR(255),
+  wall_time_ms				BIGINT UNSIGNED NOT NULL,
+  statements				BIGINT UNSIGNED NOT NULL,
+  row_count				BIGINT UNSIGNED NOT NULL,
+  bytes_read				BIGINT UNSIGNED NOT NULL,
+  connection_wait_ms			BIGINT UNSIGNED NOT NULL,
+
+  KEY session_idx(session_id),
+  KEY testcase_idx(testcase)
+
+);
+
 CREATE TABLE annotation (
 
   annotation_id               INT(10) UNSIGNED NOT NULL AUTO_INCREMENT,
@@ -15,8 +15,6 @@
 # limitations under the License.
 
 
-. /software/lsf-farm3/conf/profile.lsf
-
 #cd into the dir but this file is already there. Use standard import pattern
 dir=$HOME/ensj-healthcheck
 cd $dir
@@ -26,5 +24,5 @@ home=`dirname $0`
 jar
 classpath
 
-$JAVA_HOME/bin/java -server -Xmx256m org.ensembl.healthcheck.ParallelConfigurableTestRunner
+$JAVA_HOME/bin/java -server -Xmx2g org.ensembl.healthcheck.ParallelConfigurableTestRunner
 
@@ -14,6 +14,7 @@ export JAVA_OPTS
 
 report_dir=$(dirname $0)/hc_reports/$div/$sid
 mkdir -p $report_dir
+registry_cache=$(dirname $0)/hc_reports/$div/registry.cache
 
 echo "Running HCs on $div:$db in session $sid to $report_dir/$db.out"
 div=${div,,}
@@ -24,6 +25,7 @@ if [[ $db =~ core ]] || [[ $db =~ otherfeatures ]] || [[ $db =~ rnaseq ]] || [[
   -c $properties \
   -R Database --output.database $hcdb \
   -d $db \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 elif [[ $db =~ compara ]]; then
 
@@ -32,6 +34,7 @@ elif [[ $db =~ compara ]]; then
   -c $properties \
   -R Database --output.database $hcdb \
   -d $db \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 
 elif [[ $db =~ variation ]]; then
@@ -41,6 +44,7 @@ elif [[ $db =~ variation ]]; then
   -c $properties \
   -R Database --output.database $hcdb \
   -d $db \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 
 elif [[ $db =~ funcgen ]]; then
@@ -51,6 +55,7 @@ elif [[ $db =~ funcgen ]]; then
   -R Database --output.database $hcdb \
   -d $db \
   --datafile_base_path /nfs/production/panda/ensembl/production/ensemblftp/data_files/ \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 
 else
@@ -11,6 +11,7 @@ export JAVA_OPTS
 
 report_dir=$(dirname $0)/hc_reports/$div/$sid
 mkdir -p $report_dir
+registry_cache=$(dirname $0)/hc_reports/$div/registry.cache
 
 echo "Running HCs on $div:$db in session $sid to $report_dir/$db.out"
 div=${div,,}
@@ -23,6 +24,7 @@ if [[ $db =~ core ]] || [[ $db =~ otherfeatures ]]; then
   -c staging.properties output.properties  \
   -R Database --output.database healthchecks_${div} \
   -d $db \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 elif [[ $db =~ compara ]]; then
 
@@ -33,6 +35,7 @@ elif [[ $db =~ compara ]]; then
   -c staging.properties output.properties  \
   -R Database --output.database healthchecks_${div} \
   -d $db \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 
 elif [[ $db =~ variation ]]; then
@@ -44,6 +47,7 @@ elif [[ $db =~ variation ]]; then
   -c staging.properties output.properties  \
   -R Database --output.database healthchecks_${div} \
   -d $db \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 
 elif [[ $db =~ funcgen ]]; then
@@ -55,6 +59,7 @@ elif [[ $db =~ funcgen ]]; then
   -c staging.properties output.properties  \
   -R Database --output.database healthchecks_${div} \
   -d $db \
+  --registry.cache_file $registry_cache \
   --sessionID $sid >& $report_dir/$db.out
 
 else 
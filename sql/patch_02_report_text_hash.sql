@@ -0,0 +1,61 @@
+-- Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+-- Copyright [2016-2020] EMBL-European Bioinformatics Institute
+-- 
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- 
+--      http://www.apache.org/licenses/LICENSE-2.0
+-- 
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Reports are identified by database, test case, result and a hash of their
+-- text, which lets the healthchecks insert or update a report with a single
+-- statement. The hash is computed by the client (ReportLine.getMessageHash),
+-- as the MD5 of the text encoded as UTF-8, a missing text counting as empty.
+
+alter table report add column text_hash CHAR(32) after text;
+
+update report set text_hash = MD5(CONVERT(IFNULL(text, '') USING utf8));
+
+-- Runs writing to the same database at the same time may have stored a report
+-- more than once. Keep the oldest copy and point everything at it, so the
+-- unique key can be added.
+
+create temporary table report_duplicate (
+  duplicate_id    INT(10) UNSIGNED NOT NULL,
+  kept_id         INT(10) UNSIGNED NOT NULL,
+  last_session_id INT(10) UNSIGNED NOT NULL,
+  PRIMARY KEY (duplicate_id)
+);
+
+insert into report_duplicate (duplicate_id, kept_id, last_session_id)
+  select r.report_id, k.report_id, k.last_session_id
+    from report r
+    join (select database_name, testcase, result, text_hash,
+                 MIN(report_id) AS report_id,
+                 MAX(last_session_id) AS last_session_id
+            from report
+           group by database_name, testcase, result, text_hash
+          having COUNT(*) > 1) k
+   using (database_name, testcase, result, text_hash)
+   where r.report_id <> k.report_id;
+
+update annotation a join report_duplicate d on a.report_id = d.duplicate_id
+   set a.report_id = d.kept_id;
+
+update report_session rs join report_duplicate d on rs.report_id = d.duplicate_id
+   set rs.report_id = d.kept_id;
+
+update report r join (select distinct kept_id, last_session_id from report_duplicate) d on r.report_id = d.kept_id
+   set r.last_session_id = d.last_session_id;
+
+delete r from report r join report_duplicate d on r.report_id = d.duplicate_id;
+
+drop temporary table report_duplicate;
+
+alter table report add unique key report_hash_idx(database_name, testcase, result, text_hash);
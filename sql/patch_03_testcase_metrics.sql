@@ -0,0 +1,33 @@
+-- Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+-- Copyright [2016-2020] EMBL-European Bioinformatics Institute
+-- 
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- 
+--      http://www.apache.org/licenses/LICENSE-2.0
+-- 
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Time taken and queries made by each test case on each database in a
+-- session, written at the end of a session if metrics.file is set.
+
+CREATE TABLE testcase_metrics (
+
+  session_id				INT(10) UNSIGNED NOT NULL,
+  testcase				VARCHAR(255) NOT NULL,
+  database_name				VARCHAR(255),
+  wall_time_ms				BIGINT UNSIGNED NOT NULL,
+  statements				BIGINT UNSIGNED NOT NULL,
+  row_count				BIGINT UNSIGNED NOT NULL,
+  bytes_read				BIGINT UNSIGNED NOT NULL,
+  connection_wait_ms			BIGINT UNSIGNED NOT NULL,
+
+  KEY session_idx(session_id),
+  KEY testcase_idx(testcase)
+
+);
@@ -17,7 +17,11 @@
 
 package org.ensembl.healthcheck;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -28,9 +32,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.ensembl.healthcheck.ReporterFactory.ReporterType;
 import org.ensembl.healthcheck.TestRegistryFactory.TestRegistryType;
@@ -48,9 +55,15 @@ import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
+import org.ensembl.healthcheck.util.ConnectionPool;
 import org.ensembl.healthcheck.util.CreateHealthCheckDB;
+import org.ensembl.healthcheck.util.DatabaseQueryExecutor;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.OrphanChecker;
+import org.ensembl.healthcheck.util.PreparedStatementCache;
+import org.ensembl.healthcheck.util.QueryCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
+import org.ensembl.healthcheck.util.TestMetrics;
 
 /**
  * 
@@ -104,6 +117,17 @@ public class ConfigurableTestRunner extends TestRunner {
 	protected final TestRegistry testRegistry;
 	protected final Reporter reporter;
 
+	/**
+	 * The number of (database, test) pairs that are run at the same time.
+	 */
+	protected final int threads;
+
+	/**
+	 * The maximum number of those pairs that run against the same database
+	 * server at the same time.
+	 */
+	protected final int threadsPerServer;
+
 	/**
 	 * @param configuration
 	 *            - A configuration object of type ConfigurationUserParameters
@@ -128,6 +152,39 @@ public class ConfigurableTestRunner extends TestRunner {
 		String repair = configuration.getRepair().toLowerCase();
 		this.doRepair = (repair.equals("do") || repair.equals("1") || repair.equals("yes"));
 		this.showRepair = (repair.equals("show"));
+		this.threads = getThreads(configuration);
+		this.threadsPerServer = getThreadsPerServer(configuration, this.threads);
+		if (configuration.isThreadsQueries()
+				&& !StringUtils.isBlank(configuration.getThreadsQueries())) {
+			DatabaseQueryExecutor.setThreads(parseThreads("threads.queries",
+					configuration.getThreadsQueries()));
+		}
+		if (configuration.isOrphansMergeThreshold()
+				&& !StringUtils.isBlank(configuration.getOrphansMergeThreshold())) {
+			OrphanChecker.setMergeThreshold(parseNonNegative(
+					"orphans.merge_threshold",
+					configuration.getOrphansMergeThreshold()));
+		}
+		if (configuration.isQueryCacheSize()
+				&& !StringUtils.isBlank(configuration.getQueryCacheSize())) {
+			QueryCache.setMaxEntries((int) parseNonNegative("query.cache_size",
+					configuration.getQueryCacheSize()));
+		}
+		if (configuration.isRegistryCacheFile()) {
+			DatabaseRegistryCache.setFile(configuration.getRegistryCacheFile());
+		}
+
+		try {
+			ConnectionPool.setConfiguration(configuration);
+		} catch (IllegalArgumentException e) {
+			throw new ConfigurationException(e.getMessage());
+		}
+		if (configuration.isConnectionValidationInterval()
+				&& !StringUtils.isBlank(configuration.getConnectionValidationInterval())) {
+			DatabaseRegistryEntry.setValidationInterval(1000L * parseNonNegative(
+					"connection.validation_interval",
+					configuration.getConnectionValidationInterval()));
+		}
 
 		/* configuration is cast to a lesser interface to compartmentalise options for
 		* different packages.
@@ -169,6 +226,135 @@ public class ConfigurableTestRunner extends TestRunner {
 		return r;
 	}
 
+	/**
+	 * Reads the number of worker threads from the configuration. If it has
+	 * not been set, tests are run sequentially.
+	 */
+	protected static int getThreads(ConfigurationUserParameters configuration) {
+
+		if (!configuration.isThreads()) {
+			return 1;
+		}
+		return parseThreads("threads", configuration.getThreads());
+	}
+
+	/**
+	 * Reads the maximum number of tests run against the same database server
+	 * at the same time. If it has not been set, the only limit is the total
+	 * number of threads.
+	 */
+	protected static int getThreadsPerServer(ConfigurationUserParameters configuration, int threads) {
+
+		if (!configuration.isThreadsPerServer()
+				|| StringUtils.isBlank(configuration.getThreadsPerServer())) {
+			return threads;
+		}
+		return parseThreads("threads.per.server", configuration.getThreadsPerServer());
+	}
+
+	/**
+	 * Creates the store for reports that are not written to a database. If it
+	 * has not been configured, reports are kept in memory.
+	 */
+	protected static ReportStore getReportStore(ConfigurationUserParameters configuration) {
+
+		if (!configuration.isReportStore()
+				|| StringUtils.isBlank(configuration.getReportStore())) {
+			return new MemoryReportStore();
+		}
+
+		String store = configuration.getReportStore().trim();
+
+		if (store.equalsIgnoreCase("memory")) {
+			return new MemoryReportStore();
+		}
+		if (store.equalsIgnoreCase("file")) {
+			return new FileReportStore();
+		}
+		throw new ConfigurationException(
+				"Parameter report.store has been set to an illegal value: "
+						+ store);
+	}
+
+	/**
+	 * @return The file the metrics of the tests should be written to, or null
+	 *         if they should not be recorded.
+	 */
+	protected static File getMetricsFile(ConfigurationUserParameters configuration) {
+
+		if (!configuration.isMetricsFile()
+				|| StringUtils.isBlank(configuration.getMetricsFile())) {
+			return null;
+		}
+		return new File(configuration.getMetricsFile().trim());
+	}
+
+	/**
+	 * Writes the metrics of the tests that were run to a file and, if the
+	 * reports go to a database, to the testcase_metrics table.
+	 */
+	protected void writeMetrics(File metricsFile) {
+
+		if (this.reporterType == ReporterType.DATABASE) {
+			ReportManager.storeMetrics(TestMetrics.getEntries());
+		}
+
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new FileWriter(metricsFile));
+			if (metricsFile.getName().toLowerCase().endsWith(".csv")) {
+				TestMetrics.writeCsv(writer);
+			} else {
+				TestMetrics.writeJson(writer);
+			}
+			logger.info("Wrote metrics of " + TestMetrics.getEntries().size()
+					+ " tests to " + metricsFile);
+		} catch (IOException e) {
+			logger.warning("Could not write metrics to " + metricsFile + ": "
+					+ e.getMessage());
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+	}
+
+	private static long parseNonNegative(String parameter, String value) {
+
+		long l;
+
+		try {
+			l = Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new ConfigurationException(
+					"Parameter " + parameter + " has been set to an illegal value: "
+							+ value);
+		}
+		if (l < 0) {
+			throw new ConfigurationException(
+					"Parameter " + parameter + " must not be negative, was: " + l);
+		}
+
+		return l;
+	}
+
+	private static int parseThreads(String parameter, String value) {
+
+		int t;
+
+		try {
+			t = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new ConfigurationException(
+					"Parameter " + parameter + " has been set to an illegal value: "
+							+ value);
+		}
+		if (t < 1) {
+			throw new ConfigurationException(
+					"Parameter " + parameter + " must be at least 1, was: " + t);
+		}
+
+		return t;
+	}
+
 	/**
 	 * Used for created layered constructors.
 	 */
@@ -343,8 +529,8 @@ public class ConfigurableTestRunner extends TestRunner {
 	
 		List<Class<? extends EnsTestCase>> registeredClasses = new ArrayList<Class<? extends EnsTestCase>>();
 		
-		for (EnsTestCase currentTestCase : testRegistry.getAll()) {
-			registeredClasses.add(currentTestCase.getClass());
+		for (TestDescriptor currentTestCase : testRegistry.getAllDescriptors()) {
+			registeredClasses.add(currentTestCase.getTestClass());
 		}
 		return registeredClasses;
 	}
@@ -358,6 +544,12 @@ public class ConfigurableTestRunner extends TestRunner {
                 ReportManager.setOutputLevel(outputLevel);
 
 		ReportManager.setReporter(reporter);
+		ReportManager.setReportStore(getReportStore(configuration));
+
+		File metricsFile = getMetricsFile(configuration);
+		TestMetrics.clear();
+		TestMetrics.setEnabled(metricsFile != null);
+		QueryCache.invalidateAll();
 
 		DatabaseServer ds = connectToDatabase(configuration);
 
@@ -442,6 +634,18 @@ public class ConfigurableTestRunner extends TestRunner {
                         } else {
 			        ReportManager.createDatabaseSession();
                         }
+
+			if (configuration.isOutputReportIndexMb()
+					&& !StringUtils.isBlank(configuration.getOutputReportIndexMb())) {
+				long mb = parseNonNegative("output.report_index_mb", configuration.getOutputReportIndexMb());
+				if (mb > 0) {
+					List<String> names = new ArrayList<String>();
+					for (DatabaseRegistryEntry dbre : databasesToTestRegistry.getAll()) {
+						names.add(dbre.getName());
+					}
+					ReportManager.loadReportIndex(names, mb * 1024 * 1024);
+				}
+			}
 		}
 
 		// When writing to a database, this must only be run after calling
@@ -536,7 +740,18 @@ public class ConfigurableTestRunner extends TestRunner {
 
 		
 		logger.info("Done running tests\n\n");
+		logger.info(ConnectionPool.getStatistics());
+		logger.info(PreparedStatementCache.getStatistics());
+		logger.info(QueryCache.getStatistics());
+		QueryCache.invalidateAll();
+		logger.info("Connection validation queries run: "
+				+ DatabaseRegistryEntry.getValidationsRun() + ", avoided: "
+				+ DatabaseRegistryEntry.getValidationsAvoided());
 		
+		if (metricsFile != null) {
+			writeMetrics(metricsFile);
+		}
+
 		boolean printFailureText = true;
 
 		if (this.reporterType == ReporterType.DATABASE) {
@@ -644,11 +859,11 @@ public class ConfigurableTestRunner extends TestRunner {
 
                     logger.info("Running all tests with accounting");
 
-		int numberOfTestsRun = 0;
+		final AtomicInteger numberOfTestsRun = new AtomicInteger();
 		
-		HashSet<Class<? extends EnsTestCase>> testsRun = new HashSet<Class<? extends EnsTestCase>>();
-		Map<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus> trackCompletionStatus = new HashMap<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus>();
-		Map<
+		final HashSet<Class<? extends EnsTestCase>> testsRun = new HashSet<Class<? extends EnsTestCase>>();
+		final Map<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus> trackCompletionStatus = new HashMap<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus>();
+		final Map<
 			Class<? extends EnsTestCase>,
 			List<DatabaseRegistryEntry>
 		> exceptionToDb = new HashMap<
@@ -659,53 +874,54 @@ public class ConfigurableTestRunner extends TestRunner {
 		// --------------------------------
 		// Single-database tests
 
+		ParallelTestExecutor executor = null;
+
+		if (threads > 1) {
+			executor = new ParallelTestExecutor(threads, threadsPerServer);
+			logger.info("Running single-database tests on " + threads
+					+ " threads, at most " + executor.getMaxPerServer() + " per server");
+		}
+
 		// run the appropriate tests on each of them
-		for (DatabaseRegistryEntry database : databaseRegistry.getAll()) {
+		for (final DatabaseRegistryEntry database : databaseRegistry.getAll()) {
                     logger.info("Processing database "+database.getName());
-			for (SingleDatabaseTestCase testCase : testRegistry.getAllSingle(
+			// Only descriptors are iterated and queued, so neither this loop
+			// nor waiting jobs hold on to instances of tests. A test is
+			// created when it is about to run.
+			//
+			for (final TestDescriptor test : testRegistry.getAllSingleDescriptors(
 					groupsToRun, database.getType())) {
 
-				if (!testCase.isLongRunning()
-						|| (testCase.isLongRunning() && !skipSlow)) {
-
-					try {
-                                            logger.info("Executing "+testCase.getTestName()+" on "+database.getName());
-						ReportManager.startTestCase(testCase, database);
-
-						testCase.types();
-						
-						boolean result = testCase.run(database);
-
-						testsRun.add(testCase.getClass());
-						trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.COMPLETED);
-						
-						ReportManager
-								.finishTestCase(testCase, result, database);
-
-						checkRepair(testCase, database);
-						numberOfTestsRun++;
-                                            logger.info("Completed executing "+testCase.getTestName()+" on "+database.getName());
-
-					} catch (Throwable e) {
-						
-						trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.DIED_WITH_EXCEPTION);
-						
-						if (!exceptionToDb.containsKey(testCase.getClass())) {
-							exceptionToDb.put(testCase.getClass(), new ArrayList<DatabaseRegistryEntry>());
+				if (!test.isLongRunning()
+						|| (test.isLongRunning() && !skipSlow)) {
+
+					Runnable job = new Runnable() {
+						public void run() {
+							SingleDatabaseTestCase testCase;
+							try {
+								testCase = (SingleDatabaseTestCase) test.newInstance();
+							} catch (RuntimeException e) {
+								recordException(test.getTestClass(), database, trackCompletionStatus, exceptionToDb);
+								logger.log(Level.WARNING, "Could not execute test " + test.getName()
+										+ " on " + database.getName() + ": " + e.getMessage(), e);
+								return;
+							}
+							runSingleDatabaseTest(testCase, database, numberOfTestsRun, testsRun, trackCompletionStatus, exceptionToDb);
 						}
-						
-						exceptionToDb.get(testCase.getClass()).add(database);							
-						
-					  String msg = "Could not execute test "
-                + testCase.getName() + " on "
-                + database.getName() + ": " + e.getMessage();
-					  logger.log(Level.WARNING, msg, e);
+					};
+
+					if (executor == null) {
+						job.run();
+					} else {
+						executor.submit(database, job);
 					}
 
 				} else {
 					logger.info("Skipping long-running test "
-							+ testCase.getName());
-					trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.SKIPPED_LONG_RUNNING);
+							+ test.getShortTestName());
+					synchronized (trackCompletionStatus) {
+						TestRunStats.record(trackCompletionStatus, test.getTestClass(), TestRunStats.CompletionStatus.SKIPPED_LONG_RUNNING);
+					}
 
 				}
 
@@ -713,6 +929,10 @@ public class ConfigurableTestRunner extends TestRunner {
 
 		} // foreach DB
 
+		if (executor != null) {
+			executor.awaitCompletion();
+		}
+
 		// --------------------------------
 		// Multi-database tests
 
@@ -724,6 +944,7 @@ public class ConfigurableTestRunner extends TestRunner {
 
 			if (!testCase.isLongRunning()
 					|| (testCase.isLongRunning() && !skipSlow)) {
+				TestMetrics.start(testCase.getTestName(), null);
 				try {
 					ReportManager.startTestCase(testCase, null);
 
@@ -732,24 +953,26 @@ public class ConfigurableTestRunner extends TestRunner {
 					testCase.types();
 					boolean result = testCase.run(databaseRegistry);
 					testsRun.add(testCase.getClass());
-					trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.COMPLETED);
+					TestRunStats.record(trackCompletionStatus, testCase.getClass(), TestRunStats.CompletionStatus.COMPLETED);
 
 					ReportManager.finishTestCase(testCase, result, null);
 					logger.info(testCase.getName() + " "
 							+ (result ? "PASSED" : "FAILED"));
 
-					numberOfTestsRun++;
+					numberOfTestsRun.incrementAndGet();
 				} catch (Throwable e) {
 				  //TODO If we had a throwable then we should mark the test as failed 
           String msg = "Could not execute test "
               + testCase.getName() + ": " + e.getMessage();
           logger.log(Level.WARNING, msg, e);
-          			trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.DIED_WITH_EXCEPTION);
+          			TestRunStats.record(trackCompletionStatus, testCase.getClass(), TestRunStats.CompletionStatus.DIED_WITH_EXCEPTION);
+				} finally {
+					TestMetrics.finish();
 				}
 			} else {
 
 				logger.info("Skipping long-running test " + testCase.getName());
-				trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.SKIPPED_LONG_RUNNING);
+				TestRunStats.record(trackCompletionStatus, testCase.getClass(), TestRunStats.CompletionStatus.SKIPPED_LONG_RUNNING);
 
 			}
 
@@ -765,6 +988,7 @@ public class ConfigurableTestRunner extends TestRunner {
 		for (OrderedDatabaseTestCase testCase : testRegistry
 				.getAllOrdered(groupsToRun)) {
 
+			TestMetrics.start(testCase.getTestName(), null);
 			ReportManager.startTestCase(testCase, null);
 
 			try {
@@ -779,21 +1003,92 @@ public class ConfigurableTestRunner extends TestRunner {
         String msg = "Could not execute test "
             + testCase.getName() + ": " + e.getMessage();
         logger.log(Level.WARNING, msg, e);
+			} finally {
+				TestMetrics.finish();
 			}
 
-			numberOfTestsRun++;
+			numberOfTestsRun.incrementAndGet();
 
 		} // foreach test
 
 		// --------------------------------
 
-		if (numberOfTestsRun == 0) {
+		if (numberOfTestsRun.get() == 0) {
 			logger.warning("Warning: no tests were run.");
 		}
 
 		return new TestRunStats(testsRun, trackCompletionStatus, exceptionToDb);
 	} // runAllTests
-	
+
+	/**
+	 * Run a single-database test and record the outcome. May be called from
+	 * several threads at once, so all updates to the accounting collections
+	 * are made while holding the lock on trackCompletionStatus.
+	 */
+	protected void runSingleDatabaseTest(
+			SingleDatabaseTestCase testCase,
+			DatabaseRegistryEntry database,
+			AtomicInteger numberOfTestsRun,
+			Set<Class<? extends EnsTestCase>> testsRun,
+			Map<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus> trackCompletionStatus,
+			Map<Class<? extends EnsTestCase>, List<DatabaseRegistryEntry>> exceptionToDb) {
+
+		TestMetrics.start(testCase.getTestName(), database.getName());
+
+		try {
+			logger.info("Executing "+testCase.getTestName()+" on "+database.getName());
+			ReportManager.startTestCase(testCase, database);
+
+			testCase.types();
+			
+			boolean result = testCase.run(database);
+
+			synchronized (trackCompletionStatus) {
+				testsRun.add(testCase.getClass());
+				TestRunStats.record(trackCompletionStatus, testCase.getClass(), TestRunStats.CompletionStatus.COMPLETED);
+			}
+			
+			ReportManager
+					.finishTestCase(testCase, result, database);
+
+			checkRepair(testCase, database);
+			numberOfTestsRun.incrementAndGet();
+			logger.info("Completed executing "+testCase.getTestName()+" on "+database.getName());
+
+		} catch (Throwable e) {
+			
+			recordException(testCase.getClass(), database, trackCompletionStatus, exceptionToDb);
+			
+			String msg = "Could not execute test "
+					+ testCase.getName() + " on "
+					+ database.getName() + ": " + e.getMessage();
+			logger.log(Level.WARNING, msg, e);
+		} finally {
+			TestMetrics.finish();
+		}
+	}
+
+	/**
+	 * Record that a single-database test died with an exception on a
+	 * database, whether while running or while being instantiated.
+	 */
+	protected void recordException(
+			Class<? extends EnsTestCase> testClass,
+			DatabaseRegistryEntry database,
+			Map<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus> trackCompletionStatus,
+			Map<Class<? extends EnsTestCase>, List<DatabaseRegistryEntry>> exceptionToDb) {
+
+		synchronized (trackCompletionStatus) {
+			TestRunStats.record(trackCompletionStatus, testClass, TestRunStats.CompletionStatus.DIED_WITH_EXCEPTION);
+			
+			if (!exceptionToDb.containsKey(testClass)) {
+				exceptionToDb.put(testClass, new ArrayList<DatabaseRegistryEntry>());
+			}
+			
+			exceptionToDb.get(testClass).add(database);
+		}
+	}
+
 	/**
 	 * <p>
 	 * Users specify the exact names of databases and these are used to 
@@ -913,24 +1208,13 @@ public class ConfigurableTestRunner extends TestRunner {
 		
 		List<Class<? extends EnsTestCase>> testsApplyingToNoDb = new ArrayList<Class<? extends EnsTestCase>>(); 
 		
-		for (Class<? extends EnsTestCase> currentTest : getAllRegisteredTestClasses(testRegistry)) {
+		for (TestDescriptor currentTest : testRegistry.getAllDescriptors()) {
 			
-			DatabaseType[] dbT;
-
-			/*
-			 * Instead of instantiating a test directly, a group of this one 
-			 * test is created and then retrieved from it.
-			 * 
-			 * The reason is that "getTests" has method calls to set the types
-			 * of databases to which this test can be applied.
-			 * 
-			 * By instantiating the test this way, the testcase is initialised
-			 * the same way as it will be when it is run by the testrunner.
-			 * 
-			 */
-			GroupOfTests g = new GroupOfTests();
-			g.addTest(currentTest);
-			dbT = g.getTests().iterator().next().getAppliesToTypes();
+			// The descriptor has the types the test applies to once it has 
+			// been initialised the way the testrunner does, without having 
+			// to instantiate it here.
+			//
+			DatabaseType[] dbT = currentTest.getAppliesToTypes();
 
 			boolean currentTestAppliesToADb = false;
 			
@@ -943,7 +1227,7 @@ public class ConfigurableTestRunner extends TestRunner {
 				}
 			}
 			if (!currentTestAppliesToADb) {
-				testsApplyingToNoDb.add(currentTest);
+				testsApplyingToNoDb.add(currentTest.getTestClass());
 			}
 		}
 		return testsApplyingToNoDb;
@@ -959,12 +1243,31 @@ class TestRunnerSelfCheck extends EnsTestCase {
 
 class TestRunStats {
 
+	/**
+	 * In order of severity: a test that ran on several databases gets the
+	 * most severe of its outcomes, see {@link #record}.
+	 */
 	protected enum CompletionStatus {
 		COMPLETED,
 		SKIPPED_LONG_RUNNING,
 		DIED_WITH_EXCEPTION		
 	}
 
+	/**
+	 * Record the outcome of a test on one database, unless a more severe one
+	 * has been recorded for it already. Callers running tests on several
+	 * threads hold the lock on trackCompletionStatus.
+	 */
+	protected static void record(
+			Map<Class<? extends EnsTestCase>, CompletionStatus> trackCompletionStatus,
+			Class<? extends EnsTestCase> testClass, CompletionStatus status) {
+
+		CompletionStatus previous = trackCompletionStatus.get(testClass);
+		if (previous == null || status.compareTo(previous) > 0) {
+			trackCompletionStatus.put(testClass, status);
+		}
+	}
+
 	public HashSet<Class<? extends EnsTestCase>> getTestsRun() {
 		return testsRun;
 	}
@@ -33,6 +33,9 @@ import org.ensembl.healthcheck.util.CollectionUtils;
 /**
  * A test registry that returns tests based on a configuration file instead of
  * letting the tests register themselves.
+ * 
+ * Tests are held as {@link TestDescriptor}s. The lists of tests returned
+ * are instantiated when asked for, leaving out tests that cannot be.
  *
  */
 public class ConfigurationBasedTestRegistry implements TestRegistry {
@@ -52,38 +55,38 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		this.userDefinedGroupOfTests = userDefinedGroupOfTests;
 	}
 
-	private List<SingleDatabaseTestCase> getSingleDatabaseTestCaseList() {
+	private List<TestDescriptor> getSingleDatabaseTestCaseList() {
 		return singleDatabaseTestCaseList;
 	}
 
 	private void setSingleDatabaseTestCaseList(
-			List<SingleDatabaseTestCase> singleDatabaseTestCaseList) {
+			List<TestDescriptor> singleDatabaseTestCaseList) {
 		this.singleDatabaseTestCaseList = singleDatabaseTestCaseList;
 	}
 
-	private List<MultiDatabaseTestCase> getMultiDatabaseTestCaseList() {
+	private List<TestDescriptor> getMultiDatabaseTestCaseList() {
 		return multiDatabaseTestCaseList;
 	}
 
 	private void setMultiDatabaseTestCaseList(
-			List<MultiDatabaseTestCase> multiDatabaseTestCaseList) {
+			List<TestDescriptor> multiDatabaseTestCaseList) {
 		this.multiDatabaseTestCaseList = multiDatabaseTestCaseList;
 	}
 
-	private List<OrderedDatabaseTestCase> getOrderedDatabaseTestCaseList() {
+	private List<TestDescriptor> getOrderedDatabaseTestCaseList() {
 		return orderedDatabaseTestCaseList;
 	}
 
 	private void setOrderedDatabaseTestCaseList(
-			List<OrderedDatabaseTestCase> orderedDatabaseTestCaseList) {
+			List<TestDescriptor> orderedDatabaseTestCaseList) {
 		this.orderedDatabaseTestCaseList = orderedDatabaseTestCaseList;
 	}
 
-	private List<EnsTestCase> getDatabaseTestCaseList() {
+	private List<TestDescriptor> getDatabaseTestCaseList() {
 		return databaseTestCaseList;
 	}
 
-	private void setDatabaseTestCaseList(List<EnsTestCase> databaseTestCaseList) {
+	private void setDatabaseTestCaseList(List<TestDescriptor> databaseTestCaseList) {
 		this.databaseTestCaseList = databaseTestCaseList;
 	}
 
@@ -92,10 +95,10 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 	//
 
 	private GroupOfTests userDefinedGroupOfTests;
-	private List<EnsTestCase>             databaseTestCaseList;
-	private List<SingleDatabaseTestCase>  singleDatabaseTestCaseList;
-	private List<MultiDatabaseTestCase>   multiDatabaseTestCaseList;
-	private List<OrderedDatabaseTestCase> orderedDatabaseTestCaseList;
+	private List<TestDescriptor> databaseTestCaseList;
+	private List<TestDescriptor> singleDatabaseTestCaseList;
+	private List<TestDescriptor> multiDatabaseTestCaseList;
+	private List<TestDescriptor> orderedDatabaseTestCaseList;
 
 	/**
 	 * @param params ConfigurationUserParameters object
@@ -109,7 +112,7 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 			ClassNotFoundException {
 		
 		initGroupSet(params);		
-		this.setDatabaseTestCaseList(new ArrayList<EnsTestCase>(userDefinedGroupOfTests.getTests()));		
+		this.setDatabaseTestCaseList(TestDescriptor.forClasses(userDefinedGroupOfTests.getListOfTests()));
 		initDatabaseLists();		
 	}
 
@@ -203,26 +206,26 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 	 */
 	private void initDatabaseLists() throws UnknownTestTypeException {
 		
-		List<EnsTestCase> listOfTests = this.getDatabaseTestCaseList();
+		List<TestDescriptor> listOfTests = this.getDatabaseTestCaseList();
 		
-		List<SingleDatabaseTestCase>  single  = new ArrayList<SingleDatabaseTestCase>();
-		List<MultiDatabaseTestCase>   multi   = new ArrayList<MultiDatabaseTestCase>();
-		List<OrderedDatabaseTestCase> ordered = new ArrayList<OrderedDatabaseTestCase>();
+		List<TestDescriptor> single  = new ArrayList<TestDescriptor>();
+		List<TestDescriptor> multi   = new ArrayList<TestDescriptor>();
+		List<TestDescriptor> ordered = new ArrayList<TestDescriptor>();
 		
-		for (EnsTestCase currentTest : listOfTests) {
+		for (TestDescriptor currentTest : listOfTests) {
 			
 			boolean testWasAddedToAList = false;
 			
-			if (currentTest instanceof SingleDatabaseTestCase) {
-				single.add((SingleDatabaseTestCase) currentTest);
+			if (currentTest.isSingle()) {
+				single.add(currentTest);
 				testWasAddedToAList = true;
 			}
-			if (currentTest instanceof MultiDatabaseTestCase) {
-				multi.add((MultiDatabaseTestCase) currentTest);
+			if (currentTest.isMulti()) {
+				multi.add(currentTest);
 				testWasAddedToAList = true;
 			}
-			if (currentTest instanceof OrderedDatabaseTestCase) {
-				ordered.add((OrderedDatabaseTestCase) currentTest);
+			if (currentTest.isOrdered()) {
+				ordered.add(currentTest);
 				testWasAddedToAList = true;
 			}
 			
@@ -240,36 +243,40 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		
 		StringBuffer result = new StringBuffer();
 		
-		result.append( "DatabaseTestCaseList: \n"        + listToString(this.getDatabaseTestCaseList()) + "\n" );
-		result.append( "Single database testcases: \n"   + listToString(this.getAllSingle(null, null))  + "\n" );
-		result.append( "Multi database testcases: \n"    + listToString(this.getAllMulti(null))         + "\n" );
-		result.append( "Ordered database testcases: \n"  + listToString(this.getAllOrdered(null))       + "\n" );
+		result.append( "DatabaseTestCaseList: \n"        + listToString(this.getDatabaseTestCaseList())        + "\n" );
+		result.append( "Single database testcases: \n"   + listToString(this.getSingleDatabaseTestCaseList())  + "\n" );
+		result.append( "Multi database testcases: \n"    + listToString(this.getMultiDatabaseTestCaseList())   + "\n" );
+		result.append( "Ordered database testcases: \n"  + listToString(this.getOrderedDatabaseTestCaseList()) + "\n" );
 		
 		return result.toString();
 	}
 	
-	protected String listToString(List<? extends EnsTestCase> l) {
+	protected String listToString(List<TestDescriptor> l) {
 
 		StringBuffer s = new StringBuffer(); 
 		
 		if (l.size()==0) return " - none - ";
 		
-		for (EnsTestCase e : l) {
-			s.append("  - " + e.getClass().getName() + "\n");
+		for (TestDescriptor e : l) {
+			s.append("  - " + e.getName() + "\n");
 		}
 		return s.toString();
 	}
 	
+	public List<TestDescriptor> getAllDescriptors() {
+		return new ArrayList<TestDescriptor>(this.getDatabaseTestCaseList());
+	}
+
 	public List<EnsTestCase> getAll() {
-		return new ArrayList<EnsTestCase>(this.getUserDefinedGroupOfTests().getTests());
+		return TestDescriptor.instances(this.getDatabaseTestCaseList(), EnsTestCase.class);
 	}
 
 	public List<MultiDatabaseTestCase> getAllMulti(List<String> groupsToRun) {
-		return new ArrayList<MultiDatabaseTestCase>(this.getMultiDatabaseTestCaseList());
+		return TestDescriptor.instances(this.getMultiDatabaseTestCaseList(), MultiDatabaseTestCase.class);
 	}
 
 	public List<OrderedDatabaseTestCase> getAllOrdered(List<String> groups) {
-		return new ArrayList<OrderedDatabaseTestCase>(this.getOrderedDatabaseTestCaseList());
+		return TestDescriptor.instances(this.getOrderedDatabaseTestCaseList(), OrderedDatabaseTestCase.class);
 	}
 
 	public List<SingleDatabaseTestCase> getAllSingle(List<String> groupsToRun,
@@ -279,14 +286,22 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		}
 		return getSingle(type);
 	}
+
+	public List<TestDescriptor> getAllSingleDescriptors(List<String> groupsToRun,
+			DatabaseType type) {
+		if(groupsToRun!=null && groupsToRun.size()>0) {
+			throw new UnsupportedOperationException("Group selection not supported for "+this.getClass().getName()+".getAllSingleDescriptors()");
+		}
+		return getSingleDescriptors(type);
+	}
 	
-	private Map<DatabaseType,List<SingleDatabaseTestCase>> singleTestsByType;
-	protected Map<DatabaseType,List<SingleDatabaseTestCase>> getSingleTestsByType() {
+	private Map<DatabaseType,List<TestDescriptor>> singleTestsByType;
+	protected Map<DatabaseType,List<TestDescriptor>> getSingleTestsByType() {
 		if(singleTestsByType==null) {
 			singleTestsByType = CollectionUtils.createHashMap();
-			for(SingleDatabaseTestCase test: this.getSingleDatabaseTestCaseList()) {
+			for(TestDescriptor test: this.getSingleDatabaseTestCaseList()) {
 				for(DatabaseType type: test.getAppliesToTypes()) {
-					List<SingleDatabaseTestCase> tests = singleTestsByType.get(type);
+					List<TestDescriptor> tests = singleTestsByType.get(type);
 					if(tests==null) {
 						tests = CollectionUtils.createArrayList();
 						singleTestsByType.put(type,tests);
@@ -298,15 +313,19 @@ public class ConfigurationBasedTestRegistry implements TestRegistry {
 		return singleTestsByType;
 	}
 	public List<SingleDatabaseTestCase> getSingle(DatabaseType type) {
+		return TestDescriptor.instances(getSingleDescriptors(type), SingleDatabaseTestCase.class);
+	}
+
+	public List<TestDescriptor> getSingleDescriptors(DatabaseType type) {
 		if(type==null) {
-			return this.getSingleDatabaseTestCaseList();
+			return new ArrayList<TestDescriptor>(this.getSingleDatabaseTestCaseList());
 		} else {
-			List<SingleDatabaseTestCase> ts = getSingleTestsByType().get(type);
+			List<TestDescriptor> ts = getSingleTestsByType().get(type);
 			if(ts==null) {
 				logger.warning("Couldn't find any tests for database type "+type.getName());
 				ts = CollectionUtils.createArrayList();
 			}
-			return ts;
+			return new ArrayList<TestDescriptor>(ts);
 		}
 	}
 
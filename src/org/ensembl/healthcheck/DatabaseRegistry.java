@@ -17,7 +17,6 @@
 
 package org.ensembl.healthcheck;
 
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,6 +24,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Logger;
 
 import org.ensembl.healthcheck.util.DBUtils;
@@ -43,6 +43,15 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 
 	private DatabaseType globalType = null;
 
+	// entries by type and species and by type and alias, in the order of
+	// entries; built when first needed and dropped when an entry is added
+	private Map<DatabaseType, Map<String, List<DatabaseRegistryEntry>>> bySpecies;
+
+	private Map<DatabaseType, Map<String, List<DatabaseRegistryEntry>>> byAlias;
+
+	/** Results of getEquivalent, by the type and species or alias looked up */
+	private final Map<String, DatabaseRegistryEntry> equivalents = new HashMap<String, DatabaseRegistryEntry>();
+
 	/** The logger to use */
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
@@ -67,40 +76,9 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 
 		List<DatabaseServer> servers = isSecondary ? DBUtils.getSecondaryDatabaseServers() : DBUtils.getMainDatabaseServers();
 
-		for (DatabaseServer server : servers) {
-
-			if (regexps == null || regexps.size() == 0) {
-
-				String[] names = null;
-				
-				try {
-					
-					names = DBUtils.listDatabases(server.getServerConnection(), null);
-					
-				} catch(SQLException e) {
-					logger.warning(e.getMessage());
-				}
-				addEntriesToRegistry(server, names, isSecondary);
-
-			} else {
-
-				for(String regexp: regexps) {
-
-					String[] names = null;
-					
-					try {
-						
-						names = DBUtils.listDatabases(server.getServerConnection(), regexp);
-					
-					} catch(SQLException e) {
-						logger.warning(e.getMessage());
-					}
-
-					addEntriesToRegistry(server, names, isSecondary);
-
-				}
-			}
-		}
+		// each server is listed once and the databases matching any of the
+		// regexps are looked up together, see DatabaseRegistryBuilder
+		addEntriesToRegistry(new DatabaseRegistryBuilder(regexps, this.globalSpecies, this.globalType).build(servers), isSecondary);
 
 	}
 
@@ -140,17 +118,20 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 
 	// -----------------------------------------------------------------
 
-	private void addEntriesToRegistry(DatabaseServer server, final String[] names, boolean isSecondary) {
+	private synchronized void addEntriesToRegistry(List<DatabaseRegistryEntry> dbres, boolean isSecondary) {
 
-		if (names==null) {
-			return;
+		clearIndexes();
+
+		Set<String> names = new HashSet<String>();
+		for (DatabaseRegistryEntry entry : entries) {
+			names.add(entry.getName());
 		}
-		
-		for (String name : names) {
 
-			DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, name, globalSpecies, globalType);
+		for (DatabaseRegistryEntry dbre : dbres) {
+
+			String name = dbre.getName();
 
-			if (!this.contains(dbre)) {
+			if (names.add(name)) {
 
 				// logger.finest(dbre.getName() + " appears to be type " + dbre.getType() + " and species " + dbre.getSpecies());
 
@@ -176,8 +157,9 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 	 * @param dbre
 	 *          The new DatabaseRegistryEntry.
 	 */
-	public final void add(final DatabaseRegistryEntry dbre) {
+	public final synchronized void add(final DatabaseRegistryEntry dbre) {
 
+		clearIndexes();
 		entries.add(dbre);
 		dbre.setDatabaseRegistry(this);
 
@@ -261,14 +243,142 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 	 */
 	public final DatabaseRegistryEntry[] getAll(final DatabaseType type, final String species) {
 
-		List<DatabaseRegistryEntry> result = new ArrayList<DatabaseRegistryEntry>();
-		for(DatabaseRegistryEntry dbre: entries) {
-			if (dbre.getType().equals(type) && dbre.getSpecies().equals(species)) {
-				result.add(dbre);
+		List<DatabaseRegistryEntry> result = lookup(getBySpecies(), type, species);
+
+		return (DatabaseRegistryEntry[]) result.toArray(new DatabaseRegistryEntry[result.size()]);
+
+	}
+
+	// -----------------------------------------------------------------
+	/**
+	 * Get all of the DatabaseRegistryEntries for a particular database type and alias.
+	 * 
+	 * @param type
+	 *          The type to look for.
+	 * @param alias
+	 *          The alias to look for.
+	 * @return The DatabaseRegistryEntries that match type and alias.
+	 */
+	public final DatabaseRegistryEntry[] getAllByAlias(final DatabaseType type, final String alias) {
+
+		List<DatabaseRegistryEntry> result = lookup(getByAlias(), type, alias);
+
+		return result.toArray(new DatabaseRegistryEntry[result.size()]);
+
+	}
+
+	// -----------------------------------------------------------------
+	/**
+	 * Get the database in this registry that is equivalent to one from another
+	 * registry: the one with the same type and species, or the same type and
+	 * alias if the species of dbre is not known, with the highest version
+	 * number. The result for each type and species or alias is only worked
+	 * out once.
+	 * 
+	 * @param dbre
+	 *          The database to find the equivalent for.
+	 * @param name
+	 *          If not null, and this registry has a database with that name,
+	 *          that database is used regardless of dbre.
+	 * @return The equivalent database, or null if there is none.
+	 */
+	public final synchronized DatabaseRegistryEntry getEquivalent(DatabaseRegistryEntry dbre, String name) {
+
+		boolean bySpecies = !DatabaseRegistryEntry.UNKNOWN.equals(dbre.getSpecies());
+		String key = dbre.getType() + "\t" + (bySpecies ? "species" : "alias") + "\t"
+				+ (bySpecies ? dbre.getSpecies() : dbre.getAlias()) + "\t" + name;
+
+		if (equivalents.containsKey(key)) {
+			return equivalents.get(key);
+		}
+
+		DatabaseRegistryEntry result = null;
+		if (name != null) {
+			for (DatabaseRegistryEntry entry : entries) {
+				if (entry.getName().equals(name)) {
+					result = entry;
+					break;
+				}
 			}
 		}
 
-		return (DatabaseRegistryEntry[]) result.toArray(new DatabaseRegistryEntry[result.size()]);
+		if (result == null) {
+			// the TreeSet sorts them by species and version
+			TreeSet<DatabaseRegistryEntry> matchingDBs = new TreeSet<DatabaseRegistryEntry>(bySpecies
+					? lookup(getBySpecies(), dbre.getType(), dbre.getSpecies())
+					: lookup(getByAlias(), dbre.getType(), dbre.getAlias()));
+			if (matchingDBs.isEmpty()) {
+				logger.finest("Could not find equivalent database to " + dbre.getName());
+			} else {
+				result = matchingDBs.last();
+			}
+		}
+
+		equivalents.put(key, result);
+		return result;
+
+	}
+
+	// -----------------------------------------------------------------
+
+	private static List<DatabaseRegistryEntry> lookup(Map<DatabaseType, Map<String, List<DatabaseRegistryEntry>>> index,
+			DatabaseType type, String key) {
+
+		Map<String, List<DatabaseRegistryEntry>> byKey = index.get(type);
+		List<DatabaseRegistryEntry> result = byKey == null || key == null ? null : byKey.get(key);
+		return result == null ? new ArrayList<DatabaseRegistryEntry>() : new ArrayList<DatabaseRegistryEntry>(result);
+
+	}
+
+	private synchronized Map<DatabaseType, Map<String, List<DatabaseRegistryEntry>>> getBySpecies() {
+
+		if (bySpecies == null) {
+			bySpecies = new HashMap<DatabaseType, Map<String, List<DatabaseRegistryEntry>>>();
+			for (DatabaseRegistryEntry dbre : entries) {
+				index(bySpecies, dbre.getType(), dbre.getSpecies(), dbre);
+			}
+		}
+		return bySpecies;
+
+	}
+
+	private synchronized Map<DatabaseType, Map<String, List<DatabaseRegistryEntry>>> getByAlias() {
+
+		if (byAlias == null) {
+			byAlias = new HashMap<DatabaseType, Map<String, List<DatabaseRegistryEntry>>>();
+			for (DatabaseRegistryEntry dbre : entries) {
+				index(byAlias, dbre.getType(), dbre.getAlias(), dbre);
+			}
+		}
+		return byAlias;
+
+	}
+
+	private static void index(Map<DatabaseType, Map<String, List<DatabaseRegistryEntry>>> index, DatabaseType type,
+			String key, DatabaseRegistryEntry dbre) {
+
+		if (key == null) {
+			return;
+		}
+		Map<String, List<DatabaseRegistryEntry>> byKey = index.get(type);
+		if (byKey == null) {
+			byKey = new HashMap<String, List<DatabaseRegistryEntry>>();
+			index.put(type, byKey);
+		}
+		List<DatabaseRegistryEntry> list = byKey.get(key);
+		if (list == null) {
+			list = new ArrayList<DatabaseRegistryEntry>();
+			byKey.put(key, list);
+		}
+		list.add(dbre);
+
+	}
+
+	private void clearIndexes() {
+
+		bySpecies = null;
+		byAlias = null;
+		equivalents.clear();
 
 	}
 
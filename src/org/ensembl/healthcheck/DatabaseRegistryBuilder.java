@@ -0,0 +1,516 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.DatabaseQueryExecutor;
+import org.ensembl.healthcheck.util.RowMapper;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
+
+/**
+ * <p>
+ * Finds the databases matching a list of regular expressions on a number of
+ * servers and creates the {@link DatabaseRegistryEntry}s for them.
+ * </p>
+ * 
+ * <p>
+ * The databases of each server are listed once and matched against the
+ * regular expressions here. The types and versions of databases that can not
+ * be told from their names, and the species IDs of generic databases, are
+ * then read from the meta tables of many databases in each query, instead of
+ * over a connection to each one. Servers are worked on at the same time, by
+ * the {@link DatabaseQueryExecutor}.
+ * </p>
+ * 
+ * <p>
+ * If the {@link DatabaseRegistryCache} is on, the checksums of the meta tables
+ * are read instead, and only the databases whose meta tables have changed
+ * since they were cached are looked at any further.
+ * </p>
+ */
+public class DatabaseRegistryBuilder {
+
+	/** Number of databases whose meta tables are read in one query */
+	private static final int BATCH_SIZE = 200;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final List<String> regexps;
+
+	private final List<Pattern[]> patterns;
+
+	private final String globalSpecies;
+
+	private final DatabaseType globalType;
+
+	/**
+	 * @param regexps
+	 *          The regular expressions matching the databases to use. If null
+	 *          or empty, the databases of the current and last release are
+	 *          used, see {@link DBUtils#listDatabases(Connection)}.
+	 * @param globalSpecies
+	 *          Species of all databases, or null to derive it from their names.
+	 * @param globalType
+	 *          Type of all databases, or null to derive it from their names.
+	 */
+	public DatabaseRegistryBuilder(List<String> regexps, String globalSpecies, DatabaseType globalType) {
+
+		this.regexps = regexps == null ? new ArrayList<String>() : regexps;
+		this.globalSpecies = globalSpecies;
+		this.globalType = globalType;
+
+		patterns = new ArrayList<Pattern[]>();
+		for (String regexp : this.regexps) {
+			patterns.add(compile(regexp));
+		}
+	}
+
+	/**
+	 * A database is used if its name is matched by a regular expression, or by
+	 * the LIKE pattern the databases used to be listed with:
+	 * <code>SHOW DATABASES LIKE</code> with every ".*" replaced by "%".
+	 */
+	private static Pattern[] compile(String regexp) {
+
+		StringBuilder like = new StringBuilder();
+		String s = regexp.replace(".*", "%");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '%') {
+				like.append(".*");
+			} else if (c == '_') {
+				like.append('.');
+			} else if (c == '\\' && i + 1 < s.length()) {
+				like.append(Pattern.quote(String.valueOf(s.charAt(++i))));
+			} else {
+				like.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+
+		Pattern regex = null;
+		try {
+			regex = Pattern.compile(regexp);
+		} catch (PatternSyntaxException e) {
+			logger.fine(regexp + " is not a regular expression, only matching it as a LIKE pattern");
+		}
+		return regex == null ? new Pattern[] { Pattern.compile(like.toString()) }
+				: new Pattern[] { Pattern.compile(like.toString()), regex };
+	}
+
+	/**
+	 * @return true if name is matched by the regular expression at index i
+	 */
+	private boolean matches(String name, int i) {
+
+		for (Pattern p : patterns.get(i)) {
+			if (p.matcher(name).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The names of the databases used, in the order of the regular
+	 *         expressions that match them, each only once.
+	 */
+	List<String> select(List<String> names) {
+
+		Set<String> selected = new LinkedHashSet<String>();
+		for (int i = 0; i < patterns.size(); i++) {
+			for (String name : names) {
+				if (matches(name, i)) {
+					selected.add(name);
+				}
+			}
+		}
+		return new ArrayList<String>(selected);
+	}
+
+	/**
+	 * Find the databases on all the servers. A server that can not be queried
+	 * is left out with a warning.
+	 * 
+	 * @return The entries for the databases found, by server in the order of
+	 *         servers.
+	 */
+	public List<DatabaseRegistryEntry> build(List<DatabaseServer> servers) {
+
+		List<List<DatabaseRegistryEntry>> found = DatabaseQueryExecutor.runOnEach(servers,
+				new DatabaseQueryExecutor.Task<DatabaseServer, List<DatabaseRegistryEntry>>() {
+					public List<DatabaseRegistryEntry> run(DatabaseServer server) {
+						return build(server);
+					}
+				});
+
+		List<DatabaseRegistryEntry> result = new ArrayList<DatabaseRegistryEntry>();
+		for (List<DatabaseRegistryEntry> entries : found) {
+			result.addAll(entries);
+		}
+
+		DatabaseRegistryCache cache = getCache();
+		if (cache != null) {
+			cache.save();
+		}
+		return result;
+	}
+
+	/**
+	 * Find the databases on one server.
+	 */
+	public List<DatabaseRegistryEntry> build(DatabaseServer server) {
+
+		Connection con = null;
+		try {
+			con = server.getServerConnection();
+			List<String> names;
+			if (regexps.isEmpty()) {
+				names = Arrays.asList(DBUtils.listDatabases(con));
+			} else {
+				names = select(DBUtils.getSqlTemplate(con).queryForDefaultObjectList("SHOW DATABASES", String.class));
+			}
+			DatabaseRegistryCache cache = getCache();
+			if (cache != null) {
+				Map<String, String> stamps = readStamps(con, names);
+				if (stamps != null) {
+					return createEntries(con, server, names, cache, stamps);
+				}
+			}
+			return createEntries(con, server, names);
+		} catch (SQLException e) {
+			logger.warning(e.getMessage());
+		} catch (SqlUncheckedException e) {
+			logger.warning(e.getMessage());
+		} finally {
+			DBUtils.closeQuietly(con);
+		}
+		return new ArrayList<DatabaseRegistryEntry>();
+	}
+
+	/**
+	 * The cache is not used when the species or type of all databases is given,
+	 * since its entries depend on them.
+	 */
+	private DatabaseRegistryCache getCache() {
+		return globalSpecies == null && globalType == null ? DatabaseRegistryCache.getInstance() : null;
+	}
+
+	/**
+	 * Create the entries for databases on a server from the cache if their
+	 * stamps have not changed, and cache the others.
+	 */
+	List<DatabaseRegistryEntry> createEntries(Connection con, DatabaseServer server, List<String> names,
+			DatabaseRegistryCache cache, Map<String, String> stamps) {
+
+		Map<String, DatabaseRegistryEntry> found = new HashMap<String, DatabaseRegistryEntry>();
+		List<String> changed = new ArrayList<String>();
+		for (String name : names) {
+			DatabaseRegistryEntry dbre = cache.get(server, name, stamps.get(name));
+			if (dbre == null) {
+				changed.add(name);
+			} else {
+				found.put(name, dbre);
+			}
+		}
+
+		if (!changed.isEmpty()) {
+			for (DatabaseRegistryEntry dbre : createEntries(con, server, changed)) {
+				found.put(dbre.getName(), dbre);
+				cache.put(dbre, stamps.get(dbre.getName()));
+			}
+		}
+
+		List<DatabaseRegistryEntry> entries = new ArrayList<DatabaseRegistryEntry>();
+		for (String name : names) {
+			entries.add(found.get(name));
+		}
+		return entries;
+	}
+
+	/**
+	 * Read a stamp for each database that changes when its meta table does:
+	 * the checksum of the table, or "none" if there is none. Everything
+	 * else is told from the name of the database. This is used rather than the
+	 * update time of the tables, which is not kept for InnoDB tables before
+	 * MySQL 5.7.
+	 * 
+	 * @return The stamps by database, or null if they could not be read.
+	 */
+	private Map<String, String> readStamps(Connection con, List<String> names) {
+
+		final Map<String, String> stamps = new HashMap<String, String>();
+		for (List<String> batch : batches(names)) {
+			StringBuilder sql = new StringBuilder("CHECKSUM TABLE ");
+			for (int i = 0; i < batch.size(); i++) {
+				sql.append(i == 0 ? "" : ", ").append(metaTable(con, batch.get(i)));
+			}
+			try {
+				DBUtils.getSqlTemplate(con).queryForList(sql.toString(), new RowMapper<Void>() {
+					public Void mapRow(ResultSet rs, int position) throws SQLException {
+						String table = rs.getString(1);
+						String checksum = rs.getString(2);
+						stamps.put(table.substring(0, table.lastIndexOf('.')), checksum == null ? "none" : checksum);
+						return null;
+					}
+				});
+			} catch (SqlUncheckedException e) {
+				logger.fine("Can't read the checksums of meta tables, not using the database registry cache: "
+						+ e.getMessage());
+				return null;
+			}
+		}
+		return stamps;
+	}
+
+	/**
+	 * Create the entries for databases on a server, reading what can not be
+	 * told from their names over con.
+	 */
+	List<DatabaseRegistryEntry> createEntries(Connection con, DatabaseServer server, List<String> names) {
+
+		Map<String, DatabaseInfo> infos = new HashMap<String, DatabaseInfo>();
+		List<String> unknown = new ArrayList<String>();
+
+		for (String name : names) {
+			DatabaseInfo info = DatabaseRegistryEntry.getInfoFromName(name, globalSpecies, globalType);
+			infos.put(name, info);
+			if (info.getType() == DatabaseType.UNKNOWN) {
+				unknown.add(name);
+			}
+		}
+
+		Set<String> withMeta = null;
+		try {
+			withMeta = new HashSet<String>(DBUtils.getSqlTemplate(con).queryForDefaultObjectList(
+					"SELECT TABLE_SCHEMA FROM information_schema.TABLES WHERE TABLE_NAME = 'meta'", String.class));
+		} catch (SqlUncheckedException e) {
+			logger.fine("Could not list the databases with a meta table, looking each one up: " + e.getMessage());
+		}
+
+		List<DatabaseRegistryEntry> entries = new ArrayList<DatabaseRegistryEntry>();
+
+		if (withMeta == null) {
+			for (String name : names) {
+				entries.add(infos.get(name).getType() == DatabaseType.UNKNOWN
+						? new DatabaseRegistryEntry(server, name, globalSpecies, globalType)
+						: new DatabaseRegistryEntry(server, infos.get(name)));
+			}
+			return entries;
+		}
+
+		unknown.retainAll(withMeta);
+		infos.putAll(readTypes(con, server, unknown));
+
+		List<String> generic = new ArrayList<String>();
+		for (String name : names) {
+			DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, infos.get(name));
+			entries.add(dbre);
+			if (dbre.getType().isGeneric() && withMeta.contains(name)) {
+				generic.add(name);
+			}
+		}
+
+		Map<String, List<Integer>> speciesIds = readSpeciesIds(con, generic);
+		for (DatabaseRegistryEntry dbre : entries) {
+			if (speciesIds.containsKey(dbre.getName())) {
+				dbre.setSpeciesIds(speciesIds.get(dbre.getName()));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Read the schema type and version of the databases from their meta
+	 * tables, like {@link DatabaseRegistryEntry#getInfoFromDatabase}.
+	 * Databases that do not have both are left out.
+	 */
+	private Map<String, DatabaseInfo> readTypes(Connection con, DatabaseServer server, List<String> names) {
+
+		Map<String, String[]> meta = new HashMap<String, String[]>();
+		Map<String, DatabaseInfo> infos = new HashMap<String, DatabaseInfo>();
+
+		for (List<String> batch : batches(names)) {
+			try {
+				readTypes(con, batch, meta);
+			} catch (SqlUncheckedException e) {
+				// one meta table that can not be read fails the whole batch
+				logger.fine("Could not read the meta tables of " + batch.size() + " databases together ("
+						+ e.getMessage() + ") - reading them one by one instead.");
+				for (String name : batch) {
+					DatabaseInfo info = readType(con, server, name);
+					if (info != null) {
+						infos.put(name, info);
+					}
+				}
+			}
+		}
+
+		infos.putAll(toInfos(meta));
+		return infos;
+	}
+
+	/**
+	 * Read the schema type and version of one database, on a connection of
+	 * its own if the server is known.
+	 * 
+	 * @return The type and version, or null if they can not be read.
+	 */
+	private DatabaseInfo readType(Connection con, DatabaseServer server, String name) {
+
+		try {
+			if (server != null) {
+				return DatabaseRegistryEntry.getInfoFromDatabase(server, name);
+			}
+			Map<String, String[]> meta = new HashMap<String, String[]>();
+			readTypes(con, Arrays.asList(name), meta);
+			return toInfos(meta).get(name);
+		} catch (SQLException e) {
+			logger.warning("Can't determine database type and version from " + name + ": " + e.getMessage());
+		} catch (SqlUncheckedException e) {
+			logger.warning("Can't determine database type and version from " + name + ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Add the schema type and version found in the meta tables of the
+	 * databases to meta.
+	 * 
+	 * @throws SqlUncheckedException
+	 *             If any of the meta tables can not be read.
+	 */
+	private static void readTypes(Connection con, List<String> names, final Map<String, String[]> meta) {
+
+		String sql = union(con, names,
+				"SELECT %s, meta_key, meta_value FROM %s WHERE meta_key IN ('schema_type', 'schema_version')");
+		DBUtils.getSqlTemplate(con).queryForList(sql, new RowMapper<Void>() {
+			public Void mapRow(ResultSet rs, int position) throws SQLException {
+				String[] typeAndVersion = meta.get(rs.getString(1));
+				if (typeAndVersion == null) {
+					typeAndVersion = new String[2];
+					meta.put(rs.getString(1), typeAndVersion);
+				}
+				typeAndVersion[rs.getString(2).equals("schema_type") ? 0 : 1] = rs.getString(3);
+				return null;
+			}
+		});
+	}
+
+	private static Map<String, DatabaseInfo> toInfos(Map<String, String[]> meta) {
+
+		Map<String, DatabaseInfo> infos = new HashMap<String, DatabaseInfo>();
+		for (Map.Entry<String, String[]> e : meta.entrySet()) {
+			String[] typeAndVersion = e.getValue();
+			if (typeAndVersion[0] != null && typeAndVersion[1] != null) {
+				infos.put(e.getKey(), new DatabaseInfo(e.getKey(), null, DatabaseRegistryEntry.UNKNOWN,
+						DatabaseType.resolveAlias(typeAndVersion[0]), typeAndVersion[1], null));
+			}
+		}
+		return infos;
+	}
+
+	/**
+	 * Read the species IDs of the databases from their meta tables, like
+	 * {@link DatabaseRegistryEntry#getSpeciesIds(Connection, String, DatabaseType)}.
+	 * Databases whose meta tables could not be read are left out.
+	 */
+	private Map<String, List<Integer>> readSpeciesIds(Connection con, List<String> names) {
+
+		final Map<String, List<Integer>> speciesIds = new HashMap<String, List<Integer>>();
+
+		for (List<String> batch : batches(names)) {
+			String sql = union(con, batch, "SELECT DISTINCT %s, species_id FROM %s WHERE species_id IS NOT NULL");
+			final Map<String, List<Integer>> found = new HashMap<String, List<Integer>>();
+			// databases without species IDs in their meta table have none
+			for (String name : batch) {
+				found.put(name, new ArrayList<Integer>());
+			}
+			try {
+				DBUtils.getSqlTemplate(con).queryForList(sql, new RowMapper<Void>() {
+					public Void mapRow(ResultSet rs, int position) throws SQLException {
+						found.get(rs.getString(1)).add(rs.getInt(2));
+						return null;
+					}
+				});
+			} catch (SqlUncheckedException e) {
+				logger.fine("Can't read species IDs from meta tables, they will be looked up when needed: " + e.getMessage());
+				continue;
+			}
+			speciesIds.putAll(found);
+		}
+		return speciesIds;
+	}
+
+	private static List<List<String>> batches(List<String> names) {
+
+		List<List<String>> batches = new ArrayList<List<String>>();
+		for (int i = 0; i < names.size(); i += BATCH_SIZE) {
+			batches.add(names.subList(i, Math.min(i + BATCH_SIZE, names.size())));
+		}
+		return batches;
+	}
+
+	/**
+	 * @return A query that runs the template, formatted with the name of the
+	 *         database as a string and the name of its meta table, for every
+	 *         one of the databases.
+	 */
+	private static String union(Connection con, List<String> names, String template) {
+
+		StringBuilder sql = new StringBuilder();
+		for (String name : names) {
+			if (sql.length() > 0) {
+				sql.append(" UNION ALL ");
+			}
+			sql.append(String.format(template, "'" + name.replace("'", "''") + "'", metaTable(con, name)));
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * @return The quoted name of the meta table of a database.
+	 */
+	private static String metaTable(Connection con, String name) {
+
+		String quote = "`";
+		try {
+			quote = con.getMetaData().getIdentifierQuoteString().trim();
+		} catch (SQLException e) {
+			logger.fine("Could not get the identifier quote, using backticks: " + e.getMessage());
+		}
+		return quote + name.replace(quote, quote + quote) + quote + "." + quote + "meta" + quote;
+	}
+
+}
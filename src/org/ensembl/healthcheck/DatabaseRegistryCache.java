@@ -0,0 +1,277 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+
+/**
+ * <p>
+ * 	A file that keeps what the {@link DatabaseRegistryBuilder} found out about
+ * databases between runs: their type, species, alias and versions and the
+ * species IDs of generic databases.
+ * </p>
+ * 
+ * <p>
+ * 	Entries are kept by server and database, together with a stamp of the
+ * database's meta table that the builder checks before using them. They are
+ * only used while the stamp is the same, so the file can be shared by any
+ * number of runs and deleted at any time. It is rewritten by renaming a new
+ * file over it, so runs writing it at the same time do not corrupt it; the
+ * entries of the last one to finish are kept.
+ * </p>
+ * 
+ * <p>
+ * 	The cache is off unless a file is set with {@link #setFile(String)}.
+ * </p>
+ */
+public class DatabaseRegistryCache {
+
+	private static final String NULL = "\\N";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static DatabaseRegistryCache instance;
+
+	private final File file;
+
+	private Map<String, Cached> entries;
+
+	/** Entries added since the file was read */
+	private final Map<String, Cached> added = new LinkedHashMap<String, Cached>();
+
+	private int hits;
+
+	private int misses;
+
+	DatabaseRegistryCache(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Use the file at path as the cache, or turn the cache off if path is null
+	 * or empty.
+	 */
+	public static synchronized void setFile(String path) {
+		instance = StringUtils.isBlank(path) ? null : new DatabaseRegistryCache(new File(path));
+	}
+
+	/**
+	 * @return The cache, or null if it is off.
+	 */
+	public static synchronized DatabaseRegistryCache getInstance() {
+		return instance;
+	}
+
+	private static String key(DatabaseServer server, String name) {
+		return server.getHost() + ":" + server.getPort() + "\t" + name;
+	}
+
+	/**
+	 * @return A new entry for the database called name on server from the
+	 *         cache, or null if it is not cached with the same stamp.
+	 */
+	public synchronized DatabaseRegistryEntry get(DatabaseServer server, String name, String stamp) {
+
+		Cached cached = getEntries().get(key(server, name));
+		if (cached == null || stamp == null || !stamp.equals(cached.stamp)) {
+			misses++;
+			return null;
+		}
+		hits++;
+		DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, cached.info);
+		if (cached.speciesIds != null) {
+			dbre.setSpeciesIds(new ArrayList<Integer>(cached.speciesIds));
+		}
+		return dbre;
+	}
+
+	/**
+	 * Cache what is known about a database, valid while its stamp is the same.
+	 */
+	public synchronized void put(DatabaseRegistryEntry dbre, String stamp) {
+
+		if (stamp == null) {
+			return;
+		}
+		Cached cached = new Cached(stamp, new DatabaseInfo(dbre.getName(), dbre.getAlias(), dbre.getSpecies(),
+				dbre.getType(), dbre.getSchemaVersion(), dbre.getGeneBuildVersion()), dbre.getSpeciesIdsIfKnown());
+		String key = key(dbre.getDatabaseServer(), dbre.getName());
+		getEntries().put(key, cached);
+		added.put(key, cached);
+	}
+
+	/**
+	 * Write the entries added to the file, along with those other runs may
+	 * have written to it since it was read.
+	 */
+	public synchronized void save() {
+
+		logger.fine("Database registry cache " + file + ": " + hits + " hits, " + misses + " misses");
+		if (added.isEmpty()) {
+			return;
+		}
+
+		Map<String, Cached> merged = read();
+		merged.putAll(added);
+
+		File tmp = null;
+		try {
+			File dir = file.getAbsoluteFile().getParentFile();
+			tmp = File.createTempFile(file.getName(), ".tmp", dir);
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+			try {
+				write(merged, out);
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			entries = merged;
+			added.clear();
+		} catch (IOException e) {
+			logger.warning("Could not write the database registry cache " + file + ": " + e.getMessage());
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private Map<String, Cached> getEntries() {
+		if (entries == null) {
+			entries = read();
+		}
+		return entries;
+	}
+
+	/**
+	 * @return The entries in the file. A file that can not be read is treated
+	 *         as empty.
+	 */
+	private Map<String, Cached> read() {
+
+		Map<String, Cached> read = new HashMap<String, Cached>();
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 9) {
+					logger.warning("Ignoring malformed line in the database registry cache " + file + ": " + line);
+					continue;
+				}
+				DatabaseInfo info = new DatabaseInfo(fields[1], value(fields[3]), value(fields[4]),
+						DatabaseType.forName(fields[5]), value(fields[6]), value(fields[7]));
+				read.put(fields[0] + "\t" + fields[1], new Cached(fields[2], info, speciesIds(value(fields[8]))));
+			}
+		} catch (FileNotFoundException e) {
+			logger.fine("Database registry cache " + file + " does not exist yet");
+		} catch (IOException e) {
+			logger.warning("Could not read the database registry cache " + file + ": " + e.getMessage());
+		} catch (RuntimeException e) {
+			logger.warning("Could not read the database registry cache " + file + ": " + e.getMessage());
+			read.clear();
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// nothing to be done
+				}
+			}
+		}
+		return read;
+	}
+
+	private static void write(Map<String, Cached> entries, PrintWriter out) {
+
+		out.println("# server\tdatabase\tstamp\talias\tspecies\ttype\tschema version\tgenebuild version\tspecies IDs");
+		for (Map.Entry<String, Cached> e : entries.entrySet()) {
+			Cached cached = e.getValue();
+			DatabaseInfo info = cached.info;
+			out.println(StringUtils.join(new String[] { e.getKey(), cached.stamp,
+					field(info.getAlias()), field(info.getSpecies()), info.getType().getName(),
+					field(info.getSchemaVersion()), field(info.getGenebuildVersion()),
+					cached.speciesIds == null ? NULL : StringUtils.join(cached.speciesIds, ",") }, '\t'));
+		}
+	}
+
+	private static String field(String value) {
+		return value == null ? NULL : value;
+	}
+
+	private static String value(String field) {
+		return NULL.equals(field) ? null : field;
+	}
+
+	private static List<Integer> speciesIds(String field) {
+
+		if (field == null) {
+			return null;
+		}
+		List<Integer> ids = new ArrayList<Integer>();
+		for (String id : StringUtils.split(field, ',')) {
+			ids.add(Integer.valueOf(id));
+		}
+		return ids;
+	}
+
+	private static final class Cached {
+
+		private final String stamp;
+
+		private final DatabaseInfo info;
+
+		private final List<Integer> speciesIds;
+
+		private Cached(String stamp, DatabaseInfo info, List<Integer> speciesIds) {
+			this.stamp = stamp;
+			this.info = info;
+			this.speciesIds = speciesIds;
+		}
+	}
+
+}
@@ -32,8 +32,10 @@ package org.ensembl.healthcheck;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -266,11 +268,12 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 	 */
 	public static DatabaseInfo getInfoFromDatabase(DatabaseServer server,
 			final String name) throws SQLException {
+		Connection con = null;
 		SqlTemplate template = null;
 
 		try {
-			template = new ConnectionBasedSqlTemplateImpl(
-					server.getDatabaseConnection(name));
+			con = server.getDatabaseConnection(name);
+			template = new ConnectionBasedSqlTemplateImpl(con);
 		} catch (NullPointerException e) {
 
 			// This exception can be thrown, if a database name has hashes in
@@ -291,6 +294,17 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 			return null;
 		}
 
+		try {
+			return getInfoFromDatabase(template, server, name);
+		} finally {
+			// Give the connection back to the pool
+			DBUtils.closeQuietly(con);
+		}
+	}
+
+	private static DatabaseInfo getInfoFromDatabase(SqlTemplate template,
+			DatabaseServer server, final String name) {
+
 		DatabaseInfo info = null;
 
 		boolean dbHasAMetaTable = template.queryForDefaultObjectList(
@@ -422,8 +436,27 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 
 	private DatabaseRegistry databaseRegistry;
 
+	/** Only set for entries created with a connection of their own */
 	private Connection connection;
 
+	/**
+	 * The connections of entries, by database URL and user. Entries for the
+	 * same database share one, so entries created on the fly, e.g. by
+	 * {@link org.ensembl.healthcheck.testcase.EnsTestCase#getDatabaseRegistryEntryByPattern(String)},
+	 * do not each hold on to a connection from the pool.
+	 */
+	private static final ConcurrentMap<String, SharedConnection> sharedConnections = new ConcurrentHashMap<String, SharedConnection>();
+
+	/**
+	 * The connection is only validated if it has not been asked for for this
+	 * long, or if it has thrown a SQLException since it was last validated.
+	 */
+	private static volatile long validationInterval = 30 * 1000L;
+
+	private static final AtomicLong validationsRun = new AtomicLong();
+
+	private static final AtomicLong validationsAvoided = new AtomicLong();
+
 	/** The logger to use */
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
@@ -465,6 +498,20 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		this.info = info;
 	}
 
+	/**
+	 * Create a new DatabaseRegistryEntry for a database on a server that has
+	 * already been looked up, e.g. by the {@link DatabaseRegistryBuilder}.
+	 *
+	 * @param server
+	 *            The database server where this database resides.
+	 * @param info
+	 *            What is known about the database.
+	 */
+	public DatabaseRegistryEntry(DatabaseServer server, DatabaseInfo info) {
+		this.server = server;
+		this.info = info;
+	}
+
 	public DatabaseRegistryEntry(DatabaseInfo info, Connection con) {
 		this.info = info;
 		this.server = null;
@@ -578,33 +625,19 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 	public static List<Integer> getSpeciesIds(Connection con, String species,
 			DatabaseType type) {
 
-		List<Integer> speciesId = CollectionUtils.createArrayList();
-
 		// only generic databases have a coord_system table
 		if (type == null || !type.isGeneric()) {
-			return speciesId;
+			return CollectionUtils.createArrayList();
 		}
-		Statement stmt = null;
-		ResultSet rs = null;
 		try {
-			stmt = con.createStatement();
-			rs = stmt
-					.executeQuery("SELECT DISTINCT(species_id) FROM meta where species_id is not null");
-			if (rs != null) {
-				while (rs.next()) {
-					speciesId.add(rs.getInt(1));
-				}
-			}
-		} catch (SQLException e) {
+			return DBUtils.getSqlTemplate(con).queryForCachedDefaultObjectList(
+					"SELECT DISTINCT(species_id) FROM meta where species_id is not null",
+					Integer.class);
+		} catch (SqlUncheckedException e) {
 			throw new UtilUncheckedException(
 					"Problem obtaining list of species IDs", e);
-		} finally {
-			DBUtils.closeQuietly(rs);
-			DBUtils.closeQuietly(stmt);
 		}
 
-		return speciesId;
-
 	}
 
 	/**
@@ -614,21 +647,105 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		return server;
 	}
 
+	/**
+	 * Returns the connection to this database, creating a new one if there is
+	 * none yet or the current one is no longer valid. Validating costs a round
+	 * trip to the server, so it is skipped if the connection has been used
+	 * recently and has not thrown a SQLException since it was last checked.
+	 */
 	public Connection getConnection() {
 
-		if (
-			(connection == null)
-			|| !(ConnectionPool.isValidConnection(connection))
-		) {
+		if (server == null) {
+			return connection;
+		}
 
-			try {
-				connection = server.getDatabaseConnection(getName());
-			} catch (SQLException e) {
+		String key = server.getDatabaseURL() + getName() + " as " + server.getUser();
+		SharedConnection shared = sharedConnections.get(key);
+		if (shared == null) {
+			SharedConnection created = new SharedConnection();
+			shared = sharedConnections.putIfAbsent(key, created);
+			if (shared == null) {
+				shared = created;
+			}
+		}
+		return shared.get(server, getName());
+	}
 
-				logger.warning(e.getMessage());
+	/**
+	 * The connection to one database, used by all the entries for it.
+	 */
+	private static final class SharedConnection {
+
+		private Connection connection;
+
+		/** When get was last called */
+		private long lastUsed;
+
+		synchronized Connection get(DatabaseServer server, String name) {
+
+			long now = System.currentTimeMillis();
+
+			if (
+				connection != null
+				&& now - lastUsed < validationInterval
+				&& !ConnectionPool.hasFailed(connection)
+			) {
+				validationsAvoided.incrementAndGet();
+				lastUsed = now;
+				return connection;
 			}
+
+			if (connection != null) {
+				validationsRun.incrementAndGet();
+			}
+
+			if (
+				(connection == null)
+				|| !(ConnectionPool.isValidConnection(connection))
+			) {
+
+				// Make sure a broken connection is not handed out again
+				ConnectionPool.invalidate(connection);
+				connection = null;
+
+				try {
+					connection = server.getDatabaseConnection(name);
+				} catch (SQLException e) {
+
+					logger.warning(e.getMessage());
+				}
+			} else {
+				ConnectionPool.markValid(connection);
+			}
+			lastUsed = now;
+			return connection;
 		}
-		return connection;
+	}
+
+	/**
+	 * @param millis
+	 *            How long a connection may go unused before
+	 *            {@link #getConnection()} checks it again. 0 checks it every
+	 *            time.
+	 */
+	public static void setValidationInterval(long millis) {
+		validationInterval = millis;
+	}
+
+	/**
+	 * @return How many times {@link #getConnection()} has checked a connection
+	 *         with a query.
+	 */
+	public static long getValidationsRun() {
+		return validationsRun.get();
+	}
+
+	/**
+	 * @return How many times {@link #getConnection()} has returned a
+	 *         connection without checking it.
+	 */
+	public static long getValidationsAvoided() {
+		return validationsAvoided.get();
 	}
 
 	/**
@@ -670,6 +787,21 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		return speciesIds;
 	}
 
+	/**
+	 * Sets the species IDs found in the database, so they do not have to be
+	 * queried for when they are first asked for.
+	 */
+	void setSpeciesIds(List<Integer> speciesIds) {
+		this.speciesIds = speciesIds;
+	}
+
+	/**
+	 * @return The species IDs if they have been read already, otherwise null.
+	 */
+	List<Integer> getSpeciesIdsIfKnown() {
+		return speciesIds;
+	}
+
 	public String toString() {
 		return getName();
 	}
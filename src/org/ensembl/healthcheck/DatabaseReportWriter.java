@@ -0,0 +1,287 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.util.DBUtils;
+
+/**
+ * <p>
+ * Writes reports to the output database on a thread of its own, so tests do
+ * not have to wait for the healthcheck database while they report.
+ * </p>
+ * 
+ * <p>
+ * Reports are put on a bounded queue; tests only block when it is full. The
+ * writer takes whatever is on the queue and stores it with JDBC batches of
+ * upserts, reusing its prepared statement. {@link #flush()} waits until everything
+ * queued so far has been written.
+ * </p>
+ */
+class DatabaseReportWriter implements Runnable {
+
+	/** The logger to use for this class */
+	protected static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	static final int DEFAULT_QUEUE_SIZE = 10000;
+
+	static final int DEFAULT_BATCH_SIZE = 500;
+
+	/** Put on the queue to make the writer thread finish */
+	private static final Object STOP = new Object();
+
+	private final BlockingQueue<Object> queue;
+
+	private final Connection con;
+
+	private final int batchSize;
+
+	private final Thread thread;
+
+	private volatile boolean closed = false;
+
+	private PreparedStatement upsertStatement;
+
+	private PreparedStatement updateStatement;
+
+	private static final String UPDATE_SQL = "UPDATE report SET last_session_id=?, timestamp=NOW() WHERE report_id=?";
+
+	/** Reports already in the database, if they have been loaded */
+	private volatile ReportIndex index;
+
+	/**
+	 * @param con
+	 *          Connection to the output database. It is used by the writer
+	 *          thread only and closed by {@link #close()}.
+	 */
+	DatabaseReportWriter(Connection con) {
+		this(con, DEFAULT_QUEUE_SIZE, DEFAULT_BATCH_SIZE);
+	}
+
+	DatabaseReportWriter(Connection con, int queueSize, int batchSize) {
+
+		this.con = con;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<Object>(queueSize);
+		this.thread = new Thread(this, "healthcheck-report-writer");
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Use an index of the existing reports. Reports it knows about are updated
+	 * by their report_id instead of going through the unique key.
+	 */
+	void setIndex(ReportIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Queue a report for writing. Blocks if the queue is full.
+	 */
+	void add(ReportLine report) {
+
+		if (closed) {
+			logger.severe("Report writer has been closed, report not stored: " + report.getMessage());
+			return;
+		}
+		put(report);
+	}
+
+	/**
+	 * Wait until every report queued so far has been written.
+	 */
+	void flush() {
+
+		if (closed || !thread.isAlive()) {
+			return;
+		}
+
+		CountDownLatch done = new CountDownLatch(1);
+		if (!put(done)) {
+			return;
+		}
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Write everything that is still queued, stop the writer thread and close
+	 * the connection. Calling this more than once does no harm.
+	 */
+	synchronized void close() {
+
+		if (closed) {
+			return;
+		}
+		if (thread.isAlive()) {
+			flush();
+			put(STOP);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		closed = true;
+
+		DBUtils.closeQuietly(upsertStatement);
+		DBUtils.closeQuietly(updateStatement);
+		DBUtils.closeQuietly(con);
+	}
+
+	private boolean put(Object item) {
+
+		try {
+			queue.put(item);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warning("Interrupted while queueing a report for the output database");
+			return false;
+		}
+	}
+
+	public void run() {
+
+		List<ReportLine> batch = new ArrayList<ReportLine>();
+		List<CountDownLatch> waiting = new ArrayList<CountDownLatch>();
+		boolean stop = false;
+
+		while (!stop) {
+
+			Object item;
+			try {
+				item = queue.take();
+			} catch (InterruptedException e) {
+				logger.warning("Report writer interrupted, reports still queued will not be stored");
+				return;
+			}
+
+			// Take everything that is waiting, writing a batch whenever it is
+			// full
+			while (item != null) {
+
+				if (item == STOP) {
+					stop = true;
+				} else if (item instanceof CountDownLatch) {
+					waiting.add((CountDownLatch) item);
+				} else {
+					batch.add((ReportLine) item);
+					if (batch.size() >= batchSize) {
+						write(batch);
+						batch.clear();
+					}
+				}
+				item = stop ? null : queue.poll();
+			}
+
+			write(batch);
+			batch.clear();
+
+			for (CountDownLatch done : waiting) {
+				done.countDown();
+			}
+			waiting.clear();
+		}
+	}
+
+	/**
+	 * Store a batch of reports. Reports that are already in the database get
+	 * their last_session_id updated, the others are inserted.
+	 */
+	private void write(List<ReportLine> batch) {
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		long sessionID = ReportManager.getSessionID();
+		ReportIndex index = this.index;
+
+		int upserts = 0;
+		int updates = 0;
+
+		try {
+
+			if (upsertStatement == null) {
+				upsertStatement = con.prepareStatement(ReportManager.UPSERT_REPORT_SQL);
+				updateStatement = con.prepareStatement(UPDATE_SQL);
+			}
+
+			for (ReportLine report : batch) {
+
+				long reportID = ReportIndex.NOT_FOUND;
+				if (index != null && index.covers(report.getDatabaseName())) {
+					reportID = index.find(report);
+				}
+
+				if (reportID != ReportIndex.NOT_FOUND) {
+					updateStatement.setLong(1, sessionID);
+					updateStatement.setLong(2, reportID);
+					updateStatement.addBatch();
+					updates++;
+				} else {
+					ReportManager.setUpsertParameters(upsertStatement, report, sessionID);
+					upsertStatement.addBatch();
+					upserts++;
+				}
+			}
+			if (upserts > 0) {
+				upsertStatement.executeBatch();
+			}
+			if (updates > 0) {
+				updateStatement.executeBatch();
+			}
+
+			logger.fine("Stored " + upserts + " reports, updated " + updates + " known reports");
+
+		} catch (SQLException e) {
+
+			logger.log(Level.SEVERE, "Could not store " + batch.size() + " reports in the output database: " + e.getMessage(), e);
+
+			// Prepare again next time, in case the statements are broken
+			DBUtils.closeQuietly(upsertStatement);
+			DBUtils.closeQuietly(updateStatement);
+			upsertStatement = null;
+			updateStatement = null;
+
+		} catch (RuntimeException e) {
+
+			logger.log(Level.SEVERE, "Could not store " + batch.size() + " reports in the output database: " + e.getMessage(), e);
+		}
+	}
+
+}
@@ -21,6 +21,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.logging.Logger;
 
+import org.ensembl.healthcheck.util.ConnectionPool;
 import org.ensembl.healthcheck.util.DBUtils;
 
 /**
@@ -94,7 +95,7 @@ public class DatabaseServer {
 
 	public Connection getDatabaseConnection(String databaseName) throws SQLException {
 
-		return DBUtils.openConnection(driver, databaseURL + databaseName, user, pass);
+		return DBUtils.openConnection(driver, databaseURL + databaseName + connectionParameters(), user, pass);
 
 	}
 
@@ -106,6 +107,24 @@ public class DatabaseServer {
 
 	}
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Connections to databases are asked to prepare statements on the server
+	 * and to keep them, so the statements cached for a connection by the
+	 * {@link org.ensembl.healthcheck.util.ConnectionPool} are only parsed and
+	 * planned once.
+	 */
+	private String connectionParameters() {
+
+		int cacheSize = ConnectionPool.getStatementCacheSize();
+		if (cacheSize == 0) {
+			return "";
+		}
+		return "?useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize="
+				+ cacheSize + "&prepStmtCacheSqlLimit=2048";
+
+	}
+
 	// -------------------------------------------------------------------------
 
 	private String buildDatabaseURL() {
@@ -29,6 +29,9 @@
  */
 package org.ensembl.healthcheck;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.ensembl.healthcheck.util.Utils;
 
 /**
@@ -36,6 +39,9 @@ import org.ensembl.healthcheck.util.Utils;
  */
 public final class DatabaseType {
 
+	/** All types by name, filled by the constructor so must come first. */
+	private static final Map<String, DatabaseType> BY_NAME = new HashMap<String, DatabaseType>();
+
 	/** A core database */
 	public static final DatabaseType CORE = new DatabaseType("core");
 
@@ -122,6 +128,7 @@ public final class DatabaseType {
 	private DatabaseType(final String name) {
 
 		this.name = name;
+		BY_NAME.put(name, this);
 	}
 
 	/**
@@ -140,6 +147,22 @@ public final class DatabaseType {
 		return this.name;
 	}
 
+	// -----------------------------------------------------------------
+	/**
+	 * Look a DatabaseType up by its name. Unlike {@link #resolveAlias(String)} this only accepts the exact names returned by
+	 * {@link #getName()}.
+	 * 
+	 * @param name
+	 *          The name (e.g. core).
+	 * @return The DatabaseType object called name, or DatabaseType.UNKNOWN if there is none.
+	 */
+	public static DatabaseType forName(final String name) {
+
+		DatabaseType type = BY_NAME.get(name);
+		return type == null ? UNKNOWN : type;
+
+	}
+
 	// -----------------------------------------------------------------
 	/**
 	 * Resolve an alias to a DatabaseType object.
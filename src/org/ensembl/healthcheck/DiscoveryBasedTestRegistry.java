@@ -42,44 +42,72 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
-	private List<EnsTestCase> allTests; // a list of EnsTestCase objects
+	private List<TestDescriptor> allTests; // descriptions of all the tests found
 
 	private static final String BASE_TESTCASE_PACKAGE = "org.ensembl.healthcheck.testcase";
 
 	// -----------------------------------------------------------------
 	/**
-	 * Create a new TestRegistry.
+	 * Create a new TestRegistry. The tests are taken from the {@link TestCaseIndex} if it is on the classpath, otherwise they are
+	 * found and instantiated once to describe them.
 	 */
 	public DiscoveryBasedTestRegistry() {
 
-		allTests = findAllTests();
+		allTests = new ArrayList<TestDescriptor>();
+
+		TestCaseIndex index = TestCaseIndex.getInstance();
+		if (index != null && index.covers(BASE_TESTCASE_PACKAGE)) {
+			for (TestCaseIndex.Entry entry : index.getEntries(BASE_TESTCASE_PACKAGE)) {
+				if (!entry.isGroup()) {
+					try {
+						allTests.add(TestDescriptor.forEntry(entry));
+					} catch (ClassNotFoundException e) {
+						logger.warning("Cannot find " + entry.getClassName() + " listed in " + TestCaseIndex.RESOURCE);
+					}
+				}
+			}
+		} else {
+			for (EnsTestCase test : findAllTests()) {
+				allTests.add(TestDescriptor.forTest(test));
+			}
+		}
 
 	}
 
 	// -----------------------------------------------------------------
 	/**
-	 * @return All the currently defined (single and multiple database) tests.
+	 * @return All the currently defined (single and multiple database) tests, instantiated now.
 	 */
 	public List<EnsTestCase> getAll() {
 
-		return allTests;
+		return TestDescriptor.instances(allTests, EnsTestCase.class);
 
 	} // getAll
 
+	// -----------------------------------------------------------------
+	/**
+	 * @return Descriptions of all the currently defined tests.
+	 */
+	public List<TestDescriptor> getAllDescriptors() {
+
+		return new ArrayList<TestDescriptor>(allTests);
+
+	} // getAllDescriptors
+
 	// -----------------------------------------------------------------
 	/**
 	 * @return All the single-database tests.
 	 */
 	public List<SingleDatabaseTestCase> getAllSingle() {
 
-		List<SingleDatabaseTestCase> allSingle = new ArrayList<SingleDatabaseTestCase>();
-		for(EnsTestCase test: allTests) {
-			if (test instanceof SingleDatabaseTestCase) {
-				allSingle.add((SingleDatabaseTestCase) test);
+		List<TestDescriptor> allSingle = new ArrayList<TestDescriptor>();
+		for(TestDescriptor test: allTests) {
+			if (test.isSingle()) {
+				allSingle.add(test);
 			}
 		}
 
-		return allSingle;
+		return TestDescriptor.instances(allSingle, SingleDatabaseTestCase.class);
 
 	} // getAllSingle
 
@@ -89,14 +117,14 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List<MultiDatabaseTestCase> getAllMulti() {
 
-		List<MultiDatabaseTestCase> allMulti = new ArrayList<MultiDatabaseTestCase>();
-		for(EnsTestCase test: allTests) {
-			if (test instanceof MultiDatabaseTestCase) {
-				allMulti.add((MultiDatabaseTestCase) test);
+		List<TestDescriptor> allMulti = new ArrayList<TestDescriptor>();
+		for(TestDescriptor test: allTests) {
+			if (test.isMulti()) {
+				allMulti.add(test);
 			}
 		}
 
-		return allMulti;
+		return TestDescriptor.instances(allMulti, MultiDatabaseTestCase.class);
 
 	} // getAllMulti
 
@@ -106,14 +134,14 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List<OrderedDatabaseTestCase> getAllOrdered() {
 
-		List<OrderedDatabaseTestCase> allOrdered = new ArrayList<OrderedDatabaseTestCase>();
-		for(EnsTestCase test: allTests) {
-			if (test instanceof OrderedDatabaseTestCase) {
-				allOrdered.add((OrderedDatabaseTestCase) test);
+		List<TestDescriptor> allOrdered = new ArrayList<TestDescriptor>();
+		for(TestDescriptor test: allTests) {
+			if (test.isOrdered()) {
+				allOrdered.add(test);
 			}
 		}
 
-		return allOrdered;
+		return TestDescriptor.instances(allOrdered, OrderedDatabaseTestCase.class);
 
 	} // getAllOrdered
 
@@ -129,10 +157,26 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List<SingleDatabaseTestCase> getAllSingle(List<String> groups, DatabaseType type) {
 
-		List<SingleDatabaseTestCase> result = new ArrayList<SingleDatabaseTestCase>();
+		return TestDescriptor.instances(getAllSingleDescriptors(groups, type), SingleDatabaseTestCase.class);
+
+	}
 
-		for(SingleDatabaseTestCase test: getAllSingle()) {
-			if (test.inGroups(groups) && test.appliesToType(type)) {
+	// -----------------------------------------------------------------
+	/**
+	 * Describe all the single-database test cases that match certain conditions.
+	 * 
+	 * @param groups
+	 *          A list of test case groups
+	 * @param type
+	 *          The type of databases the result tests should apply to.
+	 * @return All the single-database tests that are in at least one of groups, and apply to type.
+	 */
+	public List<TestDescriptor> getAllSingleDescriptors(List<String> groups, DatabaseType type) {
+
+		List<TestDescriptor> result = new ArrayList<TestDescriptor>();
+
+		for(TestDescriptor test: allTests) {
+			if (test.isSingle() && test.inGroups(groups) && test.appliesToType(type)) {
 				result.add(test);
 			}
 		}
@@ -152,14 +196,14 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List<MultiDatabaseTestCase> getAllMulti(List<String> groups) {
 
-		List<MultiDatabaseTestCase> result = new ArrayList<MultiDatabaseTestCase>();
+		List<TestDescriptor> result = new ArrayList<TestDescriptor>();
 
-		for(MultiDatabaseTestCase test: getAllMulti()) {
-			if (test.inGroups(groups)) {
+		for(TestDescriptor test: allTests) {
+			if (test.isMulti() && test.inGroups(groups)) {
 				result.add(test);
 			}
 		}
-		return result;
+		return TestDescriptor.instances(result, MultiDatabaseTestCase.class);
 	}
 
 	// -----------------------------------------------------------------
@@ -173,14 +217,14 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List<OrderedDatabaseTestCase> getAllOrdered(List<String> groups) {
 
-		List<OrderedDatabaseTestCase> result = new ArrayList<OrderedDatabaseTestCase>();
+		List<TestDescriptor> result = new ArrayList<TestDescriptor>();
 
-		for(OrderedDatabaseTestCase test: getAllOrdered()) {
-			if (test.inGroups(groups)) {
+		for(TestDescriptor test: allTests) {
+			if (test.isOrdered() && test.inGroups(groups)) {
 				result.add(test);
 			}
 		}
-		return result;
+		return TestDescriptor.instances(result, OrderedDatabaseTestCase.class);
 	}
 
 	// -----------------------------------------------------------------
@@ -188,13 +232,21 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	/**
 	 * Finds all tests.
 	 * 
-	 * A test case is a class that extends EnsTestCase. Test case classes found in more than one location are only added once.
+	 * A test case is a class that extends EnsTestCase. Test case classes found in more than one location are only added once. If
+	 * the {@link TestCaseIndex} is on the classpath, the test cases listed there are used instead of looking for class files.
 	 * 
 	 * @return A List containing objects of the test case classes found.
 	 */
 	public List<EnsTestCase> findAllTests() {
 
-		allTests = new ArrayList<EnsTestCase>();
+		List<EnsTestCase> allTests = new ArrayList<EnsTestCase>();
+
+		TestCaseIndex index = TestCaseIndex.getInstance();
+		if (index != null && index.covers(BASE_TESTCASE_PACKAGE)) {
+			addUniqueTests(allTests, findTestsInIndex(index, BASE_TESTCASE_PACKAGE));
+			logger.finer("Found " + allTests.size() + " unique test case class" + (allTests.size() > 1 ? "es" : "") + " in " + TestCaseIndex.RESOURCE);
+			return allTests;
+		}
 
 		// --------------------------------------
 		// Look for class files located in the appropriate package in the build/ directory.
@@ -319,6 +371,48 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 	} // findTestsInDirectory
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Instantiate the tests listed in the test case index.
+	 * 
+	 * @param index
+	 *          The index of test cases.
+	 * @param packageName
+	 *          The package name of the tests.
+	 * @return The list of tests in the index.
+	 */
+	public List<EnsTestCase> findTestsInIndex(TestCaseIndex index, String packageName) {
+
+		List<EnsTestCase> tests = new ArrayList<EnsTestCase>();
+
+		for (TestCaseIndex.Entry entry : index.getEntries(packageName)) {
+
+			if (entry.isGroup()) {
+				continue;
+			}
+
+			String[] bits = entry.getClassName().split("\\.");
+			String dirName = bits[bits.length - 2];
+
+			try {
+				EnsTestCase testCase = (EnsTestCase) Class.forName(entry.getClassName()).getDeclaredConstructor()
+						.newInstance();
+				testCase.setTypeFromDirName(dirName);
+				testCase.types();
+				tests.add(testCase);
+			} catch (IllegalAccessException ie) {
+				logger.log(Level.WARNING, entry.getClassName() + " has an issue when trying to create an instance", ie);
+			} catch (InstantiationException ie) {
+				logger.log(Level.WARNING, entry.getClassName() + " has an issue when trying to create an instance", ie);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		return tests;
+
+	} // findTestsInIndex
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Find tests in a jar file.
@@ -462,7 +556,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<DatabaseType> types = new ArrayList<DatabaseType>();
 
-		for(EnsTestCase test: allTests) {
+		for(TestDescriptor test: allTests) {
 			DatabaseType[] testTypes = test.getAppliesToTypes();
 			for (int i = 0; i < testTypes.length; i++) {
 				if (!types.contains(testTypes[i])) {
@@ -485,7 +579,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<String> groups = new ArrayList<String>();
 
-		for(EnsTestCase test: allTests) {
+		for(TestDescriptor test: allTests) {
 			for(String group: test.getGroups()) {
 				// filter out test names
 				if (!isTestName(group) && !groups.contains(group)) {
@@ -508,15 +602,15 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public EnsTestCase[] getTestsInGroup(String group) {
 
-		List<EnsTestCase> result = new ArrayList<EnsTestCase>();
+		List<TestDescriptor> result = new ArrayList<TestDescriptor>();
 
-		for(EnsTestCase test: allTests) {
+		for(TestDescriptor test: allTests) {
 			if (test.inGroup(group)) {
 				result.add(test);
 			}
 		}
 
-		return result.toArray(new EnsTestCase[result.size()]);
+		return TestDescriptor.instances(result, EnsTestCase.class).toArray(new EnsTestCase[result.size()]);
 
 	}
 
@@ -532,7 +626,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List<String> groups = new ArrayList<String>();
 
-		for(EnsTestCase test: allTests) {
+		for(TestDescriptor test: allTests) {
 			if (test.appliesToType(type)) {
 				for(String group: test.getGroups()) {
 					// filter out test names
@@ -559,15 +653,15 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public EnsTestCase[] getTestsInGroup(String group, DatabaseType type) {
 
-		List<EnsTestCase> result = new ArrayList<EnsTestCase>();
+		List<TestDescriptor> result = new ArrayList<TestDescriptor>();
 
-		for(EnsTestCase test: allTests) {
+		for(TestDescriptor test: allTests) {
 			if (test.inGroup(group) && test.appliesToType(type)) {
 				result.add(test);
 			}
 		}
 
-		return result.toArray(new EnsTestCase[result.size()]);
+		return TestDescriptor.instances(result, EnsTestCase.class).toArray(new EnsTestCase[result.size()]);
 
 	}
 
@@ -577,7 +671,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	private boolean isTestName(String s) {
 
-		for(EnsTestCase test: allTests) {
+		for(TestDescriptor test: allTests) {
 			if (test.getShortTestName().equals(s)) {
 				return true;
 			}
@@ -0,0 +1,372 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.util.LongArrayList;
+import org.ensembl.healthcheck.util.UtilUncheckedException;
+
+/**
+ * Keeps reports in an append-only log in a temporary file instead of on the
+ * heap, so that very verbose runs do not run out of memory and no report has
+ * to be dropped.
+ * <p>
+ * Only indexes are kept in memory: for every test case and database the
+ * position of each of its reports in the log, packed together with the
+ * report's level into a single long, and for every (database, test case) pair
+ * the highest level reported. Lists of reports are read back from the log
+ * when asked for, and are rebuilt without their {@link EnsTestCase}.
+ * <p>
+ * Not thread safe, the {@link ReportManager} synchronizes access.
+ */
+public class FileReportStore implements ReportStore {
+
+	private static final Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final long OFFSET_MASK = (1L << 48) - 1;
+
+	private final File directory;
+
+	private File file;
+
+	private DataOutputStream out;
+
+	private RandomAccessFile in;
+
+	private long length = 0;
+
+	private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+	private final Map<String, LongArrayList> reportsByTest = new HashMap<String, LongArrayList>();
+
+	private final Map<String, LongArrayList> reportsByDatabase = new HashMap<String, LongArrayList>();
+
+	private final Map<String, Map<String, Integer>> maxLevelByTest = new HashMap<String, Map<String, Integer>>();
+
+	private final Map<String, Map<String, Integer>> maxLevelByDatabase = new HashMap<String, Map<String, Integer>>();
+
+	private final Map<String, DatabaseType> types = new HashMap<String, DatabaseType>();
+
+	/**
+	 * Log to a file in the default temporary directory.
+	 */
+	public FileReportStore() {
+		this(null);
+	}
+
+	/**
+	 * @param directory
+	 *          Where to create the log, the default temporary directory if
+	 *          null.
+	 */
+	public FileReportStore(File directory) {
+		this.directory = directory;
+	}
+
+	public void add(ReportLine report) {
+
+		String testCaseName = report.getTestCaseName();
+		String databaseName = report.getDatabaseName();
+
+		boolean hasTest = testCaseName != null && testCaseName.length() > 0;
+		boolean hasDatabase = databaseName != null && databaseName.length() > 0;
+
+		if (!hasTest && !hasDatabase) {
+			return;
+		}
+
+		long entry = entry(report.getLevel(), append(report));
+
+		if (hasTest) {
+			index(reportsByTest, testCaseName, entry);
+		}
+		if (hasDatabase) {
+			index(reportsByDatabase, databaseName, entry);
+		}
+		if (hasTest && hasDatabase) {
+			raiseLevel(maxLevelByTest, testCaseName, databaseName, report.getLevel());
+			raiseLevel(maxLevelByDatabase, databaseName, testCaseName, report.getLevel());
+		}
+	}
+
+	public void clear() {
+
+		close();
+		if (file != null && !file.delete()) {
+			logger.warning("Could not delete report log " + file);
+		}
+		file = null;
+		length = 0;
+
+		reportsByTest.clear();
+		reportsByDatabase.clear();
+		maxLevelByTest.clear();
+		maxLevelByDatabase.clear();
+	}
+
+	public Set<String> getTestCaseNames() {
+		return Collections.unmodifiableSet(reportsByTest.keySet());
+	}
+
+	public Set<String> getDatabaseNames() {
+		return Collections.unmodifiableSet(reportsByDatabase.keySet());
+	}
+
+	public List<ReportLine> getReportsByTestCase(String testCaseName, int level) {
+		return read(reportsByTest.get(testCaseName), level);
+	}
+
+	public List<ReportLine> getReportsByDatabase(String databaseName, int level) {
+		return read(reportsByDatabase.get(databaseName), level);
+	}
+
+	public Set<String> getTestCaseNames(String databaseName, int level) {
+		return namesWithLevel(maxLevelByDatabase.get(databaseName), level);
+	}
+
+	public Set<String> getDatabaseNames(String testCaseName, int level) {
+		return namesWithLevel(maxLevelByTest.get(testCaseName), level);
+	}
+
+	/**
+	 * @return The number of bytes written to the log.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Pack a level and an offset into the log into one long, the level in the
+	 * top 16 bits so it can be compared without reading the report.
+	 */
+	static long entry(int level, long offset) {
+
+		if (offset > OFFSET_MASK) {
+			throw new UtilUncheckedException("Report log is too big: " + offset + " bytes");
+		}
+		return ((long) (short) level << 48) | offset;
+	}
+
+	static int level(long entry) {
+		return (int) (entry >> 48);
+	}
+
+	static long offset(long entry) {
+		return entry & OFFSET_MASK;
+	}
+
+	private static void index(Map<String, LongArrayList> index, String key, long entry) {
+
+		LongArrayList entries = index.get(key);
+		if (entries == null) {
+			entries = new LongArrayList(4);
+			index.put(key, entries);
+		}
+		entries.add(entry);
+	}
+
+	private static void raiseLevel(Map<String, Map<String, Integer>> levels, String key, String name, int level) {
+
+		Map<String, Integer> byName = levels.get(key);
+		if (byName == null) {
+			byName = new HashMap<String, Integer>();
+			levels.put(key, byName);
+		}
+		Integer current = byName.get(name);
+		if (current == null || current < level) {
+			byName.put(name, level);
+		}
+	}
+
+	private static Set<String> namesWithLevel(Map<String, Integer> levels, int level) {
+
+		Set<String> result = new HashSet<String>();
+		if (levels != null) {
+			for (Map.Entry<String, Integer> entry : levels.entrySet()) {
+				if (entry.getValue() >= level) {
+					result.add(entry.getKey());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Append a report to the log.
+	 * 
+	 * @return Where the report starts in the log.
+	 */
+	private long append(ReportLine report) {
+
+		try {
+
+			if (out == null) {
+				open();
+			}
+
+			recordBytes.reset();
+			record.writeInt(report.getLevel());
+			writeString(record, report.getTestCaseName());
+			writeString(record, report.getDatabaseName());
+			writeString(record, report.getSpeciesName());
+			DatabaseType type = report.getType();
+			if (type != null) {
+				types.put(type.getName(), type);
+			}
+			writeString(record, type == null ? null : type.getName());
+			writeString(record, report.getMessage());
+			writeString(record, report.getTeamResponsible() == null ? null : report.getTeamResponsible().name());
+			writeString(record, report.getSecondTeamResponsible() == null ? null : report.getSecondTeamResponsible().name());
+			record.flush();
+
+			long offset = length;
+			out.writeInt(recordBytes.size());
+			recordBytes.writeTo(out);
+			length += 4 + recordBytes.size();
+			return offset;
+
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not write report to " + file, e);
+		}
+	}
+
+	private List<ReportLine> read(LongArrayList entries, int level) {
+
+		List<ReportLine> result = new ArrayList<ReportLine>();
+		if (entries == null) {
+			return result;
+		}
+
+		try {
+
+			out.flush();
+			if (in == null) {
+				in = new RandomAccessFile(file, "r");
+			}
+
+			byte[] buffer = new byte[256];
+			for (int i = 0; i < entries.size(); i++) {
+
+				long entry = entries.get(i);
+				if (level(entry) < level) {
+					continue;
+				}
+
+				in.seek(offset(entry));
+				int size = in.readInt();
+				if (size > buffer.length) {
+					buffer = new byte[Math.max(size, buffer.length * 2)];
+				}
+				in.readFully(buffer, 0, size);
+				result.add(readReport(new DataInputStream(new ByteArrayInputStream(buffer, 0, size))));
+			}
+
+		} catch (IOException e) {
+			throw new UtilUncheckedException("Could not read reports from " + file, e);
+		}
+
+		return result;
+	}
+
+	private ReportLine readReport(DataInputStream data) throws IOException {
+
+		int level = data.readInt();
+		String testCaseName = readString(data);
+		String databaseName = readString(data);
+		String speciesName = readString(data);
+		String typeName = readString(data);
+		String message = readString(data);
+		String team = readString(data);
+		String secondTeam = readString(data);
+
+		return new ReportLine(testCaseName, databaseName, speciesName, typeName == null ? null : types.get(typeName), level, message,
+				team == null ? null : Team.valueOf(team), secondTeam == null ? null : Team.valueOf(secondTeam));
+	}
+
+	private static void writeString(DataOutputStream data, String s) throws IOException {
+
+		if (s == null) {
+			data.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes(UTF8);
+			data.writeInt(bytes.length);
+			data.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream data) throws IOException {
+
+		int size = data.readInt();
+		if (size < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[size];
+		data.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private void open() throws IOException {
+
+		file = File.createTempFile("healthcheck-reports", ".log", directory);
+		file.deleteOnExit();
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+		logger.fine("Storing reports in " + file);
+	}
+
+	private void close() {
+
+		try {
+			if (out != null) {
+				out.close();
+			}
+			if (in != null) {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.warning("Could not close report log " + file + ": " + e.getMessage());
+		}
+		out = null;
+		in = null;
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps all reports on the heap, in one list per test case and one per
+ * database. At most {@link ReportManager#MAX_BUFFER_SIZE} reports are kept for
+ * any test case. Not thread safe, the {@link ReportManager} synchronizes
+ * access.
+ */
+public class MemoryReportStore implements ReportStore {
+
+	/** A hash of lists keyed on the test name. */
+	private final Map<String, List<ReportLine>> reportsByTest = new HashMap<String, List<ReportLine>>();
+
+	/** A hash of lists keyed on the database name */
+	private final Map<String, List<ReportLine>> reportsByDatabase = new HashMap<String, List<ReportLine>>();
+
+	private boolean bufferSizeWarningPrinted = false;
+
+	public void add(ReportLine report) {
+
+		String testCaseName = report.getTestCaseName();
+		String databaseName = report.getDatabaseName();
+
+		if (testCaseName != null && testCaseName.length() > 0) {
+
+			List<ReportLine> lines = reportsByTest.get(testCaseName);
+			if (lines == null) {
+				lines = new ArrayList<ReportLine>();
+				reportsByTest.put(testCaseName, lines);
+			}
+
+			// prevent the buffer getting too big
+			if (lines.size() > ReportManager.MAX_BUFFER_SIZE) {
+				if (!bufferSizeWarningPrinted) {
+					System.err.println("\n\nReportManager has reached its maximum buffer size (" + ReportManager.MAX_BUFFER_SIZE + " lines) - no more output will be stored\n");
+					bufferSizeWarningPrinted = true;
+				}
+			} else {
+				lines.add(report);
+			}
+		}
+
+		if (databaseName != null && databaseName.length() > 0) {
+
+			List<ReportLine> lines = reportsByDatabase.get(databaseName);
+			if (lines == null) {
+				lines = new ArrayList<ReportLine>();
+				reportsByDatabase.put(databaseName, lines);
+			}
+			lines.add(report);
+		}
+	}
+
+	public void clear() {
+
+		reportsByTest.clear();
+		reportsByDatabase.clear();
+	}
+
+	public Set<String> getTestCaseNames() {
+		return reportsByTest.keySet();
+	}
+
+	public Set<String> getDatabaseNames() {
+		return reportsByDatabase.keySet();
+	}
+
+	public List<ReportLine> getReportsByTestCase(String testCaseName, int level) {
+		return ReportManager.filterList(reportsByTest.get(testCaseName), level);
+	}
+
+	public List<ReportLine> getReportsByDatabase(String databaseName, int level) {
+		return ReportManager.filterList(reportsByDatabase.get(databaseName), level);
+	}
+
+	public Set<String> getTestCaseNames(String databaseName, int level) {
+
+		Set<String> result = new HashSet<String>();
+		for (ReportLine line : getReportsByDatabase(databaseName, level)) {
+			result.add(line.getTestCaseName());
+		}
+		return result;
+	}
+
+	public Set<String> getDatabaseNames(String testCaseName, int level) {
+
+		Set<String> result = new HashSet<String>();
+		for (ReportLine line : getReportsByTestCase(testCaseName, level)) {
+			result.add(line.getDatabaseName());
+		}
+		return result;
+	}
+
+}
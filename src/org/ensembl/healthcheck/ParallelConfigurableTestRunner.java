@@ -19,15 +19,11 @@ package org.ensembl.healthcheck;
 
 
 import java.io.File;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.List;
-import java.util.Iterator;
 import java.util.ArrayList;
 
-import org.ensembl.healthcheck.configuration.ConfigureHealthcheckDatabase;
 import org.ensembl.healthcheck.configuration.ConfigurationUserParameters;
 import org.ensembl.healthcheck.configuration.ConfigureConfiguration;
 import org.ensembl.healthcheck.configuration.ConfigureHost;
@@ -35,8 +31,6 @@ import org.ensembl.healthcheck.configurationmanager.ConfigurationFactory.Configu
 import org.ensembl.healthcheck.configurationmanager.ConfigurationFactory;
 import org.ensembl.healthcheck.configurationmanager.ConfigurationException;
 import org.ensembl.healthcheck.configurationmanager.ConfigurationDumper;
-import org.ensembl.healthcheck.configurationmanager.ConfigurationDumper;
-import org.ensembl.healthcheck.util.CreateHealthCheckDB;
 import org.ensembl.healthcheck.util.DBUtils;
 
 
@@ -45,6 +39,11 @@ import org.ensembl.healthcheck.util.DBUtils;
  * Runs test which can be configured on the command line and stores them in a
  * database.
  * 
+ * All databases are tested in this JVM by a {@link ConfigurableTestRunner}.
+ * The number of tests run at the same time, in total and against each
+ * database server, is set with the threads and threads.per.server
+ * parameters.
+ * 
  */
 public class ParallelConfigurableTestRunner extends TestRunner {
 
@@ -57,9 +56,6 @@ public class ParallelConfigurableTestRunner extends TestRunner {
         protected final static String DEFAULT_PROPERTIES_FILE = "database.release.defaults.properties";
         protected final ConfigurationUserParameters configuration;
 
-        private static final String MEMORY_RUSAGE = "select[mem>2000] rusage[mem=2000]";
-        private static final String MEMORY_RESERVATION = "2000";
-
         static final Logger log = Logger.getLogger(ParallelConfigurableTestRunner.class.getCanonicalName());
         protected final SystemPropertySetter systemPropertySetter;
 
@@ -118,102 +114,29 @@ public class ParallelConfigurableTestRunner extends TestRunner {
 
         protected void run() {
 
-                CreateHealthCheckDB c = new CreateHealthCheckDB((ConfigureHealthcheckDatabase) configuration);
-                boolean reportDatabaseExistsAlready = c.databaseExists(configuration.getOutputDatabase());
-
-                // Create the database to which tests will be written
-
-                if (reportDatabaseExistsAlready) {
-                        logger.info("Reporting database "
-                               + configuration.getOutputDatabase()
-                               + " already exists, will reuse.");
-                        System.out.println("Reporting database "
-                               + configuration.getOutputDatabase()
-                               + " already exists, will reuse.");
-                } else {
-                        logger.info("Reporting database "
-                               + configuration.getOutputDatabase()
-                               + " does not exist, will create.");
-                        System.out.println("Reporting database "
-                               + configuration.getOutputDatabase()
-                               + " does not exist, will create.");
-                        c.run();
-                }
-
-                systemPropertySetter.setPropertiesForReportManager_connectToOutputDatabase();
-                ReportManager.connectToOutputDatabase();
-
-                systemPropertySetter.setPropertiesForReportManager_createDatabaseSession();
-                ReportManager.createDatabaseSession();
-                systemPropertySetter.setPropertiesForHealthchecks();
-
                 submitJobs();
 
         }
 
         /**
-         * Submit new job for each test_database entry.
+         * Run the tests for every test_database entry. The databases are
+         * queued per server by the {@link ParallelTestExecutor}, which takes
+         * care of not overloading any one server.
          *
+         * @throws ConfigurationException
+         *             If threads is 1, as the tests would not be run in
+         *             parallel.
          */
         protected void submitJobs() {
 
-                int numberOfTestsRun = 0;
-                int jobNumber = 0;
-                String[] cmd;
-                List<String> jobNames = new ArrayList<String>();
-                String dir = System.getProperty("user.dir");
-                String runConfigurable = dir + File.separator + "run-configurable-testrunner.sh";
-                long sessionID = ReportManager.getSessionID();
-
-                for (String database : configuration.getTestDatabases()) {
-
-                        String currentJobName = "Job_" + jobNumber;
-
-                        if ( configuration.getHost1() != null ) {  
-                                 cmd = new String[] {"bsub", "-q", "long", "-J", currentJobName, "-R", MEMORY_RUSAGE, "-M", MEMORY_RESERVATION, "-R", "select[my" + configuration.getHost().replace("-", "_") + "<=800]", "-R",
-                                 "select[my" + configuration.getHost1().replace("-", "_") + "<=800]", "-R",  "select[my" + configuration.getSecondaryHost().replace("-", "_") + "<=400]", "-R",
-                                 "rusage[my" + configuration.getHost().replace("-", "_") + "=10:my" + configuration.getHost1().replace("-", "_") + "=10:my" + configuration.getSecondaryHost().replace("-", "_") + "=50]", "-o", "healthcheck_%J.out", "-e", 
-                                 "healthcheck_%J.err", runConfigurable, "-d", database, "--sessionID", "" + sessionID, "-c", DEFAULT_PROPERTIES_FILE };
-                        }
-                        else {
-                                 cmd = new String[] {"bsub", "-q", "long", "-J", currentJobName, "-R", MEMORY_RUSAGE, "-M", MEMORY_RESERVATION, "-R", "select[my" + configuration.getHost().replace("-", "_") + "<=800]", "-R", 
-                                 "select[my" + configuration.getSecondaryHost().replace("-", "_") + "<=400]", "-R", "rusage[my" + configuration.getHost().replace("-", "_") + "=10:my" + configuration.getSecondaryHost().replace("-", "_") + "=50]",
-                                 "-o", "healthcheck_%J.out", "-e", "healthcheck_%J.err", runConfigurable, "-d", database, "--sessionID", "" + sessionID, "-c", 
-                                 DEFAULT_PROPERTIES_FILE };
-                        }
-
-                        jobNames.add(currentJobName);
-
-                        execCmd(cmd);
-                        System.out.println("Submitted job with database regexp " + database);
-                        jobNumber++;
-
-                 }
- 
-                 Iterator<String> jobNameIterator = jobNames.iterator();
-                 StringBuffer bsubConditionClause = new StringBuffer();
-                 while (jobNameIterator.hasNext()) {
+                ConfigurableTestRunner runner = new ConfigurableTestRunner(configuration);
 
-                        String currentJobName = jobNameIterator.next();
-                        bsubConditionClause.append("ended(\"" + currentJobName + "\")");
-
-                        if (jobNameIterator.hasNext()) {
-                                bsubConditionClause.append(" && ");
-                        }
+                if (runner.threads == 1) {
+                        throw new ConfigurationException("Parameter threads is 1, so the tests would be run sequentially."
+                                        + " Set threads to more than 1 or use the ConfigurableTestRunner.");
                 }
 
-                String session = "" + sessionID;
-
-                String out = String.format("healthcheck_session_%s.out", session);
-                String err = String.format("healthcheck_session_%s.err", session);
-
-                String jobName = String.format("hc_%s", session);
-
-                String[] sessionEndTimeCmd = { "bsub", "-R", MEMORY_RUSAGE, "-M", MEMORY_RESERVATION, "-o", out, "-e", err, "-J", jobName, "-w", bsubConditionClause.toString(), runConfigurable, "--endSession", "" + sessionID, "-c", DEFAULT_PROPERTIES_FILE };
-
-                execCmd(sessionEndTimeCmd);
-
-                System.out.println("Submitted session dependency job");
+                runner.run();
 
         } // submitJobs
 
@@ -294,39 +217,6 @@ public class ParallelConfigurableTestRunner extends TestRunner {
                 return configuration;
         }
 
-        /**
-         * Used for executing bsub commands.
-         *
-         * @param cmd
-         *
-         */
-        protected void execCmd(String[] cmd) {
-
-                try {
-
-                        Process p = Runtime.getRuntime().exec(cmd);
-
-                        BufferedReader stdInput = new BufferedReader(new InputStreamReader(p.getInputStream()));
-                        BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-
-                        String s = null;
-
-                        while ((s = stdInput.readLine()) != null) {
-                                System.out.println(s);
-                        }
-
-                        while ((s = stdError.readLine()) != null) {
-                                System.out.println(s);
-                        }
-
-                        stdInput.close();
-                        stdError.close();
-
-                } catch (Exception ioe) {
-                        System.err.println("Error in head job " + ioe.getMessage());
-                }
-        }
-
 }
 
 
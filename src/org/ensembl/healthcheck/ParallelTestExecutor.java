@@ -0,0 +1,265 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Runs (database, test) jobs on a bounded pool of worker threads inside the
+ * current JVM. Used by the {@link ConfigurableTestRunner} when it has been
+ * configured with more than one thread.
+ * </p>
+ *
+ * <p>
+ * Jobs are queued per database server (host:port). At most
+ * <code>maxPerServer</code> jobs run against the same server at any time and
+ * free worker threads are handed to the servers in turn, so a slow server can
+ * neither be overloaded nor hold up the jobs for the other servers.
+ * </p>
+ *
+ * <p>
+ * Jobs are responsible for their own accounting and error handling; any
+ * Throwable escaping a job is logged, but does not stop the other jobs.
+ * </p>
+ */
+public class ParallelTestExecutor {
+
+	/** The logger to use for this class */
+	protected static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final ExecutorService executor;
+
+	private final int threads;
+
+	private final int maxPerServer;
+
+	/** Guards all of the fields below. */
+	private final Object lock = new Object();
+
+	/** Jobs waiting to be run, by server. */
+	private final Map<String, LinkedList<Runnable>> queues = new HashMap<String, LinkedList<Runnable>>();
+
+	/** Number of jobs currently running, by server. */
+	private final Map<String, Integer> running = new HashMap<String, Integer>();
+
+	/** Servers in the order in which they get a turn. */
+	private final List<String> servers = new ArrayList<String>();
+
+	private int nextServer = 0;
+
+	private int inFlight = 0;
+
+	private int unfinished = 0;
+
+	/**
+	 * @param threads
+	 *          The maximum number of jobs that will run at the same time.
+	 */
+	public ParallelTestExecutor(int threads) {
+		this(threads, threads);
+	}
+
+	/**
+	 * @param threads
+	 *          The maximum number of jobs that will run at the same time.
+	 * @param maxPerServer
+	 *          The maximum number of jobs that will run at the same time
+	 *          against any one database server.
+	 */
+	public ParallelTestExecutor(int threads, int maxPerServer) {
+
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads);
+		}
+		if (maxPerServer < 1) {
+			throw new IllegalArgumentException("Number of threads per server must be at least 1, was " + maxPerServer);
+		}
+
+		this.threads = threads;
+		this.maxPerServer = maxPerServer;
+		this.executor = Executors.newFixedThreadPool(threads, new HealthcheckThreadFactory());
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getMaxPerServer() {
+		return maxPerServer;
+	}
+
+	/**
+	 * Queue a job for execution.
+	 *
+	 * @param database
+	 *          The database the job will run against.
+	 * @param job
+	 *          The work to do.
+	 */
+	public void submit(DatabaseRegistryEntry database, Runnable job) {
+
+		logger.finest("Queueing job for " + database.getName());
+		submit(serverKey(database), job);
+	}
+
+	/**
+	 * Queue a job for execution.
+	 *
+	 * @param server
+	 *          Identifies the database server the job will run against, see
+	 *          {@link #serverKey(DatabaseRegistryEntry)}.
+	 * @param job
+	 *          The work to do.
+	 */
+	public void submit(String server, Runnable job) {
+
+		synchronized (lock) {
+			LinkedList<Runnable> queue = queues.get(server);
+			if (queue == null) {
+				queue = new LinkedList<Runnable>();
+				queues.put(server, queue);
+				running.put(server, 0);
+				servers.add(server);
+			}
+			queue.add(job);
+			unfinished++;
+			dispatch();
+		}
+	}
+
+	/**
+	 * Block until every job submitted so far has finished, then release the
+	 * worker threads. The executor can not be used afterwards.
+	 */
+	public void awaitCompletion() {
+
+		try {
+			synchronized (lock) {
+				while (unfinished > 0) {
+					lock.wait();
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.warning("Interrupted while waiting for tests to finish");
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			return;
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * @return The key under which jobs for this database are queued.
+	 */
+	public static String serverKey(DatabaseRegistryEntry database) {
+
+		DatabaseServer server = database.getDatabaseServer();
+		if (server == null) {
+			return "";
+		}
+		return server.getHost() + ":" + server.getPort();
+	}
+
+	/**
+	 * Hand jobs to the worker threads while there are free threads and servers
+	 * that are below their limit. Must be called holding the lock.
+	 */
+	private void dispatch() {
+
+		while (inFlight < threads) {
+
+			final String server = nextEligibleServer();
+			if (server == null) {
+				return;
+			}
+
+			final Runnable job = queues.get(server).removeFirst();
+			running.put(server, running.get(server) + 1);
+			inFlight++;
+
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						job.run();
+					} catch (Throwable t) {
+						logger.log(Level.WARNING, "Job died with an exception: " + t.getMessage(), t);
+					} finally {
+						finished(server);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Round robin over the servers, starting after the one that was served
+	 * last. Must be called holding the lock.
+	 */
+	private String nextEligibleServer() {
+
+		int n = servers.size();
+		for (int i = 0; i < n; i++) {
+			int index = (nextServer + i) % n;
+			String server = servers.get(index);
+			if (!queues.get(server).isEmpty() && running.get(server) < maxPerServer) {
+				nextServer = (index + 1) % n;
+				return server;
+			}
+		}
+		return null;
+	}
+
+	private void finished(String server) {
+
+		synchronized (lock) {
+			running.put(server, running.get(server) - 1);
+			inFlight--;
+			unfinished--;
+			dispatch();
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Names worker threads so they can be told apart in the log and makes
+	 * them daemons so a stuck test can not keep the JVM alive.
+	 */
+	static class HealthcheckThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+
+			Thread t = new Thread(r, "healthcheck-worker-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.LongLongHashMap;
+
+/**
+ * <p>
+ * The reports already stored in the output database for a set of databases,
+ * so the {@link DatabaseReportWriter} can tell new reports from old ones
+ * without asking the server. Maps a 64 bit key made from database name,
+ * test case, result and text hash to the report_id.
+ * </p>
+ * 
+ * <p>
+ * Built once at the start of a session with {@link #load}, which gives up if
+ * the index would need more memory than allowed; reports are then stored
+ * with upserts as usual. After loading the index is only read.
+ * </p>
+ */
+class ReportIndex {
+
+	/** The logger to use for this class */
+	protected static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	/** Returned by {@link #find(ReportLine)} for reports not in the index */
+	static final long NOT_FOUND = -1;
+
+	/** Number of database names per query when loading */
+	private static final int DATABASES_PER_QUERY = 100;
+
+	private final LongLongHashMap ids = new LongLongHashMap(1024, NOT_FOUND);
+
+	private final Set<String> databases = new HashSet<String>();
+
+	/**
+	 * @return true if the reports for this database have been loaded, so a
+	 *         report that can not be found is new.
+	 */
+	boolean covers(String database) {
+		return databases.contains(database);
+	}
+
+	/**
+	 * @return The report_id of an existing report, or {@link #NOT_FOUND}.
+	 */
+	long find(ReportLine report) {
+		return ids.get(key(report.getDatabaseName(), report.getShortTestCaseName(), report.getLevelAsString(), report.getMessageHash()));
+	}
+
+	int size() {
+		return ids.size();
+	}
+
+	long memoryUsage() {
+		return ids.memoryUsage();
+	}
+
+	/**
+	 * Combines the first 64 bits of the text hash with a hash of the other
+	 * columns of the unique key.
+	 */
+	static long key(String database, String testcase, String result, String textHash) {
+
+		long h = 0xcbf29ce484222325L;
+		h = fnv(h, database);
+		h = fnv(h, testcase);
+		h = fnv(h, result);
+
+		long text = 0;
+		for (int i = 0; i < 16 && i < textHash.length(); i++) {
+			text = (text << 4) | Character.digit(textHash.charAt(i), 16);
+		}
+
+		return text ^ (h * 0x9E3779B97F4A7C15L);
+	}
+
+	private static long fnv(long h, String s) {
+
+		if (s != null) {
+			for (int i = 0; i < s.length(); i++) {
+				h ^= s.charAt(i);
+				h *= 0x100000001b3L;
+			}
+		}
+		// Separator, so ("ab", "c") and ("a", "bc") differ
+		h ^= 0xff;
+		h *= 0x100000001b3L;
+		return h;
+	}
+
+	/**
+	 * Read the keys of all reports stored for these databases.
+	 * 
+	 * @param maxBytes
+	 *          Memory the index may use.
+	 * @return The index, or null if it would have been too big or could not be
+	 *         read.
+	 */
+	static ReportIndex load(Connection con, Collection<String> databaseNames, long maxBytes) {
+
+		ReportIndex index = new ReportIndex();
+		List<String> names = new ArrayList<String>(new HashSet<String>(databaseNames));
+
+		for (int from = 0; from < names.size(); from += DATABASES_PER_QUERY) {
+
+			List<String> chunk = names.subList(from, Math.min(names.size(), from + DATABASES_PER_QUERY));
+
+			StringBuilder sql = new StringBuilder("SELECT report_id, database_name, testcase, result, text_hash FROM report WHERE text_hash IS NOT NULL AND database_name IN (");
+			for (int i = 0; i < chunk.size(); i++) {
+				sql.append(i == 0 ? "?" : ",?");
+			}
+			sql.append(")");
+
+			PreparedStatement stmt = null;
+			ResultSet rs = null;
+
+			try {
+
+				stmt = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				if (con.getMetaData().getDriverName().contains("MySQL")) {
+					// Stream the rows instead of reading them all into memory first
+					stmt.setFetchSize(Integer.MIN_VALUE);
+				}
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setString(i + 1, chunk.get(i));
+				}
+
+				rs = stmt.executeQuery();
+				while (rs.next()) {
+					index.ids.put(key(rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5)), rs.getLong(1));
+					if (index.ids.memoryUsage() > maxBytes) {
+						logger.info("Index of existing reports would need more than " + maxBytes
+								+ " bytes, existing reports will be looked up in the database instead");
+						return null;
+					}
+				}
+
+			} catch (SQLException e) {
+
+				logger.warning("Could not load index of existing reports, they will be looked up in the database instead: " + e.getMessage());
+				return null;
+
+			} finally {
+				DBUtils.closeQuietly(rs);
+				DBUtils.closeQuietly(stmt);
+			}
+
+			index.databases.addAll(chunk);
+		}
+
+		logger.info("Loaded index of " + index.size() + " existing reports for " + index.databases.size() + " databases");
+
+		return index;
+	}
+
+}
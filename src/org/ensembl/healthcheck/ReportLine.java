@@ -17,6 +17,10 @@
 
 package org.ensembl.healthcheck;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
 
@@ -113,6 +117,24 @@ public class ReportLine {
 
 	} // constructor
 
+	/**
+	 * Recreates a ReportLine that was stored without its test case, e.g. by a
+	 * {@link FileReportStore}.
+	 */
+	ReportLine(String testCaseName, String databaseName, String speciesName, DatabaseType type, int level, String message,
+			Team teamResponsible, Team secondTeamResponsible) {
+
+		this.testCaseName = testCaseName;
+		this.databaseName = databaseName;
+		this.speciesName = speciesName;
+		this.type = type;
+		this.level = level;
+		this.message = message;
+		this.teamResponsible = teamResponsible;
+		this.secondTeamResponsible = secondTeamResponsible;
+
+	} // constructor
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Get the level of this ReportLine.
@@ -148,6 +170,39 @@ public class ReportLine {
 
 	}
 
+	/**
+	 * Get a hash of the report message, as stored in the text_hash column of
+	 * the report table. It is the MD5 of the message encoded as UTF-8, written
+	 * in hex, so it is the same as MySQL's
+	 * MD5(CONVERT(IFNULL(text, '') USING utf8)).
+	 * 
+	 * @return The hash of the message.
+	 */
+	public String getMessageHash() {
+
+		return md5Hex(message == null ? "" : message);
+
+	}
+
+	static String md5Hex(String s) {
+
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("MD5").digest(s.getBytes("UTF-8"));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+
+		StringBuilder hex = new StringBuilder(32);
+		for (byte b : digest) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
 	/**
 	 * Set the report message.
 	 * 
@@ -24,7 +24,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -34,11 +36,18 @@ import java.util.logging.Logger;
 
 import org.ensembl.healthcheck.testcase.EnsTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.TestMetrics;
 import org.ensembl.healthcheck.util.Utils;
 
 /**
  * ReportManager is the main class for reporting in the Ensj Healthcheck system. It provides methods for storing reports - single
  * items of information - and retrieving them in various formats.
+ * 
+ * Tests may be run on several threads at once (see {@link ConfigurableTestRunner}), so every method that touches the stored
+ * reports, the reporter or the output database connection is synchronized on the class.
+ * 
+ * When reporting to a database, reports are handed to a {@link DatabaseReportWriter} which stores them in batches on a thread
+ * of its own. Its queue is flushed at the end of every test case and before the session is ended.
  */
 public class ReportManager {
 
@@ -50,40 +59,46 @@ public class ReportManager {
 	 * </p>
 	 * 
 	 */
-	public static void initialise() {
+	public static synchronized void initialise() {
 
-		reportsByTest = new HashMap<String,List<ReportLine>>();
-		reportsByDatabase = new HashMap<String,List<ReportLine>>();
+		if (reportWriter != null) {
+			reportWriter.close();
+			reportWriter = null;
+		}
+		usingDatabase = false;
+
+		reportStore.clear();
 
 		outputDatabaseConnection = null;
 		sessionID = -1;
 	}
 
-	/** A hash of lists keyed on the test name. */
-	protected static Map<String,List<ReportLine>> reportsByTest = new HashMap<String,List<ReportLine>>();
-
-	/** A hash of lists keyed on the database name */
-	protected static Map<String,List<ReportLine>> reportsByDatabase = new HashMap<String,List<ReportLine>>();
+	/** Where reports are kept when they are not written to a database. */
+	private static ReportStore reportStore = new MemoryReportStore();
 
 	/** The logger to use for this class */
 	protected static Logger logger = Logger.getLogger("HealthCheckLogger");
 
 	/**
-	 * The maximum number of lines to store to prevent very verbose test cases causing memory problems
+	 * The maximum number of lines per test case kept by a {@link MemoryReportStore} to prevent very verbose test cases causing memory
+	 * problems
 	 */
 	protected static final int MAX_BUFFER_SIZE = 2000;
 
-	private static boolean bufferSizeWarningPrinted = false;
-
 	private static Reporter reporter;
 
-	private static boolean usingDatabase = false;
+	private static volatile boolean usingDatabase = false;
 
-        private static int outputLevel = 0;
+        private static volatile int outputLevel = 0;
 
 	private static Connection outputDatabaseConnection;
 
-	private static long sessionID = -1;
+	private static volatile DatabaseReportWriter reportWriter;
+
+	/** Whether the shutdown hook closing the report writer has been added */
+	private static boolean shutdownHookAdded = false;
+
+	private static volatile long sessionID = -1;
 
 	// hide constructor to stop instantiation
 	private ReportManager() {
@@ -96,11 +111,39 @@ public class ReportManager {
 	 * @param rep
 	 *          The Reporter to set.
 	 */
-	public static void setReporter(Reporter rep) {
+	public static synchronized void setReporter(Reporter rep) {
 
 		reporter = rep;
 	}
 
+	/**
+	 * Set where reports are kept when they are not written to a database. Reports already in the current store are discarded.
+	 * 
+	 * @param store
+	 *          The ReportStore to use.
+	 */
+	public static synchronized void setReportStore(ReportStore store) {
+
+		reportStore.clear();
+		reportStore = store;
+	}
+
+	/**
+	 * @return The names of the test cases that have reported something.
+	 */
+	public static synchronized Set<String> getTestCaseNames() {
+
+		return new HashSet<String>(reportStore.getTestCaseNames());
+	}
+
+	/**
+	 * @return The names of the databases that have been reported on.
+	 */
+	public static synchronized Set<String> getDatabaseNames() {
+
+		return new HashSet<String>(reportStore.getDatabaseNames());
+	}
+
         public static void setOutputLevel(int level) {
                 outputLevel = level;
         }
@@ -113,7 +156,7 @@ public class ReportManager {
 	 * @param dbre
 	 *          The database that testCase will run on.
 	 */
-	public static void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+	public static synchronized void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
 		if (reporter != null) {
 			reporter.startTestCase(testCase, dbre);
@@ -132,8 +175,24 @@ public class ReportManager {
 	 */
 	public static void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
-		if (reporter != null) {
-			reporter.finishTestCase(testCase, result, dbre);
+		synchronized (ReportManager.class) {
+			if (reporter != null) {
+				reporter.finishTestCase(testCase, result, dbre);
+			}
+		}
+
+		// Not holding the lock, so other tests can keep reporting meanwhile
+		flushReports();
+	}
+
+	/**
+	 * Wait until all reports have been written to the output database. Does nothing when not reporting to a database.
+	 */
+	public static void flushReports() {
+
+		DatabaseReportWriter writer = reportWriter;
+		if (writer != null) {
+			writer.flush();
 		}
 	}
 
@@ -146,6 +205,24 @@ public class ReportManager {
 	 */
 	public static void add(ReportLine report) {
 
+		DatabaseReportWriter writer = reportWriter;
+
+		if (usingDatabase && writer != null) {
+
+			// Queued without holding the lock, the writer may block when
+			// its queue is full.
+			if (report.getLevel() >= outputLevel) {
+				writer.add(report);
+			}
+			return;
+
+		}
+
+		addToMemory(report);
+	}
+
+	private static synchronized void addToMemory(ReportLine report) {
+
 		if (usingDatabase) {
 
 			checkAndAddToDatabase(report);
@@ -154,53 +231,11 @@ public class ReportManager {
 		}
 
 		String testCaseName = report.getTestCaseName();
-		String databaseName = report.getDatabaseName();
-
-		List<ReportLine> lines;
-
-		// add to each hash
-		if (testCaseName != null && testCaseName.length() > 0) {
-			// create the lists if they're not there already
-			if (reportsByTest.get(testCaseName) == null) {
-				lines = new ArrayList<ReportLine>();
-				lines.add(report);
-				reportsByTest.put(testCaseName, lines);
-			} else {
-				// get the relevant list, update it, and re-add it
-				lines = reportsByTest.get(testCaseName);
-
-				// prevent the buffer getting too big
-				if (lines.size() > MAX_BUFFER_SIZE) {
-					if (!bufferSizeWarningPrinted) {
-						System.err.println("\n\nReportManager has reached its maximum buffer size (" + MAX_BUFFER_SIZE + " lines) - no more output will be stored\n");
-						bufferSizeWarningPrinted = true;
-					}
-				} else {
-					// buffer small enough, add it
-					lines.add(report);
-					reportsByTest.put(testCaseName, lines);
-				}
-
-			}
-
-		} else {
+		if (testCaseName == null || testCaseName.length() == 0) {
 			logger.warning("Cannot add report with test case name not set");
 		}
 
-		if (databaseName != null && databaseName.length() > 0) {
-			// create the lists if they're not there already
-			if (reportsByDatabase.get(databaseName) == null) {
-				lines = new ArrayList<ReportLine>();
-				lines.add(report);
-				reportsByDatabase.put(databaseName, lines);
-			} else {
-				// get the relevant list, update it, and re-add it
-				lines = reportsByDatabase.get(databaseName);
-				lines.add(report);
-				reportsByDatabase.put(databaseName, lines);
-			}
-
-		}
+		reportStore.add(report);
 
 		if (reporter != null) {
 			reporter.message(report);
@@ -385,7 +420,7 @@ public class ReportManager {
 	 */
 	public static Map<String,List<ReportLine>> getAllReportsByTestCase() {
 
-		return reportsByTest;
+		return getAllReportsByTestCase(ReportLine.ALL);
 
 	} // getAllReportsByTestCase
 
@@ -397,9 +432,13 @@ public class ReportManager {
 	 *          The ReportLine level (e.g. PROBLEM) to filter on.
 	 * @return The HashMap of all the reports, keyed on test case name.
 	 */
-	public static Map<String,List<ReportLine>> getAllReportsByTestCase(int level) {
+	public static synchronized Map<String,List<ReportLine>> getAllReportsByTestCase(int level) {
 
-		return filterMap(reportsByTest, level);
+		Map<String,List<ReportLine>> result = new HashMap<String,List<ReportLine>>();
+		for(String testCaseName: reportStore.getTestCaseNames()) {
+			result.put(testCaseName, reportStore.getReportsByTestCase(testCaseName, level));
+		}
+		return result;
 
 	} // getAllReportsByTestCase
 
@@ -411,7 +450,7 @@ public class ReportManager {
 	 */
 	public static Map<String,List<ReportLine>> getAllReportsByDatabase() {
 
-		return reportsByDatabase;
+		return getAllReportsByDatabase(ReportLine.ALL);
 
 	} // getReportsByDatabase
 
@@ -423,9 +462,13 @@ public class ReportManager {
 	 *          The ReportLine level (e.g. PROBLEM) to filter on.
 	 * @return The HashMap of all the reports, keyed on test case name.
 	 */
-	public static Map<String,List<ReportLine>> getAllReportsByDatabase(int level) {
+	public static synchronized Map<String,List<ReportLine>> getAllReportsByDatabase(int level) {
 
-		return filterMap(reportsByDatabase, level);
+		Map<String,List<ReportLine>> result = new HashMap<String,List<ReportLine>>();
+		for(String databaseName: reportStore.getDatabaseNames()) {
+			result.put(databaseName, reportStore.getReportsByDatabase(databaseName, level));
+		}
+		return result;
 
 	} // getAllReportsByTestCase
 
@@ -439,11 +482,9 @@ public class ReportManager {
 	 * @param level
 	 *          The minimum level of report to include, e.g. ReportLine.INFO
 	 */
-	public static List<ReportLine> getReportsByTestCase(String testCaseName, int level) {
+	public static synchronized List<ReportLine> getReportsByTestCase(String testCaseName, int level) {
 
-		List<ReportLine> allReports = reportsByTest.get(testCaseName);
-
-		return filterList(allReports, level);
+		return reportStore.getReportsByTestCase(testCaseName, level);
 
 	} // getReportsByTestCase
 
@@ -457,9 +498,9 @@ public class ReportManager {
 	 *          The minimum level of report to include, e.g. ReportLine.INFO
 	 * @return A List of the ReportLines corresponding to database.
 	 */
-	public static List<ReportLine> getReportsByDatabase(String databaseName, int level) {
+	public static synchronized List<ReportLine> getReportsByDatabase(String databaseName, int level) {
 
-		return filterList(reportsByDatabase.get(databaseName), level);
+		return reportStore.getReportsByDatabase(databaseName, level);
 
 	} // getReportsByDatabase
 
@@ -521,34 +562,15 @@ public class ReportManager {
 	 *          The database to check.
 	 * @return An array giving the number of passes and then fails for this database.
 	 */
-	public static int[] countPassesAndFailsDatabase(String database) {
+	public static synchronized int[] countPassesAndFailsDatabase(String database) {
 
 		int[] result = new int[2];
 
-		List<String> testsRun = new ArrayList<String>();
+		int testsRun = reportStore.getTestCaseNames(database, ReportLine.ALL).size();
+		int testsFailed = reportStore.getTestCaseNames(database, ReportLine.PROBLEM).size();
 
-		// get all of them to build a list of the tests that were run
-		List<ReportLine> reports = getReportsByDatabase(database, ReportLine.ALL);
-		for(ReportLine line: reports) {
-			String test = line.getTestCaseName();
-			if (!testsRun.contains(test)) {
-				testsRun.add(test);
-			}
-		}
-
-		// count those that failed
-		List<String> testsFailed = new ArrayList<String>();
-		reports = getReportsByDatabase(database, ReportLine.PROBLEM);
-		for(ReportLine line: reports) {
-			String test = line.getTestCaseName();
-			if (!testsFailed.contains(test)) {
-				testsFailed.add(test);
-			}
-		}
-
-		result[1] = testsFailed.size();
-		result[0] = testsRun.size() - testsFailed.size(); // if it didn't
-		// fail, it passed
+		result[1] = testsFailed;
+		result[0] = testsRun - testsFailed; // if it didn't fail, it passed
 
 		return result;
 
@@ -563,34 +585,15 @@ public class ReportManager {
 	 *          The test to check.
 	 * @return An array giving the number of databases that passed [0] and failed [1] this test.
 	 */
-	public static int[] countPassesAndFailsTest(String test) {
+	public static synchronized int[] countPassesAndFailsTest(String test) {
 
 		int[] result = new int[2];
 
-		List<String> allDBs = new ArrayList<String>();
-
-		// get all of them to build a list of the tests that were run
-		List<ReportLine> reports = getReportsByTestCase(test, ReportLine.ALL);
-		for(ReportLine line: reports) {
-			String database = line.getDatabaseName();
-			if (!allDBs.contains(database)) {
-				allDBs.add(database);
-			}
-		}
-
-		// count those that failed
-		List<String> dbsFailed = new ArrayList<String>();
-		reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		for(ReportLine line: reports) {
-			String database = line.getDatabaseName();
-			if (!dbsFailed.contains(database)) {
-				dbsFailed.add(database);
-			}
-		}
+		int allDBs = reportStore.getDatabaseNames(test, ReportLine.ALL).size();
+		int dbsFailed = reportStore.getDatabaseNames(test, ReportLine.PROBLEM).size();
 
-		result[1] = dbsFailed.size();
-		result[0] = allDBs.size() - dbsFailed.size(); // if it didn't fail, it
-		// passed
+		result[1] = dbsFailed;
+		result[0] = allDBs - dbsFailed; // if it didn't fail, it passed
 
 		return result;
 
@@ -604,11 +607,11 @@ public class ReportManager {
 	 * 
 	 * @return An array giving the number of passes and then fails.
 	 */
-	public static int[] countPassesAndFailsAll() {
+	public static synchronized int[] countPassesAndFailsAll() {
 
 		int[] result = new int[2];
 
-		for(String database: getAllReportsByDatabase().keySet()) {
+		for(String database: reportStore.getDatabaseNames()) {
 			int[] dbResult = countPassesAndFailsDatabase(database);
 			result[0] += dbResult[0];
 			result[1] += dbResult[1];
@@ -629,16 +632,9 @@ public class ReportManager {
 	 *          The database to check.
 	 * @return true if database passed test (i.e. had no problems).
 	 */
-	public static boolean databasePassed(String test, String database) {
-
-		List<ReportLine> reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		for(ReportLine line: reports) {
-			if (database.equals(line.getDatabaseName())) {
-				return false;
-			}
-		}
+	public static synchronized boolean databasePassed(String test, String database) {
 
-		return true;
+		return !reportStore.getDatabaseNames(test, ReportLine.PROBLEM).contains(database);
 
 	}
 
@@ -671,11 +667,11 @@ public class ReportManager {
 	 * @param database
 	 *          The database.
 	 */
-	public static List<ReportLine> getReports(String test, String database) {
+	public static synchronized List<ReportLine> getReports(String test, String database) {
 
 		List<ReportLine> result = new ArrayList<ReportLine>();
 
-		for(ReportLine line: reportsByTest.get(test)) {
+		for(ReportLine line: reportStore.getReportsByTestCase(test, ReportLine.ALL)) {
 			if (database.equals(line.getDatabaseName())) {
 				result.add(line);
 			}
@@ -695,7 +691,7 @@ public class ReportManager {
          * @param database
          *          The database.
          */
-        public static boolean hasPropagated(DatabaseRegistryEntry database) {
+        public static synchronized boolean hasPropagated(DatabaseRegistryEntry database) {
 
                 boolean result = true;
                 String sql = "SELECT count(*) FROM propagated WHERE database_name = '" + database.getName() + "'";
@@ -723,7 +719,7 @@ public class ReportManager {
 	/**
 	 * Set up connection to a database for output. Sets usingDatabase to true.
 	 */
-	public static void connectToOutputDatabase() {
+	public static synchronized void connectToOutputDatabase() {
 
 		logger.info("Connecting to " + System.getProperty("output.databaseURL") + System.getProperty("output.database") + " as " + System.getProperty("output.user"));
 
@@ -739,15 +735,85 @@ public class ReportManager {
 			throw new RuntimeException(e);			
 		}
 
+		startReportWriter();
+
 		usingDatabase = true;
 
 	}
 
+	/**
+	 * Start the thread that writes reports to the output database. It gets a connection of its own, batching is cheaper if the
+	 * driver may rewrite batches into multi-row statements.
+	 */
+	private static void startReportWriter() {
+
+		if (reportWriter != null) {
+			reportWriter.close();
+		}
+
+		String url = System.getProperty("output.databaseURL") + System.getProperty("output.database");
+		url += (url.indexOf('?') < 0 ? "?" : "&") + "rewriteBatchedStatements=true";
+
+		Connection writerConnection;
+		try {
+			writerConnection = DBUtils.openConnection(
+				System.getProperty("output.driver"), 
+				url,
+				System.getProperty("output.user"), 
+				System.getProperty("output.password")
+			);
+		} catch(SQLException e) {			
+			throw new RuntimeException(e);			
+		}
+
+		DatabaseReportWriter writer = new DatabaseReportWriter(writerConnection);
+		writer.start();
+		reportWriter = writer;
+
+		// Do not lose queued reports if the program ends without ending the
+		// session. The hook closes whichever writer is current at the time.
+		if (!shutdownHookAdded) {
+			Runtime.getRuntime().addShutdownHook(new Thread("healthcheck-report-writer-shutdown") {
+				public void run() {
+					DatabaseReportWriter current = reportWriter;
+					if (current != null) {
+						current.close();
+					}
+				}
+			});
+			shutdownHookAdded = true;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Load the keys of the reports already stored for these databases, so new and existing reports can be told apart without
+	 * asking the output database. If the index would take more than maxBytes of memory, it is not used and reports are stored
+	 * with upserts as before.
+	 * 
+	 * @param databaseNames
+	 *          The databases that will be tested in this session.
+	 * @param maxBytes
+	 *          Memory the index may use.
+	 */
+	public static synchronized void loadReportIndex(Collection<String> databaseNames, long maxBytes) {
+
+		if (reportWriter == null || outputDatabaseConnection == null) {
+			logger.warning("Not connected to an output database, not loading index of existing reports");
+			return;
+		}
+
+		ReportIndex index = ReportIndex.load(outputDatabaseConnection, databaseNames, maxBytes);
+		if (index != null) {
+			reportWriter.setIndex(index);
+		}
+	}
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Create a new entry in the session table. Store the ID of the created session in sessionID.
 	 */
-	public static void createDatabaseSession() {
+	public static synchronized void createDatabaseSession() {
 
 		// build comma-separated list of hosts
 		StringBuffer buf = new StringBuffer();
@@ -800,7 +866,7 @@ public class ReportManager {
         /**
          * Reuse an existing entry in the session table.
          */
-        public static void reuseDatabaseSession(long sessionID) {
+        public static synchronized void reuseDatabaseSession(long sessionID) {
 
                 // build comma-separated list of hosts
                 StringBuffer buf = new StringBuffer();
@@ -857,7 +923,9 @@ public class ReportManager {
 	/**
 	 * End a database session. Write the end time into the database.
 	 */
-	public static void endDatabaseSession() {
+	public static synchronized void endDatabaseSession() {
+
+		flushReports();
 
 		String sql = "UPDATE session SET end_time=NOW() WHERE session_id=" + sessionID;
 
@@ -876,11 +944,51 @@ public class ReportManager {
 
 	}
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Store the metrics of the tests run in the current session in the testcase_metrics table.
+	 * 
+	 * @param metrics
+	 *          The metrics to store.
+	 */
+	public static synchronized void storeMetrics(Collection<TestMetrics.Entry> metrics) {
+
+		String sql = "INSERT INTO testcase_metrics (session_id, testcase, database_name, wall_time_ms, statements, row_count, bytes_read, connection_wait_ms) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+		try {
+
+			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
+			int batched = 0;
+			for (TestMetrics.Entry entry : metrics) {
+				stmt.setLong(1, sessionID);
+				stmt.setString(2, entry.getTestName());
+				stmt.setString(3, entry.getDatabaseName());
+				stmt.setLong(4, entry.getWallTimeMillis());
+				stmt.setLong(5, entry.getStatements());
+				stmt.setLong(6, entry.getRows());
+				stmt.setLong(7, entry.getBytes());
+				stmt.setLong(8, entry.getConnectionWaitMillis());
+				stmt.addBatch();
+				if (++batched % 500 == 0) {
+					stmt.executeBatch();
+				}
+			}
+			stmt.executeBatch();
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+	}
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Delete all previous data.
 	 */
-	public static void deletePrevious() {
+	public static synchronized void deletePrevious() {
 
 		String[] tables = { "session", "report", "annotation" };
 
@@ -908,22 +1016,13 @@ public class ReportManager {
 	// -------------------------------------------------------------------------
 	/**
 	 * Update a report in the database. Two possible actions: 1. If the report already exists and hasn't changed, just update it. 2.
-	 * If the report is new, add a new record.
+	 * If the report is new, add a new record. Both are done by the same statement, see {@link #UPSERT_REPORT_SQL}.
 	 */
-	public static void checkAndAddToDatabase(ReportLine report) {
-
-		long reportID = reportExistsInDatabase(report);
+	public static synchronized void checkAndAddToDatabase(ReportLine report) {
 
                 if (report.getLevel() >= outputLevel) {
 
-		        if (reportID > -1) {
-
-			          updateReportInDatabase(report, reportID);
-
-		        } else {
-
-			          addReportToDatabase(report);
-                        }
+		        addReportToDatabase(report);
 
 		}
 
@@ -931,13 +1030,14 @@ public class ReportManager {
 
 	// -------------------------------------------------------------------------
 	/**
-	 * Check if a report exists (i.e. same database, testcase, result and text).
+	 * Check if a report exists (i.e. same database, testcase, result and text). Reports are found by the hash of their text, see
+	 * {@link ReportLine#getMessageHash()}.
 	 * 
 	 * @return -1 if the report does not exist, report_id if it does.
 	 */
-	public static long reportExistsInDatabase(ReportLine report) {
+	public static synchronized long reportExistsInDatabase(ReportLine report) {
 
-		String sql = "SELECT report_id FROM report WHERE database_name=? AND testcase=? AND result=? AND BINARY(text)=BINARY(?)";
+		String sql = "SELECT report_id FROM report WHERE database_name=? AND testcase=? AND result=? AND text_hash=?";
 
 		long reportID = -1;
 
@@ -947,7 +1047,7 @@ public class ReportManager {
 			stmt.setString(1, report.getDatabaseName());
 			stmt.setString(2, report.getShortTestCaseName());
 			stmt.setString(3, report.getLevelAsString());
-			stmt.setString(4, report.getMessage());
+			stmt.setString(4, report.getMessageHash());
 			ResultSet rs = stmt.executeQuery();
 			if (rs != null) {
 				if (rs.first()) {
@@ -976,11 +1076,33 @@ public class ReportManager {
 
 	}
 
+	/**
+	 * Inserts a report, or if one with the same database, testcase, result and text hash already exists, moves its last_session_id
+	 * on. Relies on the unique key report_hash_idx of the report table.
+	 */
+	static final String UPSERT_REPORT_SQL = "INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, text_hash, timestamp, team_responsible, created) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW()) "
+			+ "ON DUPLICATE KEY UPDATE last_session_id=VALUES(last_session_id), timestamp=NOW()";
+
+	static void setUpsertParameters(PreparedStatement stmt, ReportLine report, long sessionID) throws SQLException {
+
+		stmt.setLong(1, sessionID);
+		stmt.setLong(2, sessionID);
+		stmt.setString(3, report.getDatabaseName());
+		// EG Store species name and db type from explicit report line, not from database
+		stmt.setString(4, report.getSpeciesName());
+		stmt.setString(5, report.getType().toString());
+		stmt.setString(6, report.getShortTestCaseName());
+		stmt.setString(7, report.getLevelAsString());
+		stmt.setString(8, report.getMessage());
+		stmt.setString(9, report.getMessageHash());
+		stmt.setString(10, report.getPrintableTeamResponsibleString());
+	}
+
 	// -------------------------------------------------------------------------
 	/**
-	 * Store a report in the database.
+	 * Store a report in the database. If it is already there, its last_session_id is updated instead.
 	 */
-	public static void addReportToDatabase(ReportLine report) {
+	public static synchronized void addReportToDatabase(ReportLine report) {
 
 		if (outputDatabaseConnection == null) {
 			logger.severe("No connection to output database!");
@@ -989,28 +1111,17 @@ public class ReportManager {
 
 		logger.fine("Adding report for: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
 
-		String sql = "INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, timestamp, team_responsible, created) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW())";
-
 		try {
 
-			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
-			stmt.setLong(1, sessionID);
-			stmt.setLong(2, sessionID);
-			stmt.setString(3, report.getDatabaseName());
-			// EG Store species name and db type from explicit report line, not from database
-			stmt.setString(4, report.getSpeciesName());
-			stmt.setString(5, report.getType().toString());
-			stmt.setString(6, report.getShortTestCaseName());
-			stmt.setString(7, report.getLevelAsString());
-			stmt.setString(8, report.getMessage());
-			stmt.setString(9, report.getPrintableTeamResponsibleString());
+			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(UPSERT_REPORT_SQL);
+			setUpsertParameters(stmt, report, sessionID);
 			stmt.executeUpdate();
 
 			stmt.close();
 
 		} catch (SQLException e) {
 
-			System.err.println("Error executing:\n" + sql);
+			System.err.println("Error executing:\n" + UPSERT_REPORT_SQL);
 			e.printStackTrace();
 
 		}
@@ -1021,7 +1132,7 @@ public class ReportManager {
 	/**
 	 * Update the last_session_id of a report in the database.
 	 */
-	public static void updateReportInDatabase(ReportLine report, long reportID) {
+	public static synchronized void updateReportInDatabase(ReportLine report, long reportID) {
 
 		if (outputDatabaseConnection == null) {
 			logger.severe("No connection to output database!");
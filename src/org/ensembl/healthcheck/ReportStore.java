@@ -0,0 +1,77 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Where the {@link ReportManager} keeps reports when they are not written to
+ * an output database.
+ * 
+ * @see MemoryReportStore
+ * @see FileReportStore
+ */
+public interface ReportStore {
+
+	/**
+	 * Store a report.
+	 */
+	void add(ReportLine report);
+
+	/**
+	 * Forget all reports.
+	 */
+	void clear();
+
+	/**
+	 * @return The names of the test cases that have reported something.
+	 */
+	Set<String> getTestCaseNames();
+
+	/**
+	 * @return The names of the databases that have been reported on.
+	 */
+	Set<String> getDatabaseNames();
+
+	/**
+	 * @return The reports of a test case with at least the given level, in the
+	 *         order they were made.
+	 */
+	List<ReportLine> getReportsByTestCase(String testCaseName, int level);
+
+	/**
+	 * @return The reports on a database with at least the given level, in the
+	 *         order they were made.
+	 */
+	List<ReportLine> getReportsByDatabase(String databaseName, int level);
+
+	/**
+	 * @return The test cases that have made a report with at least the given
+	 *         level on a database.
+	 */
+	Set<String> getTestCaseNames(String databaseName, int level);
+
+	/**
+	 * @return The databases on which a test case has made a report with at
+	 *         least the given level.
+	 */
+	Set<String> getDatabaseNames(String testCaseName, int level);
+
+}
@@ -67,7 +67,7 @@ public class StandaloneReporter implements Reporter {
      * testcase.EnsTestCase, boolean, org.ensembl.healthcheck.DatabaseRegistryEntry)
      */
     @Override
-    public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
+    public synchronized void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
         if (result) {
             List<String> dbSuccess = successes.get(dbre.getName());
             if (dbSuccess == null) {
@@ -104,7 +104,7 @@ public class StandaloneReporter implements Reporter {
      * ReportLine)
      */
     @Override
-    public void message(ReportLine reportLine) {
+    public synchronized void message(ReportLine reportLine) {
         logger.fine(reportLine.toString());
         if (reportLine.getLevel() != ReportLine.CORRECT) {
             Map<String, List<String>> dbOutput = output.get(reportLine.getDatabaseName());
@@ -128,7 +128,7 @@ public class StandaloneReporter implements Reporter {
      * testcase.EnsTestCase, org.ensembl.healthcheck.DatabaseRegistryEntry)
      */
     @Override
-    public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+    public synchronized void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
         Map<String, List<String>> dbOutput = output.get(dbre.getName());
         if (dbOutput == null) {
             dbOutput = CollectionUtils.createHashMap();
@@ -276,7 +276,7 @@ public class StandaloneTestRunner {
 		try {
 			TestRegistry testRegistry = new ConfigurationBasedTestRegistry(options);
 			Set<String> testCases = new HashSet<>();
-			for (EnsTestCase test : testRegistry.getAll()) {
+			for (TestDescriptor test : testRegistry.getAllDescriptors()) {
 				testCases.add(test.getName());
 			}
 			if (options.getOutputFile().equals(WRITE_STDOUT)) {
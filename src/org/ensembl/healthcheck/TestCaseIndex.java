@@ -0,0 +1,411 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+import org.ensembl.PackageScan;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+
+/**
+ * <p>
+ * 	An index of the test cases and groups of tests, written when the
+ * healthchecks are built. For every class it lists the names under which it
+ * can be run and, for test cases, the groups they register for, the types of
+ * database they apply to, the team responsible for them and whether they are
+ * long running.
+ * </p>
+ * 
+ * <p>
+ * 	Finding this out at run time means loading and instantiating every class
+ * in the testcase and testgroup packages. The registries and the
+ * {@link TestInstantiator} read the index instead when it is on the classpath,
+ * so only the tests that are selected get instantiated. Without it they fall
+ * back to scanning the classpath.
+ * </p>
+ * 
+ * <p>
+ * 	The index is written by the build with
+ * </p>
+ * 
+ * <pre>
+ * java org.ensembl.healthcheck.TestCaseIndex &lt;output directory&gt;
+ * </pre>
+ */
+public class TestCaseIndex {
+
+	static final Logger log = Logger.getLogger("HealthCheckLogger");
+
+	/** Name of the index on the classpath. */
+	public static final String RESOURCE = "org/ensembl/healthcheck/testcase.index";
+
+	/** The packages the index is built from by default. */
+	public static final String[] PACKAGES = { "org.ensembl.healthcheck.testcase", "org.ensembl.healthcheck.testgroup" };
+
+	private static final String PACKAGES_HEADER = "# packages:";
+
+	private static TestCaseIndex instance;
+
+	private static boolean loaded = false;
+
+	/**
+	 * What the index knows about one test case or group of tests.
+	 */
+	public static final class Entry {
+
+		private final String className;
+		private final boolean group;
+		private final List<String> names;
+		private final List<String> groups;
+		private final List<DatabaseType> types;
+		private final Team team;
+		private final boolean longRunning;
+
+		Entry(String className, boolean group, List<String> names, List<String> groups, List<DatabaseType> types, Team team,
+				boolean longRunning) {
+			this.className = className;
+			this.group = group;
+			this.names = Collections.unmodifiableList(names);
+			this.groups = Collections.unmodifiableList(groups);
+			this.types = Collections.unmodifiableList(types);
+			this.team = team;
+			this.longRunning = longRunning;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		/**
+		 * @return true for a {@link GroupOfTests}, false for an {@link EnsTestCase}
+		 */
+		public boolean isGroup() {
+			return group;
+		}
+
+		/**
+		 * @return the names the class can be run by
+		 */
+		public List<String> getNames() {
+			return names;
+		}
+
+		/**
+		 * @return the groups a test case registers for, including the one named
+		 *         after itself
+		 */
+		public List<String> getGroups() {
+			return groups;
+		}
+
+		/**
+		 * @return the types of database a test case applies to
+		 */
+		public List<DatabaseType> getTypes() {
+			return types;
+		}
+
+		/**
+		 * @return the team responsible for a test case, or null
+		 */
+		public Team getTeam() {
+			return team;
+		}
+
+		/**
+		 * @return true if a test case is flagged as long running, see
+		 *         {@link EnsTestCase#isLongRunning()}
+		 */
+		public boolean isLongRunning() {
+			return longRunning;
+		}
+
+		public boolean inGroup(String group) {
+			return groups.contains(group);
+		}
+
+		public boolean appliesToType(DatabaseType type) {
+			return types.contains(type);
+		}
+
+		public String toString() {
+			return className;
+		}
+	}
+
+	private final List<String> packages;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	private TestCaseIndex(List<String> packages) {
+		this.packages = packages;
+	}
+
+	/**
+	 * @return the index on the classpath, or null if there is none. It is only
+	 *         read once.
+	 */
+	public static synchronized TestCaseIndex getInstance() {
+
+		if (!loaded) {
+			loaded = true;
+			InputStream in = TestCaseIndex.class.getClassLoader().getResourceAsStream(RESOURCE);
+			if (in == null) {
+				log.fine("No " + RESOURCE + " on the classpath, tests will be found by scanning it");
+			} else {
+				try {
+					instance = read(new InputStreamReader(in, "UTF-8"));
+					log.fine("Read " + instance.getEntries().size() + " test cases and groups from " + RESOURCE);
+				} catch (IOException e) {
+					log.warning("Could not read " + RESOURCE + ", tests will be found by scanning the classpath: " + e.getMessage());
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @return true if the index has every class of the package
+	 */
+	public boolean covers(String packageName) {
+
+		for (String p : packages) {
+			if (packageName.equals(p) || packageName.startsWith(p + ".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the index has every class of all the packages
+	 */
+	public boolean covers(String... packageNames) {
+
+		for (String p : packageNames) {
+			if (!covers(p)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public List<String> getPackages() {
+		return Collections.unmodifiableList(packages);
+	}
+
+	public List<Entry> getEntries() {
+		return new ArrayList<Entry>(entries.values());
+	}
+
+	/**
+	 * @return the test cases and groups in the package or its subpackages
+	 */
+	public List<Entry> getEntries(String packageName) {
+
+		List<Entry> result = new ArrayList<Entry>();
+		for (Entry entry : entries.values()) {
+			if (entry.getClassName().startsWith(packageName + ".")) {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the entry for the class, or null if it is not in the index
+	 */
+	public Entry getEntry(String className) {
+		return entries.get(className);
+	}
+
+	/**
+	 * Maps the names of the test cases and groups in the packages to their
+	 * class names, like {@link TestInstantiator#createMap(String[])}.
+	 */
+	public Map<String, String> getAliasToClassName(String... packageNames) {
+
+		Map<String, String> result = new HashMap<String, String>();
+		for (String packageName : packageNames) {
+			for (Entry entry : getEntries(packageName)) {
+				for (String name : entry.getNames()) {
+					TestInstantiator.addToMapWithCheck(result,
+							new TestInstantiator.KeyValuePair(name, entry.getClassName()));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the index by loading and instantiating every class in the
+	 * packages.
+	 */
+	public static TestCaseIndex build(String... packageNames) throws ClassNotFoundException {
+
+		TestCaseIndex index = new TestCaseIndex(Arrays.asList(packageNames));
+
+		for (String packageName : packageNames) {
+			for (Class<?> c : PackageScan.getClassesForPackage(packageName, true)) {
+
+				if (Modifier.isAbstract(c.getModifiers()) || index.entries.containsKey(c.getName())) {
+					continue;
+				}
+				boolean isTest = EnsTestCase.class.isAssignableFrom(c);
+				boolean isGroup = GroupOfTests.class.isAssignableFrom(c);
+				if (!isTest && !isGroup) {
+					continue;
+				}
+				List<String> names;
+				List<String> groups = new ArrayList<String>();
+				List<DatabaseType> types = new ArrayList<DatabaseType>();
+				Team team = null;
+				boolean longRunning = false;
+				try {
+					names = TestInstantiator.knownNamesFor(c);
+					if (names.isEmpty()) {
+						log.warning("Could not instantiate " + c.getName() + ", leaving it out of the index");
+						continue;
+					}
+					if (isTest) {
+						EnsTestCase test = (EnsTestCase) c.getDeclaredConstructor().newInstance();
+						test.setTypeFromPackageName();
+						test.types();
+						groups.addAll(test.getGroups());
+						types.addAll(Arrays.asList(test.getAppliesToTypes()));
+						team = test.getTeamResponsible();
+						longRunning = test.isLongRunning();
+					}
+				} catch (ReflectiveOperationException e) {
+					log.warning("Could not instantiate " + c.getName() + ", leaving it out of the index: " + e);
+					continue;
+				} catch (RuntimeException e) {
+					// e.g. a constructor reading a resource that is not on the classpath
+					log.warning("Could not instantiate " + c.getName() + ", leaving it out of the index: " + e);
+					continue;
+				}
+				index.entries.put(c.getName(), new Entry(c.getName(), isGroup, names, groups, types, team, longRunning));
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the index, one tab separated line per class: test or group, class
+	 * name, then comma separated names, groups and types, then the team and
+	 * "long" for long running tests.
+	 */
+	public void write(Writer out) {
+
+		PrintWriter pw = new PrintWriter(out);
+		pw.println(PACKAGES_HEADER + " " + StringUtils.join(packages, " "));
+		for (Entry entry : entries.values()) {
+			List<String> types = new ArrayList<String>();
+			for (DatabaseType type : entry.getTypes()) {
+				types.add(type.getName());
+			}
+			pw.println((entry.isGroup() ? "group" : "test") + "\t" + entry.getClassName() + "\t"
+					+ StringUtils.join(entry.getNames(), ",") + "\t" + StringUtils.join(entry.getGroups(), ",") + "\t"
+					+ StringUtils.join(types, ",") + "\t" + (entry.getTeam() == null ? "" : entry.getTeam().name()) + "\t"
+					+ (entry.isLongRunning() ? "long" : ""));
+		}
+		pw.flush();
+	}
+
+	/**
+	 * Reads an index written by {@link #write(Writer)}.
+	 */
+	public static TestCaseIndex read(Reader in) throws IOException {
+
+		BufferedReader reader = new BufferedReader(in);
+		try {
+			String line = reader.readLine();
+			if (line == null || !line.startsWith(PACKAGES_HEADER)) {
+				throw new IOException("Not a test case index, it does not start with \"" + PACKAGES_HEADER + "\"");
+			}
+			TestCaseIndex index = new TestCaseIndex(split(line.substring(PACKAGES_HEADER.length()).trim(), " "));
+
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 7) {
+					throw new IOException("Malformed line in test case index: " + line);
+				}
+				List<DatabaseType> types = new ArrayList<DatabaseType>();
+				for (String type : split(fields[4], ",")) {
+					types.add(DatabaseType.forName(type));
+				}
+				Team team = fields[5].isEmpty() ? null : Team.valueOf(fields[5]);
+				index.entries.put(fields[1], new Entry(fields[1], fields[0].equals("group"), split(fields[2], ","),
+						split(fields[3], ","), types, team, fields[6].equals("long")));
+			}
+			return index;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static List<String> split(String s, String separator) {
+		return s.isEmpty() ? new ArrayList<String>() : new ArrayList<String>(Arrays.asList(s.split(separator)));
+	}
+
+	/**
+	 * Writes the index of the default packages to the directory given as the
+	 * only argument, where it has to end up on the classpath.
+	 */
+	public static void main(String[] args) throws Exception {
+
+		if (args.length != 1) {
+			System.err.println("Usage: TestCaseIndex <classes directory>");
+			System.exit(1);
+		}
+		TestCaseIndex index = build(PACKAGES);
+
+		File file = new File(args[0], RESOURCE);
+		file.getParentFile().mkdirs();
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			index.write(out);
+		} finally {
+			out.close();
+		}
+		System.out.println("Wrote " + index.getEntries().size() + " test cases and groups to " + file);
+	}
+
+}
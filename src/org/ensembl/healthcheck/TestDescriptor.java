@@ -0,0 +1,224 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
+import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+
+/**
+ * <p>
+ * 	What a {@link TestRegistry} needs to know about a test case to select it:
+ * its class, groups, the types of database it applies to and whether it is
+ * long running. Test registries
+ * hold these instead of instances of the tests, which are only created by
+ * {@link #newInstance()} when a test is about to run and can be garbage
+ * collected once it has.
+ * </p>
+ * 
+ * <p>
+ * 	These are taken from the {@link TestCaseIndex} if the
+ * test is in there. Otherwise the test is instantiated once to ask for them.
+ * </p>
+ */
+public class TestDescriptor {
+
+	static final Logger log = Logger.getLogger("HealthCheckLogger");
+
+	private final Class<? extends EnsTestCase> testClass;
+	private final List<String> groups;
+	private final List<DatabaseType> types;
+	private final boolean longRunning;
+
+	private TestDescriptor(Class<? extends EnsTestCase> testClass, List<String> groups, List<DatabaseType> types,
+			boolean longRunning) {
+		this.testClass = testClass;
+		this.groups = Collections.unmodifiableList(new ArrayList<String>(groups));
+		this.types = Collections.unmodifiableList(new ArrayList<DatabaseType>(types));
+		this.longRunning = longRunning;
+	}
+
+	/**
+	 * Describes a test that has already been instantiated.
+	 */
+	public static TestDescriptor forTest(EnsTestCase test) {
+		return new TestDescriptor(test.getClass(), test.getGroups(), Arrays.asList(test.getAppliesToTypes()),
+				test.isLongRunning());
+	}
+
+	/**
+	 * Describes a test class, instantiating it only if it is not in the
+	 * {@link TestCaseIndex}.
+	 */
+	public static TestDescriptor forClass(Class<? extends EnsTestCase> testClass) {
+
+		TestCaseIndex index = TestCaseIndex.getInstance();
+		TestCaseIndex.Entry entry = index == null ? null : index.getEntry(testClass.getName());
+
+		if (entry != null && !entry.isGroup()) {
+			return new TestDescriptor(testClass, entry.getGroups(), entry.getTypes(), entry.isLongRunning());
+		}
+		return forTest(newInstance(testClass));
+	}
+
+	/**
+	 * Describes the test cases of an index entry.
+	 */
+	public static TestDescriptor forEntry(TestCaseIndex.Entry entry) throws ClassNotFoundException {
+		return new TestDescriptor(Class.forName(entry.getClassName()).asSubclass(EnsTestCase.class), entry.getGroups(),
+				entry.getTypes(), entry.isLongRunning());
+	}
+
+	/**
+	 * Describes test classes in the order given, leaving out those that
+	 * cannot be instantiated.
+	 */
+	public static List<TestDescriptor> forClasses(Collection<Class<? extends EnsTestCase>> testClasses) {
+
+		List<TestDescriptor> result = new ArrayList<TestDescriptor>();
+		for (Class<? extends EnsTestCase> testClass : testClasses) {
+			try {
+				result.add(forClass(testClass));
+			} catch (RuntimeException e) {
+				log.warning("Leaving out " + testClass.getName() + ": " + e.getMessage());
+			}
+		}
+		return result;
+	}
+
+	public Class<? extends EnsTestCase> getTestClass() {
+		return testClass;
+	}
+
+	public String getName() {
+		return testClass.getName();
+	}
+
+	public String getShortTestName() {
+		return testClass.getSimpleName();
+	}
+
+	public List<String> getGroups() {
+		return groups;
+	}
+
+	public DatabaseType[] getAppliesToTypes() {
+		return types.toArray(new DatabaseType[types.size()]);
+	}
+
+	public boolean inGroup(String group) {
+		return groups.contains(group);
+	}
+
+	/**
+	 * @return true if the test is in at least one of the groups
+	 */
+	public boolean inGroups(List<String> checkGroups) {
+
+		for (String group : checkGroups) {
+			if (inGroup(group)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean appliesToType(DatabaseType type) {
+		return types.contains(type);
+	}
+
+	/**
+	 * @return true if the test is flagged as long running, see
+	 *         {@link EnsTestCase#isLongRunning()}
+	 */
+	public boolean isLongRunning() {
+		return longRunning;
+	}
+
+	public boolean isSingle() {
+		return SingleDatabaseTestCase.class.isAssignableFrom(testClass);
+	}
+
+	public boolean isMulti() {
+		return MultiDatabaseTestCase.class.isAssignableFrom(testClass);
+	}
+
+	public boolean isOrdered() {
+		return OrderedDatabaseTestCase.class.isAssignableFrom(testClass);
+	}
+
+	/**
+	 * Creates a new instance of the test the same way {@link GroupOfTests}
+	 * does. Throws a RuntimeException if that is not possible.
+	 */
+	public EnsTestCase newInstance() {
+		return newInstance(testClass);
+	}
+
+	/**
+	 * Creates a new instance of a test class the same way {@link GroupOfTests}
+	 * does. Throws a RuntimeException if that is not possible.
+	 */
+	public static <T extends EnsTestCase> T newInstance(Class<T> testClass) {
+
+		try {
+			T test = testClass.getDeclaredConstructor().newInstance();
+			test.setTypeFromPackageName();
+			test.types();
+			return test;
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException("Could not instantiate " + testClass.getName(), e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * 	Creates an instance of each of the tests described, leaving out those
+	 * that cannot be instantiated. To hold only the test that is running,
+	 * iterate over the descriptors and call {@link #newInstance()} instead.
+	 * </p>
+	 * 
+	 * @param descriptors
+	 *          Tests of the expected type.
+	 */
+	public static <T extends EnsTestCase> List<T> instances(List<TestDescriptor> descriptors, Class<T> expectedType) {
+
+		List<T> result = new ArrayList<T>(descriptors.size());
+		for (TestDescriptor descriptor : descriptors) {
+			try {
+				result.add(expectedType.cast(descriptor.newInstance()));
+			} catch (RuntimeException e) {
+				log.warning("Leaving out " + descriptor.getName() + ": " + e.getMessage());
+			}
+		}
+		return result;
+	}
+
+	public String toString() {
+		return getName();
+	}
+
+}
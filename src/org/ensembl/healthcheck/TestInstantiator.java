@@ -62,11 +62,18 @@ public class TestInstantiator {
 	 * known are the ones as which they register themselves. The default 
 	 * behaviour is to use the classes simple name which is inherited from
 	 * EnsTestCase. Any testcase can overwrite that, so to find the names, 
-	 * each testcase must be instantiated.
+	 * each testcase must be instantiated, unless they are looked up in the
+	 * {@link TestCaseIndex}.
 	 * </p>
 	 */
 	private final Map<String,String> aliasToClassName;
 	
+	/**
+	 * True while aliasToClassName only has what the {@link TestCaseIndex} 
+	 * knows about. 
+	 */
+	private boolean fromIndex;
+	
 	/**
 	 * Getter for the aliasToClassName attribute.
 	 * 
@@ -78,7 +85,15 @@ public class TestInstantiator {
 	public TestInstantiator(String... packageToScan) {
 		
 		this.packageToScan = packageToScan;
-		aliasToClassName   = createMap(packageToScan);
+		
+		TestCaseIndex index = TestCaseIndex.getInstance();
+		
+		if (index != null && index.covers(packageToScan)) {
+			aliasToClassName = index.getAliasToClassName(packageToScan);
+			fromIndex        = true;
+		} else {
+			aliasToClassName = createMap(packageToScan);
+		}
 	}
 
 	/**
@@ -109,6 +124,18 @@ public class TestInstantiator {
 			
 		} catch (ClassNotFoundException e) {
 			
+			if (!aliasToClassName.containsKey(testName) && fromIndex) {
+				
+				// The index may have been written before the test was added.
+				//
+				log.warning(
+					testName + " is not in " + TestCaseIndex.RESOURCE 
+					+ ", scanning the classpath for it."
+				);
+				aliasToClassName.putAll(createMap(packageToScan));
+				fromIndex = false;
+			}
+			
 			if (!aliasToClassName.containsKey(testName)) {
 				throw new RuntimeException(
 					"Could not find " + testName + "! It is neither a name of"
@@ -312,18 +339,18 @@ public class TestInstantiator {
 	
 	/**
 	 * <p>
-	 * Adds a {@see: keyValuePair} to a map like the aliasToClassName 
+	 * Adds a {@link KeyValuePair} to a map like the aliasToClassName 
 	 * attribute of this class.
 	 * </p>
 	 * 
 	 * <p>
-	 * It checks, if the keyValuePair has already been added and if so, if
+	 * It checks, if the KeyValuePair has already been added and if so, if
 	 * it contradicts what has already been stored. If so, prints out a 
 	 * warning, but adds it anyway.
 	 * </p> 
 	 * 
 	 */
-	public static void addToMapWithCheck(Map simpleNameToClass, keyValuePair currentKeyValuePair) {
+	public static void addToMapWithCheck(Map simpleNameToClass, KeyValuePair currentKeyValuePair) {
 		
 		boolean aliasAlreadyMappedToOtherClass 
 			= 
@@ -410,7 +437,7 @@ public class TestInstantiator {
 					
 					addToMapWithCheck(
 						simpleNameToClass, 
-						new keyValuePair(
+						new KeyValuePair(
 							testName, 
 							s.getName()
 						)
@@ -462,17 +489,19 @@ public class TestInstantiator {
 		}
 		return result.toString();
 	}
-}
 
-class keyValuePair {
+	/**
+	 * An alias of a test or group of tests and the name of its class.
+	 */
+	public static class KeyValuePair {
+
+		public KeyValuePair(String key, String value) {
+			this.key   = key;
+			this.value = value;
+		}
+
+		public String key;
+		public String value;
 
-	public keyValuePair(String key, String value) {
-		this.key   = key;
-		this.value = value;
 	}
-	
-	public String key;
-	public String value;	
-	
 }
-
@@ -26,6 +26,11 @@ import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 
 /**
  * Hold information about tests. Can also find tests in a particular location.
+ * 
+ * Registries keep {@link TestDescriptor}s rather than tests. The lists of 
+ * tests they return are instantiated when asked for, so runners going 
+ * through many tests should ask for the descriptors instead and instantiate
+ * each test when it is about to be run.
  */
 public interface TestRegistry {
 	/**
@@ -36,6 +41,15 @@ public interface TestRegistry {
 	public List<SingleDatabaseTestCase> getAllSingle(List<String> groupsToRun,
 			DatabaseType type);
 
+	/**
+	 * @param groupsToRun
+	 * @param type
+	 * @return descriptions of the tests {@link #getAllSingle(List, DatabaseType)}
+	 *         returns, without instantiating them
+	 */
+	public List<TestDescriptor> getAllSingleDescriptors(List<String> groupsToRun,
+			DatabaseType type);
+
 	/**
 	 * @param groupsToRun
 	 * @return list of tests belonging to those groups
@@ -53,6 +67,12 @@ public interface TestRegistry {
 	 */
 	public List<EnsTestCase> getAll();
 
+	/**
+	 * @return descriptions of all tests in the registry, without 
+	 *         instantiating them
+	 */
+	public List<TestDescriptor> getAllDescriptors();
+
 	/**
 	 * @return all types covered by the registered tests
 	 */
@@ -20,7 +20,6 @@ package org.ensembl.healthcheck;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,6 +29,7 @@ import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.Repair;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.QueryCache;
 
 /**
  * <p>
@@ -249,6 +249,8 @@ public class TestRunner {
 			}
 			if (doRepair) {
 				((Repair) testCase).repair(database);
+				// cached query results may no longer be true
+				QueryCache.invalidate(database.getConnection());
 			}
 		}
 
@@ -316,11 +318,11 @@ public class TestRunner {
 	public void printReportsByTest(int level, boolean printFailureText) {
 
 		System.out.println("\n---- RESULTS BY TEST CASE ----");
-		Map<String,List<ReportLine>> map = ReportManager.getAllReportsByTestCase(level);
 
-		for(String test: map.keySet()) {
+		// one test case at a time, the reports may not all fit in memory
+		for(String test: ReportManager.getTestCaseNames()) {
 
-			List<ReportLine> lines = map.get(test);
+			List<ReportLine> lines = ReportManager.getReportsByTestCase(test, level);
 
 			if (lines.size() > 0) {
 
@@ -383,10 +385,9 @@ public class TestRunner {
 	public void printReportsByDatabase(int level) {
 
 		System.out.println("\n---- RESULTS BY DATABASE ----");
-		Map<String,List<ReportLine>> map = ReportManager.getAllReportsByDatabase(level);
-		for(String key: map.keySet()) {
+		for(String key: ReportManager.getDatabaseNames()) {
 			System.out.print("\n" + key + ": ");
-			List<ReportLine> lines = map.get(key);
+			List<ReportLine> lines = ReportManager.getReportsByDatabase(key, level);
 			int nProblems = lines.size();
 			if (nProblems == 0) {
 				System.out.println("No problems found");
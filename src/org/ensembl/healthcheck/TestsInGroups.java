@@ -87,7 +87,9 @@ public class TestsInGroups {
 	/**
 	 * 
 	 * Creates a map from a name of a testcase group to a list of names of 
-	 * its testcase members. 
+	 * its testcase members. The groups of testcases in the 
+	 * {@link TestCaseIndex} are taken from there, all others are 
+	 * instantiated to ask for them.
 	 * 
 	 * @param classNames An array of class names.
 	 * 
@@ -97,9 +99,23 @@ public class TestsInGroups {
 	public static Map<String,List<String>> createTestcasegroupToMembersMapping(String[] classNames) {
 
 		Map<String,List<String>> testcasegroupToMembers = new HashMap<String,List<String>>(); 
+		TestCaseIndex            index                  = TestCaseIndex.getInstance();
 		
 		for (String className : classNames) {
 
+			TestCaseIndex.Entry entry = index == null ? null : index.getEntry(className);
+			
+			if (entry != null) {
+				
+				if (!entry.isGroup()) {
+					
+					List<String> groups = new ArrayList<String>(entry.getGroups());
+					groups.remove(className.substring(className.lastIndexOf('.') + 1));
+					addToGroups(testcasegroupToMembers, groups, className);
+				}
+				continue;
+			}
+			
 			try {
 				 Class c = Class.forName(className);
 				 
@@ -115,20 +131,7 @@ public class TestsInGroups {
 					 //
 					 groups.remove(etc.getShortTestName());
 					 
-					 for (String groupName : groups) {
-
-						 if (testcasegroupToMembers.containsKey(groupName)) {
-							 
-							 List x = testcasegroupToMembers.get(groupName);
-							 x.add(toClassName(c));
-							 testcasegroupToMembers.put(groupName, x);
-						 } else {
-							 
-							 LinkedList<String> ll = new LinkedList<String>();
-							 ll.add(toClassName(c));							 
-							 testcasegroupToMembers.put(groupName, ll);
-						 }
-					 }
+					 addToGroups(testcasegroupToMembers, groups, toClassName(c));
 				 }
 			} catch (ClassNotFoundException e) {
 				e.printStackTrace();
@@ -141,6 +144,24 @@ public class TestsInGroups {
 		return testcasegroupToMembers;
 	}
 	
+	private static void addToGroups(Map<String,List<String>> testcasegroupToMembers, List<String> groups, String className) {
+		
+		for (String groupName : groups) {
+
+			if (testcasegroupToMembers.containsKey(groupName)) {
+				
+				List x = testcasegroupToMembers.get(groupName);
+				x.add(className);
+				testcasegroupToMembers.put(groupName, x);
+			} else {
+				
+				LinkedList<String> ll = new LinkedList<String>();
+				ll.add(className);							 
+				testcasegroupToMembers.put(groupName, ll);
+			}
+		}
+	}
+	
 	/**
 	 * @param packageWithHealthchecks Name of packages the will be searched 
 	 * for testcases.
@@ -53,6 +53,7 @@ public interface ConfigurationUserParameters
 		ConfigureTestGroups,
 		ConfigureConfiguration,
 		ConfigureTestRunner,
+		ConfigureConnectionPool,
 		ConfigureHealthcheckDatabase,
 		ConfigureCompareSchema,
 		ConfigureMiscProperties {
@@ -0,0 +1,70 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.configuration;
+
+import uk.co.flamingpenguin.jewel.cli.Option;
+
+/**
+ * Options for sizing the pool of database connections, see
+ * {@link org.ensembl.healthcheck.util.ConnectionPool}. All times are in
+ * seconds.
+ * 
+ */
+public interface ConfigureConnectionPool {
+
+	@Option(longName = "connection.pool.size", description = "Maximum number "
+			+ "of connections that are open at the same time to any one database.")
+	String getConnectionPoolSize();
+	boolean isConnectionPoolSize();
+
+	@Option(longName = "connection.pool.wait_timeout", description = "How "
+			+ "long to wait for a connection when all connections to a database "
+			+ "are in use. 0 waits forever.")
+	String getConnectionPoolWaitTimeout();
+	boolean isConnectionPoolWaitTimeout();
+
+	@Option(longName = "connection.pool.idle_timeout", description = "Unused "
+			+ "connections are closed after this time. 0 keeps them open.")
+	String getConnectionPoolIdleTimeout();
+	boolean isConnectionPoolIdleTimeout();
+
+	@Option(longName = "connection.pool.max_lifetime", description = "Connections "
+			+ "are closed when they are given back after having been open for "
+			+ "this long. 0 keeps them open.")
+	String getConnectionPoolMaxLifetime();
+	boolean isConnectionPoolMaxLifetime();
+
+	@Option(longName = "connection.pool.validation_interval", description = "How "
+			+ "often unused connections are checked in the background.")
+	String getConnectionPoolValidationInterval();
+	boolean isConnectionPoolValidationInterval();
+
+	@Option(longName = "connection.validation_interval", description = "A "
+			+ "database's connection is checked again before being given to a "
+			+ "test, if it has not been used for this long or has thrown an "
+			+ "SQLException since it was last checked. 0 checks it every time.")
+	String getConnectionValidationInterval();
+	boolean isConnectionValidationInterval();
+
+	@Option(longName = "connection.statement_cache_size", description = "Number "
+			+ "of prepared statements kept open for every connection that is in "
+			+ "use. 0 does not keep them.")
+	String getConnectionStatementCacheSize();
+	boolean isConnectionStatementCacheSize();
+}
@@ -115,6 +115,17 @@ public interface ConfigureHealthcheckDatabase {
 		)
 		String getOutputSchemafile();
 		boolean isOutputSchemafile();	
+
+		@Option(
+			longName    = "output.report_index_mb",
+			description = "If set, the reports already in output.database for "
+				+ "the databases being tested are loaded into an index of at "
+				+ "most this many megabytes at the start of the session, so "
+				+ "they don't have to be looked up one by one. If the index "
+				+ "would be bigger, it is not used. 0 turns it off."
+		)
+		String getOutputReportIndexMb();
+		boolean isOutputReportIndexMb();
 		
 		@Option(
 			longName    = "production.database",
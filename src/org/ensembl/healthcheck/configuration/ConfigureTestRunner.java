@@ -44,4 +44,62 @@ public interface ConfigureTestRunner {
                         + "The allowed options are \"All\", \"None\", \"Problem\", \"Current\", \"Warning\" and \"Info\", .")
         String getOutputLevel();
         boolean isOutputLevel();
+
+	@Option(longName = "threads", description = "Number of (database, test) "
+			+ "pairs the ConfigurableTestRunner will run at the same time. "
+			+ "Defaults to 1, which runs everything sequentially.")
+	String getThreads();
+	boolean isThreads();
+
+	@Option(longName = "threads.per.server", description = "Maximum number "
+			+ "of tests the ConfigurableTestRunner will run at the same time "
+			+ "against any one database server (host and port). Defaults to "
+			+ "the value of threads.")
+	String getThreadsPerServer();
+	boolean isThreadsPerServer();
+
+	@Option(longName = "threads.queries", description = "Number of "
+			+ "databases that checks comparing many databases query at the "
+			+ "same time, across all tests. Defaults to 8.")
+	String getThreadsQueries();
+	boolean isThreadsQueries();
+
+	@Option(longName = "orphans.merge_threshold", description = "Number of "
+			+ "rows, in both tables, from which foreign keys between "
+			+ "indexed columns are checked by reading both columns in "
+			+ "order and comparing them in the healthchecks "
+			+ "instead of joining the tables on the server. 0 does so for "
+			+ "every foreign key. Defaults to 20000000.")
+	String getOrphansMergeThreshold();
+	boolean isOrphansMergeThreshold();
+
+	@Option(longName = "query.cache_size", description = "Number of "
+			+ "results of queries on data that does not change during a "
+			+ "run, e.g. the meta table, kept for all tests to share. 0 "
+			+ "turns the cache off. Defaults to 0.")
+	String getQueryCacheSize();
+	boolean isQueryCacheSize();
+
+	@Option(longName = "registry.cache_file", description = "File in "
+			+ "which the types, species and versions of the databases found "
+			+ "are kept between runs, so they are only looked up again when "
+			+ "their meta tables change. Not used if empty.")
+	String getRegistryCacheFile();
+	boolean isRegistryCacheFile();
+
+	@Option(longName = "report.store", description = "Where reports are "
+			+ "kept when they are not written to a database. The allowed "
+			+ "options are \"Memory\" and \"File\", which keeps them in a "
+			+ "temporary file and only indexes them in memory.")
+	String getReportStore();
+	boolean isReportStore();
+
+	@Option(longName = "metrics.file", description = "File to which the "
+			+ "wall time, number of SQL statements, rows and bytes read and "
+			+ "time spent waiting for connections of every test on every "
+			+ "database are written at the end of the run, as CSV if the name "
+			+ "ends in .csv and as JSON otherwise. They are also stored in the "
+			+ "output database if there is one. Leave empty to not record any.")
+	String getMetricsFile();
+	boolean isMetricsFile();
 }
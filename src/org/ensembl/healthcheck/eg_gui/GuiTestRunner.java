@@ -39,6 +39,7 @@ import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.PerlScriptConfig;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.ConnectionPool;
+import org.ensembl.healthcheck.util.QueryCache;
 
 import java.sql.Connection;
 
@@ -113,6 +114,9 @@ public class GuiTestRunner {
         		testProgressDialog.reset();
             	testProgressDialog.setVisible(true);
 
+            	// The databases may have changed since the last run
+            	QueryCache.invalidateAll();
+
                 int totalTestsToRun = tests.size() * databases.length;
 
                 testProgressDialog.setMaximum(totalTestsToRun);
@@ -244,7 +248,7 @@ public class GuiTestRunner {
                             // The user may think that the test was not run.
                             // So in this case a standard line is generated.
                             //
-                            boolean testHasReportedSomething = ReportManager.getAllReportsByTestCase().containsKey(testCase.getTestName()); 
+                            boolean testHasReportedSomething = ReportManager.getTestCaseNames().contains(testCase.getTestName()); 
                             
                             if (!testHasReportedSomething) { 
 	                            if (passed) {
@@ -307,7 +311,7 @@ public class GuiTestRunner {
                         // The user may think that the test was not run.
                         // So in this case a standard line is generated.
                         //
-                        boolean testHasReportedSomething = ReportManager.getAllReportsByTestCase().containsKey(testCase.getTestName()); 
+                        boolean testHasReportedSomething = ReportManager.getTestCaseNames().contains(testCase.getTestName()); 
                         
                         if (passed && !testHasReportedSomething) {
                         	ReportManager.report(
@@ -351,6 +355,7 @@ public class GuiTestRunner {
                 }
                 testProgressDialog.setVisible(false);
                 ConnectionPool.closeAll();
+                QueryCache.invalidateAll();
                 
                 // Open in the legacy result window, because it is really 
                 // nice.
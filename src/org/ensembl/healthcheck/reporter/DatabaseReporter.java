@@ -17,6 +17,11 @@
 
 package org.ensembl.healthcheck.reporter;
 
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportLine;
 import org.ensembl.healthcheck.ReportManager;
@@ -26,9 +31,16 @@ import org.ensembl.healthcheck.util.Utils;
 
 public class DatabaseReporter implements Reporter {
 
-	private long testStartTime;
+	/**
+	 * Tests may run on several threads at once, start and finish of a test
+	 * always happen on the same thread though.
+	 */
+	private final ThreadLocal<Long> testStartTime = new ThreadLocal<Long>();
 	private static String TIMINGS_FILE = "timings.txt";
 
+	/** Opened once and kept open, tests finish too often to reopen it each time. */
+	private static Writer timings;
+
 	/**
 	 * Should be called just after a test case has been run.
 	 * 
@@ -42,7 +54,9 @@ public class DatabaseReporter implements Reporter {
 	 */
 	public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
-		long duration = System.currentTimeMillis() - testStartTime;
+		Long startTime = testStartTime.get();
+		long duration = (startTime == null) ? 0 : System.currentTimeMillis() - startTime;
+		testStartTime.remove();
 
 		String str = duration + "\t";
 		if (dbre != null) {
@@ -51,7 +65,18 @@ public class DatabaseReporter implements Reporter {
 		str += testCase.getShortTestName() + "\t";
 		str += Utils.formatTimeString(duration);
 
-		Utils.writeStringToFile(TIMINGS_FILE, str, true, true);
+		synchronized (DatabaseReporter.class) {
+			try {
+				if (timings == null) {
+					timings = new BufferedWriter(new FileWriter(TIMINGS_FILE, true));
+				}
+				timings.write(str);
+				timings.write("\n");
+				timings.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 		
 		// Copied over from the NodeDatabaseTestRunner so we have the markers
 		// in the database that the webcode needs
@@ -91,7 +116,7 @@ public class DatabaseReporter implements Reporter {
 	 */
 	public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
-		testStartTime = System.currentTimeMillis();
+		testStartTime.set(System.currentTimeMillis());
 		
 		// Copied over from the NodeDatabaseTestRunner so we have the markers
 		// in the database that the webcode needs
@@ -43,7 +43,7 @@ public class TextReporter implements Reporter {
 	 * @param dbre
 	 *          The database which testCase was run on, or null of no/several databases.
 	 */
-	public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
+	public synchronized void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
 		System.out.println((result ? " PASSED" : " FAILED"));
 	}
@@ -76,7 +76,7 @@ public class TextReporter implements Reporter {
 	 * @param reportLine
 	 *          The message to store.
 	 */
-	public void message(ReportLine reportLine) {
+	public synchronized void message(ReportLine reportLine) {
 
 		String level = "ODD    ";
 
@@ -134,7 +134,7 @@ public class TextReporter implements Reporter {
 	 * @param dbre
 	 *          The database which testCase is to be run on, or null of no/several databases.
 	 */
-	public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+	public synchronized void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
 		String name;
 		name = testCase.getClass().getName();
@@ -41,7 +41,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang.StringUtils;
@@ -54,7 +53,9 @@ import org.ensembl.healthcheck.TestRunner;
 import org.ensembl.healthcheck.configurationmanager.ConfigurationException;
 import org.ensembl.healthcheck.util.CollectionUtils;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ForeignKey;
 import org.ensembl.healthcheck.util.MapRowMapper;
+import org.ensembl.healthcheck.util.OrphanChecker;
 import org.ensembl.healthcheck.util.SQLParser;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.SqlUncheckedException;
@@ -742,8 +743,10 @@ public abstract class EnsTestCase {
 
 		// return existing one if we already have it, otherwise use method above
 		// to find it
-		return productionDBRE != null ? productionDBRE
-				: getDatabaseRegistryEntryByPattern(System.getProperty("production.database"));
+		if (productionDBRE == null) {
+			productionDBRE = getDatabaseRegistryEntryByPattern(System.getProperty("production.database"));
+		}
+		return productionDBRE;
 
 	}
 	
@@ -1495,6 +1498,114 @@ public abstract class EnsTestCase {
 				col1 + " IS NOT NULL");
 	}
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Verify many foreign-key relations at once. Relations starting from the
+	 * same table are checked while reading the table once, see
+	 * {@link OrphanChecker}. Relations between very big tables can only be
+	 * checked on the client given the DatabaseRegistryEntry, see
+	 * {@link #checkForeignKeys(DatabaseRegistryEntry, List)}. Failures are
+	 * reported as by
+	 * {@link #checkForOrphansWithConstraint(Connection, String, String, String, String, String)},
+	 * in the order of the relations. To check a relation both ways, add it
+	 * and its {@link ForeignKey#reverse()}.
+	 * 
+	 * @param con
+	 *            A connection to the database to be tested. Should already be
+	 *            open.
+	 * @param keys
+	 *            The relations to check.
+	 * @return boolean true if everything is fine false otherwise
+	 */
+	public boolean checkForeignKeys(Connection con, List<ForeignKey> keys) {
+
+		return reportOrphans(con, new OrphanChecker(con).check(keys));
+
+	} // checkForeignKeys
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Verify many foreign-key relations of a database at once, as
+	 * {@link #checkForeignKeys(Connection, List)}. Relations between indexed
+	 * columns of tables with more than
+	 * {@link OrphanChecker#getMergeThreshold()} rows each are checked by
+	 * reading both columns in order on a second connection.
+	 * 
+	 * @param dbre
+	 *            The database to be tested.
+	 * @param keys
+	 *            The relations to check.
+	 * @return boolean true if everything is fine false otherwise
+	 */
+	public boolean checkForeignKeys(DatabaseRegistryEntry dbre, List<ForeignKey> keys) {
+
+		return reportOrphans(dbre.getConnection(), new OrphanChecker(dbre).check(keys));
+
+	} // checkForeignKeys
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Verify foreign-key relations from tables of one database to tables of
+	 * another, which may be on a different server. The referenced columns
+	 * are read into memory and the other columns looked up in them, see
+	 * {@link OrphanChecker#check(DatabaseRegistryEntry, List)}. Failures are
+	 * reported as by {@link #checkForeignKeys(Connection, List)}, with the
+	 * table names prefixed by the database names.
+	 * 
+	 * @param dbre
+	 *            The database to be tested.
+	 * @param referenced
+	 *            The database the relations point to.
+	 * @param keys
+	 *            The relations to check, with unqualified table names.
+	 * @return boolean true if everything is fine false otherwise
+	 */
+	public boolean checkForeignKeys(DatabaseRegistryEntry dbre, DatabaseRegistryEntry referenced,
+			List<ForeignKey> keys) {
+
+		return reportOrphans(dbre.getConnection(), new OrphanChecker(dbre).check(referenced, keys));
+
+	} // checkForeignKeys
+
+	private boolean reportOrphans(Connection con, List<OrphanChecker.Result> results) {
+
+		boolean result = true;
+
+		for (OrphanChecker.Result orphans : results) {
+
+			ForeignKey key = orphans.getForeignKey();
+			String table1 = key.getTable();
+			String table2 = key.getReferencedTable();
+
+			String[] values = orphans.getSamples();
+			for (int i = 0; i < values.length; i++) {
+				ReportManager.info(this, con, table1 + "." + key.getColumn() + " "
+						+ values[i] + " is not linked.");
+			}
+
+			if (orphans.getOrphans() > 0) {
+				ReportManager.problem(this, con, "FAILED " + table1 + " -> "
+						+ table2 + " using FK " + key.getColumn() + "("
+						+ key.getReferencedColumn() + ")" + " relationships");
+				ReportManager.problem(this, con, "FAILURE DETAILS: "
+						+ orphans.getOrphans() + " " + table1
+						+ " entries are not linked to " + table2);
+				ReportManager.problem(this, con, "USEFUL SQL: "
+						+ key.getUsefulSQL());
+				result = false;
+			} else if (orphans.getOrphans() < 0) {
+				ReportManager.problem(this, con, "TEST NOT COMPLETED " + table1
+						+ " -> " + table2 + " using FK " + key.getColumn()
+						+ ", look at the StackTrace if any");
+				result = false;
+			}
+
+		}
+
+		return result;
+
+	} // reportOrphans
+
 	// ----------------------------------------------------------------------
 	/**
 	 * Check that a particular column has no null values. Problem or correct
@@ -1700,58 +1811,11 @@ public abstract class EnsTestCase {
 		DatabaseRegistry secondaryDatabaseRegistry = DBUtils
 				.getSecondaryDatabaseRegistry();
 
-		// find any databases matching type and species
-		TreeSet<DatabaseRegistryEntry> matchingDBs = new TreeSet<DatabaseRegistryEntry>(); // get
-		// sorting
-		// for
-		// free
-
-		for (DatabaseRegistryEntry secDBRE : secondaryDatabaseRegistry.getAll()) {
-                        if (DBUtils.getSecondaryDatabase() != null) {
-                                if (secDBRE.getName().equals(DBUtils.getSecondaryDatabase())) {
-                                        return secDBRE;
-                                }
-                        }
-			if (dbre.getSpecies() == DatabaseRegistryEntry.UNKNOWN) {
-				// EG where we don't know the species, use type and alias
-				// matching instead
-				if (dbre.getType().equals(secDBRE.getType())
-						&& dbre.getAlias().equals(secDBRE.getAlias())) {
-					matchingDBs.add(secDBRE);
-					logger.finest("added "
-							+ secDBRE.getName()
-							+ " to list of databases to check for equivalent to "
-							+ dbre.getName());
-				}
-			} else {
-				// nulls will set type automatically
-				if (dbre.getType().equals(secDBRE.getType())
-						&& dbre.getSpecies().equals(secDBRE.getSpecies())) {
-					matchingDBs.add(secDBRE);
-					logger.finest("added "
-							+ secDBRE.getName()
-							+ " to list of databases to check for equivalent to "
-							+ dbre.getName());
-				}
-			}
-		}
-
-		if (matchingDBs.size() == 0) {
-			logger.finest("Could not find equivalent database to "
-					+ dbre.getName() + " on secondary server");
-		}
-
-		// take the highest one that doesn't have the same version number as our
-		// current one, if available
-                DatabaseRegistryEntry result = null;
-
-		if (matchingDBs.size() > 0) {
-
-			result = (DatabaseRegistryEntry) matchingDBs.last();
-
-		}
-
-		return result;
+		// looked up in indexes of the secondary registry, and only once for
+		// each type and species (or alias, for EG where we don't know the
+		// species)
+		return secondaryDatabaseRegistry.getEquivalent(dbre,
+				DBUtils.getSecondaryDatabase());
 
 	}
 
@@ -1942,13 +2006,9 @@ public abstract class EnsTestCase {
 		List<String> names = new ArrayList<String>();
 
 		try {
-			Statement stmt = con.createStatement();
-			ResultSet rs = stmt
-					.executeQuery("SELECT sr.name FROM seq_region sr, seq_region_attrib sra, attrib_type at WHERE sra.seq_region_id=sr.seq_region_id AND sra.attrib_type_id=at.attrib_type_id AND at.code='toplevel'");
-			while (rs.next()) {
-				names.add(rs.getString(1));
-			}
-		} catch (SQLException se) {
+			names = getSqlTemplate(con)
+					.queryForCachedDefaultObjectList("SELECT sr.name FROM seq_region sr, seq_region_attrib sra, attrib_type at WHERE sra.seq_region_id=sr.seq_region_id AND sra.attrib_type_id=at.attrib_type_id AND at.code='toplevel'", String.class);
+		} catch (SqlUncheckedException se) {
 			se.printStackTrace();
 		}
 
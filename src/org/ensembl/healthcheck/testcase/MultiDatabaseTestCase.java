@@ -20,6 +20,7 @@ package org.ensembl.healthcheck.testcase;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.ensembl.healthcheck.DatabaseRegistry;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
@@ -61,21 +62,21 @@ public abstract class MultiDatabaseTestCase extends EnsTestCase {
 	public boolean checkSQLAcrossSpecies(String sql, DatabaseRegistry dbr, DatabaseType[] types,
 			boolean comparingSchema) {
 
-		boolean result = true;
-
 		// Use whole registry to access all databases, but restrict to species of
 		// interest
 		DatabaseRegistry mainDbr = DBUtils.getMainDatabaseRegistry();
 
-		for (String species : dbr.getUniqueSpecies()) {
+		List<DatabaseRegistryEntry[]> groups = new ArrayList<DatabaseRegistryEntry[]>();
+		// in a fixed order, so the problems are reported in the same order
+		for (String species : new TreeSet<String>(dbr.getUniqueSpecies())) {
 
 			// filter by database type
-			DatabaseRegistryEntry[] filteredDBs = filterByType(mainDbr.getAll(species), types);
-			result &= checkSameSQLResult(sql, filteredDBs, comparingSchema);
+			groups.add(filterByType(mainDbr.getAll(species), types));
 
 		} // foreach species
 
-		return result;
+		// the databases of all species are queried at the same time
+		return DBUtils.checkSameSQLResult(this, sql, groups, comparingSchema);
 	}
 
 	// ---------------------------------------------------------------------
@@ -23,13 +23,11 @@ import static org.ensembl.healthcheck.ReportManager.problem;
 import static org.ensembl.healthcheck.util.CollectionUtils.createArrayList;
 
 import java.util.List;
-import java.util.Map;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.AbstractTemplatedTestCase;
-import org.ensembl.healthcheck.util.DefaultMapRowMapper;
-import org.ensembl.healthcheck.util.MapRowMapper;
+import org.ensembl.healthcheck.util.LongLongHashMap;
 import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
@@ -59,14 +57,11 @@ public class CheckFlatProteinTrees extends AbstractTemplatedTestCase {
 	}
 
 	@Override
-	protected boolean runTest(DatabaseRegistryEntry dbre) {
+	protected boolean runTest(final DatabaseRegistryEntry dbre) {
 		boolean passed = true;
 
 		SqlTemplate template = getTemplate(dbre);
 
-		MapRowMapper<Long, Long> mapRowMapper = new DefaultMapRowMapper<Long, Long>(
-				Long.class, Long.class);
-
 		// Counts all nodes which do not represent a seq_member, do not share the same
 		// id
 		// as their root and whose root id is not 0. Groups this by the root_id
@@ -83,33 +78,35 @@ public class CheckFlatProteinTrees extends AbstractTemplatedTestCase {
 				"select count(*) from gene_tree_root", Long.class);
 
 
-		Map<Long, Long> internalNodeCounts = template.queryForMap(
-				internalNodeCountSql, mapRowMapper);
-		Map<Long, Long> flatMemberCounts = template.queryForMap(flatMemberCountSql,
-				mapRowMapper);
-		Map<Long, Long> memberCounts = template.queryForMap(memberCountSql,
-				mapRowMapper);
-		Map<Long, Long> nonrootedTrees = template.queryForMap(nonrootedTreesSql,
-				mapRowMapper);
-
-		List<Long> flatMembersWithInternalStructure = createArrayList();
-		List<Long> flatTreesStructure = createArrayList();
-
-		for (Map.Entry<Long, Long> entry : flatMemberCounts.entrySet()) {
-			// If we have an entry then we have a suspect tree
-			Long nodeId = entry.getKey();
-			Long internalNodeCount = internalNodeCounts.get(nodeId);
-			if (internalNodeCount != null) {
-				if (! nonrootedTrees.containsKey(nodeId)) {
-					problem(this, dbre.getConnection(), format("%d has a problem: %d", nodeId, nonrootedTrees.get(nodeId)));
-					flatMembersWithInternalStructure.add(nodeId);
+		// Counts are kept in primitive maps as there is an entry for every tree
+		final LongLongHashMap internalNodeCounts = template.queryForLongMap(
+				internalNodeCountSql, -1);
+		LongLongHashMap flatMemberCounts = template.queryForLongMap(
+				flatMemberCountSql, -1);
+		final LongLongHashMap memberCounts = template.queryForLongMap(
+				memberCountSql, -1);
+		final LongLongHashMap nonrootedTrees = template.queryForLongMap(
+				nonrootedTreesSql, -1);
+
+		final List<Long> flatMembersWithInternalStructure = createArrayList();
+		final List<Long> flatTreesStructure = createArrayList();
+
+		flatMemberCounts.forEach(new LongLongHashMap.EntryVisitor() {
+			public void visit(long nodeId, long flatMemberCount) {
+				// If we have an entry then we have a suspect tree
+				if (internalNodeCounts.containsKey(nodeId)) {
+					if (! nonrootedTrees.containsKey(nodeId)) {
+						problem(CheckFlatProteinTrees.this, dbre.getConnection(), format("%d has a problem: %d seq_members joined to the root and %d internal nodes",
+								nodeId, flatMemberCount, internalNodeCounts.get(nodeId)));
+						flatMembersWithInternalStructure.add(nodeId);
+					}
+				}
+				else if (flatMemberCount > getMaxAllowedFlatMembers()
+						&& flatMemberCount == memberCounts.get(nodeId)) {
+					flatTreesStructure.add(nodeId);
 				}
 			}
-			else if (entry.getValue() > getMaxAllowedFlatMembers()
-					&& entry.getValue().equals(memberCounts.get(nodeId))) {
-				flatTreesStructure.add(nodeId);
-			}
-		}
+		});
 
 		if (!flatMembersWithInternalStructure.isEmpty()) {
 			reportProblem(dbre, flatMembersWithInternalStructure, totalTreesCount,
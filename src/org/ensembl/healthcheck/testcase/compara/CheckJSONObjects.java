@@ -19,8 +19,6 @@
 package org.ensembl.healthcheck.testcase.compara;
 
 import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
 
 import com.google.gson.Gson;
 
@@ -28,8 +26,9 @@ import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
-import org.ensembl.healthcheck.util.DBUtils;
-import org.ensembl.healthcheck.util.SqlUncheckedException;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.ensembl.healthcheck.util.Triple;
+import org.ensembl.healthcheck.util.TupleRowMappers;
 
 /**
  * An EnsEMBL Healthcheck test case that checks the validity of JSON
@@ -59,34 +58,24 @@ public class CheckJSONObjects extends SingleDatabaseTestCase {
 		return result;
 	}
 
-    public boolean checkAllJSONs(Connection con) {
+    public boolean checkAllJSONs(final Connection con) {
 
-		boolean result = true;
-        Statement stmt = null;
-        ResultSet rs = null;
 		String sql = "SELECT root_id, data_label, UNCOMPRESS(compressed_data) FROM gene_tree_object_store";
-        try {
-            stmt = con.createStatement(java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
-            stmt.setFetchSize(Integer.MIN_VALUE);
-            rs = stmt.executeQuery(sql);
-
-			while (result && rs.next()) {
-				String json = rs.getString(3);
-				if (!isJSONValid(json)) {
-					ReportManager.problem(this, con, "FAILED JSON not valid for root_id=" + rs.getString(1) + " / data_label=" + rs.getString(2));
-					result = false;
-				}
-			}
-            rs.close();
-            stmt.close();
-        } catch (Exception e) {
-            throw new SqlUncheckedException("Could not execute query", e);
-        } finally {
-            DBUtils.closeQuietly(rs);
-            DBUtils.closeQuietly(stmt);
-        }
-
-        return result;
+		final boolean[] result = { true };
+
+		// The objects are big, they are streamed and checked one at a time
+		getSqlTemplate(con).queryForEach(sql, TupleRowMappers.triple(String.class, String.class, String.class),
+				new SqlTemplate.RowCallback<Triple<String, String, String>>() {
+					public boolean process(Triple<String, String, String> row) {
+						if (!isJSONValid(row.c)) {
+							ReportManager.problem(CheckJSONObjects.this, con, "FAILED JSON not valid for root_id=" + row.a + " / data_label=" + row.b);
+							result[0] = false;
+						}
+						return result[0];
+					}
+				});
+
+        return result[0];
 
     } // checkAllJSONs 
 
@@ -18,12 +18,14 @@
 
 package org.ensembl.healthcheck.testcase.compara;
 
-import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -38,14 +40,15 @@ public class ForeignKeyCAFETables extends SingleDatabaseTestCase {
 	}
 
 	public boolean run(DatabaseRegistryEntry dbre) {
-		Connection con = dbre.getConnection();
-
 		boolean result = true;
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+
+		keys.add(new ForeignKey("CAFE_species_gene", "cafe_gene_family_id", "CAFE_gene_family", "cafe_gene_family_id"));
+		keys.add(new ForeignKey("CAFE_gene_family", "gene_tree_root_id", "gene_tree_root", "root_id"));
+		keys.add(new ForeignKey("CAFE_gene_family", "lca_id", "species_tree_node", "node_id"));
+		keys.add(new ForeignKey("CAFE_gene_family", "root_id", "species_tree_root", "root_id"));
+		result &= checkForeignKeys(dbre, keys);
 
-		result &= checkForOrphans(con, "CAFE_species_gene", "cafe_gene_family_id", "CAFE_gene_family", "cafe_gene_family_id");
-		result &= checkForOrphans(con, "CAFE_gene_family", "gene_tree_root_id", "gene_tree_root", "root_id");
-		result &= checkForOrphans(con, "CAFE_gene_family", "lca_id", "species_tree_node", "node_id");
-		result &= checkForOrphans(con, "CAFE_gene_family", "root_id", "species_tree_root", "root_id");
 		return result;
 	}
 
@@ -18,12 +18,14 @@
 
 package org.ensembl.healthcheck.testcase.compara;
 
-import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -39,11 +41,12 @@ public class ForeignKeyConservationTables extends AbstractComparaTestCase {
 	}
 
 	public boolean run(DatabaseRegistryEntry dbre) {
-		Connection con = dbre.getConnection();
-
 		boolean result = true;
-		result &= checkForOrphans(con, "constrained_element", "dnafrag_id", "dnafrag", "dnafrag_id");
-		result &= checkForOrphans(con, "conservation_score", "genomic_align_block_id", "genomic_align_block", "genomic_align_block_id");
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+		keys.add(new ForeignKey("constrained_element", "dnafrag_id", "dnafrag", "dnafrag_id"));
+		keys.add(new ForeignKey("conservation_score", "genomic_align_block_id", "genomic_align_block", "genomic_align_block_id"));
+		result &= checkForeignKeys(dbre, keys);
+
 		return result;
 	}
 
@@ -18,12 +18,14 @@
 
 package org.ensembl.healthcheck.testcase.compara;
 
-import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -38,12 +40,13 @@ public class ForeignKeyFamilyTables extends AbstractComparaTestCase {
 	}
 
 	public boolean run(DatabaseRegistryEntry dbre) {
-		Connection con = dbre.getConnection();
-
 		boolean result = true;
-		result &= checkForOrphans(con, "family", "family_id", "family_member", "family_id");
-		result &= checkForOrphans(con, "family_member", "family_id", "family", "family_id");
-		result &= checkForOrphans(con, "family_member", "seq_member_id", "seq_member", "seq_member_id");
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+		keys.add(new ForeignKey("family", "family_id", "family_member", "family_id"));
+		keys.add(new ForeignKey("family_member", "family_id", "family", "family_id"));
+		keys.add(new ForeignKey("family_member", "seq_member_id", "seq_member", "seq_member_id"));
+		result &= checkForeignKeys(dbre, keys);
+
 		return result;
 	}
 
@@ -18,12 +18,14 @@
 
 package org.ensembl.healthcheck.testcase.compara;
 
-import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -38,16 +40,17 @@ public class ForeignKeyGeneAlignTables extends AbstractComparaTestCase {
 	}
 
 	public boolean run(DatabaseRegistryEntry dbre) {
-		Connection con = dbre.getConnection();
-
 		boolean result = true;
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+
+		keys.add(new ForeignKey("gene_align_member", "gene_align_id", "gene_align", "gene_align_id"));
+		keys.add(new ForeignKey("gene_align_member", "gene_align_id", "gene_align", "gene_align_id"));
+		keys.add(new ForeignKey("gene_align_member", "seq_member_id", "seq_member", "seq_member_id"));
+		keys.add(new ForeignKey("gene_tree_root", "gene_align_id", "gene_align", "gene_align_id", "gene_align_id IS NOT NULL"));
+		keys.add(new ForeignKey("gene_tree_root_attr", "mcoffee_scores_gene_align_id", "gene_align", "gene_align_id", "mcoffee_scores_gene_align_id IS NOT NULL"));
+		keys.add(new ForeignKey("gene_tree_root_tag", "value", "gene_align", "gene_align_id", "tag = 'filtered_gene_align_id'"));
 
-		result &= checkForOrphans(con, "gene_align_member", "gene_align_id", "gene_align", "gene_align_id");
-		result &= checkForOrphans(con, "gene_align_member", "gene_align_id", "gene_align", "gene_align_id");
-		result &= checkForOrphans(con, "gene_align_member", "seq_member_id", "seq_member", "seq_member_id");
-		result &= checkOptionalRelation(con, "gene_tree_root", "gene_align_id", "gene_align", "gene_align_id");
-		result &= checkForOrphansWithConstraint(con, "gene_tree_root_attr", "mcoffee_scores_gene_align_id", "gene_align", "gene_align_id", "mcoffee_scores_gene_align_id IS NOT NULL");
-		result &= checkForOrphansWithConstraint(con, "gene_tree_root_tag", "value", "gene_align", "gene_align_id", "tag = 'filtered_gene_align_id'");
+		result &= checkForeignKeys(dbre, keys);
 
 		return result;
 	}
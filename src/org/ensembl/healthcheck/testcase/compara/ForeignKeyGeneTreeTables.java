@@ -19,11 +19,14 @@
 package org.ensembl.healthcheck.testcase.compara;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -41,18 +44,21 @@ public class ForeignKeyGeneTreeTables extends AbstractComparaTestCase {
 		Connection con = dbre.getConnection();
 
 		boolean result = true;
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
 
 		result &= checkForOrphansSameTable(con, "gene_tree_node", "root_id", "node_id", false);
 		result &= checkForOrphansSameTable(con, "gene_tree_node", "parent_id", "node_id", true);
-		result &= checkOptionalRelation(con, "gene_tree_node", "seq_member_id", "seq_member", "seq_member_id");
-		result &= checkForOrphans(con, "gene_tree_node_tag", "node_id", "gene_tree_node", "node_id");
-		result &= checkForOrphans(con, "gene_tree_node_attr", "node_id", "gene_tree_node", "node_id");
-		result &= checkOptionalRelation(con, "gene_tree_node_attr", "species_tree_node_id", "species_tree_node", "node_id");
-		result &= checkForOrphans(con, "gene_tree_root", "root_id", "gene_tree_node", "node_id");
+		keys.add(new ForeignKey("gene_tree_node", "seq_member_id", "seq_member", "seq_member_id", "seq_member_id IS NOT NULL"));
+		keys.add(new ForeignKey("gene_tree_node_tag", "node_id", "gene_tree_node", "node_id"));
+		keys.add(new ForeignKey("gene_tree_node_attr", "node_id", "gene_tree_node", "node_id"));
+		keys.add(new ForeignKey("gene_tree_node_attr", "species_tree_node_id", "species_tree_node", "node_id", "species_tree_node_id IS NOT NULL"));
+		keys.add(new ForeignKey("gene_tree_root", "root_id", "gene_tree_node", "node_id"));
 
 		result &= checkForOrphansSameTable(con, "gene_tree_root", "ref_root_id", "root_id", true);
-		result &= checkForOrphans(con, "gene_tree_root_attr", "root_id", "gene_tree_root", "root_id");
-		result &= checkForOrphans(con, "gene_tree_root_tag", "root_id", "gene_tree_root", "root_id");
+		keys.add(new ForeignKey("gene_tree_root_attr", "root_id", "gene_tree_root", "root_id"));
+		keys.add(new ForeignKey("gene_tree_root_tag", "root_id", "gene_tree_root", "root_id"));
+
+		result &= checkForeignKeys(dbre, keys);
 
 		return result;
 	}
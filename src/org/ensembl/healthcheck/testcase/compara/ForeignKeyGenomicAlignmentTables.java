@@ -19,11 +19,14 @@
 package org.ensembl.healthcheck.testcase.compara;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -42,18 +45,21 @@ public class ForeignKeyGenomicAlignmentTables extends AbstractComparaTestCase {
 		Connection con = dbre.getConnection();
 
 		boolean result = true;
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
 		// genomic_align -> dnafrag
-		result &= checkForOrphans(con, "genomic_align", "dnafrag_id", "dnafrag", "dnafrag_id");
+		keys.add(new ForeignKey("genomic_align", "dnafrag_id", "dnafrag", "dnafrag_id"));
 		// genomic_align <-> genomic_align_block
-		result &= checkForOrphans(con, "genomic_align_block", "genomic_align_block_id", "genomic_align", "genomic_align_block_id");
-		result &= checkForOrphans(con, "genomic_align", "genomic_align_block_id", "genomic_align_block", "genomic_align_block_id");
+		keys.add(new ForeignKey("genomic_align_block", "genomic_align_block_id", "genomic_align", "genomic_align_block_id"));
+		keys.add(new ForeignKey("genomic_align", "genomic_align_block_id", "genomic_align_block", "genomic_align_block_id"));
 		// genomic_align -> genomic_align_tree
-		result &= checkOptionalRelation(con, "genomic_align", "node_id", "genomic_align_tree", "node_id");
+		keys.add(new ForeignKey("genomic_align", "node_id", "genomic_align_tree", "node_id", "node_id IS NOT NULL"));
 		// genomic_align_tree internal relationships
 		result &= checkForOrphansSameTable(con, "genomic_align_tree", "parent_id", "node_id", true);
 		result &= checkForOrphansSameTable(con, "genomic_align_tree", "root_id", "node_id", false);
 		result &= checkForOrphansSameTable(con, "genomic_align_tree", "left_node_id", "node_id", true);
 		result &= checkForOrphansSameTable(con, "genomic_align_tree", "right_node_id", "node_id", true);
+		result &= checkForeignKeys(dbre, keys);
+
 		return result;
 	}
 
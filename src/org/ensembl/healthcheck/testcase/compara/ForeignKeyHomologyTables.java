@@ -18,12 +18,14 @@
 
 package org.ensembl.healthcheck.testcase.compara;
 
-import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -38,17 +40,18 @@ public class ForeignKeyHomologyTables extends AbstractComparaTestCase {
 	}
 
 	public boolean run(DatabaseRegistryEntry dbre) {
-		Connection con = dbre.getConnection();
-
 		boolean result = true;
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+
+		keys.add(new ForeignKey("homology_member", "homology_id", "homology", "homology_id"));
+		keys.add(new ForeignKey("homology", "homology_id", "homology_member", "homology_id"));
+		keys.add(new ForeignKey("homology_member", "seq_member_id", "seq_member", "seq_member_id"));
+		keys.add(new ForeignKey("homology_member", "gene_member_id", "gene_member", "gene_member_id"));
+		keys.add(new ForeignKey("homology", "gene_tree_node_id", "gene_tree_node", "node_id", "gene_tree_node_id IS NOT NULL"));
+		keys.add(new ForeignKey("homology", "gene_tree_root_id", "gene_tree_root", "root_id", "gene_tree_root_id IS NOT NULL"));
+		keys.add(new ForeignKey("homology", "species_tree_node_id", "species_tree_node", "node_id", "species_tree_node_id IS NOT NULL"));
 
-		result &= checkForOrphans(con, "homology_member", "homology_id", "homology", "homology_id");
-		result &= checkForOrphans(con, "homology", "homology_id", "homology_member", "homology_id");
-		result &= checkForOrphans(con, "homology_member", "seq_member_id", "seq_member", "seq_member_id");
-		result &= checkForOrphans(con, "homology_member", "gene_member_id", "gene_member", "gene_member_id");
-		result &= checkOptionalRelation(con, "homology", "gene_tree_node_id", "gene_tree_node", "node_id");
-		result &= checkOptionalRelation(con, "homology", "gene_tree_root_id", "gene_tree_root", "root_id");
-		result &= checkOptionalRelation(con, "homology", "species_tree_node_id", "species_tree_node", "node_id");
+		result &= checkForeignKeys(dbre, keys);
 
 		return result;
 	}
@@ -18,12 +18,14 @@
 
 package org.ensembl.healthcheck.testcase.compara;
 
-import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -38,22 +40,23 @@ public class ForeignKeyMemberTables extends AbstractComparaTestCase {
 	}
 
 	public boolean run(DatabaseRegistryEntry dbre) {
-		Connection con = dbre.getConnection();
-
 		boolean result = true;
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
 		// gene_member table
-		result &= checkForOrphans(con, "gene_member", "genome_db_id", "genome_db", "genome_db_id");
-		result &= checkForOrphans(con, "gene_member", "taxon_id", "ncbi_taxa_node", "taxon_id");
-		result &= checkForOrphans(con, "gene_member", "taxon_id", "ncbi_taxa_name", "taxon_id");
-		result &= checkOptionalRelation(con, "gene_member", "dnafrag_id", "dnafrag", "dnafrag_id");
+		keys.add(new ForeignKey("gene_member", "genome_db_id", "genome_db", "genome_db_id"));
+		keys.add(new ForeignKey("gene_member", "taxon_id", "ncbi_taxa_node", "taxon_id"));
+		keys.add(new ForeignKey("gene_member", "taxon_id", "ncbi_taxa_name", "taxon_id"));
+		keys.add(new ForeignKey("gene_member", "dnafrag_id", "dnafrag", "dnafrag_id", "dnafrag_id IS NOT NULL"));
 		// seq_member table
-		result &= checkOptionalRelation(con, "seq_member", "gene_member_id", "gene_member", "gene_member_id");
-		result &= checkOptionalRelation(con, "seq_member", "genome_db_id", "genome_db", "genome_db_id");
-		result &= checkForOrphans(con, "seq_member", "taxon_id", "ncbi_taxa_node", "taxon_id");
-		result &= checkForOrphans(con, "seq_member", "taxon_id", "ncbi_taxa_name", "taxon_id");
-		result &= checkOptionalRelation(con, "seq_member", "dnafrag_id", "dnafrag", "dnafrag_id");
-		result &= checkOptionalRelation(con, "seq_member", "sequence_id", "sequence", "sequence_id");
-		result &= checkForOrphans(con, "other_member_sequence", "seq_member_id", "seq_member", "seq_member_id");
+		keys.add(new ForeignKey("seq_member", "gene_member_id", "gene_member", "gene_member_id", "gene_member_id IS NOT NULL"));
+		keys.add(new ForeignKey("seq_member", "genome_db_id", "genome_db", "genome_db_id", "genome_db_id IS NOT NULL"));
+		keys.add(new ForeignKey("seq_member", "taxon_id", "ncbi_taxa_node", "taxon_id"));
+		keys.add(new ForeignKey("seq_member", "taxon_id", "ncbi_taxa_name", "taxon_id"));
+		keys.add(new ForeignKey("seq_member", "dnafrag_id", "dnafrag", "dnafrag_id", "dnafrag_id IS NOT NULL"));
+		keys.add(new ForeignKey("seq_member", "sequence_id", "sequence", "sequence_id", "sequence_id IS NOT NULL"));
+		keys.add(new ForeignKey("other_member_sequence", "seq_member_id", "seq_member", "seq_member_id"));
+		result &= checkForeignKeys(dbre, keys);
+
 		return result;
 	}
 
@@ -19,11 +19,14 @@
 package org.ensembl.healthcheck.testcase.compara;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -41,14 +44,17 @@ public class ForeignKeySpeciesTreeTables extends AbstractComparaTestCase {
 		Connection con = dbre.getConnection();
 
 		boolean result = true;
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
 		result &= checkForOrphansSameTable(con, "species_tree_node", "root_id", "node_id", false);
 		result &= checkForOrphansSameTable(con, "species_tree_node", "parent_id", "node_id", true);
-		result &= checkForOrphans(con, "species_tree_node_tag", "node_id", "species_tree_node", "node_id");
-		result &= checkForOrphans(con, "species_tree_root", "root_id", "species_tree_node", "node_id");
-		result &= checkForOrphans(con, "species_tree_node", "root_id", "species_tree_root", "root_id");
-		result &= checkOptionalRelation(con, "species_tree_node", "genome_db_id", "genome_db", "genome_db_id");
-		result &= checkOptionalRelation(con, "species_tree_node", "taxon_id", "ncbi_taxa_node", "taxon_id");
-		result &= checkOptionalRelation(con, "species_tree_node", "taxon_id", "ncbi_taxa_name", "taxon_id");
+		keys.add(new ForeignKey("species_tree_node_tag", "node_id", "species_tree_node", "node_id"));
+		keys.add(new ForeignKey("species_tree_root", "root_id", "species_tree_node", "node_id"));
+		keys.add(new ForeignKey("species_tree_node", "root_id", "species_tree_root", "root_id"));
+		keys.add(new ForeignKey("species_tree_node", "genome_db_id", "genome_db", "genome_db_id", "genome_db_id IS NOT NULL"));
+		keys.add(new ForeignKey("species_tree_node", "taxon_id", "ncbi_taxa_node", "taxon_id", "taxon_id IS NOT NULL"));
+		keys.add(new ForeignKey("species_tree_node", "taxon_id", "ncbi_taxa_name", "taxon_id", "taxon_id IS NOT NULL"));
+		result &= checkForeignKeys(dbre, keys);
+
 		return result;
 	}
 
@@ -18,12 +18,14 @@
 
 package org.ensembl.healthcheck.testcase.compara;
 
-import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.compara.AbstractComparaTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -38,12 +40,13 @@ public class ForeignKeySyntenyTables extends AbstractComparaTestCase {
 	}
 
 	public boolean run(DatabaseRegistryEntry dbre) {
-		Connection con = dbre.getConnection();
-
 		boolean result = true;
-		result &= checkForOrphans(con, "dnafrag_region", "synteny_region_id", "synteny_region", "synteny_region_id");
-		result &= checkForOrphans(con, "synteny_region", "synteny_region_id", "dnafrag_region", "synteny_region_id");
-		result &= checkForOrphans(con, "dnafrag_region", "dnafrag_id", "dnafrag", "dnafrag_id");
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+		keys.add(new ForeignKey("dnafrag_region", "synteny_region_id", "synteny_region", "synteny_region_id"));
+		keys.add(new ForeignKey("synteny_region", "synteny_region_id", "dnafrag_region", "synteny_region_id"));
+		keys.add(new ForeignKey("dnafrag_region", "dnafrag_id", "dnafrag", "dnafrag_id"));
+		result &= checkForeignKeys(dbre, keys);
+
 		return result;
 	}
 
@@ -23,15 +23,9 @@
  */
 package org.ensembl.healthcheck.testcase.eg_core;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.Map;
-import java.util.Map.Entry;
-
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
-import org.ensembl.healthcheck.util.CollectionUtils;
-import org.ensembl.healthcheck.util.MapRowMapper;
+import org.ensembl.healthcheck.util.LongLongHashMap;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.TemplateBuilder;
 import org.ensembl.healthcheck.util.TestCaseUtils;
@@ -54,27 +48,6 @@ public class InterproFeature extends AbstractEgCoreTestCase {
 			+ "($inlist$)"
 			+ " group by t.translation_id";
 
-	MapRowMapper<Integer, Integer> featureMapper = new MapRowMapper<Integer, Integer>() {
-
-		public void existingObject(Integer currentValue, ResultSet resultSet,
-				int position) throws SQLException {
-			throw new UnsupportedOperationException();
-		}
-
-		public Integer getKey(ResultSet resultSet) throws SQLException {
-			return resultSet.getInt(1);
-		}
-
-		public Map<Integer, Integer> getMap() {
-			return CollectionUtils.createHashMap();
-		}
-
-		public Integer mapRow(ResultSet resultSet, int position)
-				throws SQLException {
-			return resultSet.getInt(2);
-		}
-
-	};
 	private final String feature_query;
 	public InterproFeature() {
 		super();
@@ -87,28 +60,27 @@ public class InterproFeature extends AbstractEgCoreTestCase {
 	 *
 	 * @see org.ensembl.healthcheck.testcase.SingleDatabaseTestCase#run(org.ensembl.healthcheck.DatabaseRegistryEntry)
 	 */
-	protected boolean runTest(DatabaseRegistryEntry dbre) {
+	protected boolean runTest(final DatabaseRegistryEntry dbre) {
 		SqlTemplate srv = getTemplate(dbre);
-		boolean passes = true;
+		final boolean[] failed = { false };
 		// 1. get features for each translation into a map
-		Map<Integer, Integer> features = srv.queryForMap(feature_query,
-				featureMapper);
+		final LongLongHashMap features = srv.queryForLongMap(feature_query, -1);
 		// 2. get xrefs into a map
-		Map<Integer, Integer> xrefs = srv.queryForMap(GET_XREFS, featureMapper);
-		for (Entry<Integer, Integer> e : xrefs.entrySet()) {
-			if(features.containsKey(e.getKey())) {
-			int nFeatures = features.get(e.getKey());
-			int nXrefs = e.getValue();
-			if (nFeatures < nXrefs) {
-				passes = false;
-				// note failure
-				ReportManager.warning(this, dbre.getConnection(), nXrefs
-						+ " InterPro xrefs but only " + nFeatures
-						+ " interpro features found for translation "
-						+ e.getKey());
-			}
+		LongLongHashMap xrefs = srv.queryForLongMap(GET_XREFS, -1);
+		xrefs.forEach(new LongLongHashMap.EntryVisitor() {
+			public void visit(long translationId, long nXrefs) {
+				long nFeatures = features.get(translationId);
+				if (nFeatures >= 0 && nFeatures < nXrefs) {
+					failed[0] = true;
+					// note failure
+					ReportManager.warning(InterproFeature.this, dbre.getConnection(), nXrefs
+							+ " InterPro xrefs but only " + nFeatures
+							+ " interpro features found for translation "
+							+ translationId);
+				}
 			}
-		}
+		});
+		boolean passes = !failed[0];
 		if (passes) {
 			ReportManager.correct(this, dbre.getConnection(),
 					"Sufficient InterPro features found for translations with InterPro xrefs");
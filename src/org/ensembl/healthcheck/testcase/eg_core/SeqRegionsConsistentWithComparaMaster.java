@@ -27,6 +27,7 @@ import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
 import org.ensembl.healthcheck.testcase.eg_compara.AbstractControlledRows;
+import org.ensembl.healthcheck.util.IdSet;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.SqlUncheckedException;
 import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
@@ -172,6 +173,15 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 		
 		final EnsTestCase thisTest = this;
 		
+		// The dnafrags of the genome are read once and every seq region is
+		// looked up in them, rather than querying the master database for
+		// each seq region.
+		//
+		final IdSet dnaFrags = IdSet.load(masterDbConn,
+				"select name, length, coord_system_name from dnafrag where genome_db_id=?",
+				genomeDbId
+		);
+		
 		Boolean allRowsExistInDnaFragTable = sqlTemplateTestDb.execute(
 			"select" 
 			+ "	seq_region.seq_region_id, "
@@ -202,17 +212,13 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 						seqRegionData.seq_region_length = rs.getInt(3);
 						seqRegionData.coord_system_name = rs.getString(4);
 						
-						int numCorrespondingRowsInDnaFragTable = fetchNumCorrespondingRowsInDnaFragTable(
-								seqRegionData,
-								genomeDbId
+						boolean currentRowExistsInDnaFragTable = dnaFrags.contains(
+								seqRegionData.seq_region_name + "\t"
+								+ seqRegionData.seq_region_length + "\t"
+								+ seqRegionData.coord_system_name
 							);
 						
-						boolean currentRowExistsInDnaFragTable = false;
-						
-						if (numCorrespondingRowsInDnaFragTable == 1) {
-							currentRowExistsInDnaFragTable = true;
-						}
-						if (numCorrespondingRowsInDnaFragTable == 0) {
+						if (!currentRowExistsInDnaFragTable) {
 							
 							ReportManager.problem(thisTest, testDbConn, "The following seq region is not in the dnafrag table in the master database:\n" + seqRegionData);
 							
@@ -227,10 +233,6 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 								ReportManager.problem(thisTest, testDbConn, "No more rows will be reported, because the maximum of " + reportMaxMissingRows + " has been reached.");
 								return false;
 							}
-							currentRowExistsInDnaFragTable = false;
-						}
-						if (numCorrespondingRowsInDnaFragTable > 1) {
-							throw new RuntimeException("Unexpected value for numCorrespondingRowsInDnaFragTable:" + numCorrespondingRowsInDnaFragTable);
 						}
 						
 						allRowsExistInDnaFragTable &= currentRowExistsInDnaFragTable;
@@ -271,32 +273,6 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 		;
 	}
 
-	protected int fetchNumCorrespondingRowsInDnaFragTable(
-			final SeqRegionData seqRegionData,
-			final int genomeDbId
-		) {
-		List<Integer> numSeqRegionsInDnaFragTableList = 
-				masterSqlTemplate.queryForDefaultObjectList(
-					  "select " 
-					+ "  count(*) "
-					+ "from "
-					+ "	 dnafrag " 
-					+ "where "
-					+ "  genome_db_id=?"
-					+ "  and name=?"
-					+ "  and length=?"
-					+ "  and coord_system_name=?", 
-					Integer.class,
-					genomeDbId,
-					seqRegionData.seq_region_name,
-					seqRegionData.seq_region_length,
-					seqRegionData.coord_system_name
-		);
-		assertLengthIsOne(numSeqRegionsInDnaFragTableList);
-		
-		return numSeqRegionsInDnaFragTableList.get(0);		
-	}
-
 	protected void assertLengthIsOne(List<?> list) {
 
 		if (list.size()>1) {
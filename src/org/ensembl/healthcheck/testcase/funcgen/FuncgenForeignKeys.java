@@ -31,13 +31,16 @@
 package org.ensembl.healthcheck.testcase.funcgen;
 
 import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.testcase.generic.CoreForeignKeys;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ForeignKey;
+import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key relationships.
@@ -72,140 +75,119 @@ public class FuncgenForeignKeys extends CoreForeignKeys {
 
         Connection con = dbre.getConnection();
 
+        List<ForeignKey> keys = new ArrayList<ForeignKey>();
+
         try{
 
-            result &= checkForOrphans(con, "alignment", "analysis_id", "analysis", "analysis_id", true);
+            SqlTemplate template = DBUtils.getSqlTemplate(con);
+
+            keys.add(new ForeignKey("alignment", "analysis_id", "analysis", "analysis_id"));
 //            result &= checkForOrphans(con, "alignment", "bam_file_id", "data_file", "data_file_id", true);
 //            result &= checkForOrphans(con, "alignment", "bigwig_file_id", "data_file", "data_file_id", true);
 
-            result &= checkForOrphans(con, "alignment_read_file", "alignment_id", "alignment", "alignment_id", true);
-            result &= checkForOrphans(con, "alignment_read_file", "read_file_id", "read_file", "read_file_id", true);
-
-            result &= checkForOrphans(con, "analysis_description", "analysis_id", "analysis", "analysis_id", true);
+            keys.add(new ForeignKey("alignment_read_file", "alignment_id", "alignment", "alignment_id"));
+            keys.add(new ForeignKey("alignment_read_file", "read_file_id", "read_file", "read_file_id"));
 
-            result &= checkForOrphans(con, "array_chip", "array_id", "array", "array_id", true);
+            keys.add(new ForeignKey("analysis_description", "analysis_id", "analysis", "analysis_id"));
 
-            result &= checkForOrphans(con, "associated_feature_type", "feature_type_id", "feature_type", "feature_type_id", true);
+            keys.add(new ForeignKey("array_chip", "array_id", "array", "array_id"));
 
-            try {
-                ResultSet rs = con.createStatement().executeQuery("SELECT distinct(table_name) from associated_feature_type");
+            keys.add(new ForeignKey("associated_feature_type", "feature_type_id", "feature_type", "feature_type_id"));
 
-                while (rs.next()) {
-                    String tableName = rs.getString(1);
-                    result &= checkForOrphansWithConstraint(con, "associated_feature_type", "table_id", tableName, tableName + "_id", "table_name='" + tableName + "'");
-                }
-                rs.close();
-            } catch (SQLException se) {
-                se.printStackTrace();
-                return false;
+            for (String tableName : template.queryForDefaultObjectList("SELECT distinct(table_name) from associated_feature_type", String.class)) {
+                keys.add(new ForeignKey("associated_feature_type", "table_id", tableName, tableName + "_id", "table_name='" + tableName + "'"));
             }
 
-            result &= checkForOrphans(con, "associated_motif_feature", "motif_feature_id", "motif_feature", "motif_feature_id", true);
+            keys.add(new ForeignKey("associated_motif_feature", "motif_feature_id", "motif_feature", "motif_feature_id"));
 
-            result &= checkForOrphans(con, "associated_xref", "object_xref_id", "object_xref", "object_xref_id", true);
-            result &= checkForOrphans(con, "associated_xref", "xref_id", "xref", "xref_id", true);
-            result &= checkForOrphans(con, "associated_xref", "associated_group_id", "associated_group", "associated_group_id", true);
+            keys.add(new ForeignKey("associated_xref", "object_xref_id", "object_xref", "object_xref_id"));
+            keys.add(new ForeignKey("associated_xref", "xref_id", "xref", "xref_id"));
+            keys.add(new ForeignKey("associated_xref", "associated_group_id", "associated_group", "associated_group_id"));
 
-            try {
-                ResultSet rs = con.createStatement().executeQuery("SELECT distinct(table_name) from data_file where table_name != 'alignment' and table_name != 'motif_feature'");
-
-                while (rs.next()){
-                    String tableName   = rs.getString(1);
-                    result &= checkForOrphansWithConstraint(con, "data_file", "table_id", tableName, tableName + "_id", "table_name='" + tableName + "'");
-                }
-                rs.close();
-            }
-            catch (SQLException se) {
-                se.printStackTrace();
-                return false;
+            for (String tableName : template.queryForDefaultObjectList("SELECT distinct(table_name) from data_file where table_name != 'alignment' and table_name != 'motif_feature'", String.class)) {
+                keys.add(new ForeignKey("data_file", "table_id", tableName, tableName + "_id", "table_name='" + tableName + "'"));
             }
 
-            result &= checkForOrphans(con, "experiment", "experimental_group_id", "experimental_group", "experimental_group_id", true);
-            result &= checkForOrphans(con, "experiment", "feature_type_id", "feature_type", "feature_type_id", true);
-            result &= checkForOrphansWithConstraint(con, "experiment", "epigenome_id", "epigenome", "epigenome_id", "epigenome_id != 0");
+            keys.add(new ForeignKey("experiment", "experimental_group_id", "experimental_group", "experimental_group_id"));
+            keys.add(new ForeignKey("experiment", "feature_type_id", "feature_type", "feature_type_id"));
+            keys.add(new ForeignKey("experiment", "epigenome_id", "epigenome", "epigenome_id", "epigenome_id != 0"));
 
-            result &= checkForOrphans(con, "external_feature", "feature_set_id", "feature_set", "feature_set_id", true);
-            result &= checkForOrphans(con, "external_feature", "feature_type_id", "feature_type", "feature_type_id", true);
+            keys.add(new ForeignKey("external_feature", "feature_set_id", "feature_set", "feature_set_id"));
+            keys.add(new ForeignKey("external_feature", "feature_type_id", "feature_type", "feature_type_id"));
 
-            result &= checkForOrphans(con, "external_feature_file", "analysis_id", "analysis", "analysis_id", true);
-            result &= checkForOrphansWithConstraint(con, "external_feature_file", "epigenome_id", "epigenome", "epigenome_id", "epigenome_id != 0");
-            result &= checkForOrphansWithConstraint(con, "external_feature_file", "feature_type_id", "feature_type", "feature_type_id", "feature_type_id != 0");
+            keys.add(new ForeignKey("external_feature_file", "analysis_id", "analysis", "analysis_id"));
+            keys.add(new ForeignKey("external_feature_file", "epigenome_id", "epigenome", "epigenome_id", "epigenome_id != 0"));
+            keys.add(new ForeignKey("external_feature_file", "feature_type_id", "feature_type", "feature_type_id", "feature_type_id != 0"));
 
-            result &= checkForOrphans(con, "external_synonym", "xref_id", "xref", "xref_id", true);
+            keys.add(new ForeignKey("external_synonym", "xref_id", "xref", "xref_id"));
 
-            result &= checkForOrphans(con, "feature_set", "feature_type_id", "feature_type", "feature_type_id", true);
-            result &= checkForOrphans(con, "feature_set", "analysis_id", "analysis", "analysis_id", true);
+            keys.add(new ForeignKey("feature_set", "feature_type_id", "feature_type", "feature_type_id"));
+            keys.add(new ForeignKey("feature_set", "analysis_id", "analysis", "analysis_id"));
 
 //            result &= checkForOrphans(con, "feature_type", "analysis_id", "analysis", "analysis_id", true);
 
-            result &= checkForOrphans(con, "identity_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+            keys.add(new ForeignKey("identity_xref", "object_xref_id", "object_xref", "object_xref_id"));
 
-            result &= checkForOrphans(con, "mirna_target_feature", "feature_type_id", "feature_type", "feature_type_id", true);
+            keys.add(new ForeignKey("mirna_target_feature", "feature_type_id", "feature_type", "feature_type_id"));
 
-            result &= checkForOrphans(con, "motif_feature", "binding_matrix_id", "binding_matrix", "binding_matrix_id", true);
+            keys.add(new ForeignKey("motif_feature", "binding_matrix_id", "binding_matrix", "binding_matrix_id"));
 
-            result &= checkForOrphans(con, "object_xref", "xref_id", "xref", "xref_id", true);
-            try {
-                ResultSet rs = con.createStatement().executeQuery("SELECT distinct(ensembl_object_type) from object_xref");
-
-                while (rs.next()){
-                    String objType   = rs.getString(1);
-                    result &= checkKeysByEnsemblObjectType(con, "object_xref", objType);
-                }
-
-                rs.close();
-            }
-            catch (SQLException se) {
-                se.printStackTrace();
-                return false;
+            keys.add(new ForeignKey("object_xref", "xref_id", "xref", "xref_id"));
+            for (String objType : template.queryForDefaultObjectList("SELECT distinct(ensembl_object_type) from object_xref", String.class)) {
+                keys.add(keyByEnsemblObjectType("object_xref", objType));
             }
 //            result &= checkForOrphans(con, "object_xref", "analysis_id", "analysis", "analysis_id", true);
 
-            result &= checkForOrphans(con, "ontology_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+            keys.add(new ForeignKey("ontology_xref", "object_xref_id", "object_xref", "object_xref_id"));
 
-            result &= checkForOrphans(con, "peak", "peak_calling_id", "peak_calling", "peak_calling_id", true);
+            keys.add(new ForeignKey("peak", "peak_calling_id", "peak_calling", "peak_calling_id"));
 
 //            result &= checkForOrphans(con, "probe", "probe_set_id", "probe_set", "probe_set_id", false);
-            result &= checkForOrphansWithConstraint(con, "probe", "probe_set_id", "probe_set", "probe_set_id", "probe_set_id !=0");
-            result &= checkForOrphans(con, "probe", "array_chip_id", "array_chip", "array_chip_id", false);
-            result &= checkForOrphans(con, "probe", "probe_seq_id", "probe_seq", "probe_seq_id", false);
+            keys.add(new ForeignKey("probe", "probe_set_id", "probe_set", "probe_set_id", "probe_set_id !=0"));
+            keys.add(new ForeignKey("probe", "array_chip_id", "array_chip", "array_chip_id"));
+            keys.add(new ForeignKey("array_chip", "array_chip_id", "probe", "array_chip_id"));
+            keys.add(new ForeignKey("probe", "probe_seq_id", "probe_seq", "probe_seq_id"));
+            keys.add(new ForeignKey("probe_seq", "probe_seq_id", "probe", "probe_seq_id"));
+
+            keys.add(new ForeignKey("probe_feature", "probe_id", "probe", "probe_id"));
+            keys.add(new ForeignKey("probe_feature", "analysis_id", "analysis", "analysis_id"));
 
-            result &= checkForOrphans(con, "probe_feature", "probe_id", "probe", "probe_id", true);
-            result &= checkForOrphans(con, "probe_feature", "analysis_id", "analysis", "analysis_id", true);
+            keys.add(new ForeignKey("probe_feature_transcript", "probe_feature_id", "probe_feature", "probe_feature_id"));
 
-            result &= checkForOrphans(con, "probe_feature_transcript", "probe_feature_id", "probe_feature", "probe_feature_id", true);
+            keys.add(new ForeignKey("probe_set", "array_chip_id", "array_chip", "array_chip_id"));
 
-            result &= checkForOrphans(con, "probe_set", "array_chip_id", "array_chip", "array_chip_id", true);
+            keys.add(new ForeignKey("probe_set_transcript", "probe_set_id", "probe_set", "probe_set_id"));
 
-            result &= checkForOrphans(con, "probe_set_transcript", "probe_set_id", "probe_set", "probe_set_id", true);
+            keys.add(new ForeignKey("read_file", "analysis_id", "analysis", "analysis_id"));
 
-            result &= checkForOrphans(con, "read_file", "analysis_id", "analysis", "analysis_id", true);
+            keys.add(new ForeignKey("read_file_experimental_configuration", "read_file_id", "read_file", "read_file_id"));
+            keys.add(new ForeignKey("read_file_experimental_configuration", "experiment_id", "experiment", "experiment_id"));
 
-            result &= checkForOrphans(con, "read_file_experimental_configuration", "read_file_id", "read_file", "read_file_id", true);
-            result &= checkForOrphans(con, "read_file_experimental_configuration", "experiment_id", "experiment", "experiment_id", true);
+            keys.add(new ForeignKey("regulatory_activity", "regulatory_feature_id", "regulatory_feature", "regulatory_feature_id"));
+            keys.add(new ForeignKey("regulatory_activity", "epigenome_id", "epigenome", "epigenome_id"));
 
-            result &= checkForOrphans(con, "regulatory_activity", "regulatory_feature_id", "regulatory_feature", "regulatory_feature_id", true);
-            result &= checkForOrphans(con, "regulatory_activity", "epigenome_id", "epigenome", "epigenome_id", true);
+            keys.add(new ForeignKey("regulatory_build", "feature_type_id", "feature_type", "feature_type_id"));
+            keys.add(new ForeignKey("regulatory_build", "analysis_id", "analysis", "analysis_id"));
+            keys.add(new ForeignKey("regulatory_build", "sample_regulatory_feature_id", "regulatory_feature", "regulatory_feature_id"));
 
-            result &= checkForOrphans(con, "regulatory_build", "feature_type_id", "feature_type", "feature_type_id", true);
-            result &= checkForOrphans(con, "regulatory_build", "analysis_id", "analysis", "analysis_id", true);
-            result &= checkForOrphans(con, "regulatory_build", "sample_regulatory_feature_id", "regulatory_feature", "regulatory_feature_id", true);
+            keys.add(new ForeignKey("regulatory_build_epigenome", "regulatory_build_id", "regulatory_build", "regulatory_build_id"));
+            keys.add(new ForeignKey("regulatory_build_epigenome", "epigenome_id", "epigenome", "epigenome_id"));
 
-            result &= checkForOrphans(con, "regulatory_build_epigenome", "regulatory_build_id", "regulatory_build", "regulatory_build_id", true);
-            result &= checkForOrphans(con, "regulatory_build_epigenome", "epigenome_id", "epigenome", "epigenome_id", true);
+            keys.add(new ForeignKey("regulatory_feature", "feature_type_id", "feature_type", "feature_type_id"));
+            keys.add(new ForeignKey("regulatory_feature", "regulatory_build_id", "regulatory_build", "regulatory_build_id"));
 
-            result &= checkForOrphans(con, "regulatory_feature", "feature_type_id", "feature_type", "feature_type_id", true);
-            result &= checkForOrphans(con, "regulatory_feature", "regulatory_build_id", "regulatory_build", "regulatory_build_id", true);
+            keys.add(new ForeignKey("segmentation_file", "regulatory_build_id", "regulatory_build", "regulatory_build_id"));
+            keys.add(new ForeignKey("segmentation_file", "analysis_id", "analysis", "analysis_id"));
+            keys.add(new ForeignKey("segmentation_file", "epigenome_id", "epigenome", "epigenome_id"));
 
-            result &= checkForOrphans(con, "segmentation_file", "regulatory_build_id", "regulatory_build", "regulatory_build_id", true);
-            result &= checkForOrphans(con, "segmentation_file", "analysis_id", "analysis", "analysis_id", true);
-            result &= checkForOrphans(con, "segmentation_file", "epigenome_id", "epigenome", "epigenome_id", true);
+            keys.add(new ForeignKey("unmapped_object", "analysis_id", "analysis", "analysis_id"));
+            keys.add(new ForeignKey("unmapped_object", "external_db_id", "external_db", "external_db_id", "external_db_id IS NOT NULL"));
+            keys.add(new ForeignKey("unmapped_object", "unmapped_reason_id", "unmapped_reason", "unmapped_reason_id"));
 
-            result &= checkForOrphans(con, "unmapped_object", "analysis_id", "analysis", "analysis_id", true);
-            result &= checkOptionalRelation(con, "unmapped_object", "external_db_id", "external_db", "external_db_id");
-            result &= checkForOrphans(con, "unmapped_object", "unmapped_reason_id", "unmapped_reason", "unmapped_reason_id", true);
+            keys.add(new ForeignKey("xref", "external_db_id", "external_db", "external_db_id"));//shouldn't this be false?
 
-            result &= checkForOrphans(con, "xref", "external_db_id", "external_db", "external_db_id", true);//shouldn't this be false?
+            // all the relations of each table are checked while reading it once
+            result &= checkForeignKeys(dbre, keys);
 		}
 		catch (Exception e) { //Catch all possible exceptions
             ReportManager.problem(this, con, "HealthCheck generated an " +
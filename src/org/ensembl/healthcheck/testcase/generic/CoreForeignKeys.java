@@ -31,6 +31,8 @@
 package org.ensembl.healthcheck.testcase.generic;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
@@ -38,6 +40,7 @@ import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key relationships.
@@ -68,95 +71,100 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+
 		// ----------------------------
 
-		result &= checkForOrphans(con, "exon", "exon_id", "exon_transcript", "exon_id", false);
+		keys.add(new ForeignKey("exon", "exon_id", "exon_transcript", "exon_id"));
+		keys.add(new ForeignKey("exon_transcript", "exon_id", "exon", "exon_id"));
 
-		result &= checkForOrphans(con, "transcript", "transcript_id", "exon_transcript", "transcript_id", false);
+		keys.add(new ForeignKey("transcript", "transcript_id", "exon_transcript", "transcript_id"));
+		keys.add(new ForeignKey("exon_transcript", "transcript_id", "transcript", "transcript_id"));
 
-		result &= checkForOrphans(con, "gene", "gene_id", "transcript", "gene_id", false);
+		keys.add(new ForeignKey("gene", "gene_id", "transcript", "gene_id"));
+		keys.add(new ForeignKey("transcript", "gene_id", "gene", "gene_id"));
 
-		result &= checkForOrphans(con, "object_xref", "xref_id", "xref", "xref_id", true);
+		keys.add(new ForeignKey("object_xref", "xref_id", "xref", "xref_id"));
 
-		result &= checkForOrphans(con, "xref", "external_db_id", "external_db", "external_db_id", true);
+		keys.add(new ForeignKey("xref", "external_db_id", "external_db", "external_db_id"));
 
-		result &= checkForOrphans(con, "dna", "seq_region_id", "seq_region", "seq_region_id", true);
+		keys.add(new ForeignKey("dna", "seq_region_id", "seq_region", "seq_region_id"));
 
-		result &= checkForOrphans(con, "seq_region", "coord_system_id", "coord_system", "coord_system_id", true);
+		keys.add(new ForeignKey("seq_region", "coord_system_id", "coord_system", "coord_system_id"));
 
-		result &= checkForOrphans(con, "assembly", "cmp_seq_region_id", "seq_region", "seq_region_id", true);
+		keys.add(new ForeignKey("assembly", "cmp_seq_region_id", "seq_region", "seq_region_id"));
 
-		result &= checkForOrphans(con, "marker_feature", "marker_id", "marker", "marker_id", true);
+		keys.add(new ForeignKey("marker_feature", "marker_id", "marker", "marker_id"));
 
-		result &= checkForOrphans(con, "seq_region_attrib", "seq_region_id", "seq_region", "seq_region_id", true);
+		keys.add(new ForeignKey("seq_region_attrib", "seq_region_id", "seq_region", "seq_region_id"));
 
-		result &= checkForOrphans(con, "seq_region_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		keys.add(new ForeignKey("seq_region_attrib", "attrib_type_id", "attrib_type", "attrib_type_id"));
 
-		result &= checkForOrphans(con, "misc_feature_misc_set", "misc_feature_id", "misc_feature", "misc_feature_id", true);
+		keys.add(new ForeignKey("misc_feature_misc_set", "misc_feature_id", "misc_feature", "misc_feature_id"));
 
-		result &= checkForOrphans(con, "misc_feature_misc_set", "misc_set_id", "misc_set", "misc_set_id", true);
+		keys.add(new ForeignKey("misc_feature_misc_set", "misc_set_id", "misc_set", "misc_set_id"));
 
 		// for a sangervega db, ignore misc_featres whcih have no annotation
 		if (dbre.getType() == DatabaseType.SANGER_VEGA) {
-			result &= checkForOrphansWithConstraint(con, "misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id",
-					"misc_feature_id NOT IN (select mfms.misc_feature_id from misc_feature_misc_set as mfms join misc_set as ms on mfms.misc_set_id=ms.misc_set_id and ms.code='noAnnotation')");
+			keys.add(new ForeignKey("misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id",
+					"misc_feature_id NOT IN (select mfms.misc_feature_id from misc_feature_misc_set as mfms join misc_set as ms on mfms.misc_set_id=ms.misc_set_id and ms.code='noAnnotation')"));
 		} else {
-			result &= checkForOrphans(con, "misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id", true);
+			keys.add(new ForeignKey("misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id"));
 		}
 
-		result &= checkForOrphans(con, "misc_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		keys.add(new ForeignKey("misc_attrib", "attrib_type_id", "attrib_type", "attrib_type_id"));
 
-		result &= checkForOrphans(con, "assembly_exception", "seq_region_id", "seq_region", "seq_region_id", true);
+		keys.add(new ForeignKey("assembly_exception", "seq_region_id", "seq_region", "seq_region_id"));
 
-		result &= checkForOrphans(con, "assembly_exception", "exc_seq_region_id", "seq_region", "seq_region_id", true);
+		keys.add(new ForeignKey("assembly_exception", "exc_seq_region_id", "seq_region", "seq_region_id"));
 
-		result &= checkForOrphans(con, "protein_feature", "translation_id", "translation", "translation_id", true);
+		keys.add(new ForeignKey("protein_feature", "translation_id", "translation", "translation_id"));
 
-		result &= checkForOrphans(con, "marker_synonym", "marker_id", "marker", "marker_id", true);
+		keys.add(new ForeignKey("marker_synonym", "marker_id", "marker", "marker_id"));
 
-		result &= checkForOrphans(con, "translation_attrib", "translation_id", "translation", "translation_id", true);
+		keys.add(new ForeignKey("translation_attrib", "translation_id", "translation", "translation_id"));
 
-		result &= checkForOrphans(con, "transcript_attrib", "transcript_id", "transcript", "transcript_id", true);
+		keys.add(new ForeignKey("transcript_attrib", "transcript_id", "transcript", "transcript_id"));
 
 		/*
 		 * // now redundant (done for all tables with analysis_id) result &= checkForOrphans(con, "analysis_id", "analysis",
 		 * "analysis_id", true); result &= checkForOrphans(con, "transcript", "analysis_id", "analysis", "analysis_id", true);
 		 */
 
-		result &= checkForOrphans(con, "external_synonym", "xref_id", "xref", "xref_id", true);
+		keys.add(new ForeignKey("external_synonym", "xref_id", "xref", "xref_id"));
 
-		result &= checkForOrphans(con, "identity_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+		keys.add(new ForeignKey("identity_xref", "object_xref_id", "object_xref", "object_xref_id"));
 
-		result &= checkForOrphans(con, "supporting_feature", "exon_id", "exon", "exon_id", true);
+		keys.add(new ForeignKey("supporting_feature", "exon_id", "exon", "exon_id"));
 
-		result &= checkForOrphans(con, "translation", "transcript_id", "transcript", "transcript_id", true);
+		keys.add(new ForeignKey("translation", "transcript_id", "transcript", "transcript_id"));
 
-		result &= checkForOrphans(con, "ontology_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+		keys.add(new ForeignKey("ontology_xref", "object_xref_id", "object_xref", "object_xref_id"));
 		
-		result &= checkForOrphans(con, "associated_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+		keys.add(new ForeignKey("associated_xref", "object_xref_id", "object_xref", "object_xref_id"));
 
-		result &= checkForOrphans(con, "associated_xref", "xref_id", "xref", "xref_id", true);
+		keys.add(new ForeignKey("associated_xref", "xref_id", "xref", "xref_id"));
 
-		result &= checkForOrphans(con, "associated_xref", "source_xref_id", "xref", "xref_id", true);
+		keys.add(new ForeignKey("associated_xref", "source_xref_id", "xref", "xref_id"));
 
-		result &= checkForOrphans(con, "dependent_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+		keys.add(new ForeignKey("dependent_xref", "object_xref_id", "object_xref", "object_xref_id"));
 
-		result &= checkForOrphans(con, "dependent_xref", "master_xref_id", "xref", "xref_id", true);
+		keys.add(new ForeignKey("dependent_xref", "master_xref_id", "xref", "xref_id"));
 
-		result &= checkForOrphans(con, "dependent_xref", "dependent_xref_id", "xref", "xref_id", true);
+		keys.add(new ForeignKey("dependent_xref", "dependent_xref_id", "xref", "xref_id"));
 
 		// stable ID archive
-		result &= checkForOrphansWithConstraint(con, "gene_archive", "peptide_archive_id", "peptide_archive", "peptide_archive_id", "peptide_archive_id != 0");
-		result &= checkForOrphans(con, "peptide_archive", "peptide_archive_id", "gene_archive", "peptide_archive_id", true);
-		result &= checkForOrphans(con, "stable_id_event", "mapping_session_id", "mapping_session", "mapping_session_id", false);
-		result &= checkForOrphans(con, "gene_archive", "mapping_session_id", "mapping_session", "mapping_session_id", true);
+		keys.add(new ForeignKey("gene_archive", "peptide_archive_id", "peptide_archive", "peptide_archive_id", "peptide_archive_id != 0"));
+		keys.add(new ForeignKey("peptide_archive", "peptide_archive_id", "gene_archive", "peptide_archive_id"));
+		keys.add(new ForeignKey("stable_id_event", "mapping_session_id", "mapping_session", "mapping_session_id"));
+		keys.add(new ForeignKey("mapping_session", "mapping_session_id", "stable_id_event", "mapping_session_id"));
+		keys.add(new ForeignKey("gene_archive", "mapping_session_id", "mapping_session", "mapping_session_id"));
 
 		// ----------------------------
 		// Check object xrefs point to existing objects
-		String[] types = { "Gene", "Transcript", "Translation" };
-		for (int i = 0; i < types.length; i++) {
-			result &= checkKeysByEnsemblObjectType(con, "object_xref", types[i]);
-		}
+		keys.add(new ForeignKey("object_xref", "ensembl_id", "gene", "gene_id", "ensembl_object_type='Gene'"));
+		keys.add(new ForeignKey("object_xref", "ensembl_id", "transcript", "transcript_id", "ensembl_object_type='Transcript'"));
+		keys.add(new ForeignKey("object_xref", "ensembl_id", "translation", "translation_id", "ensembl_object_type='Translation'"));
 
 		// ----------------------------
 		// Ensure that feature tables reference existing seq_regions
@@ -168,56 +176,56 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 			// if (featTab.equals("protein_align_feature") || featTab.equals("dna_align_feature") || featTab.equals("repeat_feature")) {
 			// continue;
 			// }
-			result &= checkForOrphans(con, featTab, "seq_region_id", "seq_region", "seq_region_id", true);
+			keys.add(new ForeignKey(featTab, "seq_region_id", "seq_region", "seq_region_id"));
 		}
 
-		result &= checkForOrphans(con, "analysis_description", "analysis_id", "analysis", "analysis_id", true);
+		keys.add(new ForeignKey("analysis_description", "analysis_id", "analysis", "analysis_id"));
 
-		result &= checkForOrphans(con, "gene_attrib", "gene_id", "gene", "gene_id", true);
-		result &= checkForOrphans(con, "gene_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
-		result &= checkForOrphans(con, "transcript_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
-		result &= checkForOrphans(con, "translation_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		keys.add(new ForeignKey("gene_attrib", "gene_id", "gene", "gene_id"));
+		keys.add(new ForeignKey("gene_attrib", "attrib_type_id", "attrib_type", "attrib_type_id"));
+		keys.add(new ForeignKey("transcript_attrib", "attrib_type_id", "attrib_type", "attrib_type_id"));
+		keys.add(new ForeignKey("translation_attrib", "attrib_type_id", "attrib_type", "attrib_type_id"));
 
-		result &= checkForOrphans(con, "translation", "end_exon_id", "exon", "exon_id", true);
-		result &= checkForOrphans(con, "translation", "start_exon_id", "exon", "exon_id", true);
+		keys.add(new ForeignKey("translation", "end_exon_id", "exon", "exon_id"));
+		keys.add(new ForeignKey("translation", "start_exon_id", "exon", "exon_id"));
 
-		result &= checkForOrphans(con, "alt_allele", "gene_id", "gene", "gene_id", true);
+		keys.add(new ForeignKey("alt_allele", "gene_id", "gene", "gene_id"));
 
-		result &= checkForOrphans(con, "marker_map_location", "map_id", "map", "map_id", true);
-		result &= checkForOrphans(con, "marker_map_location", "marker_id", "marker", "marker_id", true);
-		result &= checkForOrphans(con, "marker_map_location", "marker_synonym_id", "marker_synonym", "marker_synonym_id", true);
+		keys.add(new ForeignKey("marker_map_location", "map_id", "map", "map_id"));
+		keys.add(new ForeignKey("marker_map_location", "marker_id", "marker", "marker_id"));
+		keys.add(new ForeignKey("marker_map_location", "marker_synonym_id", "marker_synonym", "marker_synonym_id"));
 
 		// 73 -> 74 core schema patch: qtl* removed
 		// result &= checkForOrphans(con, "qtl_feature", "qtl_id", "qtl", "qtl_id", true);
 		// result &= checkForOrphans(con, "qtl_synonym", "qtl_id", "qtl", "qtl_id", true);
 
-		result &= checkForOrphans(con, "assembly", "asm_seq_region_id", "seq_region", "seq_region_id", true);
+		keys.add(new ForeignKey("assembly", "asm_seq_region_id", "seq_region", "seq_region_id"));
 
-		result &= checkForOrphans(con, "unmapped_object", "unmapped_reason_id", "unmapped_reason", "unmapped_reason_id", true);
-		result &= checkForOrphans(con, "unmapped_object", "analysis_id", "analysis", "analysis_id", true);
+		keys.add(new ForeignKey("unmapped_object", "unmapped_reason_id", "unmapped_reason", "unmapped_reason_id"));
+		keys.add(new ForeignKey("unmapped_object", "analysis_id", "analysis", "analysis_id"));
 
-		result &= checkForOrphansWithConstraint(con, "supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'");
+		keys.add(new ForeignKey("supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'"));
 
-		result &= checkForOrphansWithConstraint(con, "supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'");
+		keys.add(new ForeignKey("supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'"));
 
-		result &= checkForOrphansWithConstraint(con, "transcript_supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'");
+		keys.add(new ForeignKey("transcript_supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'"));
 
-		result &= checkForOrphansWithConstraint(con, "transcript_supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'");
+		keys.add(new ForeignKey("transcript_supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'"));
 
-		result &= checkForOrphans(con, "density_feature", "density_type_id", "density_type", "density_type_id");
+		keys.add(new ForeignKey("density_feature", "density_type_id", "density_type", "density_type_id"));
 
-		result &= checkForOrphans(con, "prediction_exon", "prediction_transcript_id", "prediction_transcript", "prediction_transcript_id");
+		keys.add(new ForeignKey("prediction_exon", "prediction_transcript_id", "prediction_transcript", "prediction_transcript_id"));
 
 		// result &= checkForOrphans(con, "prediction_exon", "prediction_exon_id", "exon", "exon_id");
 
-		result &= checkForOrphans(con, "marker", "display_marker_synonym_id", "marker_synonym", "marker_synonym_id");
+		keys.add(new ForeignKey("marker", "display_marker_synonym_id", "marker_synonym", "marker_synonym_id"));
 
 		// optional relations
 		// 73 -> 74 core schema patch: qtl* removed
 		// result &= checkOptionalRelation(con, "qtl", "flank_marker_id_1", "marker", "marker_id");
 		// result &= checkOptionalRelation(con, "qtl", "flank_marker_id_2", "marker", "marker_id");
 		// result &= checkOptionalRelation(con, "qtl", "peak_marker_id", "marker", "marker_id");
-		result &= checkOptionalRelation(con, "unmapped_object", "external_db_id", "external_db", "external_db_id");
+		keys.add(new ForeignKey("unmapped_object", "external_db_id", "external_db", "external_db_id", "external_db_id IS NOT NULL"));
 
 		/*
 		 * don't test
@@ -241,15 +249,14 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 			  constraint += " and "+analysisTab+".analysis_id <> 0";
 			}
 
-			if (countOrphansWithConstraint(con, analysisTab, "analysis_id", "analysis", "analysis_id", constraint) > 0) {
-				ReportManager.problem(this, con, "FAILED " + analysisTab + " -> analysis using FK analysis_id relationships");
-				result = false;
-			}
+			keys.add(new ForeignKey(analysisTab, "analysis_id", "analysis", "analysis_id", constraint));
 
 		}
 
 		// end new tests
 
+		// all the relations of each table are checked while reading it once
+		result &= checkForeignKeys(dbre, keys);
 
 		// added by dr2: check that the foreign key display_marker_synonym_id points to a synonym
 		// for the marker
@@ -263,15 +270,10 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 	// -------------------------------------------------------------------------
 	public boolean checkKeysByEnsemblObjectType(Connection con, String baseTable, String type) {
 
-		// Need to handle under scores in tables here
-		// e.g. ProbeFeature > probe_feature
-		String table = type.replaceAll("([a-z])([A-Z])", "$1_$2");
-		table = table.toLowerCase();
-
-		// Where is ensembl_object_id used?
-		String column = baseTable.equals("object_xref") ? "ensembl_id" : "ensembl_object_id";
+		ForeignKey key = keyByEnsemblObjectType(baseTable, type);
 
-		return checkForOrphansWithConstraint(con, baseTable, column, table, table + "_id", "ensembl_object_type=\'" + type + "\'");
+		return checkForOrphansWithConstraint(con, key.getTable(), key.getColumn(), key.getReferencedTable(),
+				key.getReferencedColumn(), key.getConstraint());
 
 		/**
 		 * Is this not just checkForOrphansWithConstraint?
@@ -293,6 +295,25 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 	} // checkKeysByEnsemblObjectType
 
 
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The relation from the rows of baseTable for objects of a type,
+	 *         e.g. ProbeFeature, to the table of those objects.
+	 */
+	protected ForeignKey keyByEnsemblObjectType(String baseTable, String type) {
+
+		// Need to handle under scores in tables here
+		// e.g. ProbeFeature > probe_feature
+		String table = type.replaceAll("([a-z])([A-Z])", "$1_$2");
+		table = table.toLowerCase();
+
+		// Where is ensembl_object_id used?
+		String column = baseTable.equals("object_xref") ? "ensembl_id" : "ensembl_object_id";
+
+		return new ForeignKey(baseTable, column, table, table + "_id", "ensembl_object_type=\'" + type + "\'");
+
+	} // keyByEnsemblObjectType
+
 	private boolean checkDisplayMarkerSynonymID(Connection con) {
 		boolean result = true;
 
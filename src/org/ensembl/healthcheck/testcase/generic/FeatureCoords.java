@@ -20,7 +20,6 @@ package org.ensembl.healthcheck.testcase.generic;
 
 import java.sql.Connection;
 import java.util.Set;
-import java.util.Map;
 import java.util.logging.Logger;
 
 
@@ -30,10 +29,10 @@ import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.LongLongHashMap;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.Utils;
 import org.ensembl.healthcheck.util.RowMapper;
-import org.ensembl.healthcheck.util.DefaultMapRowMapper;
 import org.ensembl.healthcheck.util.DefaultObjectRowMapper;
 
 
@@ -54,7 +53,7 @@ public class FeatureCoords extends SingleDatabaseTestCase {
 		setTeamResponsible(Team.GENEBUILD);
 	}
 
-	public Map<String,Integer> seq_regions;
+	public LongLongHashMap seq_regions;
 	
 	/**
 	 * Iterate over each affected database and perform various checks.
@@ -71,9 +70,7 @@ public class FeatureCoords extends SingleDatabaseTestCase {
         Connection con = dbre.getConnection();
         SqlTemplate t = DBUtils.getSqlTemplate(con);
         String sql = "SELECT s.seq_region_id,s.length FROM seq_region s join seq_region_attrib a USING (seq_region_id) WHERE a.attrib_type_id = 6";
-        DefaultMapRowMapper<String, Integer> mapper = new DefaultMapRowMapper<String, Integer>(String.class, Integer.class);
-                             
-        seq_regions = t.queryForMap(sql,mapper);
+        seq_regions = t.queryForLongMap(sql, -1);
         
 		for (int tableIndex = 0; tableIndex < featureTables.length; tableIndex++) {
 
@@ -89,31 +86,25 @@ public class FeatureCoords extends SingleDatabaseTestCase {
 	} // run
 
 
-      protected boolean checkLength(DatabaseRegistryEntry dbre, String tableName) {
+      protected boolean checkLength(final DatabaseRegistryEntry dbre, final String tableName) {
         SqlTemplate t = DBUtils.getSqlTemplate(dbre);
-        boolean result = true;
         if (tableName.equals("repeat_feature")) {
                 return true;
         }
         String featureSQL = "SELECT seq_region_id, max(seq_region_start) from " + tableName + " group by seq_region_id ";
-        DefaultMapRowMapper<Integer, Integer> feature_mapper = new DefaultMapRowMapper<Integer, Integer>(Integer.class, Integer.class);
-        Map<Integer, Integer> featureResults = t.queryForMap(featureSQL, feature_mapper);
-
-        
-        for (Map.Entry<Integer, Integer> entry : featureResults.entrySet()) {
-          Integer max = entry.getValue();
-          Integer region = entry.getKey();
-          if (seq_regions.containsKey(region) ) {
-            Integer length = seq_regions.get(region);
-            if (max > length) {
-              ReportManager.problem(this, dbre.getConnection(), "Some features in " + tableName + " start on position " + max + " when region " + region + " is only " + length + " long");
-              result = false;
+        LongLongHashMap featureResults = t.queryForLongMap(featureSQL, -1);
+
+        final boolean[] result = { true };
+        featureResults.forEach(new LongLongHashMap.EntryVisitor() {
+          public void visit(long region, long max) {
+            long length = seq_regions.get(region);
+            if (length >= 0 && max > length) {
+              ReportManager.problem(FeatureCoords.this, dbre.getConnection(), "Some features in " + tableName + " start on position " + max + " when region " + region + " is only " + length + " long");
+              result[0] = false;
             }
-            
           }
-
-        }
-        return result;
+        });
+        return result[0];
 
       }
 
@@ -157,7 +157,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 
 		Pattern assemblyMappingPattern = Pattern.compile(
 				"^([a-zA-Z0-9.]+):?([a-zA-Z0-9._-]+)?[\\|#]([a-zA-Z0-9._-]+):?([a-zA-Z0-9._-]+)?([\\|#]([a-zA-Z0-9.]+):?([a-zA-Z0-9._-]+)?)?$");
-		String[] validCoordSystems = DBUtils.getColumnValues(con, "SELECT name FROM coord_system");
+		String[] validCoordSystems = DBUtils.getCachedColumnValues(con, "SELECT name FROM coord_system");
 
 		String[] mappings = DBUtils.getColumnValues(con,
 				"SELECT meta_value FROM meta WHERE meta_key='assembly.mapping'");
@@ -294,7 +294,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 		// TODO - table name in report
 		boolean result = true;
 
-		String[] coordSystems = DBUtils.getColumnValues(con, "SELECT name FROM coord_system");
+		String[] coordSystems = DBUtils.getCachedColumnValues(con, "SELECT name FROM coord_system");
 
 		for (int i = 0; i < coordSystems.length; i++) {
 
@@ -319,10 +319,8 @@ public class MetaValues extends SingleDatabaseTestCase {
 
                 String[] allowedTypes   = {"GenBank Assembly ID", "INSDC Assembly ID", "EMBL-Bank WGS Master"};
 		String[] allowedSources = { "NCBI", "ENA", "DDBJ" };
-		String WebType = DBUtils.getRowColumnValue(con,
-				"SELECT meta_value FROM meta WHERE meta_key='assembly.web_accession_type'");
-		String WebSource = DBUtils.getRowColumnValue(con,
-				"SELECT meta_value FROM meta WHERE meta_key='assembly.web_accession_source'");
+		String WebType = DBUtils.getMetaValue(con, "assembly.web_accession_type");
+		String WebSource = DBUtils.getMetaValue(con, "assembly.web_accession_source");
 
 		if (WebType.length() > 0) {
 			if (!Utils.stringInArray(WebType, allowedTypes, true)) {
@@ -360,7 +358,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 			String key = keys[i];
 			String regexp = regexps[i];
 
-			String value = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='" + key + "'");
+			String value = DBUtils.getMetaValue(con, key);
 			if (value == null || value.length() == 0) {
 
 				ReportManager.problem(this, con, "No " + key + " entry in meta table");
@@ -384,14 +382,14 @@ public class MetaValues extends SingleDatabaseTestCase {
 
 		// some more checks for sanity of dates
 		int startDate = Integer.valueOf(
-				DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.start_date'")
+				DBUtils.getMetaValue(con, "genebuild.start_date")
 						.replaceAll("[^0-9]", ""))
 				.intValue();
 		int initialReleaseDate = Integer.valueOf(DBUtils
-				.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.initial_release_date'")
+				.getMetaValue(con, "genebuild.initial_release_date")
 				.replaceAll("[^0-9]", "")).intValue();
 		int lastGenesetUpdate = Integer.valueOf(DBUtils
-				.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.last_geneset_update'")
+				.getMetaValue(con, "genebuild.last_geneset_update")
 				.replaceAll("[^0-9]", "")).intValue();
 
 		// check for genebuild.start_date >= genebuild.initial_release_date (not allowed
@@ -457,7 +455,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 
 	private boolean checkGenebuildID(Connection con) {
 
-		String gbid = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.id'");
+		String gbid = DBUtils.getMetaValue(con, "genebuild.id");
 		logger.finest("genebuild.id from database: " + gbid);
 
 		if (gbid == null || gbid.length() == 0) {
@@ -554,7 +552,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 				"external_annotation_import" };
 
 		Connection con = dbre.getConnection();
-		String method = DBUtils.getRowColumnValue(con, "SELECT meta_value FROM meta WHERE meta_key='genebuild.method'");
+		String method = DBUtils.getMetaValue(con, "genebuild.method");
 
 		if (method.equals("")) {
 			ReportManager.problem(this, con, "No genebuild.method entry present in Meta table");
@@ -741,8 +739,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 		Set<Set<Object>> currentGenes = t.queryForSet(sql, rowMapper);
 		Set<Set<Object>> previousGenes = getSqlTemplate(sec).queryForSet(sql, rowMapper);
 
-		String genesetUpdate = DBUtils.getRowColumnValue(con,
-				"SELECT meta_value FROM meta WHERE meta_key = 'genebuild.last_geneset_update'");
+		String genesetUpdate = DBUtils.getMetaValue(con, "genebuild.last_geneset_update");
 		String previousGenesetUpdate = DBUtils.getRowColumnValue(previousCon,
 				"SELECT meta_value FROM meta WHERE meta_key = 'genebuild.last_geneset_update'");
 
@@ -751,8 +748,7 @@ public class MetaValues extends SingleDatabaseTestCase {
 		String[] previousGencodeWebdata = DBUtils.getColumnValues(previousCon,
 				"SELECT web_data FROM analysis_description ad, analysis a WHERE a.analysis_id = ad.analysis_id AND logic_name in ('ensembl_havana_gene', 'ensembl_havana_ig_gene', 'ensembl_lincrna')");
 
-		String gencode = DBUtils.getRowColumnValue(con,
-				"SELECT meta_value FROM meta WHERE meta_key = 'gencode.version'");
+		String gencode = DBUtils.getMetaValue(con, "gencode.version");
 		String previousGencode = DBUtils.getRowColumnValue(previousCon,
 				"SELECT meta_value FROM meta WHERE meta_key = 'gencode.version'");
 
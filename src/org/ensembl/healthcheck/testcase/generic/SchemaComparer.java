@@ -43,6 +43,7 @@ import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
 import org.ensembl.healthcheck.util.DBUtils;
 import org.ensembl.healthcheck.util.DefaultObjectRowMapper;
 import org.ensembl.healthcheck.util.PoorLruMap;
+import org.ensembl.healthcheck.util.QueryCache;
 import org.ensembl.healthcheck.util.RowMapper;
 
 /**
@@ -225,9 +226,11 @@ public class SchemaComparer {
 		return requiredTables;
 	}
 
+	/*
+	 * Kept for the comparison whether or not the shared QueryCache is on, as
+	 * each table of a schema asks for them again
+	 */
 	private Map<String, Set<String>> views = new PoorLruMap<String, Set<String>>(MAX_CACHE_SIZE);
-	
-
 	private Map<String, Map<String, Set<Column>>> columns = new PoorLruMap<String, Map<String, Set<Column>>>(
 			MAX_CACHE_SIZE);
 	private Map<String, String> createTables = new PoorLruMap<String, String>(MAX_CACHE_SIZE);
@@ -525,36 +528,37 @@ public class SchemaComparer {
 	 * @throws SQLException
 	 *             Thrown if there is an issue with MetaData retrieval
 	 */
-	protected Map<String, Set<Column>> getColumns(Connection conn) throws SQLException {
-		String dbmsUrl = conn.getMetaData().getURL();
-		if (!columns.containsKey(dbmsUrl)) {
-			Map<String, Set<Column>> dbColumns = new LinkedHashMap<String, Set<Column>>();
-			ResultSet rs = conn.getMetaData().getColumns(null, DBUtils.getShortDatabaseName(conn), "%", "%");
-			try {
-
-				boolean processAutoIncrement = DBUtils.resultSetContainsColumn(rs, "IS_AUTOINCREMENT");
-
-				while (rs.next()) {
-					String table = rs.getString("TABLE_NAME");
-					// Get columns list
-					Set<Column> tableColumns = dbColumns.get(table);
-					if (tableColumns == null) {
-						tableColumns = new LinkedHashSet<Column>();
-						dbColumns.put(table, tableColumns);
+	protected Map<String, Set<Column>> getColumns(final Connection conn) throws SQLException {
+		return cached(columns, conn.getMetaData().getURL(), conn, "SchemaComparer columns",
+				new QueryCache.Loader<Map<String, Set<Column>>>() {
+			public Map<String, Set<Column>> load() throws SQLException {
+				Map<String, Set<Column>> dbColumns = new LinkedHashMap<String, Set<Column>>();
+				ResultSet rs = conn.getMetaData().getColumns(null, DBUtils.getShortDatabaseName(conn), "%", "%");
+				try {
+
+					boolean processAutoIncrement = DBUtils.resultSetContainsColumn(rs, "IS_AUTOINCREMENT");
+
+					while (rs.next()) {
+						String table = rs.getString("TABLE_NAME");
+						// Get columns list
+						Set<Column> tableColumns = dbColumns.get(table);
+						if (tableColumns == null) {
+							tableColumns = new LinkedHashSet<Column>();
+							dbColumns.put(table, tableColumns);
+						}
+
+						boolean autoIncrement = (processAutoIncrement) ? rs.getBoolean("IS_AUTOINCREMENT") : false;
+						Column columnInstance = new Column(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"),
+								rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"), rs.getBoolean("NULLABLE"),
+								rs.getString("COLUMN_DEF"), rs.getInt("CHAR_OCTET_LENGTH"), autoIncrement);
+						tableColumns.add(columnInstance);
 					}
-
-					boolean autoIncrement = (processAutoIncrement) ? rs.getBoolean("IS_AUTOINCREMENT") : false;
-					Column columnInstance = new Column(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"),
-							rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"), rs.getBoolean("NULLABLE"),
-							rs.getString("COLUMN_DEF"), rs.getInt("CHAR_OCTET_LENGTH"), autoIncrement);
-					tableColumns.add(columnInstance);
+				} finally {
+					DBUtils.closeQuietly(rs);
 				}
-			} finally {
-				DBUtils.closeQuietly(rs);
+				return dbColumns;
 			}
-			columns.put(dbmsUrl, dbColumns);
-		}
-		return columns.get(dbmsUrl);
+		});
 	}
 
 	/**
@@ -564,18 +568,18 @@ public class SchemaComparer {
 		return new HashSet<Column>(getColumns(conn).get(table));
 	}
 
-	protected String getCreateTable(Connection conn, String table) throws SQLException {
+	protected String getCreateTable(final Connection conn, String table) throws SQLException {
+		final String sql = "SHOW CREATE TABLE " + table;
 		String key = conn.getMetaData().getURL() + ":" + table;
-		if (createTables.containsKey(key)) {
-			return createTables.get(key);
-		}
-		String sql = "SHOW CREATE TABLE " + table;
-		RowMapper<String> mapper = new DefaultObjectRowMapper<String>(String.class, 2);
-		String createTable = new ConnectionBasedSqlTemplateImpl(conn).queryForObject(sql, mapper);
+		String createTable = cached(createTables, key, conn, sql, new QueryCache.Loader<String>() {
+			public String load() {
+				RowMapper<String> mapper = new DefaultObjectRowMapper<String>(String.class, 2);
+				return new ConnectionBasedSqlTemplateImpl(conn).queryForObject(sql, mapper);
+			}
+		});
 		if (applyTest(TestTypes.IGNORE_AUTOINCREMENT_OPTION)) {
 			createTable = createTable.replaceFirst("AUTO_INCREMENT=\\d+\\s*", "");
 		}
-		createTables.put(key, createTable);
 		return createTable;
 	}
 
@@ -615,15 +619,17 @@ public class SchemaComparer {
 	}
 
 	/**
-	 * Returns a locally cached Set of table names in the given schema
+	 * Returns a Set of table names in the given schema, cached by this comparer
+	 * and in the {@link QueryCache}
 	 */
-	protected Set<String> getTables(Connection conn) throws SQLException {
-		String url = conn.getMetaData().getURL();
-		if (!tables.containsKey(url)) {
-			String[] array = DBUtils.getTableNames(conn);
-			tables.put(url, new HashSet<String>(Arrays.asList(array)));
-		}
-		return tables.get(url);
+	protected Set<String> getTables(final Connection conn) throws SQLException {
+		return cached(tables, conn.getMetaData().getURL(), conn, "SchemaComparer tables",
+				new QueryCache.Loader<Set<String>>() {
+			public Set<String> load() {
+				String[] array = DBUtils.getTableNames(conn);
+				return new HashSet<String>(Arrays.asList(array));
+			}
+		});
 	}
 
 	public Set<TestTypes> getTestTypes() {
@@ -631,8 +637,8 @@ public class SchemaComparer {
 	}
 
 	/**
-	 * Used to cache the current known set of views for each distinct JDBC URL
-	 * retrieved from {@link Connection#getMetaData()}.
+	 * Used to cache the current known set of views for each database, by this
+	 * comparer and in the {@link QueryCache}.
 	 * 
 	 * @param conn
 	 *            Connection to query with
@@ -640,13 +646,28 @@ public class SchemaComparer {
 	 * @throws SQLException
 	 *             Thrown if there is an issue with MetaData retrieval
 	 */
-	private Set<String> getViews(Connection conn) throws SQLException {
-		String dbmsUrl = conn.getMetaData().getURL();
-		if (!views.containsKey(dbmsUrl)) {
-			List<String> dbViews = DBUtils.getViews(conn);
-			views.put(dbmsUrl, new HashSet<String>(dbViews));
-		}
-		return views.get(dbmsUrl);
+	private Set<String> getViews(final Connection conn) throws SQLException {
+		return cached(views, conn.getMetaData().getURL(), conn, "SchemaComparer views",
+				new QueryCache.Loader<Set<String>>() {
+			public Set<String> load() {
+				List<String> dbViews = DBUtils.getViews(conn);
+				return new HashSet<String>(dbViews);
+			}
+		});
+	}
+
+	/**
+	 * Look key up in the cache of this comparer, then in the {@link QueryCache}
+	 * under sql.
+	 */
+	private <T> T cached(Map<String, T> local, String key, Connection conn, String sql, QueryCache.Loader<T> loader)
+			throws SQLException {
+		if (local.containsKey(key)) {
+			return local.get(key);
+		}
+		T value = QueryCache.get(conn, sql, null, loader);
+		local.put(key, value);
+		return value;
 	}
 
 	protected Object regex(Pattern p, CharSequence target, Class<?> type) {
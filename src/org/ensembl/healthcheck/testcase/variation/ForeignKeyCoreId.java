@@ -19,6 +19,9 @@
 package org.ensembl.healthcheck.testcase.variation;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,6 +32,8 @@ import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ForeignKey;
+import org.ensembl.healthcheck.util.IdSet;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key
@@ -94,23 +99,17 @@ public class ForeignKeyCoreId extends MultiDatabaseTestCase {
 					ReportManager.info(this, con, "Using " + dbrcore.getName() + " as core database and "
 							+ dbrvar.getName() + " as variation database");
 
-					result &= checkForOrphans(con, dbrvar.getName() + ".transcript_variation", "feature_stable_id",
-							dbrcore.getName() + ".transcript", "stable_id");
+					// the databases may be on different servers, so the core
+					// IDs are read and looked up rather than joined
+					List<ForeignKey> keys = new ArrayList<ForeignKey>();
+					keys.add(new ForeignKey("transcript_variation", "feature_stable_id", "transcript", "stable_id"));
+					keys.add(new ForeignKey("variation_feature", "seq_region_id", "seq_region", "seq_region_id",
+							"seq_region_id IS NOT NULL"));
+					keys.add(new ForeignKey("structural_variation_feature", "seq_region_id", "seq_region",
+							"seq_region_id", "seq_region_id IS NOT NULL"));
+					result &= checkForeignKeys(dbrvar, dbrcore, keys);
 
-					result &= checkForOrphansWithConstraint(con, dbrvar.getName() + ".variation_feature",
-							"seq_region_id", dbrcore.getName() + ".seq_region", "seq_region_id",
-							"seq_region_id IS NOT NULL");
-
-					result &= checkForOrphansWithConstraint(con, dbrvar.getName() + ".structural_variation_feature",
-							"seq_region_id", dbrcore.getName() + ".seq_region", "seq_region_id",
-							"seq_region_id IS NOT NULL");
-
-					int rows = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM " + dbrvar.getName()
-							+ ".seq_region srv join " + dbrvar.getName()
-							+ ".coord_system csv on (srv.coord_system_id=csv.coord_system_id) join " + dbrcore.getName()
-							+ ".seq_region src on (src.name=srv.name) join " + dbrcore.getName()
-							+ ".coord_system cs on (cs.coord_system_id=src.coord_system_id) "
-							+ "WHERE csv.attrib = 'default_version' AND cs.attrib='default_version' AND src.seq_region_id != srv.seq_region_id");
+					int rows = countSeqRegionsWithDifferentIds(dbrvar, dbrcore);
 
 					if (rows > 0) {
 						ReportManager.problem(this, con, rows
@@ -136,6 +135,41 @@ public class ForeignKeyCoreId extends MultiDatabaseTestCase {
 
 	}
 
+	/**
+	 * Count the seq_regions of the default assembly in the variation database
+	 * that have a name of a seq_region in the core database but not its ID.
+	 */
+	private int countSeqRegionsWithDifferentIds(DatabaseRegistryEntry dbrvar, DatabaseRegistryEntry dbrcore)
+			throws SQLException {
+
+		String sql = " FROM seq_region sr JOIN coord_system cs ON (sr.coord_system_id = cs.coord_system_id)"
+				+ " WHERE cs.attrib = 'default_version'";
+		IdSet coreNames = IdSet.load(dbrcore.getConnection(), "SELECT sr.name" + sql);
+		IdSet coreSeqRegions = IdSet.load(dbrcore.getConnection(), "SELECT sr.name, sr.seq_region_id" + sql);
+
+		int rows = 0;
+		// stream over a connection of its own, leaving the one of dbrvar free
+		Connection con = DBUtils.openStreamingConnection(dbrvar.getConnection());
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = DBUtils.createStreamingStatement(con);
+			rs = stmt.executeQuery("SELECT sr.name, sr.seq_region_id" + sql);
+			while (rs.next()) {
+				if (coreNames.contains(rs.getString(1)) && !coreSeqRegions.contains(rs)) {
+					rows++;
+				}
+			}
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(stmt);
+			DBUtils.closeStreamingConnection(dbrvar.getConnection(), con);
+		}
+
+		return rows;
+
+	}
+
 	/**
 	 * This only applies to variation databases.
 	 */
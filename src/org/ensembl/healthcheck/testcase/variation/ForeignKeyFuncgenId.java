@@ -20,6 +20,7 @@ package org.ensembl.healthcheck.testcase.variation;
 
 import org.ensembl.healthcheck.*;
 import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 import java.sql.Connection;
 import java.util.ArrayList;
@@ -84,13 +85,13 @@ public class ForeignKeyFuncgenId extends MultiDatabaseTestCase {
                                 + " as regulation database and " + dbvar.getName()
                                 + " as variation database");
 
-                        result &= checkForOrphans(con, dbvar.getName()
-                                        + ".motif_feature_variation", "feature_stable_id",
-                                dbrfuncgen.getName() + ".motif_feature", "stable_id");
-
-                        result &= checkForOrphans(con, dbvar.getName()
-                                        + ".regulatory_feature_variation", "feature_stable_id",
-                                dbrfuncgen.getName() + ".regulatory_feature", "stable_id");
+                        // the databases may be on different servers
+                        List<ForeignKey> keys = new ArrayList<ForeignKey>();
+                        keys.add(new ForeignKey("motif_feature_variation", "feature_stable_id",
+                                "motif_feature", "stable_id"));
+                        keys.add(new ForeignKey("regulatory_feature_variation", "feature_stable_id",
+                                "regulatory_feature", "stable_id"));
+                        result &= checkForeignKeys(dbvar, dbrfuncgen, keys);
                         if (result) {
                             // if there were no problems, just inform for the interface
                             // to pick the HC
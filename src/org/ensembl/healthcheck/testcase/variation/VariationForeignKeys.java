@@ -19,12 +19,15 @@
 package org.ensembl.healthcheck.testcase.variation;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ForeignKey;
 
 /**
  * An EnsEMBL Healthcheck test case that looks for broken foreign-key realtionships.
@@ -56,79 +59,84 @@ public class VariationForeignKeys extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
+		List<ForeignKey> keys = new ArrayList<ForeignKey>();
+
 		try {
 			
 			/*
 			 * This is allowed allele can have null population_id 
 			 * result &= checkForOrphans(con, "allele", "population_id", "population", "population_id",true);
 			 */
-			result &= checkForOrphans(con, "allele", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "allele_synonym", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "compressed_genotype_region", "sample_id", "sample", "sample_id", true);
-			result &= checkForOrphans(con, "compressed_genotype_region", "seq_region_id", "seq_region", "seq_region_id", true);
-			result &= checkForOrphans(con, "compressed_genotype_var", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "failed_allele", "failed_description_id", "failed_description", "failed_description_id", true);
-			result &= checkForOrphans(con, "failed_allele", "allele_id", "allele", "allele_id", true);
-			result &= checkForOrphans(con, "failed_variation", "failed_description_id", "failed_description", "failed_description_id", true);
-			result &= checkForOrphans(con, "failed_variation", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "failed_structural_variation", "failed_description_id", "failed_description", "failed_description_id", true);
-			result &= checkForOrphans(con, "failed_structural_variation", "structural_variation_id", "structural_variation", "structural_variation_id", true);
-			result &= checkForOrphans(con, "sample_genotype_multiple_bp", "sample_id", "sample_population", "sample_id", true);
-			result &= checkForOrphans(con, "sample_genotype_multiple_bp", "sample_id", "sample", "sample_id", true);
-			result &= checkForOrphans(con, "sample_population", "sample_id", "sample", "sample_id", true);
-			result &= checkForOrphans(con, "sample_population", "population_id", "population", "population_id", true);
-			result &= checkForOrphans(con, "sample_synonym", "sample_id", "sample", "sample_id", true);
-			result &= checkForOrphans(con, "sample_synonym", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "individual_synonym", "individual_id", "individual", "individual_id", true);
-			result &= checkForOrphans(con, "phenotype", "phenotype_id", "phenotype_feature", "phenotype_id", true);
-			result &= checkForOrphans(con, "phenotype_feature", "phenotype_id", "phenotype", "phenotype_id", true);
-			result &= checkForOrphans(con, "phenotype_feature", "seq_region_id", "seq_region", "seq_region_id", true);
-			result &= checkForOrphans(con, "phenotype_feature", "source_id", "source", "source_id", true);
+			keys.add(new ForeignKey("allele", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("allele_synonym", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("compressed_genotype_region", "sample_id", "sample", "sample_id"));
+			keys.add(new ForeignKey("compressed_genotype_region", "seq_region_id", "seq_region", "seq_region_id"));
+			keys.add(new ForeignKey("compressed_genotype_var", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("failed_allele", "failed_description_id", "failed_description", "failed_description_id"));
+			keys.add(new ForeignKey("failed_allele", "allele_id", "allele", "allele_id"));
+			keys.add(new ForeignKey("failed_variation", "failed_description_id", "failed_description", "failed_description_id"));
+			keys.add(new ForeignKey("failed_variation", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("failed_structural_variation", "failed_description_id", "failed_description", "failed_description_id"));
+			keys.add(new ForeignKey("failed_structural_variation", "structural_variation_id", "structural_variation", "structural_variation_id"));
+			keys.add(new ForeignKey("sample_genotype_multiple_bp", "sample_id", "sample_population", "sample_id"));
+			keys.add(new ForeignKey("sample_genotype_multiple_bp", "sample_id", "sample", "sample_id"));
+			keys.add(new ForeignKey("sample_population", "sample_id", "sample", "sample_id"));
+			keys.add(new ForeignKey("sample_population", "population_id", "population", "population_id"));
+			keys.add(new ForeignKey("sample_synonym", "sample_id", "sample", "sample_id"));
+			keys.add(new ForeignKey("sample_synonym", "source_id", "source", "source_id"));
+			keys.add(new ForeignKey("individual_synonym", "individual_id", "individual", "individual_id"));
+			keys.add(new ForeignKey("phenotype", "phenotype_id", "phenotype_feature", "phenotype_id"));
+			keys.add(new ForeignKey("phenotype_feature", "phenotype_id", "phenotype", "phenotype_id"));
+			keys.add(new ForeignKey("phenotype_feature", "seq_region_id", "seq_region", "seq_region_id"));
+			keys.add(new ForeignKey("phenotype_feature", "source_id", "source", "source_id"));
 			//result &= checkForOrphans(con, "phenotype_feature", "study_id", "study", "study_id", true);
-			result &= checkForOrphans(con, "phenotype_feature_attrib", "phenotype_feature_id", "phenotype_feature", "phenotype_feature_id", true);
-			result &= checkForOrphans(con, "phenotype_feature_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
-			result &= checkForOrphans(con, "phenotype_ontology_accession", "phenotype_id", "phenotype", "phenotype_id", true);
-			result &= checkForOrphans(con, "population_genotype", "population_id", "population", "population_id", true);
-			result &= checkForOrphans(con, "population_genotype", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "population_synonym", "population_id", "population", "population_id", true);
-			result &= checkForOrphans(con, "read_coverage", "seq_region_id", "seq_region", "seq_region_id", true);
-			result &= checkForOrphans(con, "read_coverage", "sample_id", "sample", "sample_id", true);
+			keys.add(new ForeignKey("phenotype_feature_attrib", "phenotype_feature_id", "phenotype_feature", "phenotype_feature_id"));
+			keys.add(new ForeignKey("phenotype_feature_attrib", "attrib_type_id", "attrib_type", "attrib_type_id"));
+			keys.add(new ForeignKey("phenotype_ontology_accession", "phenotype_id", "phenotype", "phenotype_id"));
+			keys.add(new ForeignKey("population_genotype", "population_id", "population", "population_id"));
+			keys.add(new ForeignKey("population_genotype", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("population_synonym", "population_id", "population", "population_id"));
+			keys.add(new ForeignKey("read_coverage", "seq_region_id", "seq_region", "seq_region_id"));
+			keys.add(new ForeignKey("read_coverage", "sample_id", "sample", "sample_id"));
 
 			//  result &= checkForOrphans(con, "tmp_sample_genotype_single_bp", "variation_id", "variation", "variation_id", true);
 
-			result &= checkForOrphans(con, "tmp_sample_genotype_single_bp", "sample_id", "sample", "sample_id",true);
-			result &= checkForOrphans(con, "transcript_variation", "variation_feature_id", "variation_feature", "variation_feature_id", true);
-			result &= checkForOrphans(con, "variation", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "variation", "class_attrib_id", "attrib", "attrib_id", true);
-			result &= checkForOrphans(con, "variation_citation", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "variation_citation", "publication_id", "publication", "publication_id", true);
-			result &= checkForOrphans(con, "variation_feature", "source_id", "source", "source_id", true);
+			keys.add(new ForeignKey("tmp_sample_genotype_single_bp", "sample_id", "sample", "sample_id"));
+			keys.add(new ForeignKey("transcript_variation", "variation_feature_id", "variation_feature", "variation_feature_id"));
+			keys.add(new ForeignKey("variation", "source_id", "source", "source_id"));
+			keys.add(new ForeignKey("variation", "class_attrib_id", "attrib", "attrib_id"));
+			keys.add(new ForeignKey("variation_citation", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("variation_citation", "publication_id", "publication", "publication_id"));
+			keys.add(new ForeignKey("variation_feature", "source_id", "source", "source_id"));
 			//result &= checkForOrphans(con, "variation_feature", "variation_id", "allele", "variation_id", true);
-			result &= checkForOrphans(con, "variation_feature", "class_attrib_id", "attrib", "attrib_id", true);
-			result &= checkForOrphans(con, "variation_feature", "seq_region_id", "seq_region", "seq_region_id", true);
-			result &= checkForOrphans(con, "variation_set_structure", "variation_set_sub", "variation_set", "variation_set_id", true);
-			result &= checkForOrphans(con, "variation_set_structure", "variation_set_super", "variation_set", "variation_set_id", true);
-			result &= checkForOrphans(con, "variation_set_variation", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "variation_set_variation", "variation_set_id", "variation_set", "variation_set_id", true);
-			result &= checkForOrphans(con, "variation_synonym", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "variation_synonym", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "structural_variation_feature", "structural_variation_id", "structural_variation", "structural_variation_id", true);
-			result &= checkForOrphans(con, "structural_variation_feature", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "structural_variation_feature", "study_id", "study", "study_id", true);
-			result &= checkForOrphans(con, "structural_variation_feature", "class_attrib_id", "attrib", "attrib_id", true);
-			result &= checkForOrphans(con, "structural_variation_feature", "seq_region_id", "seq_region", "seq_region_id", true);
-			result &= checkForOrphans(con, "structural_variation", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "structural_variation", "study_id", "study", "study_id", true);
-			result &= checkForOrphans(con, "structural_variation", "class_attrib_id", "attrib", "attrib_id", true);
-			result &= checkForOrphans(con, "structural_variation_sample", "structural_variation_id", "structural_variation", "structural_variation_id", true);
-			result &= checkForOrphans(con, "structural_variation_association", "structural_variation_id", "structural_variation", "structural_variation_id", true);
+			keys.add(new ForeignKey("variation_feature", "class_attrib_id", "attrib", "attrib_id"));
+			keys.add(new ForeignKey("variation_feature", "seq_region_id", "seq_region", "seq_region_id"));
+			keys.add(new ForeignKey("variation_set_structure", "variation_set_sub", "variation_set", "variation_set_id"));
+			keys.add(new ForeignKey("variation_set_structure", "variation_set_super", "variation_set", "variation_set_id"));
+			keys.add(new ForeignKey("variation_set_variation", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("variation_set_variation", "variation_set_id", "variation_set", "variation_set_id"));
+			keys.add(new ForeignKey("variation_synonym", "source_id", "source", "source_id"));
+			keys.add(new ForeignKey("variation_synonym", "variation_id", "variation", "variation_id"));
+			keys.add(new ForeignKey("structural_variation_feature", "structural_variation_id", "structural_variation", "structural_variation_id"));
+			keys.add(new ForeignKey("structural_variation_feature", "source_id", "source", "source_id"));
+			keys.add(new ForeignKey("structural_variation_feature", "study_id", "study", "study_id"));
+			keys.add(new ForeignKey("structural_variation_feature", "class_attrib_id", "attrib", "attrib_id"));
+			keys.add(new ForeignKey("structural_variation_feature", "seq_region_id", "seq_region", "seq_region_id"));
+			keys.add(new ForeignKey("structural_variation", "source_id", "source", "source_id"));
+			keys.add(new ForeignKey("structural_variation", "study_id", "study", "study_id"));
+			keys.add(new ForeignKey("structural_variation", "class_attrib_id", "attrib", "attrib_id"));
+			keys.add(new ForeignKey("structural_variation_sample", "structural_variation_id", "structural_variation", "structural_variation_id"));
+			keys.add(new ForeignKey("structural_variation_association", "structural_variation_id", "structural_variation", "structural_variation_id"));
 
 			
 			// alleles and genotypes
-			result &= checkForOrphans(con, "allele", "allele_code_id", "allele_code", "allele_code_id", true);
-			result &= checkForOrphans(con, "population_genotype", "genotype_code_id", "genotype_code", "genotype_code_id", true);
-			result &= checkForOrphans(con, "genotype_code", "allele_code_id", "allele_code", "allele_code_id", true);
+			keys.add(new ForeignKey("allele", "allele_code_id", "allele_code", "allele_code_id"));
+			keys.add(new ForeignKey("population_genotype", "genotype_code_id", "genotype_code", "genotype_code_id"));
+			keys.add(new ForeignKey("genotype_code", "allele_code_id", "allele_code", "allele_code_id"));
             
+			// all the relations of each table are checked while reading it once
+			result &= checkForeignKeys(dbre, keys);
+
       // check phenotype_feature (special case since it can contain links to multiple tables)
       rows = countOrphansWithConstraint(con,"phenotype_feature","object_id","variation","name","type = 'Variation'");
 			if (rows > 0) {
@@ -55,6 +55,7 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
 
 	public static final int FIRST_COLUMN_INDEX = 1;
 	public static final int NO_ROW_LIMIT_CHECKS = -1;
+	private static final int STREAMING_FETCH_SIZE = 1000;
 
 	private final Connection connection;
 	private final String uri;
@@ -182,10 +183,43 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
 	public <T> T execute(String sql, ResultSetCallback<T> callback,
 			Object... args) {
 		T object;
+		PreparedStatementCache cache = ConnectionPool.getStatementCache(connection);
 		PreparedStatement ps = null;
 		ResultSet rs = null;
+		boolean failed = false;
 		try {
-			ps = connection.prepareStatement(sql);
+			ps = prepare(cache, sql);
+			bindParamsToPreparedStatement(ps, args);
+			rs = ps.executeQuery();
+			object = callback.process(rs);
+		} catch (SQLException e) {
+			failed = true;
+			throw createUncheckedException(sql, args, e);
+		} finally {
+			closeDbObject(rs);
+			release(cache, ps, failed);
+		}
+		return object;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The result is streamed over a pooled connection of its own, see
+	 * {@link DBUtils#openStreamingConnection(Connection)}, so the connection of
+	 * this template stays free for tests using it at the same time.
+	 */
+	public <T> T executeStreaming(String sql, ResultSetCallback<T> callback,
+			Object... args) {
+		T object;
+		Connection streaming = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			streaming = DBUtils.openStreamingConnection(connection);
+			ps = streaming.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(isMySQL() ? Integer.MIN_VALUE : STREAMING_FETCH_SIZE);
 			bindParamsToPreparedStatement(ps, args);
 			rs = ps.executeQuery();
 			object = callback.process(rs);
@@ -194,10 +228,120 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
 		} finally {
 			closeDbObject(rs);
 			closeDbObject(ps);
+			DBUtils.closeStreamingConnection(connection, streaming);
 		}
 		return object;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public <T> long queryForEach(final String sql, final RowMapper<T> mapper,
+			final RowCallback<T> callback, final Object... args) {
+		return executeStreaming(sql, new ResultSetCallback<Long>() {
+			@Override
+			public Long process(ResultSet rs) throws SQLException {
+				long rows = 0;
+				while (rs.next()) {
+					T row = mapper.mapRow(rs, (int) rows);
+					rows++;
+					if (!callback.process(row)) {
+						break;
+					}
+				}
+				return rows;
+			}
+		}, args);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public LongLongHashMap queryForLongMap(final String sql,
+			final long missingValue, final Object... args) {
+		return executeStreaming(sql, new ResultSetCallback<LongLongHashMap>() {
+			@Override
+			public LongLongHashMap process(ResultSet rs) throws SQLException {
+				LongLongHashMap map = new LongLongHashMap(missingValue);
+				while (rs.next()) {
+					long key = rs.getLong(1);
+					if (map.containsKey(key)) {
+						throw new SqlUncheckedException(formatExceptionMessage(
+								"Key " + key + " found more than once", sql, args));
+					}
+					map.put(key, rs.getLong(2));
+				}
+				return map;
+			}
+		}, args);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public LongArrayList queryForLongList(String sql, Object... args) {
+		return executeStreaming(sql, new ResultSetCallback<LongArrayList>() {
+			@Override
+			public LongArrayList process(ResultSet rs) throws SQLException {
+				LongArrayList list = new LongArrayList();
+				while (rs.next()) {
+					list.add(rs.getLong(1));
+				}
+				return list;
+			}
+		}, args);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public IntArrayList queryForIntList(String sql, Object... args) {
+		return executeStreaming(sql, new ResultSetCallback<IntArrayList>() {
+			@Override
+			public IntArrayList process(ResultSet rs) throws SQLException {
+				IntArrayList list = new IntArrayList();
+				while (rs.next()) {
+					list.add(rs.getInt(1));
+				}
+				return list;
+			}
+		}, args);
+	}
+
+	/**
+	 * Statements of pooled connections are taken from the connection's
+	 * {@link PreparedStatementCache}, so queries run repeatedly are only
+	 * prepared once.
+	 */
+	private PreparedStatement prepare(PreparedStatementCache cache, String sql)
+			throws SQLException {
+		return cache == null ? connection.prepareStatement(sql) : cache.prepare(sql);
+	}
+
+	/**
+	 * Give a statement back to the cache it came from, or close it. Statements
+	 * that have thrown an exception are not reused.
+	 */
+	private void release(PreparedStatementCache cache, PreparedStatement ps,
+			boolean failed) {
+		if (cache == null) {
+			closeDbObject(ps);
+		} else if (failed) {
+			cache.discard(ps);
+		} else {
+			cache.release(ps);
+		}
+	}
+
+	/**
+	 * MySQL's driver only streams rows with a fetch size of
+	 * Integer.MIN_VALUE, other drivers are given a fetch size that keeps
+	 * only a few rows in memory.
+	 */
+	private boolean isMySQL() {
+		return uri != null && uri.startsWith("jdbc:mysql:");
+	}
+
 	/**
 	 * Use this to close down {@link ResultSet} objects with null safety checks
 	 */
@@ -270,6 +414,24 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
 				expected, FIRST_COLUMN_INDEX);
 		return queryForList(sql, mapper, args);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public <T> List<T> queryForCachedDefaultObjectList(final String sql, final Class<T> expected,
+			final Object... args) throws SqlUncheckedException {
+		try {
+			List<T> values = QueryCache.get(connection, sql + " -> " + expected.getName(), args,
+					new QueryCache.Loader<List<T>>() {
+						public List<T> load() {
+							return queryForDefaultObjectList(sql, expected, args);
+						}
+					});
+			return new ArrayList<T>(values);
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not look up " + sql + " in the query cache", e);
+		}
+	}
 	
   /**
    * {@inheritDoc}
@@ -313,15 +475,18 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
    * {@inheritDoc}
    */
 	public int update(final String sql, final Object... args) {
+	  PreparedStatementCache cache = ConnectionPool.getStatementCache(connection);
 	  PreparedStatement ps = null;
+	  boolean failed = false;
 	  try {
-      ps = connection.prepareStatement(sql);
+      ps = prepare(cache, sql);
       bindParamsToPreparedStatement(ps, args);
       return ps.executeUpdate();
     } catch (SQLException e) {
+      failed = true;
       throw createUncheckedException(sql, args, e);
     } finally {
-      closeDbObject(ps);
+      release(cache, ps, failed);
     }
 	}
 
@@ -18,36 +18,201 @@
 
 package org.ensembl.healthcheck.util;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.ensembl.healthcheck.configuration.ConfigureConnectionPool;
+
 /**
+ * <p>
  * Implements connection pooling.
+ * </p>
+ * 
+ * <p>
+ * Connections are pooled by database URL, so there is one pool for every
+ * (server, schema) pair. Each of these hands out up to
+ * {@link #getMaxPerKey()} connections at a time; further requests wait for a
+ * connection to be returned. Calling <code>close()</code> on a connection
+ * obtained from here returns it to the pool, the underlying connection stays
+ * open for the next caller.
+ * </p>
+ * 
+ * <p>
+ * Idle connections are checked by a background thread, rather than every time
+ * they are handed out. Connections that have been idle for too long, have
+ * reached their maximum lifetime or fail validation are closed.
+ * </p>
  */
 public final class ConnectionPool {
 
     /** The logger to use for this class */
     private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
-    // store connections; key = database URL (as String), Connection object
-    private static Map<String, Connection> pool = new HashMap<String, Connection>();
+    private static final int DEFAULT_MAX_PER_KEY = 8;
+    private static final long DEFAULT_WAIT_TIMEOUT = 60 * 1000L;
+    private static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000L;
+    private static final long DEFAULT_MAX_LIFETIME = 60 * 60 * 1000L;
+    private static final long DEFAULT_VALIDATION_INTERVAL = 60 * 1000L;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private static volatile int maxPerKey = DEFAULT_MAX_PER_KEY;
+    private static volatile long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+    private static volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private static volatile long maxLifetime = DEFAULT_MAX_LIFETIME;
+    private static volatile long validationInterval = DEFAULT_VALIDATION_INTERVAL;
+    private static volatile int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+    // store pools; key = database URL (as String)
+    private static final ConcurrentMap<String, KeyPool> pools = new ConcurrentHashMap<String, KeyPool>();
+
+    private static final AtomicLong created = new AtomicLong();
+    private static final AtomicLong evicted = new AtomicLong();
+
+    private static ScheduledExecutorService validator;
 
     // hide constructor to stop people instantiating this
     private ConnectionPool() { }
-    
+
+    /**
+     * Set the size of the pool and the timeouts from the configuration.
+     * Parameters that have not been set keep their defaults.
+     */
+    public static void setConfiguration(ConfigureConnectionPool configuration) {
+
+        if (configuration.isConnectionPoolSize()) {
+            maxPerKey = (int) parse("connection.pool.size", configuration.getConnectionPoolSize(), maxPerKey, 1);
+        }
+        if (configuration.isConnectionPoolWaitTimeout()) {
+            waitTimeout = 1000L * parse("connection.pool.wait_timeout", configuration.getConnectionPoolWaitTimeout(), waitTimeout / 1000L, 0);
+        }
+        if (configuration.isConnectionPoolIdleTimeout()) {
+            idleTimeout = 1000L * parse("connection.pool.idle_timeout", configuration.getConnectionPoolIdleTimeout(), idleTimeout / 1000L, 0);
+        }
+        if (configuration.isConnectionPoolMaxLifetime()) {
+            maxLifetime = 1000L * parse("connection.pool.max_lifetime", configuration.getConnectionPoolMaxLifetime(), maxLifetime / 1000L, 0);
+        }
+        if (configuration.isConnectionPoolValidationInterval()) {
+            setValidationInterval(1000L * parse("connection.pool.validation_interval", configuration.getConnectionPoolValidationInterval(), validationInterval / 1000L, 1));
+        }
+        if (configuration.isConnectionStatementCacheSize()) {
+            statementCacheSize = (int) parse("connection.statement_cache_size", configuration.getConnectionStatementCacheSize(), statementCacheSize, 0);
+        }
+        logger.config("Connection pool: " + maxPerKey + " connections per database, idle timeout "
+            + idleTimeout + "ms, max lifetime " + maxLifetime + "ms, validation every " + validationInterval + "ms, "
+            + statementCacheSize + " cached statements per connection");
+    }
+
+    private static long parse(String parameter, String value, long defaultValue, long minimum) {
+
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        long l;
+        try {
+            l = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + parameter + " has been set to an illegal value: " + value);
+        }
+        if (l < minimum) {
+            throw new IllegalArgumentException("Parameter " + parameter + " must be at least " + minimum + ", was: " + l);
+        }
+        return l;
+    }
+
+    /**
+     * @return The number of prepared statements kept open for every connection
+     *         handed out, 0 if they are not cached.
+     */
+    public static int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public static void setStatementCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Statement cache size must not be negative, was: " + size);
+        }
+        statementCacheSize = size;
+    }
+
+    public static int getMaxPerKey() {
+        return maxPerKey;
+    }
+
+    public static void setMaxPerKey(int max) {
+        maxPerKey = max;
+    }
+
+    public static long getWaitTimeout() {
+        return waitTimeout;
+    }
+
+    /**
+     * @param millis
+     *          How long to wait for a connection when all connections to a
+     *          database are in use. 0 waits forever.
+     */
+    public static void setWaitTimeout(long millis) {
+        waitTimeout = millis;
+    }
+
+    /**
+     * @param millis
+     *          Idle connections are closed after this time. 0 never closes
+     *          them.
+     */
+    public static void setIdleTimeout(long millis) {
+        idleTimeout = millis;
+    }
+
+    /**
+     * @param millis
+     *          Connections are closed when they are returned to the pool after
+     *          having been open for this long. 0 keeps them forever.
+     */
+    public static void setMaxLifetime(long millis) {
+        maxLifetime = millis;
+    }
+
+    /**
+     * @param millis
+     *          How often the background thread checks idle connections.
+     */
+    public static synchronized void setValidationInterval(long millis) {
+        validationInterval = millis;
+        if (validator != null) {
+            validator.shutdownNow();
+            validator = null;
+            startValidator();
+        }
+    }
+
     /**
-     * Get a connection from the pool. If a connection to this database already
-     * exists in the pool, it is returned. If not, it is created and added to
-     * the pool.
+     * Get a connection from the pool. If an idle connection to this database
+     * exists in the pool, it is returned. If not, a new one is created, unless
+     * the maximum number of connections to this database is already in use, in
+     * which case this waits for one to be returned.
      * 
      * @return A new connection, or one re-used from the pool.
      * @param driverClassName
@@ -58,28 +223,120 @@ public final class ConnectionPool {
      *          The username to connect to the database with.
      * @param password
      *          The password for username.
-     * @throws SQLException 
+     * @throws SQLException
+     *           If no connection could be made, or none became available in
+     *           time.
      */
     public static Connection getConnection(String driverClassName, String databaseURL, String user, String password) throws SQLException {
 
-        Connection con = null;
+        long start = System.nanoTime();
 
-        if (pool.containsKey(databaseURL)) {
+        KeyPool keyPool = pools.get(databaseURL);
+        if (keyPool == null) {
+            KeyPool newPool = new KeyPool(driverClassName, databaseURL, user, password);
+            keyPool = pools.putIfAbsent(databaseURL, newPool);
+            if (keyPool == null) {
+                keyPool = newPool;
+            }
+            startValidator();
+        }
 
-		logger.finest("Got connection to " + databaseURL + " from pool");
-		con = getConnectionFromPool(driverClassName, databaseURL, user, password);
-		// mnuhn: Turn off connection pooling, see if this fixes the problems we are having.
-		//
-		//con = getConnectionByClassloader(driverClassName, databaseURL, user, password);
+        PooledConnection pooled = keyPool.borrow();
 
+        if (pooled == null) {
+            try {
+                pooled = new PooledConnection(keyPool, createConnection(driverClassName, databaseURL, user, password));
+            } catch (SQLException e) {
+                keyPool.cancelBorrow();
+                throw e;
+            } catch (RuntimeException e) {
+                keyPool.cancelBorrow();
+                throw e;
+            }
+            keyPool.added(pooled);
+            logger.finest("Added connection to " + databaseURL + " to pool");
         } else {
+            logger.finest("Got connection to " + databaseURL + " from pool");
+        }
+
+        TestMetrics.connectionWait(System.nanoTime() - start);
+
+        return pooled.handOut();
+    }
+
+    private static Connection createConnection(String driverClassName, String databaseURL, String user, String password) throws SQLException {
+
+        try {
+
+            Class.forName(driverClassName);
+
+        } catch (ClassNotFoundException e) {
+
+            logger.severe("Can't load class " + driverClassName);
+            throw new RuntimeException(e);
 
-        	con = getConnectionByClassloader(driverClassName, databaseURL, user, password);
         }
-        
+        Connection con = DriverManager.getConnection(databaseURL, user, password);
+        created.incrementAndGet();
         return con;
     }
 
+    /**
+     * Remove a connection that has turned out to be broken from the pool. The
+     * underlying connection is closed instead of being handed out again.
+     */
+    public static void invalidate(Connection con) {
+
+        if (con == null) {
+            return;
+        }
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof Handle) {
+            ((Handle) Proxy.getInvocationHandler(con)).release(true);
+        } else {
+            DBUtils.closeQuietly(con);
+        }
+    }
+
+    /**
+     * @return The cache of prepared statements for a connection obtained from
+     *         the pool, created when first asked for and closed when the
+     *         connection is given back. Null if con has not come from the
+     *         pool, has already been given back, or statements are not cached.
+     */
+    public static PreparedStatementCache getStatementCache(Connection con) {
+
+        if (con == null || statementCacheSize == 0) {
+            return null;
+        }
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof Handle) {
+            return ((Handle) Proxy.getInvocationHandler(con)).statementCache(con);
+        }
+        return null;
+    }
+
+    /**
+     * Get another connection to the database that con is connected to, e.g.
+     * to stream a result from it while con stays free for other statements.
+     * 
+     * @return A connection from the pool that must be closed to give it back,
+     *         or null if con has not come from the pool or the pool only has
+     *         one connection per database.
+     */
+    public static Connection getAnotherConnection(Connection con) throws SQLException {
+
+        if (con == null || maxPerKey < 2) {
+            return null;
+        }
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof Handle) {
+            PooledConnection pooled = ((Handle) Proxy.getInvocationHandler(con)).pooled;
+            if (pooled != null) {
+                KeyPool keyPool = pooled.keyPool;
+                return getConnection(keyPool.driverClassName, keyPool.url, keyPool.user, keyPool.password);
+            }
+        }
+        return null;
+    }
+
   public static boolean isValidConnection(Connection con) {
 
     String url;
@@ -135,82 +392,556 @@ public final class ConnectionPool {
 		  
   	return valid;
   }
- 
-    public static Connection getConnectionFromPool(String driverClassName, String databaseURL, String user, String password) throws SQLException {
-    	
-        Connection con = (Connection) pool.get(databaseURL);
-        
-        boolean connectionIsValid;
 
-        if (con.isClosed()) {
-        	con = getConnectionByClassloader(driverClassName, databaseURL, user, password);
-        	return con;
-        }
+    /**
+     * Uses the driver's own check where it has one.
+     */
+    private static boolean validate(Connection con) {
 
         try {
-        	
-        	// Currently throws a java.lang.AbstractMethodError, but maybe
-        	// someday this will work.
-        	//
-        	connectionIsValid = con.isValid(5000);
-        	
-        } catch(java.lang.AbstractMethodError e) {
-        	
-        	logger.finest("Connection object does not implement \"isValid()\" call. Using manual implementation");
-        	connectionIsValid = isValidConnection(con);
-        }
-        if (!connectionIsValid) {
-        	
-        	logger.warning("Connection in pool was invalid. Creating again from scratch.");
-        	con = getConnectionByClassloader(driverClassName, databaseURL, user, password); 
+
+            if (con.isClosed()) {
+                return false;
+            }
+            return con.isValid(5);
+
+        } catch (java.lang.AbstractMethodError e) {
+
+            logger.finest("Connection object does not implement \"isValid()\" call. Using manual implementation");
+            return isValidConnection(con);
+
+        } catch (SQLException e) {
+
+            return false;
         }
-        return con;
     }
-    
-    public static Connection getConnectionByClassloader(String driverClassName, String databaseURL, String user, String password) throws SQLException {
 
-    	Connection con = null;
-    	
-        // create a connection and add it to the pool
+    /**
+     * @return true if a SQLException has been thrown while using this
+     *         connection, or a statement created from it, since it was last
+     *         {@link #markValid(Connection) marked as valid}. Also true for
+     *         connections that have been closed. Callers that cache the result
+     *         of validating a connection should check it again if this is
+     *         true.
+     */
+    public static boolean hasFailed(Connection con) {
+
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof Handle) {
+            Handle handle = (Handle) Proxy.getInvocationHandler(con);
+            return handle.failed || handle.pooled == null;
+        }
         try {
+            return con.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
 
-            Class.forName(driverClassName);
+    /**
+     * Clear the flag set by SQLExceptions, after the connection has been
+     * validated.
+     */
+    public static void markValid(Connection con) {
 
-        } catch (ClassNotFoundException e) {
+        if (Proxy.isProxyClass(con.getClass()) && Proxy.getInvocationHandler(con) instanceof Handle) {
+            ((Handle) Proxy.getInvocationHandler(con)).failed = false;
+        }
+    }
 
-            logger.severe("Can't load class " + driverClassName);
-            throw new RuntimeException(e);
+    // -------------------------------------------------------------------------
+    /**
+     * @return The number of connections currently handed out.
+     */
+    public static int getBorrowedCount() {
+
+        int n = 0;
+        for (KeyPool keyPool : pools.values()) {
+            n += keyPool.borrowedCount();
+        }
+        return n;
+    }
+
+    /**
+     * @return The number of open connections waiting in the pool.
+     */
+    public static int getIdleCount() {
 
+        int n = 0;
+        for (KeyPool keyPool : pools.values()) {
+            n += keyPool.idleCount();
         }
-       	con = DriverManager.getConnection(databaseURL, user, password);
-        pool.put(databaseURL, con);
-        logger.finest("Added connection to " + databaseURL + " to pool");
-    	
-    	return con;
+        return n;
+    }
+
+    /**
+     * @return The number of connections opened since the program started.
+     */
+    public static long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return The number of connections the pool has closed because they were
+     *         idle, too old or broken.
+     */
+    public static long getEvictedCount() {
+        return evicted.get();
+    }
+
+    public static String getStatistics() {
+        return "Connection pool: " + getBorrowedCount() + " borrowed, " + getIdleCount() + " idle, "
+            + getCreatedCount() + " created, " + getEvictedCount() + " evicted";
     }
 
     // -------------------------------------------------------------------------
     /**
-     * Close all the connections in the pool.
+     * Check the idle connections of every pool: close the ones that have been
+     * idle for too long or are too old and validate the rest.
+     */
+    static void validateIdleConnections() {
+
+        for (KeyPool keyPool : pools.values()) {
+
+            List<PooledConnection> toCheck = keyPool.takeIdleForValidation();
+
+            for (PooledConnection pooled : toCheck) {
+                if (validate(pooled.physical)) {
+                    keyPool.validated(pooled);
+                } else {
+                    logger.fine("Idle connection to " + keyPool.url + " was invalid, closing it");
+                    keyPool.evict(pooled);
+                }
+            }
+        }
+    }
+
+    private static synchronized void startValidator() {
+
+        if (validator != null) {
+            return;
+        }
+        validator = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "connection-pool-validator");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        validator.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    validateIdleConnections();
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "Validating pooled connections failed: " + t.getMessage(), t);
+                }
+            }
+        }, validationInterval, validationInterval, TimeUnit.MILLISECONDS);
+    }
+
+    // -------------------------------------------------------------------------
+    /**
+     * Close all the connections in the pool, including the ones currently
+     * handed out.
      */
     public static void closeAll() {
 
-        Set<String> keys = pool.keySet();
-        Iterator<String> it = keys.iterator();
+        Iterator<KeyPool> it = pools.values().iterator();
 
         while (it.hasNext()) {
+            it.next().closeAll();
+            it.remove();
+        }
+
+    } // closeAll
+
+    // -------------------------------------------------------------------------
+    /**
+     * The connections to one database URL.
+     */
+    private static final class KeyPool {
+
+        final String driverClassName;
+
+        final String url;
+
+        final String user;
+
+        final String password;
+
+        /** Most recently returned first */
+        private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+
+        private final Set<PooledConnection> all = new HashSet<PooledConnection>();
+
+        /** Includes connections that are being created or validated */
+        private int borrowed = 0;
+
+        private int validating = 0;
+
+        KeyPool(String driverClassName, String url, String user, String password) {
+            this.driverClassName = driverClassName;
+            this.url = url;
+            this.user = user;
+            this.password = password;
+        }
+
+        /**
+         * @return An idle connection, or null if the caller should create a new
+         *         one, for which a slot has been reserved.
+         */
+        synchronized PooledConnection borrow() throws SQLException {
+
+            long deadline = waitTimeout > 0 ? System.currentTimeMillis() + waitTimeout : Long.MAX_VALUE;
+
+            while (true) {
+
+                while (!idle.isEmpty()) {
+                    PooledConnection pooled = idle.removeFirst();
+                    if (pooled.isExpired()) {
+                        close(pooled);
+                        continue;
+                    }
+                    borrowed++;
+                    return pooled;
+                }
+
+                if (borrowed + validating < maxPerKey) {
+                    borrowed++;
+                    return null;
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out waiting for a connection to " + url + ", all " + maxPerKey
+                        + " connections are in use. " + getStatistics());
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection to " + url);
+                }
+            }
+        }
+
+        synchronized void cancelBorrow() {
+            borrowed--;
+            notifyAll();
+        }
+
+        synchronized void added(PooledConnection pooled) {
+            all.add(pooled);
+        }
+
+        synchronized void giveBack(PooledConnection pooled, boolean broken) {
+
+            borrowed--;
+            if (broken || pooled.isExpired() || isClosed(pooled)) {
+                close(pooled);
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pooled);
+            }
+            notifyAll();
+        }
+
+        synchronized List<PooledConnection> takeIdleForValidation() {
+
+            List<PooledConnection> toCheck = new ArrayList<PooledConnection>();
+            long now = System.currentTimeMillis();
+
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                if (pooled.isExpired() || (idleTimeout > 0 && now - pooled.lastUsed > idleTimeout)) {
+                    it.remove();
+                    close(pooled);
+                } else if (now - pooled.lastValidated >= validationInterval) {
+                    it.remove();
+                    validating++;
+                    toCheck.add(pooled);
+                }
+            }
+            if (!toCheck.isEmpty() || idle.isEmpty()) {
+                notifyAll();
+            }
+            return toCheck;
+        }
+
+        synchronized void validated(PooledConnection pooled) {
+            validating--;
+            pooled.lastValidated = System.currentTimeMillis();
+            idle.addLast(pooled);
+            notifyAll();
+        }
+
+        synchronized void evict(PooledConnection pooled) {
+            validating--;
+            close(pooled);
+            notifyAll();
+        }
+
+        synchronized int borrowedCount() {
+            return borrowed;
+        }
+
+        synchronized int idleCount() {
+            return idle.size();
+        }
+
+        synchronized void closeAll() {
+            for (PooledConnection pooled : all) {
+                DBUtils.closeQuietly(pooled.physical);
+            }
+            all.clear();
+            idle.clear();
+            notifyAll();
+        }
+
+        private boolean isClosed(PooledConnection pooled) {
+            try {
+                return pooled.physical.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+
+        private void close(PooledConnection pooled) {
+            all.remove(pooled);
+            DBUtils.closeQuietly(pooled.physical);
+            evicted.incrementAndGet();
+        }
+    }
+
+    /**
+     * A physical connection and its bookkeeping.
+     */
+    private static final class PooledConnection {
+
+        final KeyPool keyPool;
+
+        final Connection physical;
+
+        final long createdAt;
+
+        long lastUsed;
+
+        long lastValidated;
+
+        PooledConnection(KeyPool keyPool, Connection physical) {
+            this.keyPool = keyPool;
+            this.physical = physical;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsed = createdAt;
+            this.lastValidated = createdAt;
+        }
+
+        boolean isExpired() {
+            return maxLifetime > 0 && System.currentTimeMillis() - createdAt > maxLifetime;
+        }
+
+        Connection handOut() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class },
+                new Handle(this));
+        }
+    }
+
+    /**
+     * What callers get to see of a pooled connection. Closing it gives the
+     * connection back to the pool, after which it can not be used any more.
+     * Statements created from it are wrapped as well, so SQLExceptions thrown
+     * by them are noticed.
+     */
+    private static final class Handle implements InvocationHandler {
+
+        private volatile PooledConnection pooled;
+
+        /** Set when a SQLException has been thrown, see {@link ConnectionPool#hasFailed(Connection)} */
+        volatile boolean failed = false;
+
+        private PreparedStatementCache statementCache;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        synchronized PreparedStatementCache statementCache(Connection proxy) {
+            if (pooled == null) {
+                return null;
+            }
+            if (statementCache == null) {
+                statementCache = new PreparedStatementCache(proxy, statementCacheSize);
+            }
+            return statementCache;
+        }
+
+        synchronized void release(boolean broken) {
+            if (statementCache != null) {
+                statementCache.close();
+                statementCache = null;
+            }
+            if (pooled != null) {
+                PooledConnection p = pooled;
+                pooled = null;
+                p.keyPool.giveBack(p, broken);
+            }
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+
+            if (name.equals("close") && method.getParameterTypes().length == 0) {
+                release(false);
+                return null;
+            }
+            if (name.equals("isClosed") && method.getParameterTypes().length == 0) {
+                PooledConnection p = pooled;
+                return p == null || p.physical.isClosed();
+            }
+            if (name.equals("equals") && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode") && method.getParameterTypes().length == 0) {
+                return System.identityHashCode(proxy);
+            }
+
+            PooledConnection p = pooled;
+
+            if (name.equals("toString") && method.getParameterTypes().length == 0) {
+                return "Pooled connection to " + (p == null ? "(returned to pool)" : p.keyPool.url);
+            }
+            if (p == null) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            Object result;
             try {
+                result = method.invoke(p.physical, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    failed = true;
+                }
+                throw e.getCause();
+            }
 
-                Connection con = (Connection) pool.get(it.next());
-                con.close();
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                result = Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { method.getReturnType() },
+                    new StatementHandle((Connection) proxy, this, result));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Passes calls on to a statement, noting any SQLException in the handle of
+     * the connection it came from.
+     */
+    private static final class StatementHandle implements InvocationHandler {
 
-            } catch (Exception e) {
+        private final Connection connection;
 
-                e.printStackTrace();
+        private final Handle handle;
 
+        private final Object statement;
+
+        StatementHandle(Connection connection, Handle handle, Object statement) {
+            this.connection = connection;
+            this.handle = handle;
+            this.statement = statement;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+
+            if (name.equals("getConnection") && method.getParameterTypes().length == 0) {
+                return connection;
+            }
+            if (name.equals("equals") && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode") && method.getParameterTypes().length == 0) {
+                return System.identityHashCode(proxy);
+            }
+
+            TestMetrics.Entry metrics = TestMetrics.current();
+            if (metrics != null && name.startsWith("execute")) {
+                metrics.statements++;
             }
+
+            Object result;
+            try {
+                result = method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    handle.failed = true;
+                }
+                throw e.getCause();
+            }
+
+            if (metrics != null && result instanceof ResultSet) {
+                result = Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                    new ResultSetHandle((Statement) proxy, (ResultSet) result, metrics));
+            }
+            return result;
         }
+    }
 
-    } // closeAll
+    /**
+     * Passes calls on to a result set, counting the rows and the size of the
+     * values read for the test that ran the query.
+     */
+    private static final class ResultSetHandle implements InvocationHandler {
+
+        private final Statement statement;
+
+        private final ResultSet resultSet;
+
+        private final TestMetrics.Entry metrics;
+
+        ResultSetHandle(Statement statement, ResultSet resultSet, TestMetrics.Entry metrics) {
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.metrics = metrics;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+
+            if (name.equals("getStatement") && method.getParameterTypes().length == 0) {
+                return statement;
+            }
+            if (name.equals("equals") && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode") && method.getParameterTypes().length == 0) {
+                return System.identityHashCode(proxy);
+            }
+
+            Object result;
+            try {
+                result = method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (name.equals("next")) {
+                if (Boolean.TRUE.equals(result)) {
+                    metrics.rows++;
+                }
+            } else if (result != null && name.startsWith("get") && args != null && args.length > 0) {
+                if (result instanceof String) {
+                    metrics.bytes += ((String) result).length();
+                } else if (result instanceof byte[]) {
+                    metrics.bytes += ((byte[]) result).length;
+                } else {
+                    metrics.bytes += 8;
+                }
+            }
+            return result;
+        }
+    }
 
 } // ConnectionPool
@@ -40,9 +40,17 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.ensembl.healthcheck.DatabaseRegistry;
@@ -258,9 +266,9 @@ public final class DBUtils {
 
     // -------------------------------------------------------------------------
     /**
-     * Compare a list of ResultSets to see if there are any differences. Note
-     * that if the ResultSets are large and/or there are many of them, this may
-     * take a long time!
+     * Compare a list of ResultSets to see if there are any differences. Each
+     * is compared with the first one while the rows are read, see
+     * {@link ResultSetComparer}, so they can be streamed.
      * 
      * @return The number of differences.
      * @param testCase
@@ -272,20 +280,7 @@ public final class DBUtils {
     public static boolean compareResultSetGroup(List<ResultSet> resultSetGroup, EnsTestCase testCase,
             boolean comparingSchema) {
 
-        boolean same = true;
-
-        // avoid comparing the same two ResultSets more than once
-        // i.e. only need the upper-right triangle of the comparison matrix
-        int size = resultSetGroup.size();
-        for (int i = 0; i < size; i++) {
-            for (int j = i + 1; j < size; j++) {
-                ResultSet rsi = resultSetGroup.get(i);
-                ResultSet rsj = resultSetGroup.get(j);
-                same &= compareResultSets(rsi, rsj, testCase, "", true, true, "", comparingSchema);
-            }
-        }
-
-        return same;
+        return new ResultSetComparer(testCase, "", "", true, true, comparingSchema).compare(resultSetGroup, null);
 
     } // compareResultSetGroup
 
@@ -336,51 +331,9 @@ public final class DBUtils {
      */
     public static boolean checkSameSQLResult(EnsTestCase test, String sql, String regexp, boolean comparingSchema) {
 
-        ArrayList<ResultSet> resultSetGroup = new ArrayList<ResultSet>();
-        ArrayList<Statement> statements = new ArrayList<Statement>();
-
-        try {
-
-            DatabaseRegistry mainDatabaseRegistry = DBUtils.getMainDatabaseRegistry();
-
-            for (DatabaseRegistryEntry dbre : mainDatabaseRegistry.getMatching(regexp)) {
-
-                Connection con = dbre.getConnection();
-                Statement stmt = null;
-                ResultSet rs = null;
-                try {
-                    stmt = con.createStatement();
-                    rs = stmt.executeQuery(sql);
-                    if (rs != null) {
-                        resultSetGroup.add(rs);
-                    }
-                    logger.fine("Added ResultSet for " + DBUtils.getShortDatabaseName(con) + ": " + sql);
-                    // note that the Statement can't be closed here as we use
-                    // the
-                    // ResultSet elsewhere so store a reference to it for
-                    // closing
-                    // later
-                    statements.add(stmt);
-
-                } catch (Exception e) {
-                    throw new SqlUncheckedException("Could not check same SQL results", e);
-                } finally {
-                    closeQuietly(rs);
-                    closeQuietly(stmt);
-                }
-            }
-
-            logger.finest("Number of ResultSets to compare: " + resultSetGroup.size());
-            return DBUtils.compareResultSetGroup(resultSetGroup, test, comparingSchema);
-
-        } finally {
-            for (ResultSet rs : resultSetGroup) {
-                closeQuietly(rs);
-            }
-            for (Statement s : statements) {
-                closeQuietly(s);
-            }
-        }
+        List<DatabaseRegistryEntry> databases = DBUtils.getMainDatabaseRegistry().getMatching(regexp);
+        return checkSameSQLResult(test, sql, databases.toArray(new DatabaseRegistryEntry[databases.size()]),
+                comparingSchema);
 
     } // checkSameSQLResult
 
@@ -399,175 +352,215 @@ public final class DBUtils {
     public static boolean checkSameSQLResult(EnsTestCase test, String sql, DatabaseRegistryEntry[] databases,
             boolean comparingSchema) {
 
-        List<ResultSet> resultSetGroup = new ArrayList<ResultSet>();
-        List<Statement> statements = new ArrayList<Statement>();
-        try {
-
-            for (int i = 0; i < databases.length; i++) {
+        List<DatabaseRegistryEntry[]> groups = new ArrayList<DatabaseRegistryEntry[]>();
+        groups.add(databases);
+        return checkSameSQLResult(test, sql, groups, comparingSchema);
 
-                Connection con = databases[i].getConnection();
-                Statement stmt = null;
-                ResultSet rs = null;
-                try {
-                    stmt = con.createStatement();
-                    rs = stmt.executeQuery(sql);
-                    if (rs != null) {
-                        resultSetGroup.add(rs);
-                    }
-                    logger.fine("Added ResultSet for " + DBUtils.getShortDatabaseName(con) + ": " + sql);
-                    statements.add(stmt);
-                } catch (Exception e) {
-                    DBUtils.closeQuietly(rs);
-                    DBUtils.closeQuietly(stmt);
-                    throw new SqlUncheckedException("Could not check same SQL results", e);
+    } // checkSameSQLResult
 
+    // -------------------------------------------------------------------------
+    /**
+     * Check that a particular SQL statement has the same result on all the
+     * databases of each of several groups, e.g. all the databases of each
+     * species.
+     * 
+     * Every database is queried once, several at the same time (see
+     * {@link DatabaseQueryExecutor}), and its result reduced to a hash. Only
+     * the databases whose hash differs from that of the first database of their
+     * group are queried again, one after the other, to report the differences.
+     * Groups are reported in order.
+     * 
+     * @return True if the databases of every group provide the same result,
+     *         false otherwise.
+     * @param sql
+     *            The SQL query to execute.
+     * @param groups
+     *            The groups of databases to compare.
+     */
+    public static boolean checkSameSQLResult(EnsTestCase test, final String sql,
+            List<DatabaseRegistryEntry[]> groups, boolean comparingSchema) {
+
+        List<DatabaseRegistryEntry> databases = new ArrayList<DatabaseRegistryEntry>();
+        Map<DatabaseRegistryEntry, Integer> index = new IdentityHashMap<DatabaseRegistryEntry, Integer>();
+        for (DatabaseRegistryEntry[] group : groups) {
+            for (int i = 0; group.length > 1 && i < group.length; i++) {
+                if (!index.containsKey(group[i])) {
+                    index.put(group[i], databases.size());
+                    databases.add(group[i]);
                 }
             }
+        }
 
-            logger.finest("Number of ResultSets to compare: " + resultSetGroup.size());
-            return DBUtils.compareResultSetGroup(resultSetGroup, test, comparingSchema);
-        } catch (Exception e) {
-            throw new SqlUncheckedException("Could not check same SQL results", e);
-        } finally {
-            for (ResultSet rs : resultSetGroup) {
-                DBUtils.closeQuietly(rs);
+        List<Long> hashes = DatabaseQueryExecutor.runOnAll(databases,
+                new DatabaseQueryExecutor.DatabaseTask<Long>() {
+                    public Long run(DatabaseRegistryEntry dbre) throws SQLException {
+                        return hashSQLResult(dbre, sql);
+                    }
+                });
+
+        boolean same = true;
+        for (DatabaseRegistryEntry[] group : groups) {
+            if (group.length < 2) {
+                continue;
             }
-            for (Statement s : statements) {
-                DBUtils.closeQuietly(s);
+            long reference = hashes.get(index.get(group[0]));
+            List<DatabaseRegistryEntry> differing = new ArrayList<DatabaseRegistryEntry>();
+            differing.add(group[0]);
+            for (int i = 1; i < group.length; i++) {
+                if (hashes.get(index.get(group[i])) != reference) {
+                    differing.add(group[i]);
+                }
+            }
+            if (differing.size() > 1) {
+                same &= compareSQLResults(test, sql, differing, comparingSchema);
             }
         }
+        return same;
 
     } // checkSameSQLResult
 
-    public static boolean compareResultSets(ResultSet rs1, ResultSet rs2, EnsTestCase testCase, String text,
-            boolean reportErrors, boolean warnNull, String singleTableName, int[] columns, boolean comparingSchema) {
-
-        // quick tests first
-        // Check for object equality
-        if (rs1.equals(rs2)) {
-            return true;
-        }
+    /**
+     * @return The hash of the result of sql, see
+     *         {@link ResultSetComparer#hashResultSet(ResultSet)}.
+     */
+    private static long hashSQLResult(DatabaseRegistryEntry dbre, String sql) throws SQLException {
 
+        Connection con = openStreamingConnection(dbre);
+        Statement stmt = null;
+        ResultSet rs = null;
         try {
+            stmt = createStreamingStatement(con);
+            rs = stmt.executeQuery(sql);
+            return ResultSetComparer.hashResultSet(rs);
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(stmt);
+            closeStreamingConnection(dbre, con);
+        }
 
-            // get some information about the ResultSets
-            String name1 = getShortDatabaseName(rs1.getStatement().getConnection());
-            String name2 = getShortDatabaseName(rs2.getStatement().getConnection());
+    } // hashSQLResult
 
-            // Check for same column count, names and types
-            ResultSetMetaData rsmd1 = rs1.getMetaData();
-            ResultSetMetaData rsmd2 = rs2.getMetaData();
-            if (rsmd1.getColumnCount() != rsmd2.getColumnCount() && columns == null) {
+    /**
+     * Run sql on each database and compare the results row by row, reporting
+     * any differences.
+     */
+    private static boolean compareSQLResults(EnsTestCase test, String sql, List<DatabaseRegistryEntry> databases,
+            boolean comparingSchema) {
 
-                if (reportErrors) {
+        // the rows are streamed from every database at the same time, so
+        // none of the results is held in memory
+        Connection[] connections = new Connection[databases.size()];
+        List<ResultSet> resultSetGroup = new ArrayList<ResultSet>();
+        List<Statement> statements = new ArrayList<Statement>();
+        try {
 
-                    ReportManager.problem(testCase, name1, "Column counts differ " + singleTableName + " " + name1
-                            + ": " + rsmd1.getColumnCount() + " " + name2 + ": " + rsmd2.getColumnCount());
-                }
+            for (int i = 0; i < connections.length; i++) {
 
-                return false; // Deliberate early return for performance
-                // reasons
+                Connection con = openStreamingConnection(databases.get(i));
+                connections[i] = con;
+                Statement stmt = createStreamingStatement(con);
+                statements.add(stmt);
+                resultSetGroup.add(stmt.executeQuery(sql));
+                logger.fine("Added ResultSet for " + DBUtils.getShortDatabaseName(con) + ": " + sql);
             }
 
-            if (columns == null) {
-                columns = new int[rsmd1.getColumnCount()];
-                for (int i = 0; i < columns.length; i++) {
-                    columns[i] = i + 1;
-                }
+            logger.finest("Number of ResultSets to compare: " + resultSetGroup.size());
+            return DBUtils.compareResultSetGroup(resultSetGroup, test, comparingSchema);
+        } catch (SQLException e) {
+            throw new SqlUncheckedException("Could not check same SQL results", e);
+        } finally {
+            for (ResultSet rs : resultSetGroup) {
+                DBUtils.closeQuietly(rs);
             }
+            for (Statement s : statements) {
+                DBUtils.closeQuietly(s);
+            }
+            for (int i = 0; i < connections.length; i++) {
+                closeStreamingConnection(databases.get(i), connections[i]);
+            }
+        }
 
-            for (int j = 0; j < columns.length; j++) {
-                int i = columns[j];
-
-                // note columns indexed from l
-                if (!((rsmd1.getColumnName(i)).equals(rsmd2.getColumnName(i)))) {
-
-                    if (reportErrors) {
+    } // compareSQLResults
 
-                        ReportManager.problem(testCase, name1,
-                                "Column names differ for " + singleTableName + " column " + i + " - " + name1 + ": "
-                                        + rsmd1.getColumnName(i) + " " + name2 + ": " + rsmd2.getColumnName(i));
-                    }
+    /**
+     * Borrow a connection of its own for streaming from a database, so the
+     * connection of the DatabaseRegistryEntry stays free for tests running
+     * at the same time. It must be closed to give it back.
+     */
+    private static Connection openStreamingConnection(DatabaseRegistryEntry dbre) throws SQLException {
 
-                    // Deliberate early return for performance reasons
-                    return false;
+        if (dbre.getDatabaseServer() == null) {
+            return dbre.getConnection();
+        }
+        return dbre.getDatabaseServer().getDatabaseConnection(dbre.getName());
+    }
 
-                }
-                if (rsmd1.getColumnType(i) != rsmd2.getColumnType(i)) {
+    private static void closeStreamingConnection(DatabaseRegistryEntry dbre, Connection con) {
 
-                    if (reportErrors) {
+        if (con != null && dbre.getDatabaseServer() != null) {
+            closeQuietly(con);
+        }
+    }
 
-                        ReportManager.problem(testCase, name1,
-                                "Column types differ for " + singleTableName + " column " + i + " - " + name1 + ": "
-                                        + rsmd1.getColumnType(i) + " " + name2 + ": " + rsmd2.getColumnType(i));
-                    }
-                    return false; // Deliberate early return for performance
-                    // reasons
-                }
-            } // for column
-
-            // make sure both cursors are at the start of the ResultSet
-            // (default is before the start)
-            rs1.beforeFirst();
-            rs2.beforeFirst();
-            // if quick checks didn't cause return, try comparing row-wise
-
-            int row = 1;
-            while (rs1.next()) {
-
-                if (rs2.next()) {
-                    String str = name1 + " and " + name2 + text + " " + singleTableName + " with columns ";
-                    for (int j = 0; j < columns.length; j++) {
-                        int i = columns[j];
-                        str += rsmd1.getColumnName(i) + " " + Utils.truncate(rs1.getString(i), 250, true) + ", ";
-                        // note columns indexed from 1
-                        if (!compareColumns(rs1, rs2, i, warnNull)) {
-                            str += " differ for values " + Utils.truncate(rs1.getString(i), 250, true) + ", "
-                                    + Utils.truncate(rs2.getString(i), 250, true);
-                            if (reportErrors) {
-                                ReportManager.problem(testCase, name1, str);
-                            }
-                            return false;
-                        }
-                    }
-                    row++;
+    /**
+     * Borrow a connection of its own to the database con is connected to, for
+     * streaming from it. con is usually the connection of a
+     * DatabaseRegistryEntry, which other tests running at the same time use as
+     * well and can not while a result is streamed from it. A connection that
+     * has not come from the pool is used for streaming itself.
+     * 
+     * @return The connection to stream from; give it back with
+     *         {@link #closeStreamingConnection(Connection, Connection)}.
+     */
+    public static Connection openStreamingConnection(Connection con) throws SQLException {
 
-                } else {
-                    // rs1 has more rows than rs2
-                    if (reportErrors) {
-                        ReportManager.problem(testCase, name1,
-                                singleTableName + " has more rows in " + name1 + " than in " + name2);
-                    }
-                    return false;
-                }
+        Connection own = ConnectionPool.getAnotherConnection(con);
+        return own == null ? con : own;
+    }
 
-            } // while rs1
+    /**
+     * Give back a connection from {@link #openStreamingConnection(Connection)}.
+     */
+    public static void closeStreamingConnection(Connection con, Connection streaming) {
 
-            // if both ResultSets are the same, then we should be at the end of
-            // both, i.e. .next() should return false
-            String extra = comparingSchema ? ". This means that there are missing columns in the table, rectify!" : "";
-            if (rs1.next()) {
+        if (streaming != null && streaming != con) {
+            closeQuietly(streaming);
+        }
+    }
 
-                if (reportErrors) {
-                    ReportManager.problem(testCase, name1,
-                            name1 + " " + singleTableName + " has additional rows that are not in " + name2 + extra);
-                }
-                return false;
-            } else if (rs2.next()) {
+    // -------------------------------------------------------------------------
+    /**
+     * Create a statement whose ResultSets are read one row at a time. From
+     * MySQL the rows are streamed rather than fetched all at once; the
+     * connection can then not be used for anything else until the ResultSet
+     * has been closed.
+     */
+    public static Statement createStreamingStatement(Connection con) throws SQLException {
 
-                if (reportErrors) {
-                    ReportManager.problem(testCase, name1,
-                            name2 + " " + singleTableName + " has additional rows that are not in " + name1 + extra);
+        Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (con.getMetaData().getDriverName().contains("MySQL")) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            stmt.setFetchSize(1000);
+        }
+        return stmt;
 
-                }
-                return false;
-            }
+    } // createStreamingStatement
 
-        } catch (SQLException se) {
-            throw new SqlUncheckedException("Could not compare two result sets", se);
-        }
+    /**
+     * Compare two ResultSets, optionally only some of their columns, see
+     * {@link #compareResultSets(ResultSet, ResultSet, EnsTestCase, String, boolean, boolean, String, boolean)}.
+     * The rows are compared as they are read, so the ResultSets do not need
+     * to be scrollable.
+     * 
+     * @param columns
+     *            The indexes of the columns to compare, null for all.
+     */
+    public static boolean compareResultSets(ResultSet rs1, ResultSet rs2, EnsTestCase testCase, String text,
+            boolean reportErrors, boolean warnNull, String singleTableName, int[] columns, boolean comparingSchema) {
 
-        return true;
+        return new ResultSetComparer(testCase, text, singleTableName, reportErrors, warnNull, comparingSchema)
+                .compare(rs1, rs2, columns);
 
     } // compareResultSets
 
@@ -703,6 +696,10 @@ public final class DBUtils {
         } catch (SQLException se) {
             throw new SqlUncheckedException("Could not get database name", se);
         }
+        int parameters = url.indexOf('?');
+        if (parameters >= 0) {
+            url = url.substring(0, parameters);
+        }
         String name = url.substring(url.lastIndexOf('/') + 1);
 
         return name;
@@ -929,12 +926,13 @@ public final class DBUtils {
     // ---------------------------------------------------------------------
 
     /**
-     * Get the meta_value for a named key in the meta table.
+     * Get the meta_value for a named key in the meta table. The meta table is
+     * read through the {@link QueryCache}.
      */
     public static String getMetaValue(Connection con, String key) {
 
         List<String> results = getSqlTemplate(con)
-                .queryForDefaultObjectList("SELECT meta_value FROM meta WHERE meta_key='" + key + "'", String.class);
+                .queryForCachedDefaultObjectList("SELECT meta_value FROM meta WHERE meta_key=?", String.class, key);
         return CollectionUtils.getFirstElement(results, StringUtils.EMPTY);
 
     }
@@ -1405,36 +1403,82 @@ public final class DBUtils {
 
     // -------------------------------------------------------------------------
     /**
-     * Use a row-by-row approach to counting the rows in a table.
+     * Use a row-by-row approach to counting the rows in a table. The rows are
+     * read one at a time, from MySQL they are streamed rather than fetched all
+     * at once, so they are never all held in memory.
      */
     public static int getRowCountSlow(Connection con, String sql) {
 
-        int result = -1;
+        int result = 0;
+        Connection streaming = null;
         Statement stmt = null;
         ResultSet rs = null;
         try {
-            stmt = con.createStatement();
+            streaming = openStreamingConnection(con);
+            stmt = createStreamingStatement(streaming);
             rs = stmt.executeQuery(sql);
-            if (rs != null) {
-                if (rs.last()) {
-                    result = rs.getRow();
-                } else {
-                    result = 0; // probably signifies an empty ResultSet
-                }
+            while (rs.next()) {
+                result++;
             }
-            rs.close();
-            stmt.close();
         } catch (Exception e) {
             throw new SqlUncheckedException("Could not retrieve row count", e);
         } finally {
             closeQuietly(rs);
             closeQuietly(stmt);
+            closeStreamingConnection(con, streaming);
         }
 
         return result;
 
     } // getRowCountSlow
 
+    // -------------------------------------------------------------------------
+    /**
+     * Queries that could be rewritten by {@link #getCountQuery(String)}, but
+     * whose rewritten form can not be run, e.g. because the derived table
+     * would have duplicate column names. They are counted row by row straight
+     * away.
+     */
+    private static final Set<String> uncountableQueries = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static final int MAX_UNCOUNTABLE_QUERIES = 1000;
+
+    /** Syntax error, duplicate column name */
+    private static final Set<String> UNCOUNTABLE_SQL_STATES = new HashSet<String>(Arrays.asList("42000", "42S21"));
+
+    /** MySQL ER_DUP_FIELDNAME, ER_PARSE_ERROR */
+    private static final Set<Integer> UNCOUNTABLE_ERROR_CODES = new HashSet<Integer>(Arrays.asList(1060, 1064));
+
+    private static final Pattern SELECT_QUERY = Pattern.compile("^\\s*select\\s", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern NOT_IN_DERIVED_TABLE = Pattern.compile(
+            "\\binto\\s+(outfile|dumpfile|@)|\\bfor\\s+update\\b|\\block\\s+in\\s+share\\s+mode\\b|\\bsql_calc_found_rows\\b|\\bprocedure\\s+analyse\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Rewrite a query so that the database counts its rows, as
+     * <code>SELECT COUNT(*) FROM (sql) t</code>.
+     * 
+     * @param sql
+     *            The query whose rows should be counted.
+     * @return The counting query, or null if sql is not a SELECT or can not be
+     *         used as a derived table.
+     */
+    public static String getCountQuery(String sql) {
+
+        String query = sql.trim();
+        while (query.endsWith(";")) {
+            query = query.substring(0, query.length() - 1).trim();
+        }
+
+        if (!SELECT_QUERY.matcher(query).find() || NOT_IN_DERIVED_TABLE.matcher(query).find()) {
+            return null;
+        }
+
+        return "SELECT COUNT(*) FROM (" + query + ") t";
+
+    } // getCountQuery
+
     // -------------------------------------------------------------------------
     /**
      * Count the rows in a particular table or query.
@@ -1442,46 +1486,74 @@ public final class DBUtils {
      * @param con
      *            A connection to the database. Should already be open.
      * @param sql
-     *            The SQL to execute. Note that if possible this should begin
-     *            with <code>SELECT COUNT FROM</code> since this is much quicker
-     *            to execute. If a standard SELECT statement is used, a
-     *            row-by-row count will be performed, which may be slow if the
-     *            table is large.
-     * @return The number of matching rows, or -1 if the query did not execute
-     *         for some reason.
+     *            The SQL to execute. A <code>SELECT COUNT</code> without
+     *            <code>GROUP BY</code> is run as it is. Any other SELECT is
+     *            counted by the database as <code>SELECT COUNT(*) FROM (sql)
+     *            t</code>. Only if that is not possible are the rows counted
+     *            one by one, which may be slow if there are many.
+     * @return The number of matching rows.
      */
     public static int getRowCount(Connection con, String sql) {
 
         if (con == null) {
             logger.severe("getRowCount: Database connection is null");
         }
-        int result = -1;
 
         // if the query starts with SELECT COUNT and does not include a GROUP
         // BY clause
         // we can execute it and just take the first result, which is the count
-        if (sql.toLowerCase().contains("select count") && !sql.toLowerCase().contains("group by")) {
+        String lowerCaseSql = sql.toLowerCase();
+        if (lowerCaseSql.contains("select count") && !lowerCaseSql.contains("group by")) {
+
+            return getRowCountFast(con, sql);
+
+        }
+
+        // otherwise let the database count the rows of the query
+        String countSql = getCountQuery(sql);
+        if (countSql != null && !uncountableQueries.contains(sql)) {
+
+            try {
 
-            result = getRowCountFast(con, sql);
+                return getRowCountFast(con, countSql);
 
-        } else if (!sql.toLowerCase().contains("select count")) {
-            // otherwise, do it row-by-row
-            logger.fine(
-                    "getRowCount() executing SQL which does not appear to begin with SELECT COUNT - performing row-by-row count, which may take a long time if the table is large.");
-            result = getRowCountSlow(con, sql);
+            } catch (SqlUncheckedException e) {
 
-        } else if (sql.toLowerCase().contains("select count") && sql.toLowerCase().contains("group by")) {
-            // query has both SELECT COUNT and GROUP BY clause
-            logger.fine(
-                    "getRowCount() executing SQL which appears to begin with SELECT COUNT and contains GROUP BY clause - performing row-by-row count, which may take a long time if the table is large.");
-            result = getRowCountSlow(con, sql);
+                logger.fine("getRowCount() could not execute " + countSql + " (" + e.getMessage()
+                        + ") - performing row-by-row count instead.");
+                // anything else, e.g. a lock wait timeout, may not happen next time
+                if (isRewriteError(e) && uncountableQueries.size() < MAX_UNCOUNTABLE_QUERIES) {
+                    uncountableQueries.add(sql);
+                }
+
+            }
 
         }
 
-        return result;
+        logger.fine(
+                "getRowCount() executing SQL which can not be counted by the database - performing row-by-row count, which may take a long time if the table is large.");
+        return getRowCountSlow(con, sql);
 
     } // getRowCount
 
+    /**
+     * @return true if e shows that the query rewritten by
+     *         {@link #getCountQuery(String)} can never be run, rather than
+     *         that it failed this time.
+     */
+    private static boolean isRewriteError(SqlUncheckedException e) {
+
+        for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                SQLException sqle = (SQLException) t;
+                return UNCOUNTABLE_SQL_STATES.contains(sqle.getSQLState())
+                        || UNCOUNTABLE_ERROR_CODES.contains(sqle.getErrorCode());
+            }
+        }
+        return false;
+
+    } // isRewriteError
+
     // -------------------------------------------------------------------------
     /**
      * Execute a SQL statement and return the value of one column of one row.
@@ -1562,6 +1634,18 @@ public final class DBUtils {
 
     } // getColumnValues
 
+    // -------------------------------------------------------------------------
+    /**
+     * Works like {@link #getColumnValues(Connection, String)} for queries on
+     * data that does not change while the healthchecks run, e.g. the
+     * coord_system table. The values are kept in the {@link QueryCache}.
+     */
+    public static String[] getCachedColumnValues(Connection con, String sql) {
+
+        return getSqlTemplate(con).queryForCachedDefaultObjectList(sql, String.class).toArray(new String[] {});
+
+    } // getCachedColumnValues
+
     // -------------------------------------------------------------------------
     /**
      * Execute a SQL statement and return the values of one column of the
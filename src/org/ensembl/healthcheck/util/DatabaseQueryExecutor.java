@@ -0,0 +1,204 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+
+/**
+ * Runs the same piece of work, usually a query, against several databases at
+ * the same time. Checks that compare many databases use this to avoid one
+ * round trip after another. At most {@link #getThreads()} databases are
+ * worked on at once, across all the tests that are running.
+ * 
+ * The results are returned in the order of the databases, so whatever is
+ * reported from them comes out in the same order as when the databases were
+ * queried one by one. Reporting should be left to the calling thread.
+ */
+public final class DatabaseQueryExecutor {
+
+	private static final int DEFAULT_THREADS = 8;
+
+	private static int threads = DEFAULT_THREADS;
+
+	private static ExecutorService executor;
+
+	/** Set on the executor's threads, which run work given to them inline */
+	private static final ThreadLocal<Boolean> isWorker = new ThreadLocal<Boolean>();
+
+	/**
+	 * Work done for one database.
+	 */
+	public static interface DatabaseTask<T> {
+		T run(DatabaseRegistryEntry dbre) throws SQLException;
+	}
+
+	/**
+	 * Work done for one of anything else, e.g. a database server.
+	 */
+	public static interface Task<S, T> {
+		T run(S item) throws SQLException;
+	}
+
+	// hide constructor to stop instantiation
+	private DatabaseQueryExecutor() {
+	}
+
+	/**
+	 * @return The maximum number of databases worked on at the same time.
+	 */
+	public static synchronized int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Set the maximum number of databases worked on at the same time. 1 works
+	 * on them one after the other on the calling thread.
+	 */
+	public static synchronized void setThreads(int threads) {
+
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of query threads must be at least 1, was " + threads);
+		}
+		if (threads != DatabaseQueryExecutor.threads && executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		DatabaseQueryExecutor.threads = threads;
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(final Runnable r) {
+					Thread t = new Thread(new Runnable() {
+						public void run() {
+							isWorker.set(Boolean.TRUE);
+							r.run();
+						}
+					}, "database-query-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Run task for each of the databases.
+	 * 
+	 * @return The results of the task, in the order of databases.
+	 * @throws SqlUncheckedException
+	 *             If the task throws an SQLException for any database.
+	 */
+	public static <T> List<T> runOnAll(List<DatabaseRegistryEntry> databases, final DatabaseTask<T> task) {
+
+		return runOnEach(databases, new Task<DatabaseRegistryEntry, T>() {
+			public T run(DatabaseRegistryEntry dbre) throws SQLException {
+				return task.run(dbre);
+			}
+		});
+	}
+
+	/**
+	 * Run task for each of the items, at most {@link #getThreads()} at once.
+	 * 
+	 * @return The results of the task, in the order of items.
+	 * @throws SqlUncheckedException
+	 *             If the task throws an SQLException for any item.
+	 */
+	public static <S, T> List<T> runOnEach(List<S> items, final Task<S, T> task) {
+
+		List<T> results = new ArrayList<T>(items.size());
+
+		if (items.size() < 2 || getThreads() == 1 || isWorker.get() != null) {
+			for (S item : items) {
+				results.add(runTask(task, item));
+			}
+			return results;
+		}
+
+		final TestMetrics.Entry metrics = TestMetrics.current();
+		List<Future<T>> futures = new ArrayList<Future<T>>(items.size());
+		ExecutorService executor = getExecutor();
+		try {
+			for (final S item : items) {
+				futures.add(executor.submit(new Callable<T>() {
+					public T call() {
+						if (metrics == null) {
+							return runTask(task, item);
+						}
+						TestMetrics.Entry previous = TestMetrics.startHelper(metrics);
+						try {
+							return runTask(task, item);
+						} finally {
+							TestMetrics.Entry helper = TestMetrics.finishHelper(previous);
+							synchronized (metrics) {
+								metrics.add(helper);
+							}
+						}
+					}
+				}));
+			}
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SqlUncheckedException("Interrupted while querying databases", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new SqlUncheckedException("Could not query databases", cause);
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return results;
+	}
+
+	private static <S, T> T runTask(Task<S, T> task, S item) {
+
+		try {
+			return task.run(item);
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not query " + item, e);
+		}
+	}
+
+}
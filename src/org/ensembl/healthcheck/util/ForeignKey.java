@@ -0,0 +1,118 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+/**
+ * A foreign-key relation from a column of one table to a column of another,
+ * checked by {@link OrphanChecker}. A row of the table is an orphan if its
+ * column does not match the referenced column of any row of the referenced
+ * table. An optional constraint restricts the rows of the table that are
+ * checked; it is an SQL condition on a column of the table, which is prefixed
+ * with the table name.
+ */
+public class ForeignKey {
+
+	private final String table;
+	private final String column;
+	private final String referencedTable;
+	private final String referencedColumn;
+	private final String constraint;
+
+	public ForeignKey(String table, String column, String referencedTable, String referencedColumn) {
+		this(table, column, referencedTable, referencedColumn, null);
+	}
+
+	/**
+	 * @param constraint
+	 *            Condition on a column of table, e.g. "analysis_id IS NOT NULL".
+	 *            Null or "" checks every row.
+	 */
+	public ForeignKey(String table, String column, String referencedTable, String referencedColumn,
+			String constraint) {
+		this.table = table;
+		this.column = column;
+		this.referencedTable = referencedTable;
+		this.referencedColumn = referencedColumn;
+		this.constraint = constraint == null || constraint.length() == 0 ? null : constraint;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public String getColumn() {
+		return column;
+	}
+
+	public String getReferencedTable() {
+		return referencedTable;
+	}
+
+	public String getReferencedColumn() {
+		return referencedColumn;
+	}
+
+	/**
+	 * @return The constraint on the rows of the table, or null if every row is
+	 *         checked.
+	 */
+	public String getConstraint() {
+		return constraint;
+	}
+
+	/**
+	 * @return The relation the other way round, which finds rows of the
+	 *         referenced table that are not referred to. The constraint is
+	 *         not carried over.
+	 */
+	public ForeignKey reverse() {
+		return new ForeignKey(referencedTable, referencedColumn, table, column);
+	}
+
+	/**
+	 * @return SQL condition that is true for the orphans of this relation,
+	 *         for a query on the table.
+	 */
+	String getOrphanCondition() {
+		String condition = "NOT EXISTS (SELECT 1 FROM " + referencedTable + " r WHERE r." + referencedColumn
+				+ " = " + table + "." + column + ")";
+		if (constraint != null) {
+			condition = table + "." + constraint + " AND " + condition;
+		}
+		return condition;
+	}
+
+	/**
+	 * @return A query listing the orphans, to be given in reports.
+	 */
+	public String getUsefulSQL() {
+		String sql = "SELECT " + table + "." + column + " FROM " + table + " LEFT JOIN " + referencedTable + " ON "
+				+ table + "." + column + " = " + referencedTable + "." + referencedColumn + " WHERE "
+				+ referencedTable + "." + referencedColumn + " IS NULL";
+		if (constraint != null) {
+			sql += " AND " + table + "." + constraint;
+		}
+		return sql;
+	}
+
+	public String toString() {
+		return table + "." + column + " -> " + referencedTable + "." + referencedColumn
+				+ (constraint == null ? "" : " [" + constraint + "]");
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The distinct values of a query, held in memory so that rows of another
+ * database, possibly on another server, can be looked up in them without a
+ * query per row or a join across schemas.
+ * 
+ * Integer values are kept in a sorted long[], 8 bytes per value; anything
+ * else in a sorted String[]. If the query returns more than one column, the
+ * values of each row are joined with tabs into one String. Values are
+ * compared exactly, not by the collation of the database, which is fine for
+ * IDs. NULLs are left out.
+ */
+public final class IdSet {
+
+	private final long[] longs;
+	private final String[] strings;
+
+	private IdSet(long[] longs, String[] strings) {
+		this.longs = longs;
+		this.strings = strings;
+	}
+
+	/**
+	 * Read the values of a query. The rows are streamed, so only the values
+	 * are held in memory. They are streamed over a connection of their own
+	 * if con is pooled, see {@link DBUtils#openStreamingConnection(Connection)},
+	 * so that con stays free for other tests meanwhile.
+	 * 
+	 * @throws SqlUncheckedException
+	 *             If the query fails.
+	 */
+	public static IdSet load(Connection con, String sql, Object... args) {
+
+		Connection streaming = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			streaming = DBUtils.openStreamingConnection(con);
+			stmt = streaming.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(streaming.getMetaData().getDriverName().contains("MySQL") ? Integer.MIN_VALUE : 1000);
+			for (int i = 0; i < args.length; i++) {
+				stmt.setObject(i + 1, args[i]);
+			}
+			rs = stmt.executeQuery();
+
+			if (isInteger(rs)) {
+				LongArrayList values = new LongArrayList();
+				while (rs.next()) {
+					long value = rs.getLong(1);
+					if (!rs.wasNull()) {
+						values.add(value);
+					}
+				}
+				return new IdSet(distinct(values.toArray()), null);
+			}
+
+			int columns = rs.getMetaData().getColumnCount();
+			List<String> values = new ArrayList<String>();
+			while (rs.next()) {
+				String value = getString(rs, columns);
+				if (value != null) {
+					values.add(value);
+				}
+			}
+			return new IdSet(null, distinct(values.toArray(new String[values.size()])));
+
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not load the values of " + sql, e);
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(stmt);
+			DBUtils.closeStreamingConnection(con, streaming);
+		}
+
+	}
+
+	/**
+	 * @return The number of distinct values.
+	 */
+	public int size() {
+		return longs != null ? longs.length : strings.length;
+	}
+
+	public boolean contains(long value) {
+		if (longs != null) {
+			return Arrays.binarySearch(longs, value) >= 0;
+		}
+		return Arrays.binarySearch(strings, String.valueOf(value)) >= 0;
+	}
+
+	public boolean contains(String value) {
+		if (value == null) {
+			return false;
+		}
+		if (longs != null) {
+			try {
+				return contains(Long.parseLong(value));
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		return Arrays.binarySearch(strings, value) >= 0;
+	}
+
+	/**
+	 * @return true if the values of the current row of rs, joined with tabs
+	 *         if there are several columns, are in this set. A NULL is never
+	 *         in it.
+	 */
+	public boolean contains(ResultSet rs) throws SQLException {
+		if (longs != null && rs.getMetaData().getColumnCount() == 1 && isInteger(rs)) {
+			long value = rs.getLong(1);
+			return !rs.wasNull() && contains(value);
+		}
+		return contains(getString(rs, rs.getMetaData().getColumnCount()));
+	}
+
+	static boolean isInteger(ResultSet rs) throws SQLException {
+		ResultSetMetaData meta = rs.getMetaData();
+		if (meta.getColumnCount() != 1) {
+			return false;
+		}
+		switch (meta.getColumnType(1)) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+			return true;
+		case Types.BIGINT:
+			// unsigned values above Long.MAX_VALUE would not fit
+			return meta.isSigned(1);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return The values of the current row joined with tabs, or null if any
+	 *         of them is NULL.
+	 */
+	private static String getString(ResultSet rs, int columns) throws SQLException {
+		if (columns == 1) {
+			return rs.getString(1);
+		}
+		StringBuilder value = new StringBuilder();
+		for (int i = 1; i <= columns; i++) {
+			String column = rs.getString(i);
+			if (column == null) {
+				return null;
+			}
+			if (i > 1) {
+				value.append('\t');
+			}
+			value.append(column);
+		}
+		return value.toString();
+	}
+
+	private static long[] distinct(long[] values) {
+		Arrays.sort(values);
+		int n = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (n == 0 || values[i] != values[n - 1]) {
+				values[n++] = values[i];
+			}
+		}
+		return n == values.length ? values : Arrays.copyOf(values, n);
+	}
+
+	private static String[] distinct(String[] values) {
+		Arrays.sort(values);
+		int n = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (n == 0 || !values[i].equals(values[n - 1])) {
+				values[n++] = values[i];
+			}
+		}
+		return n == values.length ? values : Arrays.copyOf(values, n);
+	}
+
+}
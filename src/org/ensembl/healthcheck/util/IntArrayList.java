@@ -0,0 +1,76 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, stored in an array instead of as boxed Integers.
+ * Not thread safe.
+ */
+public class IntArrayList {
+
+	private int[] values;
+
+	private int size = 0;
+
+	public IntArrayList() {
+		this(16);
+	}
+
+	public IntArrayList(int initialCapacity) {
+		values = new int[Math.max(1, initialCapacity)];
+	}
+
+	public void add(int value) {
+
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	public int get(int index) {
+
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		}
+		return values[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return A copy of the values in the list.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+}
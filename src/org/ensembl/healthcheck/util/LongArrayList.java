@@ -0,0 +1,76 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of longs, stored in an array instead of as boxed Longs.
+ * Not thread safe.
+ */
+public class LongArrayList {
+
+	private long[] values;
+
+	private int size = 0;
+
+	public LongArrayList() {
+		this(16);
+	}
+
+	public LongArrayList(int initialCapacity) {
+		values = new long[Math.max(1, initialCapacity)];
+	}
+
+	public void add(long value) {
+
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	public long get(int index) {
+
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		}
+		return values[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return A copy of the values in the list.
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+}
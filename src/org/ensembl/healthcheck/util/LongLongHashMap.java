@@ -0,0 +1,249 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+/**
+ * A hash map from long to long which stores its keys and values in arrays
+ * instead of boxing them. It uses open addressing with linear probing and
+ * takes about 32 bytes per entry, against roughly 80 for a
+ * <code>HashMap&lt;Long,Long&gt;</code>.
+ * 
+ * Entries can not be removed. Not thread safe.
+ */
+public class LongLongHashMap {
+
+	/** Marks a free slot. Key 0 is kept separately. */
+	private static final long FREE = 0L;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+
+	private long[] values;
+
+	private int size = 0;
+
+	private boolean hasZeroKey = false;
+
+	private long zeroValue;
+
+	private final long missingValue;
+
+	/**
+	 * Given the entries of a map by {@link LongLongHashMap#forEach(EntryVisitor)}.
+	 */
+	public static interface EntryVisitor {
+		void visit(long key, long value);
+	}
+
+	/**
+	 * @param missingValue
+	 *          Returned by {@link #get(long)} for keys that are not in the map.
+	 */
+	public LongLongHashMap(long missingValue) {
+		this(16, missingValue);
+	}
+
+	/**
+	 * @param expectedSize
+	 *          Number of entries the map can take before it has to grow.
+	 * @param missingValue
+	 *          Returned by {@link #get(long)} for keys that are not in the map.
+	 */
+	public LongLongHashMap(int expectedSize, long missingValue) {
+
+		int capacity = Integer.highestOneBit(Math.max(2, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+		this.keys = new long[capacity];
+		this.values = new long[capacity];
+		this.missingValue = missingValue;
+	}
+
+	/**
+	 * @return The value stored for key, or the missing value given to the
+	 *         constructor.
+	 */
+	public long get(long key) {
+
+		if (key == FREE) {
+			return hasZeroKey ? zeroValue : missingValue;
+		}
+
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return missingValue;
+	}
+
+	public boolean containsKey(long key) {
+
+		if (key == FREE) {
+			return hasZeroKey;
+		}
+
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == key) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Store a value, replacing any value already stored for key.
+	 */
+	public void put(long key, long value) {
+
+		if (key == FREE) {
+			if (!hasZeroKey) {
+				size++;
+			}
+			hasZeroKey = true;
+			zeroValue = value;
+			return;
+		}
+
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+
+		if (size > keys.length * LOAD_FACTOR) {
+			grow();
+		}
+	}
+
+	/**
+	 * Add delta to the value stored for key. Keys that are not in the map start
+	 * at 0, so this can be used for counting.
+	 */
+	public void addTo(long key, long delta) {
+
+		if (containsKey(key)) {
+			put(key, get(key) + delta);
+		} else {
+			put(key, delta);
+		}
+	}
+
+	/**
+	 * Hand every entry to visitor, in no particular order.
+	 */
+	public void forEach(EntryVisitor visitor) {
+
+		if (hasZeroKey) {
+			visitor.visit(FREE, zeroValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				visitor.visit(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return The keys of the map, in no particular order.
+	 */
+	public long[] keys() {
+
+		long[] result = new long[size];
+		int n = 0;
+		if (hasZeroKey) {
+			result[n++] = FREE;
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				result[n++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	public long getMissingValue() {
+		return missingValue;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return Approximate number of bytes used by the arrays of the map.
+	 */
+	public long memoryUsage() {
+		return 16L * keys.length;
+	}
+
+	/**
+	 * @return Approximate number of bytes a map holding this many entries
+	 *         will use.
+	 */
+	public static long memoryUsage(int entries) {
+		return 16L * (Integer.highestOneBit(Math.max(2, (int) Math.ceil(entries / LOAD_FACTOR)) - 1) << 1);
+	}
+
+	private void grow() {
+
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+
+		keys = new long[oldKeys.length * 2];
+		values = new long[oldValues.length * 2];
+		int mask = keys.length - 1;
+
+		for (int j = 0; j < oldKeys.length; j++) {
+			long key = oldKeys[j];
+			if (key != FREE) {
+				int i = slot(key, mask);
+				while (keys[i] != FREE) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int slot(long key, int mask) {
+
+		// Spread the bits, keys are often sequential ids
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+}
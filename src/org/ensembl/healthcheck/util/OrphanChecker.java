@@ -0,0 +1,609 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+
+/**
+ * Counts the orphans of many foreign-key relations of a database at once,
+ * using one of two strategies.
+ * 
+ * By default the database does the work. The relations are grouped by the
+ * table they start from and each table is read only once, counting the
+ * orphans of all of its relations in one query:
+ * 
+ * <pre>
+ * SELECT SUM(CASE WHEN NOT EXISTS (SELECT 1 FROM xref r WHERE r.xref_id = object_xref.xref_id) THEN 1 ELSE 0 END),
+ *        SUM(CASE WHEN ... THEN 1 ELSE 0 END)
+ * FROM object_xref
+ * </pre>
+ * 
+ * Up to {@link #SAMPLE_SIZE} orphans are then fetched for the relations that
+ * have any. If the query for a table fails, e.g. because one of the columns
+ * does not exist, its relations are counted one by one so that only the
+ * relations which can not be checked are reported as such.
+ * 
+ * Relations between integer columns where both tables have at least
+ * {@link #getMergeThreshold()} rows, and both columns are the first column of
+ * an index, are instead checked here: both columns are read in order from
+ * their indexes, streamed over two connections, and merged in constant
+ * memory. This puts no join or temporary table on the server. When a
+ * relation and its {@link ForeignKey#reverse()} are both checked, the orphans
+ * of both are found in the same pass.
+ */
+public class OrphanChecker {
+
+	/**
+	 * Number of orphans fetched as examples for each relation that has any.
+	 */
+	public static final int SAMPLE_SIZE = 20;
+
+	private static final long DEFAULT_MERGE_THRESHOLD = 20000000L;
+
+	private static long mergeThreshold = DEFAULT_MERGE_THRESHOLD;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final Connection con;
+
+	private final DatabaseRegistryEntry dbre;
+
+	private final Map<String, Long> tableRows = new LinkedHashMap<String, Long>();
+
+	private final Map<String, Boolean> indexedColumns = new HashMap<String, Boolean>();
+
+	/**
+	 * Check relations using con. The client-side strategy can only be used
+	 * if con does not stream result sets, as MySQL connections do, since it
+	 * reads two at once.
+	 */
+	public OrphanChecker(Connection con) {
+		this.con = con;
+		this.dbre = null;
+	}
+
+	/**
+	 * Check relations of a database. The client-side strategy opens a second
+	 * connection to it if necessary.
+	 */
+	public OrphanChecker(DatabaseRegistryEntry dbre) {
+		this.con = dbre.getConnection();
+		this.dbre = dbre;
+	}
+
+	/**
+	 * @return The number of rows from which relations are checked by merging
+	 *         the sorted columns on the client rather than on the server.
+	 */
+	public static long getMergeThreshold() {
+		return mergeThreshold;
+	}
+
+	/**
+	 * @param rows
+	 *            The number of rows, in the smaller of the two tables, from
+	 *            which relations between indexed columns are checked on the
+	 *            client. 0 checks every relation between integer columns on
+	 *            the client.
+	 */
+	public static void setMergeThreshold(long rows) {
+		if (rows < 0) {
+			throw new IllegalArgumentException("The merge threshold must not be negative, was: " + rows);
+		}
+		mergeThreshold = rows;
+	}
+
+	/**
+	 * The orphans found for one relation.
+	 */
+	public static class Result {
+
+		private final ForeignKey foreignKey;
+		private final int orphans;
+		private final String[] samples;
+
+		Result(ForeignKey foreignKey, int orphans, String[] samples) {
+			this.foreignKey = foreignKey;
+			this.orphans = orphans;
+			this.samples = samples;
+		}
+
+		public ForeignKey getForeignKey() {
+			return foreignKey;
+		}
+
+		/**
+		 * @return The number of orphans, or -1 if the relation could not be
+		 *         checked.
+		 */
+		public int getOrphans() {
+			return orphans;
+		}
+
+		/**
+		 * @return Values of the column of up to {@link #SAMPLE_SIZE} orphans.
+		 */
+		public String[] getSamples() {
+			return samples;
+		}
+
+	}
+
+	/**
+	 * Check a list of relations.
+	 * 
+	 * @return The results, in the same order as the relations.
+	 */
+	public List<Result> check(List<ForeignKey> keys) {
+
+		Result[] results = new Result[keys.size()];
+
+		for (int i = 0; i < keys.size(); i++) {
+			if (results[i] == null && canMerge(keys.get(i))) {
+				int reverse = findReverse(keys, results, i);
+				Result[] merged = mergeJoin(keys.get(i), reverse < 0 ? null : keys.get(reverse));
+				if (merged != null) {
+					results[i] = merged[0];
+					if (reverse >= 0) {
+						results[reverse] = merged[1];
+					}
+				}
+			}
+		}
+
+		Map<String, List<Integer>> byTable = new LinkedHashMap<String, List<Integer>>();
+		for (int i = 0; i < keys.size(); i++) {
+			if (results[i] != null) {
+				continue;
+			}
+			String table = keys.get(i).getTable();
+			List<Integer> indexes = byTable.get(table);
+			if (indexes == null) {
+				indexes = new ArrayList<Integer>();
+				byTable.put(table, indexes);
+			}
+			indexes.add(i);
+		}
+
+		int[] counts = new int[keys.size()];
+		for (Map.Entry<String, List<Integer>> entry : byTable.entrySet()) {
+			List<Integer> indexes = entry.getValue();
+			List<ForeignKey> tableKeys = new ArrayList<ForeignKey>(indexes.size());
+			for (int index : indexes) {
+				tableKeys.add(keys.get(index));
+			}
+			int[] tableCounts;
+			try {
+				tableCounts = countOrphans(entry.getKey(), tableKeys);
+			} catch (SQLException e) {
+				if (tableKeys.size() == 1) {
+					logger.warning("Could not check " + tableKeys.get(0) + ": " + e.getMessage());
+					tableCounts = new int[] { -1 };
+				} else {
+					logger.fine("Could not check the relations of " + entry.getKey() + " together ("
+							+ e.getMessage() + ") - checking them one by one instead.");
+					tableCounts = countOrphansSeparately(entry.getKey(), tableKeys);
+				}
+			}
+			for (int i = 0; i < indexes.size(); i++) {
+				counts[indexes.get(i)] = tableCounts[i];
+			}
+		}
+
+		List<Result> resultList = new ArrayList<Result>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			if (results[i] == null) {
+				ForeignKey key = keys.get(i);
+				String[] samples = new String[0];
+				if (counts[i] > 0) {
+					samples = DBUtils.getColumnValues(con, "SELECT " + key.getTable() + "." + key.getColumn()
+							+ " FROM " + key.getTable() + " WHERE " + key.getOrphanCondition() + " LIMIT "
+							+ SAMPLE_SIZE);
+				}
+				results[i] = new Result(key, counts[i], samples);
+			}
+			resultList.add(results[i]);
+		}
+
+		return resultList;
+
+	}
+
+	/**
+	 * Check a single relation.
+	 */
+	public Result check(ForeignKey key) {
+		List<ForeignKey> keys = new ArrayList<ForeignKey>(1);
+		keys.add(key);
+		return check(keys).get(0);
+	}
+
+	/**
+	 * Check relations from tables of this database to tables of another
+	 * database, which may be on another server. The referenced columns are
+	 * read into an {@link IdSet} once each and the other columns streamed
+	 * and looked up in them, so no query spans both databases. Both are
+	 * streamed over connections of their own, see
+	 * {@link DBUtils#openStreamingConnection(Connection)}.
+	 * 
+	 * @return The results, in the same order as the relations. Their
+	 *         relations have the table names prefixed with the names of the
+	 *         databases, for reports.
+	 */
+	public List<Result> check(DatabaseRegistryEntry referenced, List<ForeignKey> keys) {
+
+		String name = dbre != null ? dbre.getName() : DBUtils.getShortDatabaseName(con);
+		Map<String, IdSet> idSets = new HashMap<String, IdSet>();
+
+		List<Result> results = new ArrayList<Result>(keys.size());
+		for (ForeignKey key : keys) {
+
+			ForeignKey qualified = new ForeignKey(name + "." + key.getTable(), key.getColumn(),
+					referenced.getName() + "." + key.getReferencedTable(), key.getReferencedColumn(),
+					key.getConstraint());
+
+			String column = key.getReferencedTable() + "." + key.getReferencedColumn();
+			Connection streaming = null;
+			Statement stmt = null;
+			ResultSet rs = null;
+			try {
+				IdSet ids = idSets.get(column);
+				if (ids == null) {
+					ids = IdSet.load(referenced.getConnection(), "SELECT " + key.getReferencedColumn() + " FROM "
+							+ key.getReferencedTable());
+					idSets.put(column, ids);
+				}
+
+				Orphans orphans = new Orphans();
+				streaming = DBUtils.openStreamingConnection(con);
+				stmt = DBUtils.createStreamingStatement(streaming);
+				rs = stmt.executeQuery("SELECT " + key.getColumn() + " FROM " + key.getTable()
+						+ (key.getConstraint() == null ? "" : " WHERE " + key.getTable() + "." + key.getConstraint()));
+				while (rs.next()) {
+					if (!ids.contains(rs)) {
+						orphans.add(rs.getString(1));
+					}
+				}
+				results.add(orphans.toResult(qualified));
+
+			} catch (SQLException e) {
+				logger.warning("Could not check " + qualified + ": " + e.getMessage());
+				results.add(new Result(qualified, -1, new String[0]));
+			} catch (SqlUncheckedException e) {
+				logger.warning("Could not check " + qualified + ": " + e.getMessage());
+				results.add(new Result(qualified, -1, new String[0]));
+			} finally {
+				DBUtils.closeQuietly(rs);
+				DBUtils.closeQuietly(stmt);
+				DBUtils.closeStreamingConnection(con, streaming);
+			}
+		}
+
+		return results;
+
+	}
+
+	// -------------------------------------------------------------------------
+	// server-side strategy
+
+	private int[] countOrphansSeparately(String table, List<ForeignKey> keys) {
+		int[] counts = new int[keys.size()];
+		for (int i = 0; i < keys.size(); i++) {
+			try {
+				counts[i] = countOrphans(table, keys.subList(i, i + 1))[0];
+			} catch (SQLException e) {
+				logger.warning("Could not check " + keys.get(i) + ": " + e.getMessage());
+				counts[i] = -1;
+			}
+		}
+		return counts;
+	}
+
+	private int[] countOrphans(String table, List<ForeignKey> keys) throws SQLException {
+
+		StringBuilder sql = new StringBuilder("SELECT ");
+		for (int i = 0; i < keys.size(); i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append("SUM(CASE WHEN ").append(keys.get(i).getOrphanCondition()).append(" THEN 1 ELSE 0 END)");
+		}
+		sql.append(" FROM ").append(table);
+
+		int[] counts = new int[keys.size()];
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			rs = stmt.executeQuery(sql.toString());
+			if (rs.next()) {
+				for (int i = 0; i < counts.length; i++) {
+					// SUM over no rows is NULL, which getInt returns as 0
+					counts[i] = rs.getInt(i + 1);
+				}
+			}
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(stmt);
+		}
+
+		return counts;
+
+	}
+
+	// -------------------------------------------------------------------------
+	// client-side strategy
+
+	/**
+	 * @return true if the relation is worth checking by merging, and both of
+	 *         its columns are integers, which are compared in order on the
+	 *         client. Sorting a column that does not lead an index would put a
+	 *         filesort on the server, so the server might as well do the join.
+	 */
+	private boolean canMerge(ForeignKey key) {
+		if (mergeThreshold > 0) {
+			if (Math.min(getTableRows(key.getTable()), getTableRows(key.getReferencedTable())) < mergeThreshold) {
+				return false;
+			}
+			if (!isIndexed(key.getTable(), key.getColumn())
+					|| !isIndexed(key.getReferencedTable(), key.getReferencedColumn())) {
+				return false;
+			}
+		}
+		return isIntegerColumn(key.getTable(), key.getColumn())
+				&& isIntegerColumn(key.getReferencedTable(), key.getReferencedColumn());
+	}
+
+	/**
+	 * @return true if the column is the first column of an index of the
+	 *         table, so that it can be read in order without sorting.
+	 */
+	private boolean isIndexed(String table, String column) {
+		String name = table + "." + column;
+		Boolean indexed = indexedColumns.get(name);
+		if (indexed == null) {
+			indexed = false;
+			Statement stmt = null;
+			ResultSet rs = null;
+			try {
+				stmt = con.createStatement();
+				rs = stmt.executeQuery("SELECT COUNT(*) FROM information_schema.STATISTICS"
+						+ " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND COLUMN_NAME = '"
+						+ column + "' AND SEQ_IN_INDEX = 1");
+				indexed = rs.next() && rs.getInt(1) > 0;
+			} catch (SQLException e) {
+				logger.finest("Could not get the indexes of " + table + ": " + e.getMessage());
+			} finally {
+				DBUtils.closeQuietly(rs);
+				DBUtils.closeQuietly(stmt);
+			}
+			indexedColumns.put(name, indexed);
+		}
+		return indexed;
+	}
+
+	/**
+	 * @return true if the column holds integers that fit in a long. The type
+	 *         is read from a query returning no rows, before anything is
+	 *         sorted or streamed.
+	 */
+	private boolean isIntegerColumn(String table, String column) {
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			rs = stmt.executeQuery("SELECT " + column + " FROM " + table + " WHERE 1 = 0");
+			return IdSet.isInteger(rs);
+		} catch (SQLException e) {
+			logger.finest("Could not get the type of " + table + "." + column + ": " + e.getMessage());
+			return false;
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(stmt);
+		}
+	}
+
+	/**
+	 * @return The number of rows of a table estimated by the server, or -1 if
+	 *         it does not know.
+	 */
+	private long getTableRows(String table) {
+		Long rows = tableRows.get(table);
+		if (rows == null) {
+			rows = -1L;
+			Statement stmt = null;
+			ResultSet rs = null;
+			try {
+				stmt = con.createStatement();
+				rs = stmt.executeQuery("SELECT TABLE_ROWS FROM information_schema.TABLES"
+						+ " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "'");
+				if (rs.next()) {
+					rows = rs.getLong(1);
+				}
+			} catch (SQLException e) {
+				logger.finest("Could not get the number of rows of " + table + ": " + e.getMessage());
+			} finally {
+				DBUtils.closeQuietly(rs);
+				DBUtils.closeQuietly(stmt);
+			}
+			tableRows.put(table, rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * @return The index of the unchecked relation after i that is the reverse
+	 *         of relation i, or -1.
+	 */
+	private int findReverse(List<ForeignKey> keys, Result[] results, int i) {
+		ForeignKey key = keys.get(i);
+		if (key.getConstraint() != null) {
+			return -1;
+		}
+		for (int j = i + 1; j < keys.size(); j++) {
+			ForeignKey other = keys.get(j);
+			if (results[j] == null && other.getConstraint() == null && other.getTable().equals(key.getReferencedTable())
+					&& other.getColumn().equals(key.getReferencedColumn())
+					&& other.getReferencedTable().equals(key.getTable())
+					&& other.getReferencedColumn().equals(key.getColumn())) {
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the orphans of key, and of reverse if it is not null, by merging
+	 * both columns in order.
+	 * 
+	 * @return The results for key and reverse, or null if the columns can not
+	 *         be read, in which case the server has to check them.
+	 */
+	private Result[] mergeJoin(ForeignKey key, ForeignKey reverse) {
+
+		String childSql = "SELECT " + key.getColumn() + " FROM " + key.getTable()
+				+ (key.getConstraint() == null ? "" : " WHERE " + key.getTable() + "." + key.getConstraint())
+				+ " ORDER BY " + key.getColumn();
+		String parentSql = "SELECT " + key.getReferencedColumn() + " FROM " + key.getReferencedTable() + " ORDER BY "
+				+ key.getReferencedColumn();
+
+		Connection childCon = null;
+		Connection parentCon = null;
+		Statement childStmt = null;
+		Statement parentStmt = null;
+		ResultSet child = null;
+		ResultSet parent = null;
+		try {
+			parentCon = openSecondConnection();
+			if (parentCon == null) {
+				return null;
+			}
+			// con itself stays free for the queries of the other checks
+			childCon = DBUtils.openStreamingConnection(con);
+			childStmt = DBUtils.createStreamingStatement(childCon);
+			parentStmt = DBUtils.createStreamingStatement(parentCon);
+			child = childStmt.executeQuery(childSql);
+			parent = parentStmt.executeQuery(parentSql);
+
+			Orphans childOrphans = new Orphans();
+			Orphans parentOrphans = new Orphans();
+
+			boolean hasChild = child.next();
+			boolean hasParent = parent.next();
+			boolean anyMatched = false;
+			long matched = 0;
+
+			while (hasChild || (reverse != null && hasParent)) {
+				if (hasChild && isNull(child)) {
+					childOrphans.add(null);
+					hasChild = child.next();
+				} else if (hasParent && isNull(parent)) {
+					parentOrphans.add(null);
+					hasParent = parent.next();
+				} else if (hasChild && (!hasParent || child.getLong(1) < parent.getLong(1))) {
+					// no parent value can match any more
+					childOrphans.add(child.getString(1));
+					hasChild = child.next();
+				} else if (hasChild && child.getLong(1) == parent.getLong(1)) {
+					anyMatched = true;
+					matched = child.getLong(1);
+					hasChild = child.next();
+				} else {
+					if (!anyMatched || matched != parent.getLong(1)) {
+						parentOrphans.add(parent.getString(1));
+					}
+					hasParent = parent.next();
+				}
+			}
+
+			Result[] results = new Result[2];
+			results[0] = childOrphans.toResult(key);
+			if (reverse != null) {
+				results[1] = parentOrphans.toResult(reverse);
+			}
+			return results;
+
+		} catch (SQLException e) {
+			logger.fine("Could not merge " + key + " (" + e.getMessage() + ") - checking it on the server instead.");
+			return null;
+		} finally {
+			DBUtils.closeQuietly(child);
+			DBUtils.closeQuietly(parent);
+			DBUtils.closeQuietly(childStmt);
+			DBUtils.closeQuietly(parentStmt);
+			DBUtils.closeStreamingConnection(con, childCon);
+			if (parentCon != con) {
+				DBUtils.closeQuietly(parentCon);
+			}
+		}
+
+	}
+
+	/**
+	 * @return A connection to read the referenced table while con reads the
+	 *         other one, or null if there is none.
+	 */
+	private Connection openSecondConnection() throws SQLException {
+		if (dbre != null && dbre.getDatabaseServer() != null) {
+			return dbre.getDatabaseServer().getDatabaseConnection(dbre.getName());
+		}
+		if (con.getMetaData().getDriverName().contains("MySQL")) {
+			// a streaming result set has to be closed before the next query
+			return null;
+		}
+		return con;
+	}
+
+	private static boolean isNull(ResultSet rs) throws SQLException {
+		rs.getLong(1);
+		return rs.wasNull();
+	}
+
+	/**
+	 * Counts the orphans found while merging and keeps the first few.
+	 */
+	private static class Orphans {
+
+		private int count;
+		private final List<String> samples = new ArrayList<String>();
+
+		void add(String value) {
+			count++;
+			if (samples.size() < SAMPLE_SIZE) {
+				samples.add(value);
+			}
+		}
+
+		Result toResult(ForeignKey key) {
+			return new Result(key, count, samples.toArray(new String[samples.size()]));
+		}
+
+	}
+
+}
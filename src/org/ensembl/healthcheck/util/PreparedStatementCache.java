@@ -0,0 +1,253 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recently used {@link PreparedStatement}s of one connection
+ * open, so that a query run again and again by a test is only prepared once.
+ * The cache belongs to a connection borrowed from the {@link ConnectionPool}
+ * and is closed when the connection is given back, see
+ * {@link ConnectionPool#getStatementCache(Connection)}.
+ * 
+ * Statements are handed out with {@link #prepare(String)} and must be given
+ * back with {@link #release(PreparedStatement)} once their results have been
+ * read, instead of being closed. A statement that is asked for while it is
+ * still in use, e.g. by a callback running the same query, is prepared afresh
+ * and closed on release.
+ */
+public class PreparedStatementCache {
+
+	private static final AtomicLong totalHits = new AtomicLong();
+	private static final AtomicLong totalMisses = new AtomicLong();
+	private static final AtomicLong totalEvictions = new AtomicLong();
+
+	private final Connection connection;
+	private final int maxSize;
+
+	private final LinkedHashMap<String, Entry> entries;
+
+	/** Statements handed out which are not in the cache */
+	private final Map<PreparedStatement, Boolean> uncached = new IdentityHashMap<PreparedStatement, Boolean>();
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private boolean closed = false;
+
+	private static final class Entry {
+		final PreparedStatement statement;
+		boolean inUse;
+
+		Entry(PreparedStatement statement) {
+			this.statement = statement;
+		}
+	}
+
+	public PreparedStatementCache(Connection connection, int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Cache size must be at least 1, was: " + maxSize);
+		}
+		this.connection = connection;
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	}
+
+	/**
+	 * @return A statement for sql, with no parameters set.
+	 */
+	public synchronized PreparedStatement prepare(String sql) throws SQLException {
+
+		if (closed) {
+			throw new SQLException("Statement cache has been closed");
+		}
+		Entry entry = entries.get(sql);
+		if (entry != null && !entry.inUse) {
+			entry.inUse = true;
+			hits++;
+			totalHits.incrementAndGet();
+			return entry.statement;
+		}
+		misses++;
+		totalMisses.incrementAndGet();
+
+		PreparedStatement ps = connection.prepareStatement(sql);
+		if (entry != null) {
+			uncached.put(ps, Boolean.TRUE);
+			return ps;
+		}
+		entry = new Entry(ps);
+		entry.inUse = true;
+		entries.put(sql, entry);
+		evict();
+		return ps;
+	}
+
+	/**
+	 * Close the least recently used statements which are not in use, until the
+	 * cache is no bigger than its maximum size.
+	 */
+	private void evict() {
+
+		Iterator<Entry> it = entries.values().iterator();
+		while (entries.size() > maxSize && it.hasNext()) {
+			Entry entry = it.next();
+			if (!entry.inUse) {
+				it.remove();
+				evictions++;
+				totalEvictions.incrementAndGet();
+				closeQuietly(entry.statement);
+			}
+		}
+	}
+
+	/**
+	 * Give back a statement handed out by {@link #prepare(String)}. Its
+	 * parameters are cleared, so they do not keep large values alive.
+	 */
+	public synchronized void release(PreparedStatement ps) {
+
+		if (ps == null) {
+			return;
+		}
+		if (uncached.remove(ps) != null) {
+			closeQuietly(ps);
+			return;
+		}
+		Entry entry = find(ps);
+		if (entry == null) {
+			closeQuietly(ps);
+			return;
+		}
+		try {
+			ps.clearParameters();
+			entry.inUse = false;
+		} catch (SQLException e) {
+			discard(ps);
+			return;
+		}
+		if (closed) {
+			discard(ps);
+		} else {
+			evict();
+		}
+	}
+
+	/**
+	 * Close a statement handed out by {@link #prepare(String)} and remove it
+	 * from the cache, e.g. because running it threw an SQLException.
+	 */
+	public synchronized void discard(PreparedStatement ps) {
+
+		if (ps == null) {
+			return;
+		}
+		uncached.remove(ps);
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().statement == ps) {
+				it.remove();
+				break;
+			}
+		}
+		closeQuietly(ps);
+	}
+
+	private Entry find(PreparedStatement ps) {
+		for (Entry entry : entries.values()) {
+			if (entry.statement == ps) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Close all statements which are not in use. Statements still in use are
+	 * closed when they are released.
+	 */
+	public synchronized void close() {
+
+		closed = true;
+		List<Entry> open = new ArrayList<Entry>(entries.values());
+		entries.clear();
+		for (Entry entry : open) {
+			if (entry.inUse) {
+				uncached.put(entry.statement, Boolean.TRUE);
+			} else {
+				closeQuietly(entry.statement);
+			}
+		}
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return The number of statements currently in the cache.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return Hits, misses and evictions of all caches since the program
+	 *         started.
+	 */
+	public static String getStatistics() {
+
+		long h = totalHits.get();
+		long m = totalMisses.get();
+		long lookups = h + m;
+		return "Prepared statement cache: " + h + " hits, " + m + " misses"
+				+ (lookups == 0 ? "" : " (" + (100 * h / lookups) + "% hit rate)")
+				+ ", " + totalEvictions.get() + " evictions";
+	}
+
+	private static void closeQuietly(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch (SQLException e) {
+			// ignore closing exceptions here
+		}
+	}
+}
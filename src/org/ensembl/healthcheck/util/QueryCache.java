@@ -0,0 +1,210 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Results of queries on data that does not change while the healthchecks
+ * run, e.g. the meta or coord_system tables or a schema's table
+ * definitions, shared by all tests. Results are keyed by database, SQL and
+ * arguments and the least recently used ones are dropped once there are
+ * more than {@link #getMaxEntries()}, which is 0, turning the cache off,
+ * unless configured otherwise. A query has to be declared cacheable
+ * by asking for it through this class, usually with
+ * {@link SqlTemplate#queryForCachedDefaultObjectList(String, Class, Object...)}.
+ * 
+ * The results of a database are forgotten with
+ * {@link #invalidate(Connection)} when it is modified, e.g. repaired, and
+ * all results with {@link #invalidateAll()} when a run starts and ends, as
+ * the databases may change between runs of a long-lived process like the
+ * GUI. Cached values are shared, so they must not be modified by callers.
+ */
+public final class QueryCache {
+
+	private static final int DEFAULT_MAX_ENTRIES = 0;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	private static final LinkedHashMap<Key, Object> cache = new LinkedHashMap<Key, Object>(16, 0.75f, true);
+
+	/** Incremented whenever results are invalidated */
+	private static long generation;
+
+	private static long hits;
+	private static long misses;
+
+	/**
+	 * Computes the value to cache if it is not known yet.
+	 */
+	public static interface Loader<T> {
+		T load() throws SQLException;
+	}
+
+	private QueryCache() {
+	}
+
+	public static int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @param max
+	 *            Number of results kept. 0 turns the cache off.
+	 */
+	public static synchronized void setMaxEntries(int max) {
+		if (max < 0) {
+			throw new IllegalArgumentException("The query cache size must not be negative, was: " + max);
+		}
+		maxEntries = max;
+		trim();
+	}
+
+	/**
+	 * Get the cached result of a query on the database of con, or load and
+	 * cache it.
+	 * 
+	 * @param sql
+	 *            The query, or any other description of what loader returns
+	 *            which is unique for the database.
+	 * @param args
+	 *            Arguments of the query, which are part of the key.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(Connection con, String sql, Object[] args, Loader<T> loader) throws SQLException {
+
+		if (maxEntries == 0) {
+			return loader.load();
+		}
+
+		Key key = new Key(getDatabase(con), sql, args);
+		long loadedGeneration;
+		synchronized (QueryCache.class) {
+			if (cache.containsKey(key)) {
+				hits++;
+				return (T) cache.get(key);
+			}
+			misses++;
+			loadedGeneration = generation;
+		}
+
+		// loaded outside the lock; two tests asking at once both query
+		T value = loader.load();
+		synchronized (QueryCache.class) {
+			// not cached if the database may have changed while loading
+			if (generation == loadedGeneration) {
+				cache.put(key, value);
+				trim();
+			}
+		}
+		return value;
+
+	}
+
+	/**
+	 * Forget everything cached for the database of con.
+	 */
+	public static void invalidate(Connection con) {
+		String database;
+		try {
+			database = getDatabase(con);
+		} catch (SQLException e) {
+			logger.warning("Could not get the database to invalidate, emptying the query cache: " + e.getMessage());
+			invalidateAll();
+			return;
+		}
+		synchronized (QueryCache.class) {
+			generation++;
+			for (Iterator<Key> it = cache.keySet().iterator(); it.hasNext();) {
+				if (it.next().database.equals(database)) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget everything cached.
+	 */
+	public static synchronized void invalidateAll() {
+		generation++;
+		cache.clear();
+	}
+
+	public static synchronized int size() {
+		return cache.size();
+	}
+
+	public static synchronized String getStatistics() {
+		return "Query cache: " + hits + " hits, " + misses + " misses, " + cache.size() + " results cached";
+	}
+
+	private static void trim() {
+		for (Iterator<Map.Entry<Key, Object>> it = cache.entrySet().iterator(); cache.size() > maxEntries
+				&& it.hasNext();) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * @return The URL of the database without connection parameters, which
+	 *         is the same for every connection to it.
+	 */
+	private static String getDatabase(Connection con) throws SQLException {
+		String url = con.getMetaData().getURL();
+		int parameters = url.indexOf('?');
+		return parameters < 0 ? url : url.substring(0, parameters);
+	}
+
+	private static final class Key {
+
+		private final String database;
+		private final String sql;
+		private final List<Object> args;
+
+		Key(String database, String sql, Object[] args) {
+			this.database = database;
+			this.sql = sql;
+			this.args = Arrays.asList(args == null ? new Object[0] : args.clone());
+		}
+
+		public int hashCode() {
+			return (database.hashCode() * 31 + sql.hashCode()) * 31 + args.hashCode();
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return database.equals(other.database) && sql.equals(other.sql) && args.equals(other.args);
+		}
+
+	}
+
+}
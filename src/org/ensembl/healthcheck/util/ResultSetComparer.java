@@ -0,0 +1,383 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+
+/**
+ * Compares any number of ResultSets row by row while reading them, so none of
+ * them has to be held in memory or be scrollable. The queries must sort their
+ * rows, e.g. by primary key, so that equal rows line up.
+ * 
+ * Each row is reduced to a 64-bit hash of its normalised values, see
+ * {@link #hashRow(ResultSet, int[], int[])}, and the hashes are compared.
+ * Only when two rows differ are their values compared column by column with
+ * {@link DBUtils#compareColumns(ResultSet, ResultSet, int, boolean)} and a
+ * description of the difference built. The first ResultSet is the reference
+ * every other one is compared to; a ResultSet is not read any further once it
+ * has been found to differ.
+ */
+public class ResultSetComparer {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+
+	private final EnsTestCase testCase;
+	private final String text;
+	private final String singleTableName;
+	private final boolean reportErrors;
+	private final boolean warnNull;
+	private final boolean comparingSchema;
+
+	/**
+	 * @param testCase
+	 *            The test case calling the comparison; used in ReportManager.
+	 * @param text
+	 *            Additional text to put in any error reports.
+	 * @param singleTableName
+	 *            If comparing result sets from a single table this should be
+	 *            the name of the table, to be output in any error text.
+	 *            Otherwise "".
+	 * @param reportErrors
+	 *            If true, differences are stored in ReportManager.
+	 * @param warnNull
+	 *            If true, NULLs in rows that differ are logged.
+	 * @param comparingSchema
+	 *            If true, additional rows are reported as missing columns.
+	 */
+	public ResultSetComparer(EnsTestCase testCase, String text, String singleTableName, boolean reportErrors,
+			boolean warnNull, boolean comparingSchema) {
+		this.testCase = testCase;
+		this.text = text;
+		this.singleTableName = singleTableName;
+		this.reportErrors = reportErrors;
+		this.warnNull = warnNull;
+		this.comparingSchema = comparingSchema;
+	}
+
+	/**
+	 * Compare two ResultSets, see {@link #compare(List, int[])}.
+	 */
+	public boolean compare(ResultSet rs1, ResultSet rs2, int[] columns) {
+		return compare(Arrays.asList(rs1, rs2), columns);
+	}
+
+	/**
+	 * Compare each ResultSet with the first one.
+	 * 
+	 * @param resultSets
+	 *            The ResultSets to compare, positioned before their first
+	 *            row. Scrollable ones are rewound first.
+	 * @param columns
+	 *            The indexes of the columns to compare, null for all.
+	 * @return True if all ResultSets have the same column names and types and
+	 *         the same rows in the same order.
+	 */
+	public boolean compare(List<ResultSet> resultSets, int[] columns) {
+
+		List<ResultSet> distinct = new ArrayList<ResultSet>();
+		for (ResultSet rs : resultSets) {
+			if (!containsSame(distinct, rs)) {
+				distinct.add(rs);
+			}
+		}
+		if (distinct.size() < 2) {
+			return true;
+		}
+
+		try {
+
+			ResultSet reference = distinct.get(0);
+			String referenceName = getName(reference);
+			ResultSetMetaData referenceMetaData = reference.getMetaData();
+
+			boolean same = true;
+			List<ResultSet> active = new ArrayList<ResultSet>();
+			for (ResultSet rs : distinct.subList(1, distinct.size())) {
+				if (sameColumns(reference, referenceName, rs, getName(rs), columns)) {
+					active.add(rs);
+				} else {
+					same = false;
+				}
+			}
+			if (active.isEmpty()) {
+				return same;
+			}
+
+			if (columns == null) {
+				columns = new int[referenceMetaData.getColumnCount()];
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = i + 1;
+				}
+			}
+			int[] types = new int[columns.length];
+			for (int j = 0; j < columns.length; j++) {
+				types[j] = referenceMetaData.getColumnType(columns[j]);
+			}
+
+			rewind(reference);
+			for (ResultSet rs : active) {
+				rewind(rs);
+			}
+
+			String extra = comparingSchema ? ". This means that there are missing columns in the table, rectify!" : "";
+
+			while (!active.isEmpty()) {
+
+				boolean referenceHasRow = reference.next();
+				long referenceHash = referenceHasRow ? hashRow(reference, columns, types) : 0;
+
+				Iterator<ResultSet> it = active.iterator();
+				while (it.hasNext()) {
+					ResultSet rs = it.next();
+					boolean hasRow = rs.next();
+
+					if (referenceHasRow && hasRow) {
+						if (hashRow(rs, columns, types) != referenceHash
+								&& !sameRow(reference, referenceName, rs, getName(rs), columns)) {
+							same = false;
+							it.remove();
+						}
+					} else if (referenceHasRow) {
+						if (reportErrors) {
+							ReportManager.problem(testCase, referenceName, singleTableName + " has more rows in "
+									+ referenceName + " than in " + getName(rs));
+						}
+						same = false;
+						it.remove();
+					} else if (hasRow) {
+						if (reportErrors) {
+							String name = getName(rs);
+							ReportManager.problem(testCase, referenceName, name + " " + singleTableName
+									+ " has additional rows that are not in " + referenceName + extra);
+						}
+						same = false;
+						it.remove();
+					} else {
+						it.remove();
+					}
+				}
+			}
+
+			return same;
+
+		} catch (SQLException se) {
+			throw new SqlUncheckedException("Could not compare result sets", se);
+		}
+
+	}
+
+	private static boolean containsSame(List<ResultSet> resultSets, ResultSet rs) {
+		for (ResultSet r : resultSets) {
+			if (r == rs || r.equals(rs)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getName(ResultSet rs) throws SQLException {
+		return DBUtils.getShortDatabaseName(rs.getStatement().getConnection());
+	}
+
+	private static void rewind(ResultSet rs) throws SQLException {
+		if (rs.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+			rs.beforeFirst();
+		}
+	}
+
+	/**
+	 * Check for same column count, names and types.
+	 */
+	private boolean sameColumns(ResultSet rs1, String name1, ResultSet rs2, String name2, int[] columns)
+			throws SQLException {
+
+		ResultSetMetaData rsmd1 = rs1.getMetaData();
+		ResultSetMetaData rsmd2 = rs2.getMetaData();
+		if (rsmd1.getColumnCount() != rsmd2.getColumnCount() && columns == null) {
+			if (reportErrors) {
+				ReportManager.problem(testCase, name1, "Column counts differ " + singleTableName + " " + name1 + ": "
+						+ rsmd1.getColumnCount() + " " + name2 + ": " + rsmd2.getColumnCount());
+			}
+			return false;
+		}
+
+		int count = columns == null ? rsmd1.getColumnCount() : columns.length;
+		for (int j = 0; j < count; j++) {
+			int i = columns == null ? j + 1 : columns[j];
+
+			if (!rsmd1.getColumnName(i).equals(rsmd2.getColumnName(i))) {
+				if (reportErrors) {
+					ReportManager.problem(testCase, name1, "Column names differ for " + singleTableName + " column "
+							+ i + " - " + name1 + ": " + rsmd1.getColumnName(i) + " " + name2 + ": "
+							+ rsmd2.getColumnName(i));
+				}
+				return false;
+			}
+			if (rsmd1.getColumnType(i) != rsmd2.getColumnType(i)) {
+				if (reportErrors) {
+					ReportManager.problem(testCase, name1, "Column types differ for " + singleTableName + " column "
+							+ i + " - " + name1 + ": " + rsmd1.getColumnType(i) + " " + name2 + ": "
+							+ rsmd2.getColumnType(i));
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compare the current rows of two ResultSets whose hashes differ, and
+	 * report the first column that differs.
+	 * 
+	 * @return True if the rows are the same after all.
+	 */
+	private boolean sameRow(ResultSet rs1, String name1, ResultSet rs2, String name2, int[] columns)
+			throws SQLException {
+
+		ResultSetMetaData rsmd1 = rs1.getMetaData();
+		StringBuilder str = new StringBuilder();
+		str.append(name1).append(" and ").append(name2).append(text).append(" ").append(singleTableName)
+				.append(" with columns ");
+		for (int i : columns) {
+			str.append(rsmd1.getColumnName(i)).append(" ").append(Utils.truncate(rs1.getString(i), 250, true))
+					.append(", ");
+			if (!DBUtils.compareColumns(rs1, rs2, i, warnNull)) {
+				str.append(" differ for values ").append(Utils.truncate(rs1.getString(i), 250, true)).append(", ")
+						.append(Utils.truncate(rs2.getString(i), 250, true));
+				if (reportErrors) {
+					ReportManager.problem(testCase, name1, str.toString());
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hash the values of the current row. Values are normalised the way
+	 * {@link DBUtils#compareColumns(ResultSet, ResultSet, int, boolean)}
+	 * compares them, so rows it considers equal have the same hash.
+	 * 
+	 * @param columns
+	 *            The indexes of the columns to hash.
+	 * @param types
+	 *            The {@link Types} of the columns.
+	 */
+	public static long hashRow(ResultSet rs, int[] columns, int[] types) throws SQLException {
+
+		long h = FNV_OFFSET;
+		for (int j = 0; j < columns.length; j++) {
+			int i = columns[j];
+			switch (types[j]) {
+
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				long l = rs.getLong(i);
+				h = mix(h, rs.wasNull() ? NULL_HASH : l);
+				break;
+
+			case Types.FLOAT:
+				float f = rs.getFloat(i);
+				// 0.0 == -0.0
+				h = mix(h, rs.wasNull() ? NULL_HASH : Float.floatToIntBits(f == 0 ? 0 : f));
+				break;
+
+			case Types.DOUBLE:
+				double d = rs.getDouble(i);
+				h = mix(h, rs.wasNull() ? NULL_HASH : Double.doubleToLongBits(d == 0 ? 0 : d));
+				break;
+
+			case Types.TIMESTAMP:
+				Timestamp t = rs.getTimestamp(i);
+				h = t == null ? mix(h, NULL_HASH) : mix(mix(h, t.getTime()), t.getNanos());
+				break;
+
+			case Types.VARCHAR:
+				String v = rs.getString(i);
+				if (v != null && v.indexOf("AUTO_INCREMENT=") >= 0) {
+					v = v.replaceAll("AUTO_INCREMENT=[0-9]+ ", "");
+				}
+				h = v == null ? mix(h, NULL_HASH) : hash(h, v);
+				break;
+
+			default:
+				String s = rs.getString(i);
+				h = s == null ? mix(h, NULL_HASH) : hash(h, s);
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Reduce a whole ResultSet to a 64-bit hash of its column names and types
+	 * and all its rows, in order. ResultSets which {@link #compare(List, int[])}
+	 * finds to be the same have the same hash, so comparing hashes is enough
+	 * to tell that nothing differs.
+	 */
+	public static long hashResultSet(ResultSet rs) throws SQLException {
+
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int[] columns = new int[rsmd.getColumnCount()];
+		int[] types = new int[columns.length];
+
+		long h = mix(FNV_OFFSET, columns.length);
+		for (int j = 0; j < columns.length; j++) {
+			columns[j] = j + 1;
+			types[j] = rsmd.getColumnType(j + 1);
+			h = mix(hash(h, rsmd.getColumnName(j + 1)), types[j]);
+		}
+		while (rs.next()) {
+			h = mix(h, hashRow(rs, columns, types));
+		}
+		return h;
+	}
+
+	private static long mix(long h, long value) {
+		for (int shift = 0; shift < 64; shift += 8) {
+			h ^= (value >>> shift) & 0xff;
+			h *= FNV_PRIME;
+		}
+		return h;
+	}
+
+	private static long hash(long h, String s) {
+		// the length separates "ab","c" from "a","bc"
+		h = mix(h, s.length());
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= FNV_PRIME;
+		}
+		return h;
+	}
+
+}
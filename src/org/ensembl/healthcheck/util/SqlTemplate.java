@@ -218,6 +218,18 @@ public interface SqlTemplate {
 	<T> List<T> queryForDefaultObjectList(String sql, Class<T> expected,
 			Object... args);
 
+  /**
+   * Works like {@link #queryForDefaultObjectList(String, Class, Object...)}
+   * but declares that the result does not change while the healthchecks run,
+   * e.g. values from the meta or coord_system tables. The result is then
+   * kept in the {@link QueryCache} shared by all tests and the query is only
+   * run again once it has been dropped from there.
+   *
+   * @return A copy of the cached list, which can be modified.
+   */
+  <T> List<T> queryForCachedDefaultObjectList(String sql, Class<T> expected,
+      Object... args);
+
   /**
    * See {@link DefaultObjectRowMapper} for more information about supported
    * mappings. Will map column 1 from a result set into a given object.
@@ -295,6 +307,92 @@ public interface SqlTemplate {
    */
   <T> T execute(String sql, ResultSetCallback<T> callback, Object... args);
 
+  /**
+   * Works like {@link #execute(String, ResultSetCallback, Object...)} but
+   * streams the rows of the {@link ResultSet} from the server instead of
+   * reading them all into memory first, so queries over very large tables
+   * can be processed without a large heap. The ResultSet can only be read
+   * forwards.
+   *
+   * <p>
+   * With MySQL a connection can not be used for any other query while a
+   * result is streamed from it. Implementations therefore stream over a
+   * connection of their own where they can, so that the connection of the
+   * template stays free, e.g. for other tests using the same database.
+   *
+   * @param sql SQL statement to run
+   * @param callback Callback used to process the {@link ResultSet} generated
+   * from the SQL statement
+   * @param args The arguments to use
+   * @return Returns whatever the method is typed to
+   */
+  <T> T executeStreaming(String sql, ResultSetCallback<T> callback, Object... args);
+
+  /**
+   * Streams the rows of a query, see
+   * {@link #executeStreaming(String, ResultSetCallback, Object...)}, maps
+   * each with the given {@link RowMapper} and hands it to a
+   * {@link RowCallback}. Only one row is held in memory at a time.
+   *
+   * <code>
+   * template.queryForEach("select stable_id from gene", 
+   *   new DefaultObjectRowMapper&lt;String&gt;(String.class), 
+   *   new RowCallback&lt;String&gt;() {
+   *     public boolean process(String stableId) {
+   *       return check(stableId); // false stops reading
+   *     }
+   *   });
+   * </code>
+   *
+   * @param sql The SQL to execute
+   * @param mapper The mapper to use
+   * @param callback Callback given every mapped row
+   * @param args Arguments to use in the SQL
+   * @return The number of rows given to the callback
+   */
+  <T> long queryForEach(String sql, RowMapper<T> mapper, RowCallback<T> callback, Object... args);
+
+  /**
+   * Reads the first two columns of a query into a map from long to long,
+   * e.g. counts or lengths by id, without boxing them. The rows are streamed
+   * as in {@link #executeStreaming(String, ResultSetCallback, Object...)}.
+   * NULLs are read as 0, as by {@link ResultSet#getLong(int)}.
+   *
+   * <code>
+   * LongLongHashMap lengths = template.queryForLongMap(
+   *   "select seq_region_id, length from seq_region", -1);
+   * </code>
+   *
+   * @param sql The SQL to execute
+   * @param missingValue Returned by the map for ids that are not in it
+   * @param args Arguments to use in the SQL
+   * @return The map filled from the query
+   * @throws SqlUncheckedException If a key is returned more than once
+   */
+  LongLongHashMap queryForLongMap(String sql, long missingValue, Object... args);
+
+  /**
+   * Reads the first column of a query into a list of longs, e.g. ids,
+   * without boxing them. The rows are streamed as in
+   * {@link #executeStreaming(String, ResultSetCallback, Object...)}.
+   * NULLs are read as 0.
+   *
+   * @param sql The SQL to execute
+   * @param args Arguments to use in the SQL
+   * @return The values of the first column in the order of the rows
+   */
+  LongArrayList queryForLongList(String sql, Object... args);
+
+  /**
+   * Works like {@link #queryForLongList(String, Object...)} for columns which
+   * fit in an int, taking half the memory.
+   *
+   * @param sql The SQL to execute
+   * @param args Arguments to use in the SQL
+   * @return The values of the first column in the order of the rows
+   */
+  IntArrayList queryForIntList(String sql, Object... args);
+
 	/**
    * Executes the given SQL statement. Useful for executing inlined DML or DDL
    *
@@ -326,4 +424,16 @@ public interface SqlTemplate {
     T process(ResultSet rs) throws SQLException;
   }
 
+  /**
+   * Callback given the rows of
+   * {@link SqlTemplate#queryForEach(String, RowMapper, RowCallback, Object...)}
+   * one at a time.
+   */
+  public static interface RowCallback<T> {
+    /**
+     * @return false to stop reading rows.
+     */
+    boolean process(T row) throws SQLException;
+  }
+
 }
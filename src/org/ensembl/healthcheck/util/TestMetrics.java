@@ -0,0 +1,288 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+
+/**
+ * Records how long each test took on each database and how much work it
+ * asked of the database servers: the number of SQL statements executed, the
+ * number of rows fetched, roughly how many bytes of data were read and how
+ * long was spent waiting for connections.
+ * <p>
+ * A test runner calls {@link #start(String, String)} before and
+ * {@link #finish()} after running a test, on the thread that runs the test.
+ * The {@link ConnectionPool} counts the statements and rows of its
+ * connections for whichever test is running on the current thread, so
+ * queries made through an {@link SqlTemplate}, the {@link DBUtils} helpers
+ * or plain JDBC are all included. Nothing is counted until
+ * {@link #setEnabled(boolean)} has been called.
+ */
+public final class TestMetrics {
+
+	/**
+	 * The metrics of one test run on one database. The counters are only
+	 * updated by the thread running the test.
+	 */
+	public static final class Entry {
+
+		private final String testName;
+
+		private final String databaseName;
+
+		private final long startNanos = System.nanoTime();
+
+		private long wallTimeMillis = -1;
+
+		long statements;
+
+		long rows;
+
+		long bytes;
+
+		long connectionWaitNanos;
+
+		Entry(String testName, String databaseName) {
+			this.testName = testName;
+			this.databaseName = databaseName;
+		}
+
+		public String getTestName() {
+			return testName;
+		}
+
+		/**
+		 * @return The name of the database, or null if the test was run on
+		 *         several databases.
+		 */
+		public String getDatabaseName() {
+			return databaseName;
+		}
+
+		public long getWallTimeMillis() {
+			return wallTimeMillis;
+		}
+
+		public long getStatements() {
+			return statements;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return The approximate size of the values read from result sets.
+		 *         Strings count their length, byte arrays their size and any
+		 *         other value 8 bytes.
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getConnectionWaitMillis() {
+			return connectionWaitNanos / 1000000;
+		}
+
+		/**
+		 * Add the counts of work done for this test on another thread.
+		 */
+		void add(Entry other) {
+			statements += other.statements;
+			rows += other.rows;
+			bytes += other.bytes;
+			connectionWaitNanos += other.connectionWaitNanos;
+		}
+
+	}
+
+	private static volatile boolean enabled = false;
+
+	private static final ThreadLocal<Entry> current = new ThreadLocal<Entry>();
+
+	private static final List<Entry> entries = new ArrayList<Entry>();
+
+	// hide constructor to stop instantiation
+	private TestMetrics() {
+	}
+
+	public static void setEnabled(boolean enabled) {
+		TestMetrics.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Start recording the metrics of a test on the current thread.
+	 * 
+	 * @param testName
+	 *          The name of the test.
+	 * @param databaseName
+	 *          The database it is run on, or null if it is run on several.
+	 */
+	public static void start(String testName, String databaseName) {
+
+		if (enabled) {
+			current.set(new Entry(testName, databaseName));
+		}
+	}
+
+	/**
+	 * Stop recording the test started on the current thread and keep its
+	 * metrics.
+	 * 
+	 * @return The metrics of the test, or null if none were recorded.
+	 */
+	public static Entry finish() {
+
+		Entry entry = current.get();
+		if (entry == null) {
+			return null;
+		}
+		current.remove();
+
+		entry.wallTimeMillis = (System.nanoTime() - entry.startNanos) / 1000000;
+		synchronized (entries) {
+			entries.add(entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * @return The metrics of the test running on the current thread, or null
+	 *         if none are being recorded.
+	 */
+	static Entry current() {
+		return enabled ? current.get() : null;
+	}
+
+	/**
+	 * Start recording, on the current thread, work done on behalf of a test
+	 * running on another thread. The counts are then added to the test's
+	 * metrics with {@link Entry#add(Entry)}.
+	 * 
+	 * @return The previous metrics of the current thread, to be restored.
+	 */
+	static Entry startHelper(Entry test) {
+
+		Entry previous = current.get();
+		current.set(new Entry(test.testName, test.databaseName));
+		return previous;
+	}
+
+	/**
+	 * Stop recording work started with {@link #startHelper(Entry)}.
+	 * 
+	 * @return The metrics of the work done.
+	 */
+	static Entry finishHelper(Entry previous) {
+
+		Entry helper = current.get();
+		if (previous == null) {
+			current.remove();
+		} else {
+			current.set(previous);
+		}
+		return helper;
+	}
+
+	static void connectionWait(long nanos) {
+
+		Entry entry = current();
+		if (entry != null) {
+			entry.connectionWaitNanos += nanos;
+		}
+	}
+
+	/**
+	 * @return The metrics of all the tests that have finished, slowest first.
+	 */
+	public static List<Entry> getEntries() {
+
+		List<Entry> result;
+		synchronized (entries) {
+			result = new ArrayList<Entry>(entries);
+		}
+		Collections.sort(result, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return e1.wallTimeMillis < e2.wallTimeMillis ? 1 : (e1.wallTimeMillis == e2.wallTimeMillis ? 0 : -1);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Forget the metrics of all tests that have finished.
+	 */
+	public static void clear() {
+
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Write the metrics of all tests that have finished as a JSON array of
+	 * objects, slowest test first.
+	 */
+	public static void writeJson(Writer writer) throws IOException {
+
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (Entry entry : getEntries()) {
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("test", entry.getTestName());
+			row.put("database", entry.getDatabaseName());
+			row.put("wall_time_ms", entry.getWallTimeMillis());
+			row.put("statements", entry.getStatements());
+			row.put("rows", entry.getRows());
+			row.put("bytes", entry.getBytes());
+			row.put("connection_wait_ms", entry.getConnectionWaitMillis());
+			rows.add(row);
+		}
+		writer.write(new Gson().toJson(rows));
+		writer.flush();
+	}
+
+	/**
+	 * Write the metrics of all tests that have finished as comma separated
+	 * values with a header line, slowest test first.
+	 */
+	public static void writeCsv(Writer writer) throws IOException {
+
+		writer.write("test,database,wall_time_ms,statements,rows,bytes,connection_wait_ms\n");
+		for (Entry entry : getEntries()) {
+			writer.write(entry.getTestName() + "," + (entry.getDatabaseName() == null ? "" : entry.getDatabaseName()) + ","
+					+ entry.getWallTimeMillis() + "," + entry.getStatements() + "," + entry.getRows() + "," + entry.getBytes() + ","
+					+ entry.getConnectionWaitMillis() + "\n");
+		}
+		writer.flush();
+	}
+
+}
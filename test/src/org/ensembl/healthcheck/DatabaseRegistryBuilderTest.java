@@ -0,0 +1,144 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that the {@link DatabaseRegistryBuilder} selects databases like
+ * listing them with every regexp did, and reads what their names do not tell
+ * from their meta tables, or from the {@link DatabaseRegistryCache} while
+ * they have not changed.
+ */
+public class DatabaseRegistryBuilderTest {
+
+	@Test
+	public void testSelect() {
+
+		DatabaseRegistryBuilder builder = new DatabaseRegistryBuilder(Arrays.asList("homo_sapiens_core_81.*",
+				"^[a-k].*_variation_81.*", "mus_musculus_core_81_38", "homo_sapiens_core_81_38"), null, null);
+
+		List<String> names = Arrays.asList("mus_musculus_variation_81_38", "homo_sapiens_core_81_38",
+				"homo_sapiens_core_80_38", "bos_taurus_variation_81_31", "homo_sapiens_variation_81_38", "mus_musculus_core_81_38",
+				"homo_sapiens_core_81X38");
+
+		Assert.assertEquals(builder.select(names), Arrays.asList("homo_sapiens_core_81_38", "homo_sapiens_core_81X38",
+				"bos_taurus_variation_81_31", "homo_sapiens_variation_81_38", "mus_musculus_core_81_38"));
+	}
+
+	@Test
+	public void testCreateEntries() throws Exception {
+
+		Class.forName("org.h2.Driver");
+		Connection con = DriverManager.getConnection("jdbc:h2:mem:registrybuilder", "sa", "");
+		try {
+			Statement stmt = con.createStatement();
+			for (String name : new String[] { "my_renamed_db", "homo_sapiens_core_81_38", "no_meta_here", "broken_meta" }) {
+				stmt.execute("CREATE SCHEMA \"" + name + "\"");
+				if (name.equals("broken_meta")) {
+					// fails the query reading the meta tables of all the databases
+					stmt.execute("CREATE TABLE \"" + name + "\".\"meta\" (meta_key VARCHAR(40))");
+				} else if (!name.equals("no_meta_here")) {
+					stmt.execute("CREATE TABLE \"" + name + "\".\"meta\" (species_id INT, meta_key VARCHAR(40), meta_value VARCHAR(40))");
+				}
+			}
+			stmt.execute("INSERT INTO \"my_renamed_db\".\"meta\" VALUES (NULL, 'schema_type', 'core'), (NULL, 'schema_version', '81'),"
+					+ " (1, 'species.production_name', 'a'), (2, 'species.production_name', 'b'), (2, 'species.alias', 'b')");
+			stmt.execute("INSERT INTO \"homo_sapiens_core_81_38\".\"meta\" VALUES (NULL, 'schema_version', '81'),"
+					+ " (1, 'species.production_name', 'homo_sapiens')");
+			stmt.close();
+
+			List<DatabaseRegistryEntry> entries = new DatabaseRegistryBuilder(null, null, null).createEntries(con, null,
+					Arrays.asList("my_renamed_db", "homo_sapiens_core_81_38", "no_meta_here", "broken_meta"));
+
+			Assert.assertEquals(entries.size(), 4);
+
+			DatabaseRegistryEntry renamed = entries.get(0);
+			Assert.assertEquals(renamed.getName(), "my_renamed_db");
+			Assert.assertSame(renamed.getType(), DatabaseType.CORE);
+			Assert.assertEquals(renamed.getSchemaVersion(), "81");
+			Assert.assertEquals(renamed.getSpeciesIds(), Arrays.asList(1, 2));
+
+			DatabaseRegistryEntry human = entries.get(1);
+			Assert.assertSame(human.getType(), DatabaseType.CORE);
+			Assert.assertEquals(human.getSpecies(), "homo_sapiens");
+			Assert.assertEquals(human.getSpeciesIds(), Arrays.asList(1));
+
+			Assert.assertSame(entries.get(2).getType(), DatabaseType.UNKNOWN);
+			Assert.assertSame(entries.get(3).getType(), DatabaseType.UNKNOWN);
+		} finally {
+			con.close();
+		}
+	}
+
+	@Test
+	public void testCache() throws Exception {
+
+		Class.forName("org.h2.Driver");
+		Connection con = DriverManager.getConnection("jdbc:h2:mem:registrycache", "sa", "");
+		File file = File.createTempFile("registry", ".cache");
+		try {
+			Statement stmt = con.createStatement();
+			stmt.execute("CREATE SCHEMA \"my_renamed_db\"");
+			stmt.execute("CREATE TABLE \"my_renamed_db\".\"meta\" (species_id INT, meta_key VARCHAR(40), meta_value VARCHAR(40))");
+			stmt.execute("INSERT INTO \"my_renamed_db\".\"meta\" VALUES (NULL, 'schema_type', 'core'), (NULL, 'schema_version', '81'),"
+					+ " (1, 'species.production_name', 'a'), (2, 'species.production_name', 'b')");
+
+			DatabaseServer server = new DatabaseServer("localhost", "3306", "sa", "", "org.h2.Driver");
+			DatabaseRegistryBuilder builder = new DatabaseRegistryBuilder(null, null, null);
+			List<String> names = Arrays.asList("my_renamed_db", "homo_sapiens_core_81_38");
+			Map<String, String> stamps = new HashMap<String, String>();
+			stamps.put("my_renamed_db", "1234");
+			stamps.put("homo_sapiens_core_81_38", "none");
+
+			DatabaseRegistryCache cache = new DatabaseRegistryCache(file);
+			builder.createEntries(con, server, names, cache, stamps);
+			cache.save();
+
+			// the cached entries are used while the stamps are the same
+			stmt.execute("DELETE FROM \"my_renamed_db\".\"meta\"");
+			stmt.close();
+			List<DatabaseRegistryEntry> entries = builder.createEntries(con, server, names, new DatabaseRegistryCache(file),
+					stamps);
+			Assert.assertEquals(entries.get(0).getName(), "my_renamed_db");
+			Assert.assertSame(entries.get(0).getType(), DatabaseType.CORE);
+			Assert.assertEquals(entries.get(0).getSchemaVersion(), "81");
+			Assert.assertEquals(entries.get(0).getSpeciesIds(), Arrays.asList(1, 2));
+			Assert.assertEquals(entries.get(1).getSpecies(), "homo_sapiens");
+			Assert.assertSame(entries.get(1).getType(), DatabaseType.CORE);
+
+			stamps.put("my_renamed_db", "5678");
+			entries = builder.createEntries(con, server, names, new DatabaseRegistryCache(file), stamps);
+			Assert.assertSame(entries.get(0).getType(), DatabaseType.UNKNOWN);
+		} finally {
+			con.close();
+			file.delete();
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link DatabaseRegistry#getEquivalent} picks the database with
+ * the same type and species or alias and the highest version.
+ */
+public class DatabaseRegistryTest {
+
+	private static DatabaseRegistryEntry entry(String name) {
+		return new DatabaseRegistryEntry(null, DatabaseRegistryEntry.getInfoFromName(name, null, null));
+	}
+
+	private static DatabaseRegistryEntry entry(String name, String alias, String version) {
+		return new DatabaseRegistryEntry(null, new DatabaseInfo(name, alias, DatabaseRegistryEntry.UNKNOWN,
+				DatabaseType.CORE, version, null));
+	}
+
+	@Test
+	public void testGetEquivalent() {
+
+		List<DatabaseRegistryEntry> entries = new ArrayList<DatabaseRegistryEntry>();
+		for (String name : new String[] { "homo_sapiens_core_80_37", "homo_sapiens_core_81_38",
+				"homo_sapiens_variation_81_38", "mus_musculus_core_81_38" }) {
+			entries.add(entry(name));
+		}
+		entries.add(entry("first_collection_db", "my_alias", "80"));
+		entries.add(entry("second_collection_db", "my_alias", "81"));
+		entries.add(entry("other_collection_db", "other_alias", "82"));
+		DatabaseRegistry registry = new DatabaseRegistry(entries);
+
+		DatabaseRegistryEntry human = entry("homo_sapiens_core_82_38");
+		Assert.assertEquals(registry.getEquivalent(human, null).getName(), "homo_sapiens_core_81_38");
+		Assert.assertEquals(registry.getEquivalent(entry("homo_sapiens_variation_82_38"), null).getName(),
+				"homo_sapiens_variation_81_38");
+		Assert.assertNull(registry.getEquivalent(entry("danio_rerio_core_82_10"), null));
+		Assert.assertEquals(registry.getEquivalent(entry("new_collection_db", "my_alias", "82"), null).getName(),
+				"second_collection_db");
+
+		Assert.assertEquals(registry.getEquivalent(human, "mus_musculus_core_81_38").getName(), "mus_musculus_core_81_38");
+		Assert.assertEquals(registry.getEquivalent(human, "not_there").getName(), "homo_sapiens_core_81_38");
+
+		Assert.assertEquals(registry.getAll(DatabaseType.CORE, "homo_sapiens").length, 2);
+		Assert.assertEquals(registry.getAllByAlias(DatabaseType.CORE, "my_alias").length, 2);
+
+		// the results are worked out again when an entry is added
+		registry.add(entry("homo_sapiens_core_83_38"));
+		Assert.assertEquals(registry.getEquivalent(human, null).getName(), "homo_sapiens_core_83_38");
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that a {@link FileReportStore} gives back what was stored, filtered
+ * and in the same order as a {@link MemoryReportStore}.
+ */
+public class FileReportStoreTest {
+
+	private static ReportLine report(String test, String database, int level, String message) {
+		return new ReportLine(test, database, "homo_sapiens", DatabaseType.CORE, level, message, Team.CORE, null);
+	}
+
+	private static void fill(ReportStore store) {
+
+		store.add(report("TestA", "db1", ReportLine.PROBLEM, "missing rows"));
+		store.add(report("TestA", "db2", ReportLine.INFO, "fine é"));
+		store.add(report("TestB", "db1", ReportLine.LOG_MESSAGE, "log"));
+		store.add(report("TestB", "db1", ReportLine.WARNING, null));
+	}
+
+	@Test
+	public void testSameAsMemoryStore() {
+
+		ReportStore memory = new MemoryReportStore();
+		FileReportStore file = new FileReportStore();
+		fill(memory);
+		fill(file);
+
+		Assert.assertEquals(file.getTestCaseNames(), memory.getTestCaseNames());
+		Assert.assertEquals(file.getDatabaseNames(), memory.getDatabaseNames());
+
+		for (int level : new int[] { ReportLine.LOG_MESSAGE, ReportLine.ALL, ReportLine.WARNING, ReportLine.PROBLEM }) {
+			for (String test : memory.getTestCaseNames()) {
+				Assert.assertEquals(toString(file.getReportsByTestCase(test, level)), toString(memory.getReportsByTestCase(test, level)));
+				Assert.assertEquals(file.getDatabaseNames(test, level), memory.getDatabaseNames(test, level));
+			}
+			for (String database : memory.getDatabaseNames()) {
+				Assert.assertEquals(toString(file.getReportsByDatabase(database, level)), toString(memory.getReportsByDatabase(database, level)));
+				Assert.assertEquals(file.getTestCaseNames(database, level), memory.getTestCaseNames(database, level));
+			}
+		}
+
+		ReportLine line = file.getReportsByTestCase("TestA", ReportLine.ALL).get(1);
+		Assert.assertEquals(line.getMessage(), "fine é");
+		Assert.assertSame(line.getType(), DatabaseType.CORE);
+		Assert.assertEquals(line.getTeamResponsible(), Team.CORE);
+		Assert.assertNull(line.getSecondTeamResponsible());
+
+		file.clear();
+		Assert.assertTrue(file.getTestCaseNames().isEmpty());
+		Assert.assertTrue(file.getReportsByDatabase("db1", ReportLine.ALL).isEmpty());
+		fill(file);
+		Assert.assertEquals(file.getReportsByDatabase("db1", ReportLine.LOG_MESSAGE).size(), 3);
+		file.clear();
+	}
+
+	@Test
+	public void testEntryKeepsNegativeLevels() {
+
+		long entry = FileReportStore.entry(ReportLine.LOG_MESSAGE, 123456789L);
+		Assert.assertEquals(FileReportStore.level(entry), ReportLine.LOG_MESSAGE);
+		Assert.assertEquals(FileReportStore.offset(entry), 123456789L);
+	}
+
+	private static String toString(List<ReportLine> lines) {
+
+		StringBuilder sb = new StringBuilder();
+		for (ReportLine line : lines) {
+			sb.append(line.getLevel()).append(' ').append(line.getTestCaseName()).append(' ').append(line.getDatabaseName()).append(' ')
+					.append(line.getMessage()).append('\n');
+		}
+		return sb.toString();
+	}
+
+}
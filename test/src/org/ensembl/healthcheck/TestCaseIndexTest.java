@@ -0,0 +1,68 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that a {@link TestCaseIndex} survives being written and read and
+ * knows the same names for tests and groups as scanning the classpath.
+ */
+public class TestCaseIndexTest {
+
+	@Test
+	public void testSameAsScanning() throws Exception {
+
+		TestCaseIndex built = TestCaseIndex.build(TestCaseIndex.PACKAGES);
+		Assert.assertFalse(built.getEntries().isEmpty());
+
+		StringWriter out = new StringWriter();
+		built.write(out);
+		TestCaseIndex read = TestCaseIndex.read(new StringReader(out.toString()));
+
+		Assert.assertEquals(read.getPackages(), built.getPackages());
+		Assert.assertTrue(read.covers("org.ensembl.healthcheck.testcase.generic"));
+		Assert.assertFalse(read.covers("org.ensembl.healthcheck.util"));
+		Assert.assertEquals(read.getEntries().size(), built.getEntries().size());
+
+		for (TestCaseIndex.Entry entry : built.getEntries()) {
+			TestCaseIndex.Entry copy = read.getEntry(entry.getClassName());
+			Assert.assertNotNull(copy, entry.getClassName());
+			Assert.assertEquals(copy.isGroup(), entry.isGroup());
+			Assert.assertEquals(copy.getNames(), entry.getNames());
+			Assert.assertEquals(copy.getGroups(), entry.getGroups());
+			Assert.assertEquals(copy.getTypes(), entry.getTypes(), entry.getClassName());
+			Assert.assertEquals(copy.getTeam(), entry.getTeam());
+			Assert.assertEquals(copy.isLongRunning(), entry.isLongRunning());
+		}
+
+		Assert.assertEquals(read.getAliasToClassName(TestCaseIndex.PACKAGES), TestInstantiator.createMap(TestCaseIndex.PACKAGES));
+
+		TestCaseIndex.Entry metaValues = read.getEntry("org.ensembl.healthcheck.testcase.generic.MetaValues");
+		Assert.assertFalse(metaValues.isGroup());
+		Assert.assertTrue(metaValues.appliesToType(DatabaseType.CORE));
+		Assert.assertTrue(metaValues.inGroup("MetaValues"));
+		Assert.assertFalse(metaValues.isLongRunning());
+		Assert.assertTrue(read.getEntry("org.ensembl.healthcheck.testcase.generic.ExonStrandOrder").isLongRunning());
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.ensembl.healthcheck.configuration.ConfigureTestGroups;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import uk.co.flamingpenguin.jewel.cli.CliFactory;
+
+/**
+ * Checks that a {@link ConfigurationBasedTestRegistry} describes its tests
+ * the way they are when instantiated, and only instantiates them when they
+ * are asked for.
+ */
+public class TestDescriptorTest {
+
+	@Test
+	public void testInstantiatedWhenAskedFor() throws Exception {
+
+		ConfigureTestGroups params = CliFactory.parseArguments(ConfigureTestGroups.class, "-g", "CoreHandover");
+		TestRegistry registry = new ConfigurationBasedTestRegistry(params);
+
+		List<TestDescriptor> descriptors = registry.getAllDescriptors();
+		Assert.assertFalse(descriptors.isEmpty());
+		Assert.assertEquals(registry.getAll().size(), descriptors.size());
+
+		List<SingleDatabaseTestCase> core = registry.getAllSingle(null, DatabaseType.CORE);
+		List<TestDescriptor> coreDescriptors = registry.getAllSingleDescriptors(null, DatabaseType.CORE);
+		Assert.assertFalse(core.isEmpty());
+		Assert.assertSame(core.get(0), core.get(0));
+		Assert.assertEquals(core.size(), coreDescriptors.size());
+		for (int i = 0; i < core.size(); i++) {
+			Assert.assertSame(core.get(i).getClass(), coreDescriptors.get(i).getTestClass());
+		}
+
+		for (TestDescriptor descriptor : descriptors) {
+			EnsTestCase test = descriptor.newInstance();
+			Assert.assertEquals(Arrays.asList(descriptor.getAppliesToTypes()), Arrays.asList(test.getAppliesToTypes()), descriptor.getName());
+			Assert.assertEquals(descriptor.getGroups(), test.getGroups(), descriptor.getName());
+			Assert.assertEquals(descriptor.isLongRunning(), test.isLongRunning(), descriptor.getName());
+		}
+	}
+
+}
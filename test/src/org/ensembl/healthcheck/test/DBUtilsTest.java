@@ -17,7 +17,23 @@
 
 package org.ensembl.healthcheck.test;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistry;
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.ResultSetComparer;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -29,4 +45,127 @@ public class DBUtilsTest {
     Assert.assertNotNull(dbName);
   }
 
+  @Test
+  public void testGetCountQuery() {
+    Assert.assertEquals(DBUtils.getCountQuery("SELECT * FROM ditag LIMIT 10;"),
+        "SELECT COUNT(*) FROM (SELECT * FROM ditag LIMIT 10) t");
+    Assert.assertEquals(DBUtils.getCountQuery(" select biotype, count(*) from gene group by biotype"),
+        "SELECT COUNT(*) FROM (select biotype, count(*) from gene group by biotype) t");
+    Assert.assertNull(DBUtils.getCountQuery("SHOW TABLES"));
+    Assert.assertNull(DBUtils.getCountQuery("SELECT gene_id FROM gene FOR UPDATE"));
+    Assert.assertNull(DBUtils.getCountQuery("SELECT gene_id INTO OUTFILE '/tmp/x' FROM gene"));
+  }
+
+  @Test
+  public void testGetRowCount() throws SQLException {
+    Connection con = DriverManager.getConnection("jdbc:h2:mem:dbutilsrowcount", "sa", "");
+    try {
+      Statement stmt = con.createStatement();
+      stmt.execute("CREATE TABLE gene (gene_id INT, biotype VARCHAR(20))");
+      stmt.execute("CREATE TABLE transcript (transcript_id INT, gene_id INT)");
+      stmt.execute("INSERT INTO gene VALUES (1, 'a'), (2, 'a'), (3, 'b')");
+      stmt.execute("INSERT INTO transcript VALUES (1, 1), (2, 1), (3, 2)");
+      stmt.close();
+
+      Assert.assertEquals(DBUtils.getRowCount(con, "SELECT COUNT(*) FROM gene"), 3);
+      Assert.assertEquals(DBUtils.getRowCount(con, "SELECT * FROM gene LIMIT 2"), 2);
+      Assert.assertEquals(DBUtils.getRowCount(con, "SELECT biotype, COUNT(*) FROM gene GROUP BY biotype"), 2);
+      Assert.assertEquals(DBUtils.getRowCount(con, "SELECT * FROM gene g, transcript t WHERE g.gene_id = t.gene_id"), 3);
+      Assert.assertEquals(DBUtils.getRowCount(con, "SHOW TABLES"), 2);
+      Assert.assertEquals(DBUtils.getRowCount(con, "SELECT * FROM gene WHERE gene_id > 10"), 0);
+    } finally {
+      con.close();
+    }
+  }
+
+  @Test
+  public void testCompareResultSets() throws SQLException {
+    Connection[] cons = new Connection[3];
+    Statement[] stmts = new Statement[3];
+    try {
+      for (int i = 0; i < cons.length; i++) {
+        cons[i] = DriverManager.getConnection("jdbc:h2:mem:dbutilscompare" + i, "sa", "");
+        Statement stmt = cons[i].createStatement();
+        stmt.execute("CREATE TABLE external_db (external_db_id INT, db_name VARCHAR(20), priority DOUBLE)");
+        stmt.execute("INSERT INTO external_db VALUES (1, 'EMBL', 5), (2, 'UniProt', NULL)");
+        stmt.close();
+      }
+      Statement changed = cons[2].createStatement();
+      changed.execute("UPDATE external_db SET db_name = 'RefSeq' WHERE external_db_id = 2");
+      changed.close();
+
+      String sql = "SELECT * FROM external_db ORDER BY external_db_id";
+      ResultSetComparer comparer = new ResultSetComparer(null, "", "external_db", false, false, false);
+
+      List<ResultSet> same = new ArrayList<ResultSet>();
+      for (int i = 0; i < 2; i++) {
+        stmts[i] = DBUtils.createStreamingStatement(cons[i]);
+        same.add(stmts[i].executeQuery(sql));
+      }
+      Assert.assertTrue(comparer.compare(same, null), "Identical tables should compare equal");
+
+      List<ResultSet> different = new ArrayList<ResultSet>();
+      for (int i = 0; i < 3; i++) {
+        DBUtils.closeQuietly(stmts[i]);
+        stmts[i] = DBUtils.createStreamingStatement(cons[i]);
+        different.add(stmts[i].executeQuery(sql));
+      }
+      Assert.assertFalse(comparer.compare(different, null), "A changed row in any table should be found");
+
+      for (int i = 0; i < 3; i++) {
+        DBUtils.closeQuietly(stmts[i]);
+        stmts[i] = DBUtils.createStreamingStatement(cons[i]);
+      }
+      Assert.assertTrue(comparer.compare(stmts[0].executeQuery(sql), stmts[2].executeQuery(sql), new int[] { 1, 3 }),
+          "Only the given columns should be compared");
+    } finally {
+      for (int i = 0; i < cons.length; i++) {
+        DBUtils.closeQuietly(stmts[i]);
+        if (cons[i] != null) {
+          cons[i].close();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCheckSameSQLResultInGroups() throws SQLException {
+    String[] names = { "dbutilsgroups_a_core", "dbutilsgroups_a_otherfeatures", "dbutilsgroups_b_core",
+        "dbutilsgroups_b_otherfeatures" };
+    DatabaseRegistryEntry[] dbres = new DatabaseRegistryEntry[names.length];
+    try {
+      for (int i = 0; i < names.length; i++) {
+        Connection con = DriverManager.getConnection("jdbc:h2:mem:" + names[i], "sa", "");
+        Statement stmt = con.createStatement();
+        stmt.execute("CREATE TABLE meta (meta_key VARCHAR(20), meta_value VARCHAR(20))");
+        stmt.execute("INSERT INTO meta VALUES ('schema_version', '" + (i == 3 ? "80" : "81") + "')");
+        stmt.close();
+        dbres[i] = new DatabaseRegistryEntry(new DatabaseInfo(names[i], null, "species", DatabaseType.CORE, "81", "1"),
+            con);
+      }
+      List<DatabaseRegistryEntry[]> groups = new ArrayList<DatabaseRegistryEntry[]>();
+      groups.add(new DatabaseRegistryEntry[] { dbres[0], dbres[1] });
+      groups.add(new DatabaseRegistryEntry[] { dbres[2], dbres[3] });
+
+      MultiDatabaseTestCase test = new MultiDatabaseTestCase() {
+        public boolean run(DatabaseRegistry dbr) {
+          return true;
+        }
+      };
+      String sql = "SELECT meta_key, meta_value FROM meta ORDER BY meta_key";
+      Assert.assertTrue(DBUtils.checkSameSQLResult(test, sql, groups.subList(0, 1), false));
+      Assert.assertFalse(DBUtils.checkSameSQLResult(test, sql, groups, false),
+          "The group whose databases differ should be found");
+      List<ReportLine> reports = ReportManager.getReportsByTestCase(test.getTestName(), ReportLine.PROBLEM);
+      Assert.assertEquals(reports.size(), 1);
+      Assert.assertTrue(reports.get(0).getDatabaseName().endsWith(names[2]), "Reported against the first database of the group");
+    } finally {
+      for (DatabaseRegistryEntry dbre : dbres) {
+        if (dbre != null) {
+          dbre.getConnection().close();
+        }
+      }
+    }
+  }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ensembl.healthcheck.ParallelTestExecutor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the per server limits and the order in which the
+ * {@link ParallelTestExecutor} runs jobs.
+ */
+public class ParallelTestExecutorTest {
+
+	@Test
+	public void testMaxPerServerIsRespected() {
+
+		final int maxPerServer = 2;
+		ParallelTestExecutor executor = new ParallelTestExecutor(8, maxPerServer);
+
+		final Map<String, AtomicInteger> running = new HashMap<String, AtomicInteger>();
+		final Map<String, AtomicInteger> highest = new HashMap<String, AtomicInteger>();
+		final AtomicInteger done = new AtomicInteger();
+
+		for (final String server : new String[] { "a:3306", "b:3306" }) {
+			running.put(server, new AtomicInteger());
+			highest.put(server, new AtomicInteger());
+			for (int i = 0; i < 20; i++) {
+				executor.submit(server, new Runnable() {
+					public void run() {
+						int now = running.get(server).incrementAndGet();
+						synchronized (highest) {
+							if (now > highest.get(server).get()) {
+								highest.get(server).set(now);
+							}
+						}
+						try {
+							Thread.sleep(2);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						running.get(server).decrementAndGet();
+						done.incrementAndGet();
+					}
+				});
+			}
+		}
+		executor.awaitCompletion();
+
+		Assert.assertEquals(done.get(), 40);
+		Assert.assertTrue(highest.get("a:3306").get() <= maxPerServer);
+		Assert.assertTrue(highest.get("b:3306").get() <= maxPerServer);
+	}
+
+	@Test
+	public void testServersTakeTurns() {
+
+		// A single thread makes the order deterministic
+		ParallelTestExecutor executor = new ParallelTestExecutor(1);
+
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		final Object gate = new Object();
+
+		// Keep the only thread busy until everything has been queued
+		synchronized (gate) {
+			executor.submit("blocker", new Runnable() {
+				public void run() {
+					synchronized (gate) {
+						order.add("blocker");
+					}
+				}
+			});
+			for (final String job : new String[] { "a1", "a2", "a3", "b1", "c1", "c2" }) {
+				executor.submit(job.substring(0, 1), new Runnable() {
+					public void run() {
+						order.add(job);
+					}
+				});
+			}
+		}
+		executor.awaitCompletion();
+
+		Assert.assertEquals(order.toString(), "[blocker, a1, b1, c1, a2, c2, a3]");
+	}
+
+	@Test
+	public void testFailingJobDoesNotStopOthers() {
+
+		ParallelTestExecutor executor = new ParallelTestExecutor(2, 1);
+		final AtomicInteger done = new AtomicInteger();
+
+		executor.submit("a", new Runnable() {
+			public void run() {
+				throw new RuntimeException("Expected by the test");
+			}
+		});
+		executor.submit("a", new Runnable() {
+			public void run() {
+				done.incrementAndGet();
+			}
+		});
+		executor.awaitCompletion();
+
+		Assert.assertEquals(done.get(), 1);
+	}
+
+}
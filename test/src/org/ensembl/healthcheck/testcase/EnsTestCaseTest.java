@@ -0,0 +1,110 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.testcase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.util.ConnectionPool;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that entries created on the fly by tests do not use up the
+ * connections the pool has for a database.
+ */
+public class EnsTestCaseTest {
+
+	private static final String URL = "jdbc:h2:mem:enstestcase";
+
+	/**
+	 * A server with the schemas of an H2 database, which lists them for
+	 * "SHOW DATABASES". Only the connections to databases come from the pool.
+	 */
+	private static class H2Server extends DatabaseServer {
+
+		H2Server() {
+			super("localhost", "3306", "sa", "", "org.h2.Driver");
+		}
+
+		public Connection getServerConnection() throws SQLException {
+
+			final Connection con = DriverManager.getConnection(URL, "sa", "");
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+					new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if (args != null && "SHOW DATABASES".equals(args[0])) {
+								args[0] = "SELECT SCHEMA_NAME FROM INFORMATION_SCHEMA.SCHEMATA";
+							}
+							try {
+								return method.invoke(con, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						}
+					});
+		}
+
+		public Connection getDatabaseConnection(String databaseName) throws SQLException {
+			return DBUtils.openConnection("org.h2.Driver", URL, "sa", "");
+		}
+	}
+
+	@Test
+	public void testEntriesByPatternShareConnections() throws Exception {
+
+		Class.forName("org.h2.Driver");
+		Connection keepAlive = DriverManager.getConnection(URL, "sa", "");
+		int maxPerKey = ConnectionPool.getMaxPerKey();
+		long waitTimeout = ConnectionPool.getWaitTimeout();
+		ConnectionPool.setMaxPerKey(2);
+		ConnectionPool.setWaitTimeout(200);
+		try {
+			Statement stmt = keepAlive.createStatement();
+			stmt.execute("CREATE SCHEMA \"homo_sapiens_core_81_38\"");
+			stmt.close();
+
+			DBUtils.initialise(false);
+			DBUtils.getMainDatabaseServers().add(new H2Server());
+
+			EnsTestCase testCase = new EnsTestCase() {
+			};
+			for (int i = 0; i < 2 * maxPerKey; i++) {
+				DatabaseRegistryEntry dbre = testCase.getDatabaseRegistryEntryByPattern("homo_sapiens_core_81_38");
+				Assert.assertNotNull(dbre);
+				Assert.assertNotNull(dbre.getConnection(), "No connection for entry " + i);
+			}
+		} finally {
+			DBUtils.initialise();
+			ConnectionPool.setMaxPerKey(maxPerKey);
+			ConnectionPool.setWaitTimeout(waitTimeout);
+			keepAlive.close();
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ConnectionPoolTest {
+
+  private static final String DRIVER = "org.h2.Driver";
+
+  private int maxPerKey;
+
+  private long waitTimeout;
+
+  @BeforeClass
+  void setupPool() {
+    maxPerKey = ConnectionPool.getMaxPerKey();
+    waitTimeout = ConnectionPool.getWaitTimeout();
+    ConnectionPool.setMaxPerKey(2);
+    ConnectionPool.setWaitTimeout(200);
+  }
+
+  @AfterClass
+  void resetPool() {
+    ConnectionPool.setMaxPerKey(maxPerKey);
+    ConnectionPool.setWaitTimeout(waitTimeout);
+  }
+
+  @Test
+  public void closedConnectionsAreReused() throws SQLException {
+    String url = "jdbc:h2:mem:poolreuse";
+    long created = ConnectionPool.getCreatedCount();
+
+    Connection first = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    first.close();
+    assertTrue(first.isClosed(), "Handle must look closed once given back");
+
+    Connection second = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    assertFalse(second.isClosed());
+    assertEquals(ConnectionPool.getCreatedCount() - created, 1, "Second borrow should reuse the connection");
+    second.close();
+  }
+
+  @Test
+  public void poolIsBoundedPerDatabase() throws SQLException {
+    String url = "jdbc:h2:mem:poolbounded";
+
+    Connection a = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    Connection b = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    try {
+      ConnectionPool.getConnection(DRIVER, url, "sa", "");
+      fail("Expected to time out waiting for a third connection");
+    } catch (SQLException e) {
+      // expected
+    }
+
+    // Other databases are not affected
+    Connection other = ConnectionPool.getConnection(DRIVER, "jdbc:h2:mem:poolbounded2", "sa", "");
+    other.close();
+
+    a.close();
+    Connection c = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    c.close();
+    b.close();
+  }
+
+  @Test
+  public void anotherConnectionToTheSameDatabase() throws SQLException {
+    String url = "jdbc:h2:mem:poolanother";
+
+    Connection con = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    con.createStatement().execute("create table t (id int)");
+    Connection another = ConnectionPool.getAnotherConnection(con);
+    try {
+      assertTrue(another != null && another != con);
+      assertEquals(new ConnectionBasedSqlTemplateImpl(another).queryForDefaultObject("select count(*) from t",
+          Integer.class), Integer.valueOf(0), "Should be connected to the same database");
+    } finally {
+      another.close();
+      con.close();
+    }
+    assertEquals(ConnectionPool.getAnotherConnection(con), null, "Given back connections have no pool");
+  }
+
+  @Test
+  public void invalidatedConnectionsAreEvicted() throws SQLException {
+    String url = "jdbc:h2:mem:poolinvalidate";
+    long evicted = ConnectionPool.getEvictedCount();
+
+    Connection a = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    ConnectionPool.invalidate(a);
+    assertEquals(ConnectionPool.getEvictedCount() - evicted, 1);
+
+    Connection b = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+    assertFalse(b.isClosed());
+    b.close();
+  }
+
+  @Test
+  public void sqlExceptionsMarkConnectionAsFailed() throws SQLException {
+    Connection con = ConnectionPool.getConnection(DRIVER, "jdbc:h2:mem:poolfailed", "sa", "");
+    assertFalse(ConnectionPool.hasFailed(con));
+
+    Statement stmt = con.createStatement();
+    try {
+      stmt.executeQuery("select * from no_such_table");
+      fail("Expected the query to fail");
+    } catch (SQLException e) {
+      // expected
+    } finally {
+      DBUtils.closeQuietly(stmt);
+    }
+    assertTrue(ConnectionPool.hasFailed(con), "Exception from a statement should be noticed");
+
+    ConnectionPool.markValid(con);
+    assertFalse(ConnectionPool.hasFailed(con));
+
+    con.close();
+    assertTrue(ConnectionPool.hasFailed(con), "Closed connections always need checking");
+  }
+
+  @Test
+  public void metricsCountStatementsAndRows() throws SQLException {
+    TestMetrics.setEnabled(true);
+    try {
+      TestMetrics.start("MetricsTest", "poolmetrics");
+      Connection con = ConnectionPool.getConnection(DRIVER, "jdbc:h2:mem:poolmetrics", "sa", "");
+      try {
+        SqlTemplate template = new ConnectionBasedSqlTemplateImpl(con);
+        template.execute("create table t (id int, name varchar(10))");
+        template.update("insert into t values (1, 'abc'), (2, 'de')");
+        List<String> names = template.queryForDefaultObjectList("select name from t order by id", String.class);
+        assertEquals(names.size(), 2);
+      } finally {
+        con.close();
+      }
+      TestMetrics.Entry entry = TestMetrics.finish();
+
+      assertEquals(entry.getTestName(), "MetricsTest");
+      assertEquals(entry.getStatements(), 3);
+      assertEquals(entry.getRows(), 2);
+      assertEquals(entry.getBytes(), 5);
+      assertTrue(entry.getWallTimeMillis() >= 0);
+      assertTrue(TestMetrics.getEntries().contains(entry));
+    } finally {
+      TestMetrics.setEnabled(false);
+      TestMetrics.clear();
+    }
+  }
+
+  @Test
+  public void preparedStatementsAreCachedPerConnection() throws SQLException {
+    Connection con = ConnectionPool.getConnection(DRIVER, "jdbc:h2:mem:poolstatements", "sa", "");
+    PreparedStatementCache cache;
+    try {
+      SqlTemplate template = new ConnectionBasedSqlTemplateImpl(con);
+      template.execute("create table t (id int)");
+      template.update("insert into t values (?)", 1);
+      template.update("insert into t values (?)", 2);
+      for (int i = 1; i <= 2; i++) {
+        assertEquals(template.queryForDefaultObject("select count(*) from t where id = ?", Integer.class, i),
+            Integer.valueOf(1));
+      }
+
+      cache = ConnectionPool.getStatementCache(con);
+      assertEquals(cache.getMisses(), 2, "Each statement should only be prepared once");
+      assertEquals(cache.getHits(), 2);
+      assertEquals(cache.size(), 2);
+
+      try {
+        template.queryForDefaultObject("select count(*) from no_such_table", Integer.class);
+        fail("Expected the query to fail");
+      } catch (SqlUncheckedException e) {
+        // expected
+      }
+      assertEquals(cache.size(), 2, "Statements that fail should not be cached");
+    } finally {
+      con.close();
+    }
+    assertTrue(cache.isClosed(), "Statements should be closed when the connection is given back");
+    assertEquals(cache.size(), 0);
+  }
+}
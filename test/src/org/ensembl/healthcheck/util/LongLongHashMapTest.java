@@ -0,0 +1,81 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class LongLongHashMapTest {
+
+  @Test
+  public void behavesLikeHashMap() {
+    LongLongHashMap map = new LongLongHashMap(-1);
+    Map<Long, Long> expected = new HashMap<Long, Long>();
+    Random random = new Random(42);
+
+    for (int i = 0; i < 10000; i++) {
+      long key = (i % 3 == 0) ? i : random.nextLong();
+      map.put(key, i);
+      expected.put(key, (long) i);
+    }
+
+    assertEquals(map.size(), expected.size());
+    for (Map.Entry<Long, Long> e : expected.entrySet()) {
+      assertEquals(map.get(e.getKey()), e.getValue().longValue());
+    }
+    assertEquals(map.get(-12345L), -1L, "Missing keys give the missing value");
+  }
+
+  @Test
+  public void zeroIsAValidKey() {
+    LongLongHashMap map = new LongLongHashMap(0);
+    assertFalse(map.containsKey(0));
+    map.put(0, 7);
+    assertTrue(map.containsKey(0));
+    assertEquals(map.get(0), 7L);
+    map.put(0, 8);
+    assertEquals(map.size(), 1);
+    assertEquals(map.get(0), 8L);
+  }
+
+  @Test
+  public void visitsEveryEntry() {
+    LongLongHashMap map = new LongLongHashMap(-1);
+    for (long key = 0; key < 100; key++) {
+      map.addTo(key % 10, key);
+    }
+    final Map<Long, Long> visited = new HashMap<Long, Long>();
+    map.forEach(new LongLongHashMap.EntryVisitor() {
+      public void visit(long key, long value) {
+        visited.put(key, value);
+      }
+    });
+    assertEquals(visited.size(), 10);
+    assertEquals(visited.get(0L).longValue(), 450L);
+    assertEquals(visited.get(9L).longValue(), 540L);
+    assertEquals(map.keys().length, 10);
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+import org.ensembl.healthcheck.DatabaseType;
+import org.testng.annotations.Test;
+
+public class OrphanCheckerTest {
+
+  @Test
+  public void countsOrphansOfEveryRelation() throws Exception {
+    Class.forName("org.h2.Driver");
+    Connection con = DriverManager.getConnection("jdbc:h2:mem:orphanchecker", "sa", "");
+    try {
+      Statement stmt = con.createStatement();
+      stmt.execute("CREATE TABLE gene (gene_id INT, analysis_id INT)");
+      stmt.execute("CREATE TABLE transcript (transcript_id INT, gene_id INT, analysis_id INT)");
+      stmt.execute("CREATE TABLE analysis (analysis_id INT)");
+      stmt.execute("INSERT INTO gene VALUES (1, 1), (2, 1), (3, 2)");
+      stmt.execute("INSERT INTO transcript VALUES (1, 1, 1), (2, 1, 0), (3, 2, 1), (4, 4, 3), (5, NULL, 3)");
+      // duplicated keys must not be counted more than once
+      stmt.execute("INSERT INTO analysis VALUES (1), (1), (2)");
+      stmt.close();
+
+      List<ForeignKey> keys = new ArrayList<ForeignKey>();
+      keys.add(new ForeignKey("transcript", "gene_id", "gene", "gene_id"));
+      keys.add(new ForeignKey("gene", "analysis_id", "analysis", "analysis_id"));
+      keys.add(new ForeignKey("transcript", "analysis_id", "analysis", "analysis_id", "analysis_id != 0"));
+      keys.add(new ForeignKey("gene", "gene_id", "transcript", "gene_id"));
+      keys.add(new ForeignKey("transcript", "no_such_column", "gene", "gene_id"));
+
+      List<OrphanChecker.Result> results = new OrphanChecker(con).check(keys);
+      assertEquals(results.size(), 5);
+      for (int i = 0; i < keys.size(); i++) {
+        assertEquals(results.get(i).getForeignKey(), keys.get(i), "Results are in the order of the relations");
+      }
+
+      assertEquals(results.get(0).getOrphans(), 2, "Unmatched and NULL values are orphans");
+      assertEquals(results.get(0).getSamples().length, 2);
+      assertEquals(results.get(1).getOrphans(), 0);
+      assertEquals(results.get(1).getSamples().length, 0);
+      assertEquals(results.get(2).getOrphans(), 2, "Rows not matching the constraint are ignored");
+      assertEquals(results.get(2).getSamples(), new String[] { "3", "3" });
+      assertEquals(results.get(3).getOrphans(), 1);
+      assertEquals(results.get(3).getSamples(), new String[] { "3" });
+      assertEquals(results.get(4).getOrphans(), -1, "Relations that can not be checked are reported as such");
+    } finally {
+      con.close();
+    }
+  }
+
+  @Test
+  public void mergingGivesTheSameResultsAsTheServer() throws Exception {
+    Class.forName("org.h2.Driver");
+    Connection con = DriverManager.getConnection("jdbc:h2:mem:orphanmerge", "sa", "");
+    long threshold = OrphanChecker.getMergeThreshold();
+    try {
+      Statement stmt = con.createStatement();
+      stmt.execute("CREATE TABLE variation (variation_id INT, name VARCHAR(10))");
+      stmt.execute("CREATE TABLE allele (allele_id INT, variation_id INT, name VARCHAR(10))");
+      stmt.execute("INSERT INTO variation VALUES (1, 'a'), (2, 'b'), (2, 'b'), (4, 'd'), (NULL, 'e'), (6, 'f'), (9, 'g')");
+      stmt.execute("INSERT INTO allele VALUES (1, 1, 'a'), (2, 1, 'x'), (3, 3, 'c'), (4, NULL, 'a'), (5, 4, 'd'), (6, 4, 'd'),"
+          + " (7, 7, 'g'), (8, 8, 'h'), (9, 9, 'g')");
+      stmt.close();
+
+      List<ForeignKey> keys = new ArrayList<ForeignKey>();
+      keys.add(new ForeignKey("allele", "variation_id", "variation", "variation_id"));
+      keys.add(new ForeignKey("allele", "variation_id", "variation", "variation_id", "allele_id < 8"));
+      keys.add(new ForeignKey("variation", "variation_id", "allele", "variation_id"));
+      keys.add(new ForeignKey("allele", "name", "variation", "name"));
+
+      OrphanChecker.setMergeThreshold(Long.MAX_VALUE);
+      List<OrphanChecker.Result> onServer = new OrphanChecker(con).check(keys);
+      OrphanChecker.setMergeThreshold(0);
+      List<OrphanChecker.Result> merged = new OrphanChecker(con).check(keys);
+
+      int[] expected = { 4, 3, 4, 3 };
+      for (int i = 0; i < keys.size(); i++) {
+        assertEquals(onServer.get(i).getOrphans(), expected[i], keys.get(i).toString());
+        assertEquals(merged.get(i).getOrphans(), expected[i], keys.get(i).toString());
+        assertEquals(sorted(merged.get(i).getSamples()), sorted(onServer.get(i).getSamples()), keys.get(i).toString());
+      }
+    } finally {
+      OrphanChecker.setMergeThreshold(threshold);
+      con.close();
+    }
+  }
+
+  @Test
+  public void checksRelationsToAnotherDatabase() throws Exception {
+    Class.forName("org.h2.Driver");
+    Connection variation = DriverManager.getConnection("jdbc:h2:mem:orphanvariation", "sa", "");
+    Connection core = DriverManager.getConnection("jdbc:h2:mem:orphancore", "sa", "");
+    try {
+      Statement stmt = core.createStatement();
+      stmt.execute("CREATE TABLE transcript (transcript_id INT, stable_id VARCHAR(20))");
+      stmt.execute("CREATE TABLE seq_region (seq_region_id INT)");
+      stmt.execute("INSERT INTO transcript VALUES (1, 'ENST01'), (2, 'ENST02')");
+      stmt.execute("INSERT INTO seq_region VALUES (1), (2), (3)");
+      stmt.close();
+      stmt = variation.createStatement();
+      stmt.execute("CREATE TABLE transcript_variation (feature_stable_id VARCHAR(20))");
+      stmt.execute("CREATE TABLE variation_feature (seq_region_id INT)");
+      stmt.execute("INSERT INTO transcript_variation VALUES ('ENST01'), ('ENST03'), ('ENST02'), ('ENST03')");
+      stmt.execute("INSERT INTO variation_feature VALUES (1), (3), (NULL), (4)");
+      stmt.close();
+
+      DatabaseRegistryEntry variationDb = new DatabaseRegistryEntry(new DatabaseInfo("orphanvariation", null,
+          "species", DatabaseType.VARIATION, "81", "1"), variation);
+      DatabaseRegistryEntry coreDb = new DatabaseRegistryEntry(new DatabaseInfo("orphancore", null, "species",
+          DatabaseType.CORE, "81", "1"), core);
+
+      List<ForeignKey> keys = new ArrayList<ForeignKey>();
+      keys.add(new ForeignKey("transcript_variation", "feature_stable_id", "transcript", "stable_id"));
+      keys.add(new ForeignKey("variation_feature", "seq_region_id", "seq_region", "seq_region_id"));
+      keys.add(new ForeignKey("variation_feature", "seq_region_id", "seq_region", "seq_region_id",
+          "seq_region_id IS NOT NULL"));
+      keys.add(new ForeignKey("variation_feature", "seq_region_id", "no_such_table", "seq_region_id"));
+
+      List<OrphanChecker.Result> results = new OrphanChecker(variationDb).check(coreDb, keys);
+      assertEquals(results.get(0).getOrphans(), 2);
+      assertEquals(results.get(0).getSamples(), new String[] { "ENST03", "ENST03" });
+      assertEquals(results.get(0).getForeignKey().getTable(), "orphanvariation.transcript_variation");
+      assertEquals(results.get(0).getForeignKey().getReferencedTable(), "orphancore.transcript");
+      assertEquals(results.get(1).getOrphans(), 2, "NULLs are orphans");
+      assertEquals(results.get(2).getOrphans(), 1);
+      assertEquals(results.get(2).getSamples(), new String[] { "4" });
+      assertEquals(results.get(3).getOrphans(), -1);
+    } finally {
+      variation.close();
+      core.close();
+    }
+  }
+
+  private static List<String> sorted(String[] values) {
+    List<String> list = new ArrayList<String>(Arrays.asList(values));
+    Collections.sort(list, new Comparator<String>() {
+      public int compare(String a, String b) {
+        return a == null ? (b == null ? 0 : -1) : (b == null ? 1 : a.compareTo(b));
+      }
+    });
+    return list;
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright [1999-2015] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * Copyright [2016-2020] EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class QueryCacheTest {
+
+  @Test
+  public void cachesUntilInvalidated() throws Exception {
+    Class.forName("org.h2.Driver");
+    Connection a = DriverManager.getConnection("jdbc:h2:mem:querycachea", "sa", "");
+    Connection b = DriverManager.getConnection("jdbc:h2:mem:querycacheb", "sa", "");
+    int maxEntries = QueryCache.getMaxEntries();
+    try {
+      // the cache is off unless configured
+      QueryCache.setMaxEntries(1000);
+      QueryCache.invalidateAll();
+      for (Connection con : new Connection[] { a, b }) {
+        Statement stmt = con.createStatement();
+        stmt.execute("CREATE TABLE meta (meta_key VARCHAR(20), meta_value VARCHAR(20))");
+        stmt.execute("INSERT INTO meta VALUES ('assembly.default', '" + (con == a ? "GRCh38" : "GRCm38") + "')");
+        stmt.close();
+      }
+      assertEquals(DBUtils.getMetaValue(a, "assembly.default"), "GRCh38");
+      assertEquals(DBUtils.getMetaValue(b, "assembly.default"), "GRCm38", "Databases are cached separately");
+
+      Statement stmt = a.createStatement();
+      stmt.execute("UPDATE meta SET meta_value = 'GRCh37'");
+      stmt.close();
+      assertEquals(DBUtils.getMetaValue(a, "assembly.default"), "GRCh38", "The cached value is used");
+      assertEquals(DBUtils.getMetaValue(a, "no.such.key"), "", "Arguments are part of the key");
+
+      QueryCache.invalidate(a);
+      assertEquals(DBUtils.getMetaValue(a, "assembly.default"), "GRCh37");
+      assertEquals(QueryCache.size(), 2, "Only the results of the invalidated database are dropped");
+
+      QueryCache.setMaxEntries(2);
+      assertEquals(QueryCache.size(), 2);
+      assertEquals(Arrays.asList(DBUtils.getCachedColumnValues(b, "SELECT meta_key FROM meta")),
+          Arrays.asList("assembly.default"));
+      assertEquals(QueryCache.size(), 2, "The least recently used results are dropped");
+
+      QueryCache.setMaxEntries(0);
+      assertEquals(QueryCache.size(), 0);
+    } finally {
+      QueryCache.setMaxEntries(maxEntries);
+      QueryCache.invalidateAll();
+      a.close();
+      b.close();
+    }
+  }
+
+}
@@ -24,6 +24,8 @@ import static org.ensembl.healthcheck.util.CollectionUtils.quadruple;
 import static org.ensembl.healthcheck.util.CollectionUtils.triple;
 import static org.ensembl.healthcheck.util.CollectionUtils.unit;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.fail;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -101,4 +103,80 @@ public class SqlTemplateTest {
     assertEquals(triple(1, "hello", 4.0D), t.queryForObject(sql, TupleRowMappers.triple(a,b,c)), "Checking triple ok");
     assertEquals(quadruple(1, "hello", 4.0D, true), t.queryForObject(sql, TupleRowMappers.quadruple(a, b, c, d)), "Checking quadruple ok");
   }
+
+  @Test
+  public void streamingMethods() {
+    final List<Integer> ints = new ArrayList<Integer>();
+    long rows = t.queryForEach(SQL_INT, new DefaultObjectRowMapper<Integer>(Integer.class), new SqlTemplate.RowCallback<Integer>() {
+      @Override
+      public boolean process(Integer row) {
+        ints.add(row);
+        return true;
+      }
+    });
+    List<Integer> expected = createArrayList(TABLE_ROWS);
+    Collections.reverse(expected);
+    assertEquals(rows, TABLE_ROWS.length, "Every row should be given to the callback");
+    assertEquals(ints, expected, "Making sure we retain order");
+
+    ints.clear();
+    rows = t.queryForEach("select a from numbers where a > ? order by a", new DefaultObjectRowMapper<Integer>(Integer.class), new SqlTemplate.RowCallback<Integer>() {
+      @Override
+      public boolean process(Integer row) {
+        ints.add(row);
+        return ints.size() < 2;
+      }
+    }, 4);
+    assertEquals(rows, 2, "Returning false should stop reading rows");
+    assertEquals(ints, createArrayList(new Integer[]{5, 6}));
+
+    int sum = t.executeStreaming(SQL_INT, new SqlTemplate.ResultSetCallback<Integer>() {
+      @Override
+      public Integer process(ResultSet rs) throws SQLException {
+        int total = 0;
+        while (rs.next()) {
+          total += rs.getInt(1);
+        }
+        return total;
+      }
+    });
+    assertEquals(sum, 45);
+
+    // the rows are streamed over a connection other than the template's
+    final Integer session = t.queryForDefaultObject("select session_id()", Integer.class);
+    t.executeStreaming(SQL_INT, new SqlTemplate.ResultSetCallback<Void>() {
+      @Override
+      public Void process(ResultSet rs) throws SQLException {
+        Integer streaming = new ConnectionBasedSqlTemplateImpl(rs.getStatement().getConnection())
+            .queryForDefaultObject("select session_id()", Integer.class);
+        assertNotEquals(streaming, session);
+        return null;
+      }
+    });
+  }
+
+  @Test
+  public void primitiveCollectors() {
+    LongLongHashMap counts = t.queryForLongMap("select a, count(*) from numbers group by a", -1);
+    assertEquals(counts.size(), 8);
+    assertEquals(counts.get(1), 2L);
+    assertEquals(counts.get(8), 2L);
+    assertEquals(counts.get(5), 1L);
+    assertEquals(counts.get(9), -1L, "Missing keys give the missing value");
+
+    try {
+      t.queryForLongMap("select a, a from numbers", -1);
+      fail("Keys returned more than once should be an error");
+    } catch (SqlUncheckedException e) {
+      // expected
+    }
+
+    LongArrayList longs = t.queryForLongList("select a from numbers where a > ? order by a", 6);
+    assertEquals(longs.toArray(), new long[] { 7, 8, 8 });
+
+    IntArrayList ints = t.queryForIntList(SQL_INT);
+    assertEquals(ints.size(), TABLE_ROWS.length);
+    assertEquals(ints.get(0), 8);
+    assertEquals(ints.get(ints.size() - 1), 1);
+  }
 }